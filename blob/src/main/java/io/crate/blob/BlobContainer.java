@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BlobContainer {
 
@@ -44,6 +45,16 @@ public class BlobContainer {
 
     private final File[] subDirs = new File[256];
 
+    /**
+     * blob count and size are maintained per sub-directory once it has been counted initially.
+     * Changes to a sub-directory and its initial count are guarded by the lock of the sub-directory
+     */
+    private final Object[] subDirLocks = new Object[256];
+    private final boolean[] subDirCounted = new boolean[256];
+    private final AtomicLong blobsCount = new AtomicLong();
+    private final AtomicLong totalUsage = new AtomicLong();
+    private volatile boolean statsLoaded = false;
+
     static {
         for (int i = 0; i < 256; i++) {
             SUB_DIRS[i] = String.format(Locale.ENGLISH, "%02x", i & 0xFFFFF);
@@ -87,6 +98,7 @@ public class BlobContainer {
         for (int i = 0; i < SUB_DIRS.length; i++) {
             subDirs[i] = new File(parentDir, SUB_DIRS[i]);
             subDirs[i].mkdir();
+            subDirLocks[i] = new Object();
         }
     }
 
@@ -156,6 +168,98 @@ public class BlobContainer {
         return new File(getVarDirectory(), digest.substring(0, 2) + File.separator + digest);
     }
 
+    /**
+     * Moves a completely written file to the location of the blob with the given digest.
+     * An existing blob with the same digest is replaced.
+     *
+     * @return false if the file couldn't be moved
+     */
+    public boolean addBlob(File source, String digest) {
+        File target = getFile(digest);
+        int index = subDirIndex(digest);
+        synchronized (subDirLocks[index]) {
+            boolean exists = target.exists();
+            long previousLength = exists ? target.length() : 0L;
+            if (!source.renameTo(target)) {
+                return false;
+            }
+            if (subDirCounted[index]) {
+                if (!exists) {
+                    blobsCount.incrementAndGet();
+                }
+                totalUsage.addAndGet(target.length() - previousLength);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if there is no blob with the given digest or it couldn't be deleted
+     */
+    public boolean deleteBlob(String digest) {
+        File file = getFile(digest);
+        int index = subDirIndex(digest);
+        synchronized (subDirLocks[index]) {
+            long length = file.length();
+            if (!file.delete()) {
+                return false;
+            }
+            if (subDirCounted[index]) {
+                blobsCount.decrementAndGet();
+                totalUsage.addAndGet(-length);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * number of blobs stored in this container.
+     * The blobs are counted once on the first call, afterwards the count is maintained as blobs are added or deleted.
+     */
+    public long blobsCount() {
+        ensureStatsLoaded();
+        return blobsCount.get();
+    }
+
+    /**
+     * size in bytes of all blobs stored in this container. See {@link #blobsCount()}
+     */
+    public long totalUsage() {
+        ensureStatsLoaded();
+        return totalUsage.get();
+    }
+
+    private void ensureStatsLoaded() {
+        if (statsLoaded) {
+            return;
+        }
+        synchronized (subDirCounted) {
+            if (statsLoaded) {
+                return;
+            }
+            for (int i = 0; i < subDirs.length; i++) {
+                synchronized (subDirLocks[i]) {
+                    File[] files = subDirs[i].listFiles();
+                    if (files != null) {
+                        for (File file : files) {
+                            // names with a suffix are incomplete files of a recovery
+                            if (!file.getName().contains(".")) {
+                                blobsCount.incrementAndGet();
+                                totalUsage.addAndGet(file.length());
+                            }
+                        }
+                    }
+                    subDirCounted[i] = true;
+                }
+            }
+            statsLoaded = true;
+        }
+    }
+
+    private static int subDirIndex(String digest) {
+        return Integer.parseInt(digest.substring(0, 2), 16);
+    }
+
     public DigestBlob createBlob(String digest, UUID transferId) {
         // TODO: check if exists already
         return new DigestBlob(this, digest, transferId);
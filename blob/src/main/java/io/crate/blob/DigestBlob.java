@@ -167,9 +167,8 @@ public class DigestBlob {
             IOUtils.closeWhileHandlingException(headFileChannel);
             headFileChannel = null;
         }
-        File newFile = container.getFile(digest);
-        file.renameTo(newFile);
-        return newFile;
+        container.addBlob(file, digest);
+        return container.getFile(digest);
     }
 
     public File getContainerFile() {
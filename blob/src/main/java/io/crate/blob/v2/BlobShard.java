@@ -55,7 +55,7 @@ public class BlobShard extends AbstractIndexShardComponent {
     }
 
     public boolean delete(String digest) {
-        return blobContainer.getFile(digest).delete();
+        return blobContainer.deleteBlob(digest);
     }
 
     public BlobContainer blobContainer() {
@@ -69,10 +69,8 @@ public class BlobShard extends AbstractIndexShardComponent {
     public BlobStats blobStats() {
         final BlobStats stats = new BlobStats();
         stats.location(blobContainer().getBaseDirectory().getAbsolutePath());
-        for (File file : blobContainer().getFiles()) {
-            stats.totalUsage(stats.totalUsage() + file.length());
-            stats.count(stats.count() + 1);
-        }
+        stats.count(blobContainer.blobsCount());
+        stats.totalUsage(blobContainer.totalUsage());
         return stats;
     }
 
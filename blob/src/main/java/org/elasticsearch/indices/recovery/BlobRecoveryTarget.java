@@ -172,7 +172,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
                     // this might happen on bad timing while recovering/relocating.
                     // noop
                 } else {
-                    if (!source.renameTo(target)) {
+                    if (!shard.blobContainer().addBlob(source, target.getName())) {
                         throw new BlobWriteException(target.getName(), target.length(), null);
                     }
                 }
@@ -234,7 +234,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
                 File source = new File(shard.blobContainer().getBaseDirectory(), tmpPath);
                 File target = new File(shard.blobContainer().getBaseDirectory(), request.path());
                 if (!target.exists()) {
-                    if (!source.renameTo(target)) {
+                    if (!shard.blobContainer().addBlob(source, target.getName())) {
                         throw new IllegalBlobRecoveryStateException(
                             "couldn't rename file to " + request.path()
                         );
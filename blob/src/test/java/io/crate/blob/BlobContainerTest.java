@@ -29,6 +29,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Iterator;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -57,6 +59,32 @@ public class BlobContainerTest {
         assertThat(fileIterator.hasNext(), is(false));
     }
 
+    @Test
+    public void testStatsAreMaintainedOnAddAndDelete() throws Exception {
+        BlobContainer blobContainer = new BlobContainer(temporaryFolder.newFolder());
+        writeFile(blobContainer.getFile(digest("Content A")), "Content A");
+        // incomplete file of a recovery
+        writeFile(new File(blobContainer.getFile(digest("Content B")).getPath() + ".1"), "Content B");
+
+        assertThat(blobContainer.blobsCount(), is(1L));
+        assertThat(blobContainer.totalUsage(), is(9L));
+
+        File tmpFile = new File(blobContainer.getTmpDirectory(), "upload");
+        writeFile(tmpFile, "Content CC");
+        assertThat(blobContainer.addBlob(tmpFile, digest("Content CC")), is(true));
+        assertThat(blobContainer.blobsCount(), is(2L));
+        assertThat(blobContainer.totalUsage(), is(19L));
+
+        assertThat(blobContainer.deleteBlob(digest("Content A")), is(true));
+        assertThat(blobContainer.deleteBlob(digest("Content A")), is(false));
+        assertThat(blobContainer.blobsCount(), is(1L));
+        assertThat(blobContainer.totalUsage(), is(10L));
+    }
+
+    private static void writeFile(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
     private static String digest(String content) {
         return Hex.encodeHexString(Blobs.digest(content));
     }
@@ -152,4 +152,38 @@ public class GroupingProjectorBenchmark {
 
         groupingProjector.finish(RepeatHandle.UNSUPPORTED);
     }
+
+    @Test
+    public void testGroupBySumLongHighCardinality() throws Exception {
+        Functions functions = new ModulesBuilder().add(new AggregationImplModule())
+            .createInjector().getInstance(Functions.class);
+
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        List<Input<?>> keyInputs = Arrays.<Input<?>>asList(keyInput);
+        CollectExpression[] collectExpressions = new CollectExpression[]{keyInput};
+
+        FunctionIdent functionIdent = new FunctionIdent(SumAggregation.NAME,
+            Arrays.<DataType>asList(DataTypes.LONG));
+        FunctionInfo functionInfo = new FunctionInfo(functionIdent, DataTypes.LONG, FunctionInfo.Type.AGGREGATE);
+        AggregationFunction sumAgg = (AggregationFunction) functions.get(functionIdent);
+        Aggregation aggregation = Aggregation.finalAggregation(functionInfo,
+            Arrays.<Symbol>asList(new InputColumn(0)), Aggregation.Step.ITER);
+        AggregationContext aggregationContext = new AggregationContext(sumAgg, aggregation);
+        aggregationContext.addInput(keyInput);
+        AggregationContext[] aggregations = new AggregationContext[]{aggregationContext};
+        GroupingProjector groupingProjector = new GroupingProjector(
+            Arrays.<DataType>asList(DataTypes.LONG), keyInputs, collectExpressions, aggregations, RAM_ACCOUNTING_CONTEXT);
+        RowReceiver finalReceiver = new RowCountRowReceiver();
+        groupingProjector.downstream(finalReceiver);
+        groupingProjector.prepare();
+
+        // 2M distinct keys, so the grouping table itself and not the aggregation dominates
+        SpareRow row = new SpareRow();
+        for (long i = 0; i < 20_000_000; i++) {
+            row.value = (i * 7919) % 2_000_000;
+            groupingProjector.setNextRow(row);
+        }
+
+        groupingProjector.finish(RepeatHandle.UNSUPPORTED);
+    }
 }
@@ -41,6 +41,8 @@ import io.crate.operation.collect.JobCollectContext;
 import io.crate.operation.collect.MapSideDataCollectOperation;
 import io.crate.operation.count.CountOperation;
 import io.crate.operation.fetch.FetchContext;
+import io.crate.operation.join.HashJoinOperation;
+import io.crate.operation.join.JoinOperation;
 import io.crate.operation.join.NestedLoopOperation;
 import io.crate.operation.projectors.DistributingDownstreamFactory;
 import io.crate.operation.projectors.FlatProjectorChain;
@@ -569,19 +571,35 @@ public class ContextPreparer extends AbstractComponent {
             }
             Predicate<Row> joinCondition = RowFilter.create(symbolVisitor, phase.joinCondition());
 
-            NestedLoopOperation nestedLoopOperation = new NestedLoopOperation(
-                phase.executionPhaseId(),
-                flatProjectorChain.firstProjector(),
-                joinCondition,
-                phase.joinType(),
-                phase.numLeftOutputs(),
-                phase.numRightOutputs());
+            JoinOperation joinOperation;
+            if (phase.isHashJoin()) {
+                joinOperation = new HashJoinOperation(
+                    phase.executionPhaseId(),
+                    flatProjectorChain.firstProjector(),
+                    joinCondition,
+                    phase.joinType(),
+                    phase.numLeftOutputs(),
+                    phase.numRightOutputs(),
+                    phase.leftJoinKeys(),
+                    phase.rightJoinKeys(),
+                    phase.buildLeft(),
+                    phase.buildTypes(),
+                    ramAccountingContext);
+            } else {
+                joinOperation = new NestedLoopOperation(
+                    phase.executionPhaseId(),
+                    flatProjectorChain.firstProjector(),
+                    joinCondition,
+                    phase.joinType(),
+                    phase.numLeftOutputs(),
+                    phase.numRightOutputs());
+            }
             PageDownstreamContext left = pageDownstreamContextForNestedLoop(
                 phase.executionPhaseId(),
                 context,
                 (byte) 0,
                 phase.leftMergePhase(),
-                nestedLoopOperation.leftRowReceiver(),
+                joinOperation.leftRowReceiver(),
                 ramAccountingContext);
             if (left != null) {
                 context.registerSubContext(left);
@@ -591,7 +609,7 @@ public class ContextPreparer extends AbstractComponent {
                 context,
                 (byte) 1,
                 phase.rightMergePhase(),
-                nestedLoopOperation.rightRowReceiver(),
+                joinOperation.rightRowReceiver(),
                 ramAccountingContext
             );
             if (right != null) {
@@ -601,7 +619,7 @@ public class ContextPreparer extends AbstractComponent {
                 nlContextLogger,
                 phase,
                 flatProjectorChain,
-                nestedLoopOperation,
+                joinOperation,
                 left,
                 right
             ));
@@ -22,6 +22,10 @@
 
 package io.crate.action.sql;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.analyze.AnalyzedStatement;
 import io.crate.analyze.Analyzer;
 import io.crate.analyze.symbol.Field;
 import io.crate.concurrent.CompletionListener;
@@ -53,6 +57,7 @@ import java.util.*;
 public class SQLOperations {
 
     public final static String NODE_READ_ONLY_SETTING = "node.sql.read_only";
+    public final static String STATEMENT_CACHE_SIZE_SETTING = "node.sql.statement_cache_size";
     private final static ESLogger LOGGER = Loggers.getLogger(SQLOperations.class);
 
     // Parser can't handle empty statement but postgres requires support for it.
@@ -66,6 +71,7 @@ public class SQLOperations {
     private final StatsTables statsTables;
     private final ClusterService clusterService;
     private final boolean isReadOnly;
+    private final Cache<String, Statement> statementCache;
     private volatile boolean disabled;
 
     public enum Option {
@@ -89,6 +95,11 @@ public class SQLOperations {
         this.statsTables = statsTables;
         this.clusterService = clusterService;
         this.isReadOnly = settings.getAsBoolean(NODE_READ_ONLY_SETTING, false);
+        // the parsed statements are immutable and don't depend on any parameters or the schema
+        // so they can be shared by all sessions
+        this.statementCache = CacheBuilder.newBuilder()
+            .maximumSize(settings.getAsInt(STATEMENT_CACHE_SIZE_SETTING, 1000))
+            .build();
     }
 
     public Session createSession(@Nullable String defaultSchema, Set<Option> options, int defaultLimit) {
@@ -194,16 +205,19 @@ public class SQLOperations {
         public void parse(String statementName, String query, List<DataType> paramTypes) {
             LOGGER.debug("method=parse stmtName={} query={} paramTypes={}", statementName, query, paramTypes);
 
-            Statement statement;
-            try {
-                statement = SqlParser.createStatement(query);
-            } catch (Throwable t) {
-                if ("".equals(query)) {
-                    statement = EMPTY_STMT;
-                } else {
-                    statsTables.logPreExecutionFailure(UUID.randomUUID(), query, Exceptions.messageOf(t));
-                    throw Exceptions.createSQLActionException(t);
+            Statement statement = statementCache.getIfPresent(query);
+            if (statement == null) {
+                try {
+                    statement = SqlParser.createStatement(query);
+                } catch (Throwable t) {
+                    if ("".equals(query)) {
+                        statement = EMPTY_STMT;
+                    } else {
+                        statsTables.logPreExecutionFailure(UUID.randomUUID(), query, Exceptions.messageOf(t));
+                        throw Exceptions.createSQLActionException(t);
+                    }
                 }
+                statementCache.put(query, statement);
             }
             preparedStatements.put(statementName, new PreparedStmt(statement, query, paramTypes));
         }
@@ -318,6 +332,11 @@ public class SQLOperations {
             return portal.getLastOutputTypes();
         }
 
+        @Nullable
+        public AnalyzedStatement getAnalyzedStatement(String portalName) {
+            return getSafePortal(portalName).getLastAnalyzedStatement();
+        }
+
         public String getQuery(String portalName) {
             return getSafePortal(portalName).getLastQuery();
         }
@@ -327,7 +346,8 @@ public class SQLOperations {
             return stmt.paramTypes().get(idx);
         }
 
-        private PreparedStmt getSafeStmt(String statementName) {
+        @VisibleForTesting
+        PreparedStmt getSafeStmt(String statementName) {
             PreparedStmt preparedStmt = preparedStatements.get(statementName);
             if (preparedStmt == null) {
                 throw new IllegalArgumentException("No statement found with name: " + statementName);
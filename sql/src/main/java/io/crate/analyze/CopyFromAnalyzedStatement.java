@@ -23,13 +23,16 @@
 package io.crate.analyze;
 
 import com.google.common.base.Predicate;
+import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbol;
 import io.crate.metadata.doc.DocTableInfo;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.types.DataType;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.settings.Settings;
 
 import javax.annotation.Nullable;
+import java.net.URI;
 
 public class CopyFromAnalyzedStatement extends AbstractCopyAnalyzedStatement {
 
@@ -37,16 +40,62 @@ public class CopyFromAnalyzedStatement extends AbstractCopyAnalyzedStatement {
     @Nullable
     private final String partitionIdent;
     private final Predicate<DiscoveryNode> nodePredicate;
+    private final FileReadingCollector.FileFormat fileFormat;
+    private final boolean stdin;
+    @Nullable
+    private Symbol stdinUri;
 
     public CopyFromAnalyzedStatement(DocTableInfo table,
                                      Settings settings,
                                      Symbol uri,
                                      @Nullable String partitionIdent,
                                      Predicate<DiscoveryNode> nodePredicate) {
+        this(table, settings, uri, partitionIdent, nodePredicate, FileReadingCollector.FileFormat.JSON, false);
+    }
+
+    public CopyFromAnalyzedStatement(DocTableInfo table,
+                                     Settings settings,
+                                     @Nullable Symbol uri,
+                                     @Nullable String partitionIdent,
+                                     Predicate<DiscoveryNode> nodePredicate,
+                                     FileReadingCollector.FileFormat fileFormat,
+                                     boolean stdin) {
         super(settings, uri);
         this.table = table;
         this.partitionIdent = partitionIdent;
         this.nodePredicate = nodePredicate;
+        this.fileFormat = fileFormat;
+        this.stdin = stdin;
+    }
+
+    /**
+     * @return the uri to read from; for {@code COPY ... FROM STDIN} this is the uri of the stream
+     * set with {@link #stdinUri(URI)} or null if it hasn't been set yet.
+     */
+    @Override
+    @Nullable
+    public Symbol uri() {
+        if (stdin) {
+            return stdinUri;
+        }
+        return super.uri();
+    }
+
+    public boolean isStdin() {
+        return stdin;
+    }
+
+    /**
+     * Sets the uri of the stream containing the data of a {@code COPY ... FROM STDIN} statement.
+     * The stream is provided by the client connection which received the statement.
+     */
+    public void stdinUri(URI uri) {
+        assert stdin : "stdinUri can only be set on COPY FROM STDIN statements";
+        stdinUri = Literal.of(uri.toString());
+    }
+
+    public FileReadingCollector.FileFormat fileFormat() {
+        return fileFormat;
     }
 
     public DocTableInfo table() {
@@ -48,6 +48,7 @@ import io.crate.metadata.settings.SettingsAppliers;
 import io.crate.metadata.settings.StringSetting;
 import io.crate.metadata.table.Operation;
 import io.crate.metadata.table.TableInfo;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.planner.projection.WriterProjection;
 import io.crate.sql.tree.*;
 import io.crate.types.CollectionType;
@@ -63,6 +64,8 @@ import java.util.*;
 @Singleton
 public class CopyStatementAnalyzer {
 
+    private static final String STDIN = "stdin";
+
     private final AnalysisMetaData analysisMetaData;
 
     private static final StringSetting COMPRESSION_SETTINGS =
@@ -107,6 +110,13 @@ public class CopyStatementAnalyzer {
             nodeFilters = discoveryNodePredicate(analysis.parameterContext().parameters(), properties.remove(NodeFilters.NAME));
             settings = settingsFromProperties(properties, context.expressionAnalyzer, context.expressionAnalysisContext);
         }
+        boolean stdin = isStdin(node.path());
+        FileReadingCollector.FileFormat fileFormat = fileFormat(settings.get("format"), stdin);
+        if (stdin) {
+            // the uri of the stream is set once the connection which received the statement provides it
+            return new CopyFromAnalyzedStatement(
+                tableInfo, settings, null, partitionIdent, nodeFilters, fileFormat, true);
+        }
         Symbol uri = context.processExpression(node.path());
 
         if (!(uri.valueType() == DataTypes.STRING ||
@@ -115,7 +125,25 @@ public class CopyStatementAnalyzer {
             throw CopyFromAnalyzedStatement.raiseInvalidType(uri.valueType());
         }
 
-        return new CopyFromAnalyzedStatement(tableInfo, settings, uri, partitionIdent, nodeFilters);
+        return new CopyFromAnalyzedStatement(tableInfo, settings, uri, partitionIdent, nodeFilters, fileFormat, false);
+    }
+
+    private static boolean isStdin(Expression path) {
+        return path instanceof QualifiedNameReference &&
+               ((QualifiedNameReference) path).getName().toString().equalsIgnoreCase(STDIN);
+    }
+
+    private static FileReadingCollector.FileFormat fileFormat(@Nullable String format, boolean stdin) {
+        if (format == null) {
+            // text is the default format of postgres clients streaming data with COPY FROM STDIN
+            return stdin ? FileReadingCollector.FileFormat.TEXT : FileReadingCollector.FileFormat.JSON;
+        }
+        try {
+            return FileReadingCollector.FileFormat.valueOf(format.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                "Invalid format \"%s\" for COPY FROM, supported formats are: json, csv, text", format));
+        }
     }
 
     private static Predicate<DiscoveryNode> discoveryNodePredicate(Row parameters, @Nullable Expression nodeFiltersExpression) {
@@ -38,9 +38,13 @@ public class CrateCircuitBreakerService extends CircuitBreakerService {
     public static final String QUERY_CIRCUIT_BREAKER_LIMIT_SETTING = "indices.breaker.query.limit";
     public static final String QUERY_CIRCUIT_BREAKER_OVERHEAD_SETTING = "indices.breaker.query.overhead";
     public static final String QUERY_CIRCUIT_BREAKER_TYPE_SETTING = "indices.breaker.query.type";
+    public static final String QUERY_CIRCUIT_BREAKER_SPILL_TO_DISK_SETTING = "indices.breaker.query.spill_to_disk";
+    public static final String QUERY_CIRCUIT_BREAKER_SORT_BUFFER_SIZE_SETTING = "indices.breaker.query.sort_buffer_size";
     public static final String DEFAULT_QUERY_CIRCUIT_BREAKER_LIMIT = "60%";
     public static final double DEFAULT_QUERY_CIRCUIT_BREAKER_OVERHEAD_CONSTANT = 1.09;
     public static final String DEFAULT_QUERY_CIRCUIT_BREAKER_TYPE = "memory";
+    public static final boolean DEFAULT_QUERY_CIRCUIT_BREAKER_SPILL_TO_DISK = false;
+    public static final String DEFAULT_QUERY_CIRCUIT_BREAKER_SORT_BUFFER_SIZE = "5%";
 
     public static final String QUERY = "query";
 
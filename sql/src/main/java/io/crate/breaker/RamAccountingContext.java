@@ -66,7 +66,8 @@ public class RamAccountingContext {
             return;
         }
         long currentFlushBuffer = flushBuffer.addAndGet(bytes);
-        if (currentFlushBuffer >= FLUSH_BUFFER_SIZE) {
+        // large releases are flushed as well so that the breaker gets to know about freed memory early
+        if (currentFlushBuffer >= FLUSH_BUFFER_SIZE || currentFlushBuffer <= -FLUSH_BUFFER_SIZE) {
             flush(currentFlushBuffer);
         }
     }
@@ -83,7 +84,12 @@ public class RamAccountingContext {
             return;
         }
         try {
-            breaker.addEstimateBytesAndMaybeBreak(bytes, contextId);
+            if (bytes < 0) {
+                // releasing memory must never break
+                breaker.addWithoutBreaking(bytes);
+            } else {
+                breaker.addEstimateBytesAndMaybeBreak(bytes, contextId);
+            }
         } catch (CircuitBreakingException e) {
             // since we've already created the data, we need to
             // add it so closing the context re-adjusts properly
@@ -104,6 +110,20 @@ public class RamAccountingContext {
         return totalBytes.get();
     }
 
+    /**
+     * @return the number of bytes added to this context, including those which haven't been flushed to the breaker yet
+     */
+    public long accountedBytes() {
+        return totalBytes.get() + flushBuffer.get();
+    }
+
+    /**
+     * @return the number of bytes currently used in the breaker of this context, including other contexts
+     */
+    public long breakerUsed() {
+        return breaker.getUsed();
+    }
+
     /**
      * Close the context and adjust the breaker.
      * A remaining flush buffer will not be flushed to avoid breaking on close.
@@ -0,0 +1,86 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.breaker;
+
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts bytes in a parent context which may be shared with other components,
+ * but only reports the bytes which have been added through this context.
+ * This makes it possible to release exactly the bytes a single component accounted for.
+ */
+public class TrackingRamAccountingContext extends RamAccountingContext {
+
+    private final RamAccountingContext parent;
+    private final AtomicLong accountedBytes = new AtomicLong(0);
+
+    public TrackingRamAccountingContext(RamAccountingContext parent) {
+        super(parent.contextId(), new NoopCircuitBreaker(CircuitBreaker.REQUEST));
+        this.parent = parent;
+    }
+
+    @Override
+    public void addBytes(long bytes) throws CircuitBreakingException {
+        // the parent keeps the bytes even if its breaker trips, so they are tracked beforehand
+        accountedBytes.addAndGet(bytes);
+        parent.addBytes(bytes);
+    }
+
+    @Override
+    public long totalBytes() {
+        return accountedBytes.get();
+    }
+
+    /**
+     * @return the number of bytes added through this context, bytes added to the parent directly are not included
+     */
+    @Override
+    public long accountedBytes() {
+        return accountedBytes.get();
+    }
+
+    @Override
+    public long breakerUsed() {
+        return parent.breakerUsed();
+    }
+
+    /**
+     * Closing the parent context is up to its owner, this context doesn't release anything on close.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean trippedBreaker() {
+        return parent.trippedBreaker();
+    }
+
+    @Override
+    public long limit() {
+        return parent.limit();
+    }
+}
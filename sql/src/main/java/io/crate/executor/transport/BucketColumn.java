@@ -0,0 +1,463 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport;
+
+import io.crate.Streamer;
+import io.crate.types.*;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the values of a single column of a columnar {@link StreamBucket}.
+ *
+ * Every column is written as its length, an encoding byte, a null bitmap and the non-null values.
+ * The length allows readers to locate each column without decoding the columns in front of it.
+ * Numeric columns are packed without per-value null markers, boolean columns as a bitmap and
+ * string columns are dictionary encoded as long as they contain enough repeated values.
+ * All other types fall back to their {@link Streamer}.
+ */
+abstract class BucketColumn {
+
+    private static final byte GENERIC = 0;
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte SHORT = 3;
+    private static final byte BYTE = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte BOOLEAN = 7;
+    static final byte STRING = 8;
+    static final byte PLAIN_STRING = 9;
+
+    private final byte encoding;
+    private BitSet nulls = new BitSet();
+    protected BytesStreamOutput values = new BytesStreamOutput();
+    private int rows = 0;
+
+    private BucketColumn(byte encoding) {
+        this.encoding = encoding;
+    }
+
+    static BucketColumn forStreamer(Streamer<?> streamer) {
+        if (!(streamer instanceof DataType)) {
+            return new GenericColumn(streamer);
+        }
+        switch (((DataType) streamer).id()) {
+            case LongType.ID:
+            case TimestampType.ID:
+                return new BucketColumn(LONG) {
+                    @Override
+                    protected void addValue(Object value) throws IOException {
+                        values.writeLong(((Number) value).longValue());
+                    }
+                };
+            case IntegerType.ID:
+                return new BucketColumn(INTEGER) {
+                    @Override
+                    protected void addValue(Object value) throws IOException {
+                        values.writeInt(((Number) value).intValue());
+                    }
+                };
+            case ShortType.ID:
+                return new BucketColumn(SHORT) {
+                    @Override
+                    protected void addValue(Object value) throws IOException {
+                        values.writeShort(((Number) value).shortValue());
+                    }
+                };
+            case ByteType.ID:
+                return new BucketColumn(BYTE) {
+                    @Override
+                    protected void addValue(Object value) throws IOException {
+                        values.writeByte(((Number) value).byteValue());
+                    }
+                };
+            case DoubleType.ID:
+                return new BucketColumn(DOUBLE) {
+                    @Override
+                    protected void addValue(Object value) throws IOException {
+                        values.writeDouble(((Number) value).doubleValue());
+                    }
+                };
+            case FloatType.ID:
+                return new BucketColumn(FLOAT) {
+                    @Override
+                    protected void addValue(Object value) throws IOException {
+                        values.writeFloat(((Number) value).floatValue());
+                    }
+                };
+            case BooleanType.ID:
+                return new BooleanColumn();
+            case StringType.ID:
+            case IpType.ID:
+                return new StringColumn();
+            default:
+                return new GenericColumn(streamer);
+        }
+    }
+
+    void add(@Nullable Object value) throws IOException {
+        if (value == null) {
+            nulls.set(rows);
+        } else {
+            addValue(value);
+        }
+        rows++;
+    }
+
+    protected abstract void addValue(Object value) throws IOException;
+
+    byte encoding() {
+        return encoding;
+    }
+
+    void writeTo(StreamOutput out) throws IOException {
+        long[] nullWords = nulls.toLongArray();
+        out.writeInt(1 + bitSetSize(nullWords) + valuesSize());
+        out.writeByte(encoding());
+        writeBitSet(out, nullWords);
+        writeValues(out);
+    }
+
+    /**
+     * @return the number of bytes written by {@link #writeValues(StreamOutput)}
+     */
+    protected int valuesSize() {
+        return values.size();
+    }
+
+    protected void writeValues(StreamOutput out) throws IOException {
+        values.bytes().writeTo(out);
+    }
+
+    void reset() {
+        values = new BytesStreamOutput(values.size());
+        nulls = new BitSet();
+        rows = 0;
+    }
+
+    /**
+     * Decodes the values of a column one row at a time, so that a bucket never has to be
+     * materialized as a whole.
+     */
+    abstract static class Reader {
+
+        private final BitSet nulls;
+        private int row = 0;
+
+        private Reader(BitSet nulls) {
+            this.nulls = nulls;
+        }
+
+        @Nullable
+        Object next() throws IOException {
+            Object value = nulls.get(row) ? null : readValue(row);
+            row++;
+            return value;
+        }
+
+        protected abstract Object readValue(int row) throws IOException;
+    }
+
+    /**
+     * returns a reader for a column written by {@link #writeTo(StreamOutput)}.
+     * {@code in} must be positioned after the column length.
+     */
+    static Reader reader(final StreamInput in, final Streamer<?> streamer) throws IOException {
+        byte encoding = in.readByte();
+        BitSet nulls = readBitSet(in);
+        switch (encoding) {
+            case LONG:
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return in.readLong();
+                    }
+                };
+            case INTEGER:
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return in.readInt();
+                    }
+                };
+            case SHORT:
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return in.readShort();
+                    }
+                };
+            case BYTE:
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return in.readByte();
+                    }
+                };
+            case DOUBLE:
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return in.readDouble();
+                    }
+                };
+            case FLOAT:
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return in.readFloat();
+                    }
+                };
+            case BOOLEAN:
+                final BitSet trueValues = readBitSet(in);
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return trueValues.get(row);
+                    }
+                };
+            case STRING:
+                final BytesRef[] dictionary = new BytesRef[in.readVInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = in.readBytesRef();
+                }
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return dictionary[in.readVInt()];
+                    }
+                };
+            case PLAIN_STRING:
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return in.readBytesRef();
+                    }
+                };
+            case GENERIC:
+                return new Reader(nulls) {
+                    @Override
+                    protected Object readValue(int row) throws IOException {
+                        return streamer.readValueFrom(in);
+                    }
+                };
+            default:
+                throw new IllegalStateException("Invalid column encoding: " + encoding);
+        }
+    }
+
+    private static int bitSetSize(long[] words) {
+        return vIntSize(words.length) + words.length * 8;
+    }
+
+    private static int vIntSize(int i) {
+        int size = 1;
+        while ((i & ~0x7F) != 0) {
+            size++;
+            i >>>= 7;
+        }
+        return size;
+    }
+
+    private static void writeBitSet(StreamOutput out, long[] words) throws IOException {
+        out.writeVInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readBitSet(StreamInput in) throws IOException {
+        long[] words = new long[in.readVInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private static class GenericColumn extends BucketColumn {
+
+        private final Streamer<?> streamer;
+
+        GenericColumn(Streamer<?> streamer) {
+            super(GENERIC);
+            this.streamer = streamer;
+        }
+
+        @Override
+        protected void addValue(Object value) throws IOException {
+            streamer.writeValueTo(values, value);
+        }
+    }
+
+    private static class BooleanColumn extends BucketColumn {
+
+        private BitSet trueValues = new BitSet();
+        private int pos = 0;
+
+        BooleanColumn() {
+            super(BOOLEAN);
+        }
+
+        @Override
+        void add(@Nullable Object value) throws IOException {
+            super.add(value);
+            pos++;
+        }
+
+        @Override
+        protected void addValue(Object value) throws IOException {
+            if ((Boolean) value) {
+                trueValues.set(pos);
+            }
+        }
+
+        @Override
+        protected int valuesSize() {
+            return bitSetSize(trueValues.toLongArray());
+        }
+
+        @Override
+        protected void writeValues(StreamOutput out) throws IOException {
+            writeBitSet(out, trueValues.toLongArray());
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            trueValues = new BitSet();
+            pos = 0;
+        }
+    }
+
+    /**
+     * Dictionary encodes strings until the dictionary holds more than {@link #MAX_DICTIONARY_RATIO}
+     * of the values, then switches to writing the strings as they are. The ratio is checked once
+     * {@link #DICTIONARY_SAMPLE_SIZE} values have been added and again before the column is written,
+     * so that columns of mostly unique values don't pay for a dictionary plus the codes.
+     */
+    private static class StringColumn extends BucketColumn {
+
+        static final int DICTIONARY_SAMPLE_SIZE = 256;
+        static final double MAX_DICTIONARY_RATIO = 0.5;
+
+        private Map<BytesRef, Integer> codes = new HashMap<>();
+        private List<BytesRef> dictionary = new ArrayList<>();
+        private int dictionarySize = 0;
+        private int numValues = 0;
+        private boolean useDictionary = true;
+
+        StringColumn() {
+            super(STRING);
+        }
+
+        @Override
+        byte encoding() {
+            return useDictionary ? STRING : PLAIN_STRING;
+        }
+
+        @Override
+        protected void addValue(Object value) throws IOException {
+            BytesRef bytesRef = (BytesRef) value;
+            numValues++;
+            if (!useDictionary) {
+                values.writeBytesRef(bytesRef);
+                return;
+            }
+            Integer code = codes.get(bytesRef);
+            if (code == null) {
+                code = dictionary.size();
+                BytesRef copy = BytesRef.deepCopyOf(bytesRef);
+                codes.put(copy, code);
+                dictionary.add(copy);
+                dictionarySize += vIntSize(copy.length) + copy.length;
+            }
+            values.writeVInt(code);
+            if (numValues >= DICTIONARY_SAMPLE_SIZE) {
+                disableDictionaryIfTooLarge();
+            }
+        }
+
+        private void disableDictionaryIfTooLarge() throws IOException {
+            if (dictionary.size() <= numValues * MAX_DICTIONARY_RATIO) {
+                return;
+            }
+            StreamInput in = values.bytes().streamInput();
+            BytesStreamOutput plainValues = new BytesStreamOutput(values.size() + dictionarySize);
+            for (int i = 0; i < numValues; i++) {
+                plainValues.writeBytesRef(dictionary.get(in.readVInt()));
+            }
+            values = plainValues;
+            codes = new HashMap<>();
+            dictionary = new ArrayList<>();
+            dictionarySize = 0;
+            useDictionary = false;
+        }
+
+        @Override
+        void writeTo(StreamOutput out) throws IOException {
+            if (useDictionary) {
+                disableDictionaryIfTooLarge();
+            }
+            super.writeTo(out);
+        }
+
+        @Override
+        protected int valuesSize() {
+            if (useDictionary) {
+                return vIntSize(dictionary.size()) + dictionarySize + super.valuesSize();
+            }
+            return super.valuesSize();
+        }
+
+        @Override
+        protected void writeValues(StreamOutput out) throws IOException {
+            if (useDictionary) {
+                out.writeVInt(dictionary.size());
+                for (BytesRef bytesRef : dictionary) {
+                    out.writeBytesRef(bytesRef);
+                }
+            }
+            super.writeValues(out);
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            codes = new HashMap<>();
+            dictionary = new ArrayList<>();
+            dictionarySize = 0;
+            numValues = 0;
+            useDictionary = true;
+        }
+    }
+}
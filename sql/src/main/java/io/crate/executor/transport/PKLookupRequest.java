@@ -0,0 +1,99 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport;
+
+import io.crate.metadata.Reference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.transport.TransportRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request to look up documents by their primary key on the shards of a node.
+ * Contains the ids to look up grouped by shard and the columns which are returned for every found document.
+ */
+public class PKLookupRequest extends TransportRequest {
+
+    private Map<ShardId, List<String>> idsByShard;
+    private List<Reference> columns;
+
+    public PKLookupRequest() {
+    }
+
+    public PKLookupRequest(Map<ShardId, List<String>> idsByShard, List<Reference> columns) {
+        this.idsByShard = idsByShard;
+        this.columns = columns;
+    }
+
+    public Map<ShardId, List<String>> idsByShard() {
+        return idsByShard;
+    }
+
+    public List<Reference> columns() {
+        return columns;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        int numShards = in.readVInt();
+        idsByShard = new HashMap<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            ShardId shardId = ShardId.readShardId(in);
+            int numIds = in.readVInt();
+            List<String> ids = new ArrayList<>(numIds);
+            for (int j = 0; j < numIds; j++) {
+                ids.add(in.readString());
+            }
+            idsByShard.put(shardId, ids);
+        }
+        int numColumns = in.readVInt();
+        columns = new ArrayList<>(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            columns.add(Reference.fromStream(in));
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(idsByShard.size());
+        for (Map.Entry<ShardId, List<String>> entry : idsByShard.entrySet()) {
+            entry.getKey().writeTo(out);
+            out.writeVInt(entry.getValue().size());
+            for (String id : entry.getValue()) {
+                out.writeString(id);
+            }
+        }
+        out.writeVInt(columns.size());
+        for (Reference column : columns) {
+            Reference.toStream(column, out);
+        }
+    }
+}
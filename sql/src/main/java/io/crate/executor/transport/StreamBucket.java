@@ -29,6 +29,11 @@ import io.crate.Streamer;
 import io.crate.core.collections.Bucket;
 import io.crate.core.collections.Row;
 import io.crate.core.collections.RowN;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -40,11 +45,29 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 
+/**
+ * A bucket backed by serialized rows.
+ *
+ * The rows are either stored row by row ({@link #ROW_FORMAT}) or column by column ({@link #COLUMN_FORMAT}).
+ * The format is part of the serialized bucket, so a receiver can always read a bucket regardless of the
+ * format the sender has chosen. Columns are decoded value by value while the rows are iterated.
+ *
+ * A bucket can be compressed using {@link #compress()}; it is decompressed once its rows are iterated.
+ */
 public class StreamBucket implements Bucket, Streamable {
 
+    static final byte ROW_FORMAT = 0;
+    static final byte COLUMN_FORMAT = 1;
+    private static final byte COMPRESSED = 0x10;
+
+    private static final CompressionMode COMPRESSION_MODE = CompressionMode.FAST;
+
     private Streamer<?>[] streamers;
     private int size = -1;
+    private byte format = ROW_FORMAT;
     private BytesReference bytes;
+    private int uncompressedLength;
+    private volatile BytesReference decompressed;
 
     public static class Builder {
 
@@ -53,40 +76,86 @@ public class StreamBucket implements Bucket, Streamable {
         private int size = 0;
         private final Streamer<?>[] streamers;
         private BytesStreamOutput out;
+        private final BucketColumn[] columns;
 
         public Builder(Streamer<?>[] streamers) {
+            this(streamers, false);
+        }
+
+        /**
+         * @param columnar if true the rows are encoded column by column which results in smaller buckets
+         *                 if the rows contain numeric values or repeating strings.
+         */
+        public Builder(Streamer<?>[] streamers, boolean columnar) {
             assert validStreamers(streamers) : "streamers must not be null and they shouldn't be of undefinedType";
             this.streamers = streamers;
-            out = new BytesStreamOutput(INITIAL_PAGE_SIZE);
+            if (columnar) {
+                columns = new BucketColumn[streamers.length];
+                for (int i = 0; i < streamers.length; i++) {
+                    columns[i] = BucketColumn.forStreamer(streamers[i]);
+                }
+            } else {
+                columns = null;
+                out = new BytesStreamOutput(INITIAL_PAGE_SIZE);
+            }
         }
 
         public void add(Row row) throws IOException {
             assert streamers.length == row.size() : "number of streamer must match row size";
 
             size++;
-            for (int i = 0; i < row.size(); i++) {
-                streamers[i].writeValueTo(out, row.get(i));
+            if (columns == null) {
+                for (int i = 0; i < row.size(); i++) {
+                    streamers[i].writeValueTo(out, row.get(i));
+                }
+            } else {
+                for (int i = 0; i < row.size(); i++) {
+                    columns[i].add(row.get(i));
+                }
             }
         }
 
         public void writeToStream(StreamOutput output) throws IOException {
             output.writeVInt(size);
             if (size > 0) {
-                output.writeBytesReference(out.bytes());
+                output.writeByte(format());
+                output.writeBytesReference(bytes());
             }
         }
 
         public StreamBucket build() throws IOException {
             StreamBucket sb = new StreamBucket(streamers);
             sb.size = size;
-            sb.bytes = out.bytes();
+            sb.format = format();
+            sb.bytes = bytes();
             return sb;
         }
 
         public void reset() {
-            out = new BytesStreamOutput(size); // next bucket is probably going to have the same size
+            if (columns == null) {
+                out = new BytesStreamOutput(size); // next bucket is probably going to have the same size
+            } else {
+                for (BucketColumn column : columns) {
+                    column.reset();
+                }
+            }
             size = 0;
         }
+
+        private byte format() {
+            return columns == null ? ROW_FORMAT : COLUMN_FORMAT;
+        }
+
+        private BytesReference bytes() throws IOException {
+            if (columns == null) {
+                return out.bytes();
+            }
+            BytesStreamOutput columnsOut = new BytesStreamOutput(INITIAL_PAGE_SIZE);
+            for (BucketColumn column : columns) {
+                column.writeTo(columnsOut);
+            }
+            return columnsOut.bytes();
+        }
     }
 
     public StreamBucket(@Nullable Streamer<?>[] streamers) {
@@ -126,9 +195,58 @@ public class StreamBucket implements Bucket, Streamable {
         }
     }
 
+    /**
+     * @return the number of bytes of the serialized rows
+     */
+    public int byteSize() {
+        return bytes == null ? 0 : bytes.length();
+    }
+
+    public boolean isCompressed() {
+        return (format & COMPRESSED) != 0;
+    }
+
+    /**
+     * Returns a copy of this bucket with the serialized rows compressed using LZ4.
+     */
+    public StreamBucket compress() throws IOException {
+        assert !isCompressed() : "bucket is already compressed";
+        BytesRef raw = bytes.toBytesRef();
+        BytesStreamOutput out = new BytesStreamOutput(raw.length / 2);
+        COMPRESSION_MODE.newCompressor().compress(raw.bytes, raw.offset, raw.length, new OutputStreamDataOutput(out));
+
+        StreamBucket sb = new StreamBucket(streamers);
+        sb.size = size;
+        sb.format = (byte) (format | COMPRESSED);
+        sb.uncompressedLength = raw.length;
+        sb.bytes = out.bytes();
+        return sb;
+    }
+
+    private BytesReference uncompressedBytes() {
+        if (!isCompressed()) {
+            return bytes;
+        }
+        BytesReference result = decompressed;
+        if (result == null) {
+            BytesRef compressed = bytes.toBytesRef();
+            BytesRef target = new BytesRef(uncompressedLength);
+            try {
+                COMPRESSION_MODE.newDecompressor().decompress(
+                    new ByteArrayDataInput(compressed.bytes, compressed.offset, compressed.length),
+                    uncompressedLength, 0, uncompressedLength, target);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            result = new BytesArray(target.bytes, target.offset, target.length);
+            decompressed = result;
+        }
+        return result;
+    }
+
     private class RowIterator implements Iterator<Row> {
 
-        private final StreamInput input = bytes.streamInput();
+        private final StreamInput input = uncompressedBytes().streamInput();
         private int pos = 0;
         private final Object[] current = new Object[streamers.length];
         private final Row row = new RowN(current);
@@ -157,12 +275,63 @@ public class StreamBucket implements Bucket, Streamable {
         }
     }
 
+    private class ColumnIterator implements Iterator<Row> {
+
+        private final BucketColumn.Reader[] readers = new BucketColumn.Reader[streamers.length];
+        private int pos = 0;
+        private final Object[] current = new Object[streamers.length];
+        private final Row row = new RowN(current);
+
+        ColumnIterator() {
+            BytesReference bytes = uncompressedBytes();
+            StreamInput input = bytes.streamInput();
+            int offset = 0;
+            try {
+                for (int c = 0; c < streamers.length; c++) {
+                    int length = input.readInt();
+                    offset += 4;
+                    readers[c] = BucketColumn.reader(bytes.slice(offset, length).streamInput(), streamers[c]);
+                    input.skip(length);
+                    offset += length;
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < size;
+        }
+
+        @Override
+        public Row next() {
+            try {
+                for (int c = 0; c < readers.length; c++) {
+                    current[c] = readers[c].next();
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            pos++;
+            return row;
+        }
+
+        @Override
+        public void remove() {
+
+        }
+    }
+
     @Override
     public Iterator<Row> iterator() {
         if (size < 1) {
             return Collections.emptyIterator();
         }
         assert streamers != null;
+        if ((format & COLUMN_FORMAT) != 0) {
+            return new ColumnIterator();
+        }
         return new RowIterator();
     }
 
@@ -170,6 +339,10 @@ public class StreamBucket implements Bucket, Streamable {
     public void readFrom(StreamInput in) throws IOException {
         size = in.readVInt();
         if (size > 0) {
+            format = in.readByte();
+            if (isCompressed()) {
+                uncompressedLength = in.readVInt();
+            }
             bytes = in.readBytesReference();
         }
     }
@@ -179,6 +352,10 @@ public class StreamBucket implements Bucket, Streamable {
         assert size > -1;
         out.writeVInt(size);
         if (size > 0) {
+            out.writeByte(format);
+            if (isCompressed()) {
+                out.writeVInt(uncompressedLength);
+            }
             out.writeBytesReference(bytes);
         }
     }
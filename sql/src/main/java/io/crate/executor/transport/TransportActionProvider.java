@@ -45,7 +45,6 @@ import org.elasticsearch.action.bulk.TransportShardDeleteActionDelegate;
 import org.elasticsearch.action.bulk.TransportShardUpsertActionDelegate;
 import org.elasticsearch.action.delete.TransportDeleteAction;
 import org.elasticsearch.action.get.TransportGetAction;
-import org.elasticsearch.action.get.TransportMultiGetAction;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Provider;
 
@@ -62,7 +61,7 @@ public class TransportActionProvider {
     private final Provider<TransportDeleteAction> transportDeleteActionProvider;
 
     private final Provider<TransportGetAction> transportGetActionProvider;
-    private final Provider<TransportMultiGetAction> transportMultiGetActionProvider;
+    private final Provider<TransportPKLookupNodeAction> transportPKLookupNodeActionProvider;
     private final Provider<TransportShardUpsertAction> transportShardUpsertActionProvider;
     private final Provider<TransportPutMappingAction> transportPutMappingActionProvider;
     private final Provider<TransportRefreshAction> transportRefreshActionProvider;
@@ -94,7 +93,7 @@ public class TransportActionProvider {
                                    Provider<TransportShardDeleteAction> transportShardDeleteActionProvider,
                                    Provider<TransportDeleteAction> transportDeleteActionProvider,
                                    Provider<TransportGetAction> transportGetActionProvider,
-                                   Provider<TransportMultiGetAction> transportMultiGetActionProvider,
+                                   Provider<TransportPKLookupNodeAction> transportPKLookupNodeActionProvider,
                                    Provider<TransportShardUpsertAction> transportShardUpsertActionProvider,
                                    Provider<TransportKillAllNodeAction> transportKillAllNodeActionProvider,
                                    Provider<TransportPutMappingAction> transportPutMappingActionProvider,
@@ -119,7 +118,7 @@ public class TransportActionProvider {
         this.transportShardDeleteActionProvider = transportShardDeleteActionProvider;
         this.transportDeleteActionProvider = transportDeleteActionProvider;
         this.transportGetActionProvider = transportGetActionProvider;
-        this.transportMultiGetActionProvider = transportMultiGetActionProvider;
+        this.transportPKLookupNodeActionProvider = transportPKLookupNodeActionProvider;
         this.transportShardUpsertActionProvider = transportShardUpsertActionProvider;
         this.transportKillAllNodeActionProvider = transportKillAllNodeActionProvider;
         this.transportFetchNodeActionProvider = transportFetchNodeActionProvider;
@@ -171,8 +170,8 @@ public class TransportActionProvider {
         return transportGetActionProvider.get();
     }
 
-    public TransportMultiGetAction transportMultiGetAction() {
-        return transportMultiGetActionProvider.get();
+    public TransportPKLookupNodeAction transportPKLookupNodeAction() {
+        return transportPKLookupNodeActionProvider.get();
     }
 
     public BulkRequestExecutor<ShardUpsertRequest> transportShardUpsertActionDelegate() {
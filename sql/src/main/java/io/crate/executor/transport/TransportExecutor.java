@@ -47,6 +47,7 @@ import io.crate.operation.NodeOperation;
 import io.crate.operation.NodeOperationTree;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.RowReceiver;
+import io.crate.operation.projectors.SpillDirectory;
 import io.crate.planner.NoopPlan;
 import io.crate.planner.Plan;
 import io.crate.planner.PlanVisitor;
@@ -115,7 +116,8 @@ public class TransportExecutor implements Executor {
                              ShowStatementDispatcher showStatementDispatcherProvider,
                              ClusterService clusterService,
                              IndicesService indicesService,
-                             BulkRetryCoordinatorPool bulkRetryCoordinatorPool) {
+                             BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
+                             SpillDirectory spillDirectory) {
         this.jobContextService = jobContextService;
         this.contextPreparer = contextPreparer;
         this.transportActionProvider = transportActionProvider;
@@ -138,7 +140,8 @@ public class TransportExecutor implements Executor {
             transportActionProvider,
             bulkRetryCoordinatorPool,
             globalImplementationSymbolVisitor,
-            normalizer);
+            normalizer,
+            spillDirectory);
     }
 
     @Override
@@ -197,7 +200,8 @@ public class TransportExecutor implements Executor {
                 globalProjectionToProjectionVisitor,
                 transportActionProvider,
                 plan,
-                jobContextService);
+                jobContextService,
+                clusterService);
         }
 
         @Override
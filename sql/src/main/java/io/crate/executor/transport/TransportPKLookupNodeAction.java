@@ -0,0 +1,83 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport;
+
+import io.crate.Streamer;
+import io.crate.operation.collect.PKLookupOperation;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+/**
+ * Looks up documents by primary key on all requested shards of a node with a single request.
+ */
+@Singleton
+public class TransportPKLookupNodeAction implements NodeAction<PKLookupRequest, PKLookupResponse> {
+
+    private static final String TRANSPORT_ACTION = "crate/sql/node/pk_lookup";
+    private static final String EXECUTOR_NAME = ThreadPool.Names.GET;
+    private static final String RESPONSE_EXECUTOR = ThreadPool.Names.SAME;
+
+    private final Transports transports;
+    private final PKLookupOperation pkLookupOperation;
+
+    @Inject
+    public TransportPKLookupNodeAction(TransportService transportService,
+                                       Transports transports,
+                                       PKLookupOperation pkLookupOperation) {
+        this.transports = transports;
+        this.pkLookupOperation = pkLookupOperation;
+
+        transportService.registerRequestHandler(TRANSPORT_ACTION,
+            PKLookupRequest.class,
+            EXECUTOR_NAME,
+            new NodeActionRequestHandler<PKLookupRequest, PKLookupResponse>(this) {});
+    }
+
+    public void execute(String targetNode,
+                        final Streamer<?>[] streamers,
+                        PKLookupRequest request,
+                        ActionListener<PKLookupResponse> listener) {
+        transports.sendRequest(TRANSPORT_ACTION, targetNode, request, listener,
+            new DefaultTransportResponseHandler<PKLookupResponse>(listener, RESPONSE_EXECUTOR) {
+                @Override
+                public PKLookupResponse newInstance() {
+                    return PKLookupResponse.forReceiving(streamers);
+                }
+            });
+    }
+
+    @Override
+    public void nodeOperation(PKLookupRequest request, ActionListener<PKLookupResponse> listener) {
+        StreamBucket rows;
+        try {
+            rows = pkLookupOperation.lookup(request.idsByShard(), request.columns());
+        } catch (Throwable t) {
+            listener.onFailure(t);
+            return;
+        }
+        listener.onResponse(PKLookupResponse.forSending(rows));
+    }
+}
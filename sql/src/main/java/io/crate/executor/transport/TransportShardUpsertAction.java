@@ -46,14 +46,15 @@ import org.elasticsearch.cluster.action.shard.ShardStateAction;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.index.IndexService;
@@ -83,8 +84,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class TransportShardUpsertAction extends TransportShardAction<ShardUpsertRequest> {
 
     private final static String ACTION_NAME = "indices:crate/data/write/upsert";
-    private final static SymbolToFieldExtractor<GetResult> SYMBOL_TO_FIELD_EXTRACTOR =
-        new SymbolToFieldExtractor<>(new GetResultFieldExtractorFactory());
+    private final static SymbolToFieldExtractor<Map<String, Object>> SYMBOL_TO_FIELD_EXTRACTOR =
+        new SymbolToFieldExtractor<>(new SourceFieldExtractorFactory());
 
     private final IndicesService indicesService;
     private final Functions functions;
@@ -270,46 +271,53 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                 indexShard.shardId(), Constants.DEFAULT_MAPPING_TYPE, item.id(), getResult.getVersion(), item.version());
         }
 
-        Tuple<XContentType, Map<String, Object>> sourceAndContent = XContentHelper.convertToMap(getResult.internalSourceRef(), true);
-        final Map<String, Object> updatedSourceAsMap;
-        final XContentType updateSourceContentType = sourceAndContent.v1();
-
-        updatedSourceAsMap = sourceAndContent.v2();
-
         SymbolToFieldExtractorContext ctx = new SymbolToFieldExtractorContext(functions, item.insertValues());
-
-        Map<String, Object> pathsToUpdate = new LinkedHashMap<>();
-        Map<String, Object> updatedGeneratedColumns = new LinkedHashMap<>();
+        List<Function<Map<String, Object>, Object>> extractors = new ArrayList<>(request.updateColumns().length);
         for (int i = 0; i < request.updateColumns().length; i++) {
-            /**
-             * NOTE: mapping isn't applied. So if an Insert was done using the ES Rest Endpoint
-             * the data might be returned in the wrong format (date as string instead of long)
-             */
-            String columnPath = request.updateColumns()[i];
-            Object value = SYMBOL_TO_FIELD_EXTRACTOR.convert(item.updateAssignments()[i], ctx).apply(getResult);
-            Reference reference = tableInfo.getReference(ColumnIdent.fromPath(columnPath));
-
-            ConstraintsValidator.validate(value, reference);
-
-            if (reference instanceof GeneratedReference) {
-                updatedGeneratedColumns.put(columnPath, value);
-            } else {
-                pathsToUpdate.put(columnPath, value);
+            extractors.add(SYMBOL_TO_FIELD_EXTRACTOR.convert(item.updateAssignments()[i], ctx));
+        }
+
+        // only the columns referenced by the assignments or by generated columns are read from the source
+        Set<String> referencedColumns = new HashSet<>();
+        for (Reference reference : ctx.references()) {
+            referencedColumns.add(reference.ident().columnIdent().fqn());
+        }
+        for (GeneratedReference reference : tableInfo.generatedColumns()) {
+            for (Reference referencedReference : reference.referencedReferences()) {
+                referencedColumns.add(referencedReference.ident().columnIdent().fqn());
             }
         }
 
-        // For updates we always have to enforce the validation of constraints on shards.
-        // Currently the validation is done only for generated columns.
-        processGeneratedColumns(tableInfo, pathsToUpdate, updatedGeneratedColumns, true, getResult);
+        BytesReference source = getResult.internalSourceRef();
+        Map<String, Object> pathsToUpdate = new LinkedHashMap<>();
+        Map<String, Object> updatedGeneratedColumns = new LinkedHashMap<>();
+        try {
+            Map<String, Object> sourceValues = extractTopLevelFields(source, referencedColumns);
+            for (int i = 0; i < request.updateColumns().length; i++) {
+                /**
+                 * NOTE: mapping isn't applied. So if an Insert was done using the ES Rest Endpoint
+                 * the data might be returned in the wrong format (date as string instead of long)
+                 */
+                String columnPath = request.updateColumns()[i];
+                Object value = extractors.get(i).apply(sourceValues);
+                Reference reference = tableInfo.getReference(ColumnIdent.fromPath(columnPath));
+
+                ConstraintsValidator.validate(value, reference);
+
+                if (reference instanceof GeneratedReference) {
+                    updatedGeneratedColumns.put(columnPath, value);
+                } else {
+                    pathsToUpdate.put(columnPath, value);
+                }
+            }
 
-        updateSourceByPaths(updatedSourceAsMap, pathsToUpdate);
+            // For updates we always have to enforce the validation of constraints on shards.
+            // Currently the validation is done only for generated columns.
+            processGeneratedColumns(tableInfo, pathsToUpdate, updatedGeneratedColumns, true, sourceValues);
 
-        try {
-            XContentBuilder builder = XContentFactory.contentBuilder(updateSourceContentType);
-            builder.map(updatedSourceAsMap);
-            return new SourceAndVersion(builder.bytes(), getResult.getVersion());
+            return new SourceAndVersion(updateSourceByPaths(source, pathsToUpdate), getResult.getVersion());
         } catch (IOException e) {
-            throw new ElasticsearchGenerationException("Failed to generate [" + updatedSourceAsMap + "]", e);
+            throw new ElasticsearchGenerationException("Failed to generate [" + pathsToUpdate + "]", e);
         }
     }
 
@@ -360,9 +368,14 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         if (numMissingGeneratedColumns > 0 ||
             (generatedReferencesWithValue.size() > 0 && request.validateConstraints())) {
             // we need to evaluate some generated column expressions
-            Map<String, Object> sourceMap = processGeneratedColumnsOnInsert(tableInfo, request.insertColumns(), item.insertValues(),
-                request.isRawSourceInsert(), request.validateConstraints());
-            source = XContentFactory.jsonBuilder().map(sourceMap).bytes();
+            if (request.isRawSourceInsert()) {
+                source = processGeneratedColumnsOnRawInsert(
+                    tableInfo, (BytesRef) item.insertValues()[0], request.validateConstraints());
+            } else {
+                Map<String, Object> sourceMap = processGeneratedColumnsOnInsert(tableInfo, request.insertColumns(), item.insertValues(),
+                    request.isRawSourceInsert(), request.validateConstraints());
+                source = XContentFactory.jsonBuilder().map(sourceMap).bytes();
+            }
         }
 
         return source;
@@ -467,6 +480,96 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         return sourceAsMap;
     }
 
+    /**
+     * Evaluates the generated columns of a raw (JSON) source without converting the whole source into a map.
+     *
+     * Only the top-level fields which are referenced by a generated column (or are generated columns themselves)
+     * are read from the source, all other fields are skipped. The values of the generated columns which are missing
+     * in the source are appended to the original bytes, so the source is neither parsed into a map
+     * nor serialized again.
+     */
+    @VisibleForTesting
+    BytesReference processGeneratedColumnsOnRawInsert(DocTableInfo tableInfo,
+                                                      BytesRef rawSource,
+                                                      boolean validateExpressionValue) throws IOException {
+        Set<String> neededColumns = new HashSet<>();
+        for (GeneratedReference reference : tableInfo.generatedColumns()) {
+            if (!tableInfo.partitionedByColumns().contains(reference)) {
+                neededColumns.add(reference.ident().columnIdent().fqn());
+                for (Reference referencedReference : reference.referencedReferences()) {
+                    neededColumns.add(referencedReference.ident().columnIdent().fqn());
+                }
+            }
+        }
+
+        int numFields = 0;
+        XContentBuilder neededFields = XContentFactory.jsonBuilder().startObject();
+        try (XContentParser parser = XContentFactory.xContent(XContentType.JSON)
+            .createParser(rawSource.bytes, rawSource.offset, rawSource.length)) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new IllegalArgumentException("Source of a raw insert must be a JSON object");
+            }
+            XContentParser.Token token;
+            while ((token = parser.nextToken()) == XContentParser.Token.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                numFields++;
+                if (isNeededColumn(fieldName, neededColumns)) {
+                    neededFields.field(fieldName);
+                    neededFields.copyCurrentStructure(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (token != XContentParser.Token.END_OBJECT) {
+                throw new IllegalArgumentException("Source of a raw insert must be a JSON object");
+            }
+        }
+        neededFields.endObject();
+
+        Map<String, Object> sourceMap = XContentHelper.convertToMap(neededFields.bytes(), true).v2();
+        Set<String> suppliedColumns = new HashSet<>(sourceMap.keySet());
+        processGeneratedColumns(tableInfo, sourceMap, sourceMap, validateExpressionValue);
+
+        XContentBuilder addedFields = XContentFactory.jsonBuilder().startObject();
+        boolean columnsAdded = false;
+        for (Map.Entry<String, Object> entry : sourceMap.entrySet()) {
+            if (!suppliedColumns.contains(entry.getKey())) {
+                addedFields.field(entry.getKey(), entry.getValue());
+                columnsAdded = true;
+            }
+        }
+        if (!columnsAdded) {
+            return new BytesArray(rawSource);
+        }
+        addedFields.endObject();
+        BytesReference addedBytes = addedFields.bytes();
+
+        int end = rawSource.offset + rawSource.length - 1;
+        while (rawSource.bytes[end] != '}') {
+            end--;
+        }
+        BytesStreamOutput out = new BytesStreamOutput(rawSource.length + addedBytes.length());
+        out.writeBytes(rawSource.bytes, rawSource.offset, end - rawSource.offset);
+        if (numFields > 0) {
+            out.writeByte((byte) ',');
+        }
+        // skip the curly braces of the added fields object
+        out.writeBytes(addedBytes.toBytes(), 1, addedBytes.length() - 1);
+        return out.bytes();
+    }
+
+    private static boolean isNeededColumn(String fieldName, Set<String> neededColumns) {
+        for (String neededColumn : neededColumns) {
+            if (neededColumn.equals(fieldName)
+                || neededColumn.startsWith(fieldName + ".")
+                || fieldName.startsWith(neededColumn + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @VisibleForTesting
     Map<String, Object> buildMapFromSource(Reference[] insertColumns,
                                            Object[] insertValues,
@@ -496,7 +599,7 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                                          Map<String, Object> updatedColumns,
                                          Map<String, Object> updatedGeneratedColumns,
                                          boolean validateConstraints,
-                                         @Nullable GetResult getResult) {
+                                         @Nullable Map<String, Object> source) {
         SymbolToFieldExtractorContext ctx = new SymbolToFieldExtractorContext(functions, updatedColumns);
 
         for (GeneratedReference reference : tableInfo.generatedColumns()) {
@@ -511,8 +614,8 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                     ||
                     generatedExpressionEvaluationNeeded(reference.referencedReferences(), updatedColumns.keySet())) {
                     // at least one referenced column was updated, need to evaluate expression and update column
-                    Function<GetResult, Object> extractor = SYMBOL_TO_FIELD_EXTRACTOR.convert(reference.generatedExpression(), ctx);
-                    Object generatedValue = extractor.apply(getResult);
+                    Function<Map<String, Object>, Object> extractor = SYMBOL_TO_FIELD_EXTRACTOR.convert(reference.generatedExpression(), ctx);
+                    Object generatedValue = extractor.apply(source);
 
                     if (userSuppliedValue == null) {
                         // add column & value
@@ -542,40 +645,139 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         return false;
     }
 
+    /**
+     * Reads the given top-level fields of the source into a map, all other fields are skipped without
+     * being converted. A field is read if it is one of the columns or a parent or child of one of them.
+     */
+    static Map<String, Object> extractTopLevelFields(BytesReference source, Set<String> columns) throws IOException {
+        if (columns.isEmpty()) {
+            return new HashMap<>();
+        }
+        try (XContentParser parser = XContentHelper.createParser(source)) {
+            XContentBuilder builder = XContentFactory.contentBuilder(parser.contentType()).startObject();
+            parser.nextToken();
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                if (isNeededColumn(fieldName, columns)) {
+                    builder.field(fieldName);
+                    builder.copyCurrentStructure(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            builder.endObject();
+            return XContentHelper.convertToMap(builder.bytes(), true).v2();
+        }
+    }
+
     /**
      * Overwrite given values on the source. If the value is a map,
      * it will not be merged but overwritten. The keys of the changes map representing a path of
      * the source map tree.
      * If the path doesn't exists, a new tree will be inserted.
      * <p/>
+     * The source is rewritten in a single streaming pass, all fields which aren't changed are copied
+     * without being converted.
+     * <p/>
      * TODO: detect NOOP
      */
-    @SuppressWarnings("unchecked")
-    static void updateSourceByPaths(@Nonnull Map<String, Object> source, @Nonnull Map<String, Object> changes) {
+    static BytesReference updateSourceByPaths(@Nonnull BytesReference source,
+                                              @Nonnull Map<String, Object> changes) throws IOException {
+        try (XContentParser parser = XContentHelper.createParser(source)) {
+            XContentBuilder builder = XContentFactory.contentBuilder(parser.contentType());
+            parser.nextToken();
+            builder.startObject();
+            updateObjectByPaths(parser, builder, groupChangesByField(changes));
+            return builder.bytes();
+        }
+    }
+
+    /**
+     * Copies the object the parser is positioned on to the builder and applies the changes.
+     * Fields which don't exist are appended at the end of the object.
+     */
+    private static void updateObjectByPaths(XContentParser parser,
+                                            XContentBuilder builder,
+                                            Map<String, Object> changes) throws IOException {
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            XContentParser.Token token = parser.nextToken();
+            if (!changes.containsKey(fieldName)) {
+                builder.field(fieldName);
+                builder.copyCurrentStructure(parser);
+                continue;
+            }
+            Object change = changes.remove(fieldName);
+            if (change instanceof PathChanges) {
+                if (token == XContentParser.Token.VALUE_NULL) {
+                    throw new NullPointerException(String.format(Locale.ENGLISH,
+                        "Object %s is null, cannot write %s onto it", fieldName, change));
+                }
+                if (token != XContentParser.Token.START_OBJECT) {
+                    throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "Object %s is not an object, cannot write %s onto it", fieldName, change));
+                }
+                builder.startObject(fieldName);
+                updateObjectByPaths(parser, builder, groupChangesByField(((PathChanges) change).paths));
+            } else {
+                parser.skipChildren();
+                builder.field(fieldName, change);
+            }
+        }
+        writeNewFields(builder, changes);
+    }
+
+    private static void writeNewFields(XContentBuilder builder, Map<String, Object> changes) throws IOException {
+        for (Map.Entry<String, Object> entry : changes.entrySet()) {
+            if (entry.getValue() instanceof PathChanges) {
+                builder.startObject(entry.getKey());
+                writeNewFields(builder, groupChangesByField(((PathChanges) entry.getValue()).paths));
+            } else {
+                builder.field(entry.getKey(), entry.getValue());
+            }
+        }
+        builder.endObject();
+    }
+
+    /**
+     * Groups the changes by their top-level field, changes of sub-paths are wrapped into {@link PathChanges}.
+     */
+    private static Map<String, Object> groupChangesByField(Map<String, Object> changes) {
+        Map<String, Object> grouped = new LinkedHashMap<>(changes.size());
         for (Map.Entry<String, Object> changesEntry : changes.entrySet()) {
             String key = changesEntry.getKey();
             int dotIndex = key.indexOf(".");
             if (dotIndex > -1) {
-                // sub-path detected, dive recursive to the wanted tree element
                 String currentKey = key.substring(0, dotIndex);
-                if (!source.containsKey(currentKey)) {
-                    // insert parent tree element
-                    source.put(currentKey, new HashMap<String, Object>());
-                }
-                Map<String, Object> subChanges = new HashMap<>();
-                subChanges.put(key.substring(dotIndex + 1, key.length()), changesEntry.getValue());
-
-                Map<String, Object> innerSource = (Map<String, Object>) source.get(currentKey);
-                if (innerSource == null) {
-                    throw new NullPointerException(String.format(Locale.ENGLISH,
-                        "Object %s is null, cannot write %s onto it", currentKey, subChanges));
+                Object current = grouped.get(currentKey);
+                PathChanges subChanges;
+                if (current instanceof PathChanges) {
+                    subChanges = (PathChanges) current;
+                } else {
+                    subChanges = new PathChanges();
+                    grouped.put(currentKey, subChanges);
                 }
-                updateSourceByPaths(innerSource, subChanges);
+                subChanges.add(key.substring(dotIndex + 1, key.length()), changesEntry.getValue());
             } else {
-                // overwrite or insert the field
-                source.put(key, changesEntry.getValue());
+                grouped.put(key, changesEntry.getValue());
             }
         }
+        return grouped;
+    }
+
+    private static class PathChanges {
+
+        private final Map<String, Object> paths = new LinkedHashMap<>();
+
+        void add(String path, Object value) {
+            paths.put(path, value);
+        }
+
+        @Override
+        public String toString() {
+            return paths.toString();
+        }
     }
 
     public static Collection<ColumnIdent> getNotUsedNonGeneratedColumns(Reference[] targetColumns,
@@ -643,17 +845,17 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         }
     }
 
-    private static class GetResultFieldExtractorFactory implements FieldExtractorFactory<GetResult, SymbolToFieldExtractor.Context> {
+    private static class SourceFieldExtractorFactory implements FieldExtractorFactory<Map<String, Object>, SymbolToFieldExtractor.Context> {
         @Override
-        public Function<GetResult, Object> build(final Reference reference, SymbolToFieldExtractor.Context context) {
-            return new Function<GetResult, Object>() {
+        public Function<Map<String, Object>, Object> build(final Reference reference, SymbolToFieldExtractor.Context context) {
+            return new Function<Map<String, Object>, Object>() {
                 @Override
-                public Object apply(GetResult getResult) {
-                    if (getResult == null) {
+                public Object apply(Map<String, Object> source) {
+                    if (source == null) {
                         return null;
                     }
                     return reference.valueType().value(XContentMapValues.extractValue(
-                        reference.ident().columnIdent().fqn(), getResult.sourceAsMap()));
+                        reference.ident().columnIdent().fqn(), source));
                 }
             };
         }
@@ -37,6 +37,7 @@ public class DistributedResultRequest extends TransportRequest {
     private byte inputId;
     private int executionPhaseId;
     private int bucketIdx;
+    private int pageIdx;
 
     private Streamer<?>[] streamers;
     private Bucket rows;
@@ -60,10 +61,12 @@ public class DistributedResultRequest extends TransportRequest {
                                     int executionPhaseId,
                                     byte inputId,
                                     int bucketIdx,
+                                    int pageIdx,
                                     Streamer<?>[] streamers,
                                     Bucket rows,
                                     boolean isLast) {
         this(jobId, inputId, executionPhaseId, bucketIdx, streamers);
+        this.pageIdx = pageIdx;
         this.rows = rows;
         this.isLast = isLast;
     }
@@ -94,6 +97,13 @@ public class DistributedResultRequest extends TransportRequest {
         return bucketIdx;
     }
 
+    /**
+     * sequence number of the page within the pages sent by the upstream of {@link #bucketIdx()}
+     */
+    public int pageIdx() {
+        return pageIdx;
+    }
+
     public void streamers(Streamer<?>[] streamers) {
         if (rows instanceof StreamBucket) {
             assert streamers != null;
@@ -128,6 +138,7 @@ public class DistributedResultRequest extends TransportRequest {
         jobId = new UUID(in.readLong(), in.readLong());
         executionPhaseId = in.readVInt();
         bucketIdx = in.readVInt();
+        pageIdx = in.readVInt();
         isLast = in.readBoolean();
         inputId = in.readByte();
 
@@ -148,6 +159,7 @@ public class DistributedResultRequest extends TransportRequest {
         out.writeLong(jobId.getLeastSignificantBits());
         out.writeVInt(executionPhaseId);
         out.writeVInt(bucketIdx);
+        out.writeVInt(pageIdx);
         out.writeBoolean(isLast);
         out.writeByte(inputId);
 
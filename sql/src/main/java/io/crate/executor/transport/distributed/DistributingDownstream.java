@@ -25,19 +25,36 @@ import com.google.common.annotations.VisibleForTesting;
 import io.crate.Streamer;
 import io.crate.core.collections.Bucket;
 import io.crate.core.collections.Row;
+import io.crate.executor.transport.StreamBucket;
 import io.crate.operation.projectors.*;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Sends the rows it receives in pages to the downstream nodes.
+ *
+ * Each downstream may have up to maxPendingPages unanswered pages, the upstream is only paused once a page is full
+ * and one of the downstreams has no credits left. The pages are numbered so that the receiving side can put them
+ * into order again.
+ *
+ * The number of rows per page is limited by pageSize and by the average row width, so that all pages which
+ * can be pending at the same time don't exceed bufferSize.
+ */
 public class DistributingDownstream implements RowReceiver {
 
+    public static final int DEFAULT_MAX_PENDING_PAGES = 2;
+    public static final ByteSizeValue DEFAULT_BUFFER_SIZE = new ByteSizeValue(16, ByteSizeUnit.MB);
+
     private static final ActionListener<DistributedResultResponse> NO_OP_ACTION_LISTENER = new ActionListener<DistributedResultResponse>() {
 
         private final ESLogger LOGGER = Loggers.getLogger(DistributingDownstream.class);
@@ -63,16 +80,24 @@ public class DistributingDownstream implements RowReceiver {
     private final TransportDistributedResultAction transportDistributedResultAction;
     private final Streamer<?>[] streamers;
     private final int pageSize;
+    private final int maxPendingPages;
+    private final long maxPageBytes;
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
-    private final AtomicInteger requestsPending = new AtomicInteger(0);
     private final Downstream[] downstreams;
     private final Object lock = new Object();
     private final AtomicInteger finishedDownstreams = new AtomicInteger(0);
-    private final Bucket[] buckets;
+    @Nullable
+    private final PageCompressor pageCompressor;
 
     private volatile Result setNextRowResult = Result.CONTINUE;
     private volatile boolean killed = false;
+
+    // guarded by lock
     private boolean hasUpstreamFinished = false;
+    private boolean lastPageSent = false;
+    private boolean paused = false;
+    private int nextPageIdx = 0;
+    private int pageSizeLimit;
 
     private final AtomicInteger resumeLatch = new AtomicInteger(2);
     private ResumeHandle resumeable = ResumeHandle.INVALID;
@@ -87,6 +112,25 @@ public class DistributingDownstream implements RowReceiver {
                                   TransportDistributedResultAction transportDistributedResultAction,
                                   Streamer<?>[] streamers,
                                   int pageSize) {
+        this(logger, jobId, multiBucketBuilder, targetExecutionPhaseId, inputId, bucketIdx, downstreamNodeIds,
+            transportDistributedResultAction, streamers, pageSize, DEFAULT_MAX_PENDING_PAGES,
+            DEFAULT_BUFFER_SIZE.bytes(), null);
+    }
+
+    public DistributingDownstream(ESLogger logger,
+                                  UUID jobId,
+                                  MultiBucketBuilder multiBucketBuilder,
+                                  int targetExecutionPhaseId,
+                                  byte inputId,
+                                  int bucketIdx,
+                                  Collection<String> downstreamNodeIds,
+                                  TransportDistributedResultAction transportDistributedResultAction,
+                                  Streamer<?>[] streamers,
+                                  int pageSize,
+                                  int maxPendingPages,
+                                  long bufferSize,
+                                  @Nullable PageCompressor pageCompressor) {
+        assert maxPendingPages > 0 : "maxPendingPages must be greater than 0";
         this.logger = logger;
         this.jobId = jobId;
         this.multiBucketBuilder = multiBucketBuilder;
@@ -96,8 +140,11 @@ public class DistributingDownstream implements RowReceiver {
         this.transportDistributedResultAction = transportDistributedResultAction;
         this.streamers = streamers;
         this.pageSize = pageSize;
+        this.maxPendingPages = maxPendingPages;
+        this.maxPageBytes = Math.max(1L, bufferSize / maxPendingPages);
+        this.pageCompressor = pageCompressor;
+        this.pageSizeLimit = pageSize;
 
-        buckets = new Bucket[downstreamNodeIds.size()];
         downstreams = new Downstream[downstreamNodeIds.size()];
         int i = 0;
         for (String downstreamNodeId : downstreamNodeIds) {
@@ -112,19 +159,21 @@ public class DistributingDownstream implements RowReceiver {
             return Result.STOP;
         }
         multiBucketBuilder.add(row);
+        Page page;
         synchronized (lock) {
-            if (multiBucketBuilder.size() >= pageSize) {
+            if (multiBucketBuilder.size() < pageSizeLimit) {
+                return setNextRowResult;
+            }
+            if (!hasCredits()) {
+                traceLog("page is full and no credits are left");
                 resumeLatch.set(2);
-                if (requestsPending.get() > 0) {
-                    traceLog("page is full and requests are pending");
-                    return Result.PAUSE;
-                } else {
-                    traceLog("page is full - sending request");
-                    multiBucketBuilder.build(buckets);
-                    sendRequests(false);
-                }
+                paused = true;
+                return Result.PAUSE;
             }
+            traceLog("page is full - sending request");
+            page = buildPage(false);
         }
+        page.send();
         return setNextRowResult;
     }
 
@@ -151,10 +200,76 @@ public class DistributingDownstream implements RowReceiver {
         }
     }
 
-    private void sendRequests(boolean isLast) {
-        requestsPending.addAndGet(downstreams.length);
+    /**
+     * @return true if every downstream which still wants rows can receive another page
+     */
+    private boolean hasCredits() {
+        for (Downstream downstream : downstreams) {
+            if (!downstream.finished && downstream.pendingPages >= maxPendingPages) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the next page out of the rows added so far. Must be called while holding the lock,
+     * the returned page should be sent after releasing it.
+     */
+    private Page buildPage(boolean isLast) {
+        int numRows = multiBucketBuilder.size();
+        Bucket[] buckets = new Bucket[downstreams.length];
+        multiBucketBuilder.build(buckets);
+        adaptPageSize(numRows, buckets);
+        if (pageCompressor != null) {
+            compressBuckets(buckets);
+        }
+        if (isLast) {
+            lastPageSent = true;
+        }
+        Page page = new Page(nextPageIdx, buckets, isLast);
+        nextPageIdx++;
+        for (int i = 0; i < downstreams.length; i++) {
+            Downstream downstream = downstreams[i];
+            if (!downstream.finished) {
+                downstream.pendingPages++;
+                page.receivers[i] = downstream;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * limits the number of rows of the following pages so that maxPendingPages pages with rows as wide as the rows
+     * of the last page fit into the buffer size.
+     */
+    private void adaptPageSize(int numRows, Bucket[] buckets) {
+        if (numRows == 0) {
+            return;
+        }
+        long pageBytes = 0;
+        Bucket previous = null;
+        for (Bucket bucket : buckets) {
+            // broadcasting bucket builders return the same bucket for all downstreams
+            if (bucket != previous && bucket instanceof StreamBucket) {
+                pageBytes += ((StreamBucket) bucket).byteSize();
+            }
+            previous = bucket;
+        }
+        long bytesPerRow = Math.max(1L, pageBytes / numRows);
+        pageSizeLimit = (int) Math.max(1L, Math.min(pageSize, maxPageBytes / bytesPerRow));
+    }
+
+    private void compressBuckets(Bucket[] buckets) {
+        Bucket previous = null;
+        Bucket previousCompressed = null;
         for (int i = 0; i < buckets.length; i++) {
-            downstreams[i].sendRequest(buckets[i], isLast);
+            // broadcasting bucket builders return the same bucket for all downstreams
+            if (buckets[i] != previous) {
+                previous = buckets[i];
+                previousCompressed = pageCompressor.compress(buckets[i]);
+            }
+            buckets[i] = previousCompressed;
         }
     }
 
@@ -189,17 +304,26 @@ public class DistributingDownstream implements RowReceiver {
         if (killed) {
             return;
         }
-        hasUpstreamFinished = true;
         final Throwable throwable = failure.get();
         if (throwable == null) {
-            if (requestsPending.get() == 0) {
-                traceLog("all upstreams finished. Sending last requests");
-                multiBucketBuilder.build(buckets);
-                sendRequests(true);
-            } else if (logger.isTraceEnabled()) {
-                traceLog("all upstreams finished. Doing nothing since there are pending requests");
+            Page page = null;
+            synchronized (lock) {
+                hasUpstreamFinished = true;
+                if (hasCredits()) {
+                    traceLog("all upstreams finished. Sending last requests");
+                    page = buildPage(true);
+                } else {
+                    traceLog("all upstreams finished. Waiting for credits to send the last requests");
+                }
+            }
+            if (page != null) {
+                page.send();
             }
         } else {
+            synchronized (lock) {
+                hasUpstreamFinished = true;
+                lastPageSent = true;
+            }
             traceLog("all upstreams finished; forwarding failure");
             for (Downstream downstream : downstreams) {
                 downstream.forwardFailure(throwable);
@@ -207,11 +331,36 @@ public class DistributingDownstream implements RowReceiver {
         }
     }
 
+    private class Page {
+
+        private final int pageIdx;
+        private final Bucket[] buckets;
+        private final boolean isLast;
+        private final Downstream[] receivers;
+
+        Page(int pageIdx, Bucket[] buckets, boolean isLast) {
+            this.pageIdx = pageIdx;
+            this.buckets = buckets;
+            this.isLast = isLast;
+            this.receivers = new Downstream[buckets.length];
+        }
+
+        void send() {
+            for (int i = 0; i < receivers.length; i++) {
+                if (receivers[i] != null) {
+                    receivers[i].sendRequest(buckets[i], pageIdx, isLast);
+                }
+            }
+        }
+    }
+
     private class Downstream implements ActionListener<DistributedResultResponse> {
 
         private final String targetNode;
-        private boolean finished = false;
 
+        // guarded by lock
+        private boolean finished = false;
+        private int pendingPages = 0;
 
         public Downstream(String targetNode) {
             this.targetNode = targetNode;
@@ -232,15 +381,11 @@ public class DistributingDownstream implements RowReceiver {
             );
         }
 
-        public void sendRequest(Bucket bucket, boolean isLast) {
-            if (finished) {
-                requestsPending.decrementAndGet();
-                return;
-            }
+        public void sendRequest(Bucket bucket, int pageIdx, boolean isLast) {
             traceLog("Sending result");
             transportDistributedResultAction.pushResult(
                 targetNode,
-                new DistributedResultRequest(jobId, targetExecutionPhaseId, inputId, bucketIdx, streamers, bucket, isLast),
+                new DistributedResultRequest(jobId, targetExecutionPhaseId, inputId, bucketIdx, pageIdx, streamers, bucket, isLast),
                 this
             );
         }
@@ -257,38 +402,38 @@ public class DistributingDownstream implements RowReceiver {
         }
 
         private void onResponse(boolean needMore) {
-            finished = !needMore;
-            final int numPending = requestsPending.decrementAndGet();
-
-            if (logger.isTraceEnabled()) {
-                logger.trace("Received response fromNode={} phase={}/{} bucket={} requiresMore={} pendingRequests={} finished={}",
-                    targetNode, targetExecutionPhaseId, inputId, bucketIdx, needMore, numPending, hasUpstreamFinished);
-            }
-            if (numPending > 0) {
-                return;
-            }
-            if (hasUpstreamFinished) {
-                // upstreams (e.g. collector(s)) finished (after the requests have been sent)
-                // send request with isLast=true with remaining buckets to downstream nodes
-                multiBucketBuilder.build(buckets);
-                sendRequests(true); // only sends to nodes that aren't finished already
-            } else if (needMore) {
-                boolean resume = false;
-                synchronized (lock) {
-                    if (multiBucketBuilder.size() >= pageSize) {
-                        multiBucketBuilder.build(buckets);
-                        sendRequests(false);
-                    } else {
-                        resume = true;
+            Page page = null;
+            boolean resume = false;
+            synchronized (lock) {
+                pendingPages--;
+                if (!needMore && !finished) {
+                    finished = true;
+                    if (finishedDownstreams.incrementAndGet() == downstreams.length) {
+                        setNextRowResult = Result.STOP;
                     }
                 }
-                if (resume) {
-                    resume();
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Received response fromNode={} phase={}/{} bucket={} requiresMore={} pendingPages={} finished={}",
+                        targetNode, targetExecutionPhaseId, inputId, bucketIdx, needMore, pendingPages, hasUpstreamFinished);
                 }
-            } else {
-                if (finishedDownstreams.incrementAndGet() == downstreams.length) {
-                    setNextRowResult = Result.STOP;
+                if (hasUpstreamFinished) {
+                    // upstreams (e.g. collector(s)) finished while no credits were left
+                    // send request with isLast=true with remaining buckets to downstream nodes
+                    if (!lastPageSent && hasCredits()) {
+                        page = buildPage(true); // only sends to nodes that aren't finished already
+                    }
+                } else if (paused && hasCredits()) {
+                    paused = false;
+                    resume = true;
+                    if (multiBucketBuilder.size() >= pageSizeLimit) {
+                        page = buildPage(false);
+                    }
                 }
+            }
+            if (page != null) {
+                page.send();
+            }
+            if (resume) {
                 resume();
             }
         }
@@ -0,0 +1,94 @@
+/*
+ * Licensed to CRATE.IO GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport.distributed;
+
+import com.google.common.base.Throwables;
+import io.crate.core.collections.Bucket;
+import io.crate.executor.transport.StreamBucket;
+import io.crate.operation.collect.StatsTables;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Compresses the pages which are sent by a {@link DistributingDownstream}.
+ *
+ * Pages smaller than the threshold are sent uncompressed. The threshold starts at minPageSize and is doubled
+ * each time a page couldn't be compressed to {@link #MAX_RATIO} of its size, so that incompressible results
+ * don't pay for compression on every page. A page that compresses well resets the threshold.
+ */
+public class PageCompressor {
+
+    static final double MAX_RATIO = 0.9;
+    private static final int MAX_THRESHOLD_SHIFT = 10;
+
+    private final long minPageSize;
+    private final StatsTables statsTables;
+    private final int operationId;
+    private final UUID jobId;
+
+    private int thresholdShift = 0;
+
+    public PageCompressor(long minPageSize, StatsTables statsTables, int operationId, UUID jobId) {
+        this.minPageSize = minPageSize;
+        this.statsTables = statsTables;
+        this.operationId = operationId;
+        this.jobId = jobId;
+    }
+
+    long threshold() {
+        return minPageSize << thresholdShift;
+    }
+
+    /**
+     * @return a compressed copy of the bucket or the bucket itself if it isn't worth to compress it
+     */
+    public synchronized Bucket compress(Bucket bucket) {
+        if (!(bucket instanceof StreamBucket)) {
+            return bucket;
+        }
+        StreamBucket streamBucket = (StreamBucket) bucket;
+        int byteSize = streamBucket.byteSize();
+        if (byteSize == 0 || byteSize < threshold() || streamBucket.isCompressed()) {
+            return bucket;
+        }
+        long started = System.nanoTime();
+        StreamBucket compressed;
+        try {
+            compressed = streamBucket.compress();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        long tookNanos = System.nanoTime() - started;
+        int compressedSize = compressed.byteSize();
+        if (compressedSize > byteSize * MAX_RATIO) {
+            // the page is sent uncompressed, only the time spent on compressing it is recorded
+            statsTables.operationCompressedPage(operationId, jobId, byteSize, byteSize, tookNanos);
+            thresholdShift = Math.min(thresholdShift + 1, MAX_THRESHOLD_SHIFT);
+            return bucket;
+        }
+        statsTables.operationCompressedPage(operationId, jobId, byteSize, compressedSize, tookNanos);
+        thresholdShift = 0;
+        return compressed;
+    }
+}
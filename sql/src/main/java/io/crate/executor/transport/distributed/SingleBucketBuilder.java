@@ -40,7 +40,7 @@ public class SingleBucketBuilder implements RowReceiver {
     private final SettableFuture<Bucket> bucketFuture = SettableFuture.create();
 
     public SingleBucketBuilder(Streamer<?>[] streamers) {
-        bucketBuilder = new StreamBucket.Builder(streamers);
+        bucketBuilder = new StreamBucket.Builder(streamers, true);
     }
 
     @Override
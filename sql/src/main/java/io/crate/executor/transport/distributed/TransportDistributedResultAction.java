@@ -124,6 +124,7 @@ public class TransportDistributedResultAction extends AbstractComponent implemen
             request.streamers(pageBucketReceiver.streamers());
             pageBucketReceiver.setBucket(
                 request.bucketIdx(),
+                request.pageIdx(),
                 request.rows(),
                 request.isLast(),
                 new SendResponsePageResultListener(listener, request));
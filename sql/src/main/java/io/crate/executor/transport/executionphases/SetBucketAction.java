@@ -49,7 +49,7 @@ abstract class SetBucketAction {
             PageBucketReceiver pageBucketReceiver = pageBucketReceivers.get(i);
             Bucket bucket = result.get(i);
             assert bucket != null : "expected directResponse but didn't get one idx=" + i;
-            pageBucketReceiver.setBucket(bucketIdx, bucket, true, bucketResultListener);
+            pageBucketReceiver.setBucket(bucketIdx, 0, bucket, true, bucketResultListener);
         }
     }
 
@@ -25,12 +25,19 @@ import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import io.crate.Constants;
+import io.crate.Streamer;
 import io.crate.analyze.symbol.InputColumn;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.analyze.symbol.Symbols;
 import io.crate.analyze.symbol.ValueSymbolVisitor;
 import io.crate.analyze.where.DocKeys;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.Row;
 import io.crate.executor.JobTask;
+import io.crate.executor.transport.PKLookupRequest;
+import io.crate.executor.transport.PKLookupResponse;
 import io.crate.executor.transport.TransportActionProvider;
+import io.crate.executor.transport.TransportPKLookupNodeAction;
 import io.crate.jobs.AbstractExecutionSubContext;
 import io.crate.jobs.JobContextService;
 import io.crate.jobs.JobExecutionContext;
@@ -48,21 +55,31 @@ import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.NoShardAvailableActionException;
 import org.elasticsearch.action.get.*;
 import org.elasticsearch.action.support.TransportAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.fetch.source.FetchSourceContext;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ESGetTask extends JobTask {
 
     private final static SymbolToFieldExtractor<GetResponse> SYMBOL_TO_FIELD_EXTRACTOR =
         new SymbolToFieldExtractor<>(new GetResponseFieldExtractorFactory());
+    private final static SymbolToFieldExtractor<Row> SYMBOL_TO_ROW_EXTRACTOR =
+        new SymbolToFieldExtractor<>(new LookupRowFieldExtractorFactory());
 
     private final static Set<ColumnIdent> FETCH_SOURCE_COLUMNS = ImmutableSet.of(DocSysColumns.DOC, DocSysColumns.RAW);
     private final ProjectorFactory projectorFactory;
@@ -70,9 +87,24 @@ public class ESGetTask extends JobTask {
     private final ESGet esGet;
 
     private final JobContextService jobContextService;
+    private final ClusterService clusterService;
+
+    /**
+     * extractors and fetch source context of a single key lookup
+     */
+    @Nullable
     private final List<Function<GetResponse, Object>> extractors;
+    @Nullable
     private final FetchSourceContext fsc;
 
+    /**
+     * extractors and looked up columns of a multi key lookup
+     */
+    @Nullable
+    private final List<Function<Row, Object>> rowExtractors;
+    @Nullable
+    private final List<Reference> lookupColumns;
+
     static abstract class JobContext<Action extends TransportAction<Request, Response>,
         Request extends ActionRequest, Response extends ActionResponse> extends AbstractExecutionSubContext
         implements ActionListener<Response> {
@@ -102,14 +134,35 @@ public class ESGetTask extends JobTask {
         }
     }
 
-    private static class MultiGetJobContext extends JobContext<TransportMultiGetAction, MultiGetRequest, MultiGetResponse> {
-
-        MultiGetJobContext(ESGetTask task,
-                           TransportMultiGetAction transportAction,
+    /**
+     * Looks up multiple primary keys with a single request per node.
+     * The keys are grouped by shard and only the columns required to compute the outputs are returned.
+     */
+    private static class PKLookupJobContext extends AbstractExecutionSubContext {
+
+        private static final ESLogger LOGGER = Loggers.getLogger(PKLookupJobContext.class);
+
+        private final ESGetTask task;
+        private final TransportPKLookupNodeAction pkLookupAction;
+        private final ClusterService clusterService;
+        private final AtomicInteger pendingRequests = new AtomicInteger(0);
+        private final List<Bucket> buckets = Collections.synchronizedList(new ArrayList<Bucket>());
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Streamer<?>[] streamers;
+        private RowReceiver downstream;
+
+        PKLookupJobContext(ESGetTask task,
+                           TransportPKLookupNodeAction pkLookupAction,
+                           ClusterService clusterService,
                            RowReceiver downstream) {
-            super(task, transportAction, downstream);
+            super(task.esGet.executionPhaseId(), LOGGER);
             assert task.esGet.docKeys().size() > 1;
             assert task.projectorFactory != null;
+            this.task = task;
+            this.pkLookupAction = pkLookupAction;
+            this.clusterService = clusterService;
+            this.downstream = downstream;
+            this.streamers = Symbols.streamerArray(task.lookupColumns);
         }
 
         @Override
@@ -152,29 +205,102 @@ public class ESGetTask extends JobTask {
 
         @Override
         public String name() {
-            return "MultiGet";
+            return "PKLookup";
         }
 
         @Override
-        public void onResponse(MultiGetResponse responses) {
-            FieldExtractorRow<GetResponse> row = new FieldExtractorRow<>(task.extractors);
+        protected void innerStart() {
+            Map<String, List<ShardLookup>> lookupsByNode;
+            try {
+                lookupsByNode = groupByNextNode(groupIdsByShard(clusterService.state()).values());
+            } catch (Throwable t) {
+                downstream.fail(t);
+                close(t);
+                return;
+            }
+            if (lookupsByNode.isEmpty()) {
+                downstream.finish(RepeatHandle.UNSUPPORTED);
+                close();
+                return;
+            }
+            sendRequests(lookupsByNode);
+        }
+
+        private void sendRequests(Map<String, List<ShardLookup>> lookupsByNode) {
+            pendingRequests.addAndGet(lookupsByNode.size());
+            for (Map.Entry<String, List<ShardLookup>> entry : lookupsByNode.entrySet()) {
+                Map<ShardId, List<String>> idsByShard = new HashMap<>(entry.getValue().size());
+                for (ShardLookup lookup : entry.getValue()) {
+                    idsByShard.put(lookup.shardIt.shardId(), lookup.ids);
+                }
+                pkLookupAction.execute(entry.getKey(), streamers,
+                    new PKLookupRequest(idsByShard, task.lookupColumns), new ResponseListener(entry.getValue()));
+            }
+        }
+
+        private Map<ShardId, ShardLookup> groupIdsByShard(ClusterState state) {
+            Map<ShardId, ShardLookup> lookupsByShard = new HashMap<>();
+            for (DocKeys.DocKey key : task.esGet.docKeys()) {
+                if (key.id() == null) {
+                    continue;
+                }
+                String index = indexName(task.esGet.tableInfo(), key.partitionValues().orNull());
+                if (!state.metaData().hasIndex(index)) {
+                    // partition doesn't exist, so there is no matching document
+                    continue;
+                }
+                ShardIterator shardIt = clusterService.operationRouting().getShards(
+                    state, index, Constants.DEFAULT_MAPPING_TYPE, key.id(), key.routing(), null);
+                ShardLookup lookup = lookupsByShard.get(shardIt.shardId());
+                if (lookup == null) {
+                    lookup = new ShardLookup(shardIt);
+                    lookupsByShard.put(shardIt.shardId(), lookup);
+                }
+                lookup.ids.add(key.id());
+            }
+            return lookupsByShard;
+        }
+
+        /**
+         * Groups the lookups by the node of the next active copy of their shard.
+         *
+         * @throws NoShardAvailableActionException if there is no copy left to try for one of the shards
+         */
+        private static Map<String, List<ShardLookup>> groupByNextNode(Collection<ShardLookup> lookups) {
+            Map<String, List<ShardLookup>> lookupsByNode = new HashMap<>();
+            for (ShardLookup lookup : lookups) {
+                String nodeId = lookup.nextNodeId();
+                if (nodeId == null) {
+                    throw new NoShardAvailableActionException(lookup.shardIt.shardId());
+                }
+                List<ShardLookup> nodeLookups = lookupsByNode.get(nodeId);
+                if (nodeLookups == null) {
+                    nodeLookups = new ArrayList<>();
+                    lookupsByNode.put(nodeId, nodeLookups);
+                }
+                nodeLookups.add(lookup);
+            }
+            return lookupsByNode;
+        }
+
+        private void emitRows(List<Bucket> buckets) {
+            FieldExtractorRow<Row> row = new FieldExtractorRow<>(task.rowExtractors);
             try {
                 loop:
-                for (MultiGetItemResponse response : responses) {
-                    if (response.isFailed() || !response.getResponse().isExists()) {
-                        continue;
-                    }
-                    row.setCurrent(response.getResponse());
-                    RowReceiver.Result result = downstream.setNextRow(row);
-                    switch (result) {
-                        case CONTINUE:
-                            continue;
-                        case PAUSE:
-                            throw new UnsupportedOperationException("ESGetTask doesn't support pause");
-                        case STOP:
-                            break loop;
+                for (Bucket bucket : buckets) {
+                    for (Row lookupRow : bucket) {
+                        row.setCurrent(lookupRow);
+                        RowReceiver.Result result = downstream.setNextRow(row);
+                        switch (result) {
+                            case CONTINUE:
+                                continue;
+                            case PAUSE:
+                                throw new UnsupportedOperationException("ESGetTask doesn't support pause");
+                            case STOP:
+                                break loop;
+                        }
+                        throw new AssertionError("Unrecognized setNextRow result: " + result);
                     }
-                    throw new AssertionError("Unrecognized setNextRow result: " + result);
                 }
                 downstream.finish(RepeatHandle.UNSUPPORTED);
                 close();
@@ -184,26 +310,77 @@ public class ESGetTask extends JobTask {
             }
         }
 
-        @Override
-        public void onFailure(Throwable e) {
-            downstream.fail(e);
-            close(e);
+        private void countDown() {
+            if (pendingRequests.decrementAndGet() > 0) {
+                return;
+            }
+            Throwable t = failure.get();
+            if (t == null) {
+                emitRows(buckets);
+            } else {
+                downstream.fail(t);
+                close(t);
+            }
         }
 
-        @Override
-        protected MultiGetRequest prepareRequest(ESGet node, FetchSourceContext fsc) {
-            MultiGetRequest multiGetRequest = new MultiGetRequest();
-            for (DocKeys.DocKey key : node.docKeys()) {
-                if (key.id() != null) {
-                    MultiGetRequest.Item item = new MultiGetRequest.Item(
-                        indexName(node.tableInfo(), key.partitionValues().orNull()), Constants.DEFAULT_MAPPING_TYPE, key.id());
-                    item.fetchSourceContext(fsc);
-                    item.routing(key.routing());
-                    multiGetRequest.add(item);
+        /**
+         * The ids which are looked up in a shard and the copies of the shard which haven't been tried yet.
+         */
+        private static class ShardLookup {
+
+            private final ShardIterator shardIt;
+            private final List<String> ids = new ArrayList<>();
+
+            ShardLookup(ShardIterator shardIt) {
+                this.shardIt = shardIt;
+            }
+
+            /**
+             * @return the node of the next active copy of the shard or null if all copies have been tried
+             */
+            @Nullable
+            String nextNodeId() {
+                ShardRouting shardRouting = shardIt.nextOrNull();
+                while (shardRouting != null && !shardRouting.active()) {
+                    shardRouting = shardIt.nextOrNull();
+                }
+                return shardRouting == null ? null : shardRouting.currentNodeId();
+            }
+        }
+
+        /**
+         * Receives the response of a node. If the request fails, the lookups are retried on the next copies of
+         * their shards. The rows are emitted once the last response has been received.
+         */
+        private class ResponseListener implements ActionListener<PKLookupResponse> {
+
+            private final List<ShardLookup> lookups;
+
+            ResponseListener(List<ShardLookup> lookups) {
+                this.lookups = lookups;
+            }
+
+            @Override
+            public void onResponse(PKLookupResponse response) {
+                buckets.add(response.rows());
+                countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                Map<String, List<ShardLookup>> retries;
+                try {
+                    retries = groupByNextNode(lookups);
+                } catch (NoShardAvailableActionException noCopyLeft) {
+                    failure.compareAndSet(null, e);
+                    countDown();
+                    return;
                 }
+                LOGGER.debug("primary key lookup failed, retrying on other shard copies", e);
+                // the retries are pending before this request is counted down, so the rows aren't emitted yet
+                sendRequests(retries);
+                countDown();
             }
-            multiGetRequest.realtime(true);
-            return multiGetRequest;
         }
     }
 
@@ -262,28 +439,41 @@ public class ESGetTask extends JobTask {
                      ProjectorFactory projectorFactory,
                      TransportActionProvider transportActionProvider,
                      ESGet esGet,
-                     JobContextService jobContextService) {
+                     JobContextService jobContextService,
+                     ClusterService clusterService) {
         super(esGet.jobId());
         this.projectorFactory = projectorFactory;
         this.transportActionProvider = transportActionProvider;
         this.esGet = esGet;
         this.jobContextService = jobContextService;
+        this.clusterService = clusterService;
 
         assert esGet.docKeys().size() > 0;
         assert esGet.limit() != 0 : "shouldn't execute ESGetTask if limit is 0";
 
-        GetResponseContext ctx = new GetResponseContext(functions, esGet);
-        extractors = getFieldExtractors(esGet, ctx);
-        fsc = getFetchSourceContext(ctx.references());
+        if (esGet.docKeys().size() == 1) {
+            GetResponseContext ctx = new GetResponseContext(functions, esGet);
+            extractors = getFieldExtractors(SYMBOL_TO_FIELD_EXTRACTOR, esGet, ctx);
+            fsc = getFetchSourceContext(ctx.references());
+            rowExtractors = null;
+            lookupColumns = null;
+        } else {
+            LookupRowContext ctx = new LookupRowContext(functions, esGet);
+            rowExtractors = getFieldExtractors(SYMBOL_TO_ROW_EXTRACTOR, esGet, ctx);
+            lookupColumns = ctx.columns();
+            extractors = null;
+            fsc = null;
+        }
     }
 
     @Override
     public void execute(RowReceiver rowReceiver) {
-        JobContext jobContext;
+        AbstractExecutionSubContext jobContext;
         if (esGet.docKeys().size() == 1) {
             jobContext = new SingleGetJobContext(this, transportActionProvider.transportGetAction(), rowReceiver);
         } else {
-            jobContext = new MultiGetJobContext(this, transportActionProvider.transportMultiGetAction(), rowReceiver);
+            jobContext = new PKLookupJobContext(
+                this, transportActionProvider.transportPKLookupNodeAction(), clusterService, rowReceiver);
         }
         JobExecutionContext.Builder builder = jobContextService.newBuilder(jobId());
         builder.addSubContext(jobContext);
@@ -311,14 +501,16 @@ public class ESGetTask extends JobTask {
         return new FetchSourceContext(false);
     }
 
-    private static List<Function<GetResponse, Object>> getFieldExtractors(ESGet node, GetResponseContext ctx) {
-        List<Function<GetResponse, Object>> extractors = new ArrayList<>(
+    private static <T> List<Function<T, Object>> getFieldExtractors(SymbolToFieldExtractor<T> symbolToFieldExtractor,
+                                                                   ESGet node,
+                                                                   SymbolToFieldExtractor.Context ctx) {
+        List<Function<T, Object>> extractors = new ArrayList<>(
             node.outputs().size() + node.sortSymbols().size());
         for (Symbol symbol : node.outputs()) {
-            extractors.add(SYMBOL_TO_FIELD_EXTRACTOR.convert(symbol, ctx));
+            extractors.add(symbolToFieldExtractor.convert(symbol, ctx));
         }
         for (Symbol symbol : node.sortSymbols()) {
-            extractors.add(SYMBOL_TO_FIELD_EXTRACTOR.convert(symbol, ctx));
+            extractors.add(symbolToFieldExtractor.convert(symbol, ctx));
         }
         return extractors;
     }
@@ -333,8 +525,8 @@ public class ESGetTask extends JobTask {
     }
 
     static class GetResponseContext extends SymbolToFieldExtractor.Context {
-        private final HashMap<String, DocKeys.DocKey> ids2Keys;
-        private final ESGet node;
+        final HashMap<String, DocKeys.DocKey> ids2Keys;
+        final ESGet node;
 
         GetResponseContext(Functions functions, ESGet node) {
             super(functions, node.outputs().size());
@@ -351,6 +543,60 @@ public class ESGetTask extends JobTask {
         }
     }
 
+    /**
+     * Context of a multi key lookup, collects the columns which have to be looked up.
+     * The first column is always the _id, it is used to resolve primary key values of partitioned tables.
+     */
+    static class LookupRowContext extends GetResponseContext {
+
+        private final List<Reference> columns = new ArrayList<>();
+
+        LookupRowContext(Functions functions, ESGet node) {
+            super(functions, node);
+            columns.add(DocSysColumns.forTable(node.tableInfo().ident(), DocSysColumns.ID));
+        }
+
+        int columnIndex(Reference reference) {
+            int idx = columns.indexOf(reference);
+            if (idx < 0) {
+                idx = columns.size();
+                columns.add(reference);
+            }
+            return idx;
+        }
+
+        List<Reference> columns() {
+            return columns;
+        }
+    }
+
+    private static class LookupRowFieldExtractorFactory implements FieldExtractorFactory<Row, LookupRowContext> {
+
+        @Override
+        public Function<Row, Object> build(final Reference reference, final LookupRowContext context) {
+            if (context.node.tableInfo().isPartitioned()
+                && context.node.tableInfo().partitionedBy().contains(reference.ident().columnIdent())) {
+                final int pos = context.node.tableInfo().primaryKey().indexOf(reference.ident().columnIdent());
+                if (pos >= 0) {
+                    return new Function<Row, Object>() {
+                        @Override
+                        public Object apply(Row row) {
+                            String id = ((BytesRef) row.get(0)).utf8ToString();
+                            return ValueSymbolVisitor.VALUE.process(context.ids2Keys.get(id).values().get(pos));
+                        }
+                    };
+                }
+            }
+            final int idx = context.columnIndex(reference);
+            return new Function<Row, Object>() {
+                @Override
+                public Object apply(Row row) {
+                    return row.get(idx);
+                }
+            };
+        }
+    }
+
     private static class GetResponseFieldExtractorFactory implements FieldExtractorFactory<GetResponse, GetResponseContext> {
 
         @Override
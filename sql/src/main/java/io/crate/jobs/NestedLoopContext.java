@@ -23,7 +23,7 @@ package io.crate.jobs;
 
 import io.crate.concurrent.CompletionListener;
 import io.crate.concurrent.CompletionState;
-import io.crate.operation.join.NestedLoopOperation;
+import io.crate.operation.join.JoinOperation;
 import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ListenableRowReceiver;
 import io.crate.planner.node.dql.join.NestedLoopPhase;
@@ -47,7 +47,7 @@ public class NestedLoopContext extends AbstractExecutionSubContext implements Do
     public NestedLoopContext(ESLogger logger,
                              NestedLoopPhase nestedLoopPhase,
                              FlatProjectorChain flatProjectorChain,
-                             NestedLoopOperation nestedLoopOperation,
+                             JoinOperation joinOperation,
                              @Nullable PageBucketReceiver leftBucketReceiver,
                              @Nullable PageBucketReceiver rightBucketReceiver) {
         super(nestedLoopPhase.executionPhaseId(), logger);
@@ -57,10 +57,10 @@ public class NestedLoopContext extends AbstractExecutionSubContext implements Do
         this.leftBucketReceiver = leftBucketReceiver;
         this.rightBucketReceiver = rightBucketReceiver;
 
-        leftRowReceiver = nestedLoopOperation.leftRowReceiver();
-        rightRowReceiver = nestedLoopOperation.rightRowReceiver();
+        leftRowReceiver = joinOperation.leftRowReceiver();
+        rightRowReceiver = joinOperation.rightRowReceiver();
 
-        nestedLoopOperation.addListener(new CompletionListener() {
+        joinOperation.addListener(new CompletionListener() {
             @Override
             public void onSuccess(@Nullable CompletionState result) {
                 future.close(null);
@@ -28,7 +28,11 @@ import io.crate.operation.PageResultListener;
 
 public interface PageBucketReceiver {
 
-    void setBucket(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener);
+    /**
+     * @param pageIdx sequence number of the page within the pages of the upstream identified by bucketIdx.
+     *                Pages may arrive out of order, they're consumed in the order of their pageIdx.
+     */
+    void setBucket(int bucketIdx, int pageIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener);
 
     void failure(int bucketIdx, Throwable throwable);
 
@@ -37,8 +37,18 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.TreeMap;
 
+/**
+ * Receives the pages of all upstreams and hands them over to the {@link PageDownstream}.
+ *
+ * Upstreams may send their next pages before the current page has been consumed. These pages are kept in
+ * {@link #pendingBuckets} and are moved into the next page once the pageDownstream asks for more.
+ * The response to each bucket is only sent once the page it belongs to has been consumed, which limits how far
+ * an upstream can run ahead.
+ */
 public class PageDownstreamContext extends AbstractExecutionSubContext implements DownstreamExecutionSubContext, PageBucketReceiver {
 
     private final Object lock = new Object();
@@ -48,10 +58,15 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
     private final Streamer<?>[] streamers;
     private final RamAccountingContext ramAccountingContext;
     private final int numBuckets;
-    private final ArrayList<SettableFuture<Bucket>> bucketFutures;
     private final BitSet allFuturesSet;
     private final BitSet exhausted;
     private final ArrayList<PageResultListener> listeners = new ArrayList<>();
+    private final ArrayList<TreeMap<Integer, PendingBucket>> pendingBuckets;
+    private final int[] nextPageIdx;
+
+    private ArrayList<SettableFuture<Bucket>> bucketFutures;
+    private boolean waitingForConsumer = false;
+    private boolean consumerFinished = false;
 
     @Nullable
     private final FlatProjectorChain projectorChain;
@@ -73,14 +88,19 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
         this.ramAccountingContext = ramAccountingContext;
         this.numBuckets = numBuckets;
         this.projectorChain = projectorChain;
-        bucketFutures = new ArrayList<>(numBuckets);
         allFuturesSet = new BitSet(numBuckets);
         exhausted = new BitSet(numBuckets);
+        pendingBuckets = new ArrayList<>(numBuckets);
+        for (int i = 0; i < numBuckets; i++) {
+            pendingBuckets.add(new TreeMap<Integer, PendingBucket>());
+        }
+        nextPageIdx = new int[numBuckets];
         initBucketFutures();
     }
 
     private void initBucketFutures() {
-        bucketFutures.clear();
+        // the previous list is still used by the page that has been handed over to the pageDownstream
+        bucketFutures = new ArrayList<>(numBuckets);
         for (int i = 0; i < numBuckets; i++) {
             bucketFutures.add(SettableFuture.<Bucket>create());
         }
@@ -99,34 +119,23 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
     }
 
     @Override
-    public void setBucket(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
-        synchronized (listeners) {
-            listeners.add(pageResultListener);
-        }
+    public void setBucket(int bucketIdx, int pageIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
         synchronized (lock) {
             traceLog("method=setBucket", bucketIdx);
-            if (allFuturesSet.get(bucketIdx)) {
+            if (consumerFinished) {
+                pageResultListener.needMore(false);
+                return;
+            }
+            TreeMap<Integer, PendingBucket> pending = pendingBuckets.get(bucketIdx);
+            if (pageIdx < nextPageIdx[bucketIdx] || pending.containsKey(pageIdx)) {
                 pageDownstream.fail(new IllegalStateException(String.format(Locale.ENGLISH,
                     "Same bucket of a page set more than once. node=%s method=setBucket phaseId=%d bucket=%d",
                     nodeName, id, bucketIdx)));
                 return;
             }
-
-            if (pageEmpty()) {
-                logger.trace("calling nextPage method=setBucket", bucketIdx);
-                pageDownstream.nextPage(new BucketPage(bucketFutures), new ResultListenerBridgingConsumeListener());
-            }
-            setExhaustedUpstreams();
-
-            if (isLast) {
-                exhausted.set(bucketIdx);
-            }
-            bucketFutures.get(bucketIdx).set(rows);
-            allFuturesSet.set(bucketIdx);
-
-            clearPageIfFull(bucketIdx);
+            pending.put(pageIdx, new PendingBucket(rows, null, isLast, pageResultListener));
+            fillPage();
         }
-
     }
 
     private void traceLog(String msg, int bucketIdx) {
@@ -147,45 +156,109 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
         // upstreams still require
         synchronized (lock) {
             traceLog("method=failure", bucketIdx, throwable);
-            if (allFuturesSet.get(bucketIdx)) {
-                pageDownstream.fail(new IllegalStateException(String.format(Locale.ENGLISH,
-                    "Same bucket of a page set more than once. node=%s method=failure phaseId=%d bucket=%d",
-                    nodeName, id(), bucketIdx)));
+            if (consumerFinished) {
                 return;
             }
-            if (pageEmpty()) {
-                traceLog("calling nextPage. method=failure", bucketIdx);
-                pageDownstream.nextPage(new BucketPage(bucketFutures), new ResultListenerBridgingConsumeListener());
-            }
-            setExhaustedUpstreams();
-
-            exhausted.set(bucketIdx);
-            bucketFutures.get(bucketIdx).setException(throwable);
-            allFuturesSet.set(bucketIdx);
-            clearPageIfFull(bucketIdx);
+            // pages the upstream sent ahead won't be consumed anymore, the failure takes their place
+            TreeMap<Integer, PendingBucket> pending = pendingBuckets.get(bucketIdx);
+            releasePending(pending);
+            pending.put(nextPageIdx[bucketIdx], new PendingBucket(null, throwable, true, null));
+            fillPage();
         }
     }
 
-    private void clearPageIfFull(int bucketIdx) {
+    /**
+     * Moves the next pending bucket of each upstream into the current page. If the page becomes full it is
+     * handed over to the pageDownstream and all further buckets stay pending until it asks for more.
+     *
+     * Must be called while holding the lock. The futures are set last, as they may trigger the pageDownstream
+     * to consume the page right away.
+     */
+    private void fillPage() {
+        if (waitingForConsumer) {
+            return;
+        }
+        boolean pageWasEmpty = pageEmpty();
+        PendingBucket[] addedBuckets = new PendingBucket[numBuckets];
+        boolean added = false;
+        for (int i = 0; i < numBuckets; i++) {
+            if (allFuturesSet.get(i) || exhausted.get(i)) {
+                continue;
+            }
+            PendingBucket bucket = pendingBuckets.get(i).remove(nextPageIdx[i]);
+            if (bucket == null) {
+                continue;
+            }
+            nextPageIdx[i]++;
+            if (bucket.isLast) {
+                exhausted.set(i);
+            }
+            if (bucket.listener != null) {
+                listeners.add(bucket.listener);
+            }
+            addedBuckets[i] = bucket;
+            allFuturesSet.set(i);
+            added = true;
+        }
+        if (!added) {
+            return;
+        }
+        setExhaustedUpstreams(addedBuckets);
+
+        List<SettableFuture<Bucket>> futures = bucketFutures;
+        if (pageWasEmpty) {
+            logger.trace("calling nextPage phaseId={}", id);
+            pageDownstream.nextPage(new BucketPage(futures), new ResultListenerBridgingConsumeListener());
+        }
         if (allFuturesSet.cardinality() == numBuckets) {
-            traceLog("page is full, clearing it", bucketIdx);
+            logger.trace("page is full, clearing it phaseId={}", id);
             allFuturesSet.clear();
             initBucketFutures();
+            waitingForConsumer = true;
+        }
+        for (int i = 0; i < numBuckets; i++) {
+            PendingBucket bucket = addedBuckets[i];
+            if (bucket == null) {
+                continue;
+            }
+            if (bucket.failure == null) {
+                futures.get(i).set(bucket.rows);
+            } else {
+                futures.get(i).setException(bucket.failure);
+            }
         }
     }
 
     /**
      * need to set the futures of all upstreams that are exhausted as there won't come any more buckets from those upstreams
      */
-    private void setExhaustedUpstreams() {
-        for (int i = 0; i < exhausted.size(); i++) {
-            if (exhausted.get(i)) {
-                bucketFutures.get(i).set(Bucket.EMPTY);
+    private void setExhaustedUpstreams(PendingBucket[] addedBuckets) {
+        for (int i = 0; i < numBuckets; i++) {
+            if (exhausted.get(i) && !allFuturesSet.get(i)) {
+                addedBuckets[i] = PendingBucket.EXHAUSTED;
                 allFuturesSet.set(i);
             }
         }
     }
 
+    private static void releasePending(TreeMap<Integer, PendingBucket> pending) {
+        for (PendingBucket bucket : pending.values()) {
+            if (bucket.listener != null) {
+                bucket.listener.needMore(false);
+            }
+        }
+        pending.clear();
+    }
+
+    private void releaseAllPending() {
+        synchronized (lock) {
+            consumerFinished = true;
+            for (TreeMap<Integer, PendingBucket> pending : pendingBuckets) {
+                releasePending(pending);
+            }
+        }
+    }
+
     @Override
     public Streamer<?>[] streamers() {
         return streamers;
@@ -193,6 +266,7 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
 
     @Override
     protected void innerClose(@Nullable Throwable throwable) {
+        releaseAllPending();
         if (throwable == null) {
             pageDownstream.finish();
         } else {
@@ -248,24 +322,51 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
         return this;
     }
 
+    private static class PendingBucket {
+
+        private static final PendingBucket EXHAUSTED = new PendingBucket(Bucket.EMPTY, null, true, null);
+
+        private final Bucket rows;
+        private final Throwable failure;
+        private final boolean isLast;
+        private final PageResultListener listener;
+
+        PendingBucket(@Nullable Bucket rows,
+                      @Nullable Throwable failure,
+                      boolean isLast,
+                      @Nullable PageResultListener listener) {
+            this.rows = rows;
+            this.failure = failure;
+            this.isLast = isLast;
+            this.listener = listener;
+        }
+    }
+
     private class ResultListenerBridgingConsumeListener implements PageConsumeListener {
 
         @Override
         public void needMore() {
-            boolean allExhausted = allExhausted();
-            synchronized (listeners) {
+            boolean allExhausted;
+            synchronized (lock) {
+                allExhausted = allExhausted();
                 if (logger.isTraceEnabled()) {
                     logger.trace("phase={} allExhausted={}", id, allExhausted);
                     logger.trace("calling needMore on all listeners({}) phase={}", listeners.size(), id);
                 }
-                for (PageResultListener listener : listeners) {
+                ArrayList<PageResultListener> pageListeners = new ArrayList<>(listeners);
+                listeners.clear();
+                waitingForConsumer = false;
+                for (PageResultListener listener : pageListeners) {
                     if (allExhausted) {
                         listener.needMore(false);
                     } else {
                         listener.needMore(!isExhausted(listener.buckedIdx()));
                     }
                 }
-                listeners.clear();
+                if (!allExhausted) {
+                    // upstreams which ran ahead might have sent their next pages already
+                    fillPage();
+                }
             }
             if (allExhausted) {
                 PageDownstreamContext.this.close();
@@ -274,7 +375,7 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
 
         @Override
         public void finish() {
-            synchronized (listeners) {
+            synchronized (lock) {
                 if (logger.isTraceEnabled()) {
                     logger.trace("calling finish() on all listeners({}) phase={}", listeners.size(), id);
                 }
@@ -282,8 +383,9 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
                     listener.needMore(false);
                 }
                 listeners.clear();
-                PageDownstreamContext.this.close();
             }
+            releaseAllPending();
+            PageDownstreamContext.this.close();
         }
     }
 }
@@ -22,7 +22,7 @@
 package io.crate.lucene;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Throwables;
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.spatial4j.core.context.jts.JtsSpatialContext;
@@ -74,7 +74,6 @@ import org.apache.lucene.spatial.prefix.PrefixTreeStrategy;
 import org.apache.lucene.spatial.query.SpatialArgs;
 import org.apache.lucene.spatial.query.SpatialOperation;
 import org.apache.lucene.spatial.util.GeoDistanceUtils;
-import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.automaton.RegExp;
 import org.elasticsearch.ExceptionsHelper;
@@ -1144,77 +1143,85 @@ public class LuceneQueryBuilder {
             return function;
         }
 
-        private static Query genericFunctionFilter(Function function, Context context) {
+        private static Query genericFunctionFilter(Function function, final Context context) {
             if (function.valueType() != DataTypes.BOOLEAN) {
                 raiseUnsupported(function);
             }
-            // avoid field-cache
+            // use the source for columns without doc values and avoid the field-cache
             // reason1: analyzed columns or columns with index off wouldn't work
             //   substr(n, 1, 1) in the case of n => analyzed would throw an error because n would be an array
             // reason2: would have to load each value into the field cache
-            function = (Function) DocReferenceConverter.convertIf(function);
-
-            final CollectInputSymbolVisitor.Context ctx = context.inputSymbolVisitor.extractImplementations(function);
-            assert ctx.topLevelInputs().size() == 1;
-            @SuppressWarnings("unchecked")
-            final Input<Boolean> condition = (Input<Boolean>) ctx.topLevelInputs().get(0);
-            @SuppressWarnings("unchecked")
-            final List<LuceneCollectorExpression> expressions = ctx.docLevelExpressions();
-            final CollectorContext collectorContext = new CollectorContext(
-                context.mapperService,
-                context.fieldDataService,
-                new CollectorFieldsVisitor(expressions.size())
-            );
-
-            for (LuceneCollectorExpression expression : expressions) {
-                expression.startCollect(collectorContext);
-            }
-            return new FunctionFilter(function, expressions, collectorContext, condition);
+            function = (Function) DocReferenceConverter.convertIf(function, new Predicate<Reference>() {
+                @Override
+                public boolean apply(@Nullable Reference input) {
+                    assert input != null;
+                    return !LuceneReferenceResolver.hasDocValues(
+                        input.ident().columnIdent().fqn(), input.valueType(), context.mapperService);
+                }
+            });
+            return new FunctionFilter(function, context.inputSymbolVisitor, context.mapperService, context.fieldDataService);
         }
 
-        public static class FunctionFilter extends Filter {
+        /**
+         * Matches the documents for which a function, which can't be converted into a query, evaluates to true.
+         * <p>
+         * The scorers are two-phase iterators: If the filter is combined with other queries, the function is
+         * only evaluated for the documents which match the other queries.
+         */
+        public static class FunctionFilter extends Query {
 
             private final Function function;
-            private final List<LuceneCollectorExpression> expressions;
-            private final CollectorContext collectorContext;
-            private final Input<Boolean> condition;
+            private final CollectInputSymbolVisitor<LuceneCollectorExpression<?>> inputSymbolVisitor;
+            private final MapperService mapperService;
+            private final IndexFieldDataService fieldDataService;
 
             public FunctionFilter(Function function,
-                                  List<LuceneCollectorExpression> expressions,
-                                  CollectorContext collectorContext,
-                                  Input<Boolean> condition) {
+                                  CollectInputSymbolVisitor<LuceneCollectorExpression<?>> inputSymbolVisitor,
+                                  MapperService mapperService,
+                                  IndexFieldDataService fieldDataService) {
                 this.function = function;
-                this.expressions = expressions;
-                this.collectorContext = collectorContext;
-                this.condition = condition;
+                this.inputSymbolVisitor = inputSymbolVisitor;
+                this.mapperService = mapperService;
+                this.fieldDataService = fieldDataService;
             }
 
-            @Override
-            public DocIdSet getDocIdSet(final LeafReaderContext context, Bits acceptDocs) throws IOException {
-                for (LuceneCollectorExpression expression : expressions) {
-                    expression.setNextReader(context.reader().getContext());
-                }
-                DocIdSet docIdSet = new DocIdSet() {
-
-                    @Override
-                    public long ramBytesUsed() {
-                        return 0; // FIXME
-                    }
+            Function function() {
+                return function;
+            }
 
+            @Override
+            public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+                return new ConstantScoreWeight(this) {
                     @Override
-                    public DocIdSetIterator iterator() throws IOException {
-                        return DocIdSetIterator.all(context.reader().maxDoc());
+                    public Scorer scorer(LeafReaderContext context) throws IOException {
+                        return new ConstantScoreScorer(this, score(), functionIterator(context));
                     }
                 };
-                return BitsFilteredDocIdSet.wrap(
-                    new FunctionDocSet(
-                        context.reader(),
-                        collectorContext.visitor(),
-                        condition,
-                        expressions,
-                        docIdSet
-                    ),
-                    acceptDocs
+            }
+
+            private FunctionTwoPhaseIterator functionIterator(LeafReaderContext context) throws IOException {
+                // expressions hold the state of the current document, the scorers may be used concurrently
+                CollectInputSymbolVisitor.Context ctx = inputSymbolVisitor.extractImplementations(function);
+                assert ctx.topLevelInputs().size() == 1;
+                @SuppressWarnings("unchecked")
+                Input<Boolean> condition = (Input<Boolean>) ctx.topLevelInputs().get(0);
+                @SuppressWarnings("unchecked")
+                List<LuceneCollectorExpression> expressions = ctx.docLevelExpressions();
+                CollectorContext collectorContext = new CollectorContext(
+                    mapperService,
+                    fieldDataService,
+                    new CollectorFieldsVisitor(expressions.size())
+                );
+                for (LuceneCollectorExpression expression : expressions) {
+                    expression.startCollect(collectorContext);
+                    expression.setNextReader(context);
+                }
+                return new FunctionTwoPhaseIterator(
+                    DocIdSetIterator.all(context.reader().maxDoc()),
+                    context.reader(),
+                    collectorContext.visitor(),
+                    condition,
+                    expressions
                 );
             }
 
@@ -1239,7 +1246,14 @@ public class LuceneQueryBuilder {
             }
         }
 
-        static class FunctionDocSet extends FilteredDocIdSet {
+        static class FunctionTwoPhaseIterator extends TwoPhaseIterator {
+
+            /**
+             * rough estimates of the operations required to evaluate a function for a document,
+             * loading the source requires to decompress a whole block of stored fields
+             */
+            private static final float SOURCE_MATCH_COST = 1000f;
+            private static final float DOC_VALUES_MATCH_COST = 10f;
 
             private final LeafReader reader;
             private final CollectorFieldsVisitor fieldsVisitor;
@@ -1247,29 +1261,25 @@ public class LuceneQueryBuilder {
             private final List<LuceneCollectorExpression> expressions;
             private final boolean fieldsVisitorEnabled;
 
-            protected FunctionDocSet(LeafReader reader,
-                                     @Nullable CollectorFieldsVisitor fieldsVisitor,
+            FunctionTwoPhaseIterator(DocIdSetIterator approximation,
+                                     LeafReader reader,
+                                     CollectorFieldsVisitor fieldsVisitor,
                                      Input<Boolean> condition,
-                                     List<LuceneCollectorExpression> expressions,
-                                     DocIdSet docIdSet) {
-                super(docIdSet);
+                                     List<LuceneCollectorExpression> expressions) {
+                super(approximation);
                 this.reader = reader;
                 this.fieldsVisitor = fieldsVisitor;
-                //noinspection SimplifiableConditionalExpression
-                this.fieldsVisitorEnabled = fieldsVisitor == null ? false : fieldsVisitor.required();
+                this.fieldsVisitorEnabled = fieldsVisitor.required();
                 this.condition = condition;
                 this.expressions = expressions;
             }
 
             @Override
-            protected boolean match(int doc) {
+            public boolean matches() throws IOException {
+                int doc = approximation.docID();
                 if (fieldsVisitorEnabled) {
                     fieldsVisitor.reset();
-                    try {
-                        reader.document(doc, fieldsVisitor);
-                    } catch (IOException e) {
-                        throw Throwables.propagate(e);
-                    }
+                    reader.document(doc, fieldsVisitor);
                 }
                 for (LuceneCollectorExpression expression : expressions) {
                     expression.setNextDocId(doc);
@@ -1280,6 +1290,14 @@ public class LuceneQueryBuilder {
                 }
                 return value;
             }
+
+            @Override
+            public float matchCost() {
+                if (fieldsVisitorEnabled) {
+                    return SOURCE_MATCH_COST;
+                }
+                return DOC_VALUES_MATCH_COST * Math.max(1, expressions.size());
+            }
         }
 
         private static Query raiseUnsupported(Function function) {
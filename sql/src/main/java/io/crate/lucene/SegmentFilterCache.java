@@ -0,0 +1,280 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.lucene;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.WhereClause;
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.analyze.symbol.SymbolType;
+import io.crate.analyze.symbol.SymbolVisitors;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Node wide cache of the documents matching a where clause per segment.
+ *
+ * Entries are keyed by the normalized query symbol of the where clause and the core key of the segment, evicted
+ * in LRU order if either the entry count or the memory limit is reached and removed once their segment is closed.
+ * Only deterministic queries are cached and only if the documents are collected without scores.
+ */
+@Singleton
+public class SegmentFilterCache implements Supplier<Iterable<?>> {
+
+    public static final String SIZE_SETTING = "node.sql.filter_cache.size";
+    public static final String DEFAULT_SIZE = "5%";
+    public static final String COUNT_SETTING = "node.sql.filter_cache.count";
+    public static final int DEFAULT_COUNT = 10_000;
+
+    private static final Predicate<Symbol> IS_NON_DETERMINISTIC = new Predicate<Symbol>() {
+        @Override
+        public boolean apply(@Nullable Symbol input) {
+            return input != null
+                   && input.symbolType() == SymbolType.FUNCTION
+                   && !((Function) input).info().isDeterministic();
+        }
+    };
+
+    private final ClusterService clusterService;
+    @Nullable
+    private final LRUQueryCache cache;
+    private final QueryCachingPolicy cachingPolicy;
+
+    @Inject
+    public SegmentFilterCache(Settings settings, ClusterService clusterService) {
+        this(clusterService,
+            settings.getAsInt(COUNT_SETTING, DEFAULT_COUNT),
+            settings.getAsMemory(SIZE_SETTING, DEFAULT_SIZE).bytes(),
+            new UsageTrackingQueryCachingPolicy());
+    }
+
+    @VisibleForTesting
+    SegmentFilterCache(ClusterService clusterService, int maxCount, long maxBytes, QueryCachingPolicy cachingPolicy) {
+        this.clusterService = clusterService;
+        this.cachingPolicy = cachingPolicy;
+        if (maxCount > 0 && maxBytes > 0) {
+            cache = new LRUQueryCache(maxCount, maxBytes);
+        } else {
+            cache = null;
+        }
+    }
+
+    /**
+     * wraps the lucene query of a where clause so that its per segment matches are taken from the cache.
+     * If the query is wrapped the query cache of the searcher which runs it is disabled, otherwise the
+     * matches would be cached a second time by the query cache of the shard.
+     *
+     * @return the wrapped query or the given query if the where clause can't be cached
+     */
+    public Query wrap(WhereClause whereClause, Query query, IndexSearcher searcher) {
+        if (cache == null || !whereClause.hasQuery()) {
+            return query;
+        }
+        Symbol querySymbol = whereClause.query();
+        if (SymbolVisitors.any(IS_NON_DETERMINISTIC, querySymbol)) {
+            return query;
+        }
+        searcher.setQueryCache(null);
+        return new CachingQuery(this, querySymbol, query);
+    }
+
+    Weight cacheWeight(Weight weight) {
+        assert cache != null : "weight must not be cached if the cache is disabled";
+        return cache.doCache(weight, cachingPolicy);
+    }
+
+    public Stats stats() {
+        String nodeId = clusterService.localNode().id();
+        if (cache == null) {
+            return new Stats(nodeId, 0L, 0L, 0L, 0L, 0L);
+        }
+        return new Stats(nodeId,
+            cache.getCacheSize(),
+            cache.ramBytesUsed(),
+            cache.getHitCount(),
+            cache.getMissCount(),
+            cache.getEvictionCount());
+    }
+
+    @Override
+    public Iterable<?> get() {
+        return ImmutableList.of(stats());
+    }
+
+    public static class Stats {
+
+        private final BytesRef nodeId;
+        private final long entries;
+        private final long sizeInBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Stats(String nodeId, long entries, long sizeInBytes, long hits, long misses, long evictions) {
+            this.nodeId = new BytesRef(nodeId);
+            this.entries = entries;
+            this.sizeInBytes = sizeInBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public BytesRef nodeId() {
+            return nodeId;
+        }
+
+        public long entries() {
+            return entries;
+        }
+
+        public long sizeInBytes() {
+            return sizeInBytes;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public long evictions() {
+            return evictions;
+        }
+    }
+
+    /**
+     * Query which is equal to another one if their query symbols are equal. This way the cache entries
+     * of a where clause are found even though its lucene query is built again for every collect operation.
+     */
+    static class CachingQuery extends Query {
+
+        private final SegmentFilterCache filterCache;
+        private final Symbol querySymbol;
+        private final Query query;
+
+        CachingQuery(SegmentFilterCache filterCache, Symbol querySymbol, Query query) {
+            this.filterCache = filterCache;
+            this.querySymbol = querySymbol;
+            this.query = query;
+        }
+
+        @Override
+        public Query rewrite(IndexReader reader) throws IOException {
+            Query rewritten = query.rewrite(reader);
+            if (rewritten != query) {
+                CachingQuery cachingQuery = new CachingQuery(filterCache, querySymbol, rewritten);
+                cachingQuery.setBoost(getBoost());
+                return cachingQuery;
+            }
+            return super.rewrite(reader);
+        }
+
+        @Override
+        public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+            Weight weight = query.createWeight(searcher, needsScores);
+            if (needsScores) {
+                return weight;
+            }
+            return filterCache.cacheWeight(new SymbolWeight(this, weight));
+        }
+
+        @Override
+        public String toString(String field) {
+            return "cached(" + query.toString(field) + ")";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!super.equals(o)) {
+                return false;
+            }
+            CachingQuery that = (CachingQuery) o;
+            return querySymbol.equals(that.querySymbol);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + querySymbol.hashCode();
+        }
+    }
+
+    /**
+     * Weight delegating to the weight of the wrapped query, {@link #getQuery()} returns the {@link CachingQuery}
+     * which is used as cache key.
+     */
+    private static class SymbolWeight extends Weight {
+
+        private final Weight weight;
+
+        SymbolWeight(CachingQuery query, Weight weight) {
+            super(query);
+            this.weight = weight;
+        }
+
+        @Override
+        public void extractTerms(Set<Term> terms) {
+            weight.extractTerms(terms);
+        }
+
+        @Override
+        public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+            return weight.explain(context, doc);
+        }
+
+        @Override
+        public float getValueForNormalization() throws IOException {
+            return weight.getValueForNormalization();
+        }
+
+        @Override
+        public void normalize(float norm, float boost) {
+            weight.normalize(norm, boost);
+        }
+
+        @Override
+        public Scorer scorer(LeafReaderContext context) throws IOException {
+            return weight.scorer(context);
+        }
+
+        @Override
+        public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
+            return weight.bulkScorer(context);
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package io.crate.metadata;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import io.crate.analyze.symbol.Symbol;
 import io.crate.metadata.doc.DocSysColumns;
 
@@ -54,6 +55,13 @@ public class DocReferenceConverter {
         return VISITOR.process(symbol, DEFAULT_PREDICATE);
     }
 
+    /**
+     * like {@link #convertIf(Symbol)} but only converts the references which also match the given predicate
+     */
+    public static Symbol convertIf(Symbol symbol, Predicate<Reference> predicate) {
+        return VISITOR.process(symbol, Predicates.and(DEFAULT_PREDICATE, predicate));
+    }
+
     public static Reference toSourceLookup(Reference reference) {
         ReferenceIdent ident = reference.ident();
         if (ident.columnIdent().isSystemColumn()) {
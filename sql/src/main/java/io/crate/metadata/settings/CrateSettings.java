@@ -1223,6 +1223,33 @@ public class CrateSettings {
         }
     };
 
+    public static final NestedSetting RESULT_COMPRESSION = new NestedSetting() {
+        @Override
+        public String name() {
+            return "result_compression";
+        }
+
+        @Override
+        public List<Setting> children() {
+            return ImmutableList.<Setting>of(RESULT_COMPRESSION_ENABLED, RESULT_COMPRESSION_MIN_PAGE_SIZE);
+        }
+
+        @Override
+        public boolean isRuntime() {
+            return true;
+        }
+    };
+
+    public static final BoolSetting RESULT_COMPRESSION_ENABLED = new BoolSetting("enabled", false, true) {
+        @Override
+        public Setting parent() {
+            return RESULT_COMPRESSION;
+        }
+    };
+
+    public static final ByteSizeSetting RESULT_COMPRESSION_MIN_PAGE_SIZE = new ByteSizeSetting(
+        "min_page_size", new ByteSizeValue(16, ByteSizeUnit.KB), true, RESULT_COMPRESSION);
+
     public static final NestedSetting GATEWAY = new NestedSetting() {
         @Override
         public String name() {
@@ -1379,11 +1406,12 @@ public class CrateSettings {
     public static final List<Setting<?, ?>> CRATE_SETTINGS = ImmutableList.<Setting<?, ?>>of(
         STATS,
         BULK,
+        RESULT_COMPRESSION,
         GRACEFUL_STOP
     );
 
     public static final List<Setting> SETTINGS = ImmutableList.<Setting>of(
-        STATS, CLUSTER, DISCOVERY, INDICES, BULK, GATEWAY, UDC, PSQL);
+        STATS, CLUSTER, DISCOVERY, INDICES, BULK, RESULT_COMPRESSION, GATEWAY, UDC, PSQL);
 
     static final Map<String, SettingsApplier> SUPPORTED_SETTINGS = ImmutableMap.<String, SettingsApplier>builder()
         .put(CrateSettings.STATS.settingName(),
@@ -1536,6 +1564,12 @@ public class CrateSettings {
             new SettingsAppliers.ObjectSettingsApplier(CrateSettings.BULK))
         .put(CrateSettings.BULK_REQUEST_TIMEOUT.settingName(),
             new SettingsAppliers.TimeSettingsApplier(CrateSettings.BULK_REQUEST_TIMEOUT))
+        .put(CrateSettings.RESULT_COMPRESSION.settingName(),
+            new SettingsAppliers.ObjectSettingsApplier(CrateSettings.RESULT_COMPRESSION))
+        .put(CrateSettings.RESULT_COMPRESSION_ENABLED.settingName(),
+            new SettingsAppliers.BooleanSettingsApplier(CrateSettings.RESULT_COMPRESSION_ENABLED))
+        .put(CrateSettings.RESULT_COMPRESSION_MIN_PAGE_SIZE.settingName(),
+            new SettingsAppliers.ByteSizeSettingsApplier(CrateSettings.RESULT_COMPRESSION_MIN_PAGE_SIZE))
         .put(CrateSettings.GATEWAY.settingName(),
             new SettingsAppliers.ObjectSettingsApplier(CrateSettings.GATEWAY))
         .put(CrateSettings.GATEWAY_EXPECTED_NODES.settingName(),
@@ -347,6 +347,12 @@ public class SysClusterTableInfo extends StaticTableInfo {
                 .register(ClusterSettingsExpression.NAME, DataTypes.STRING, ImmutableList.of(CrateSettings.BULK.name(),
                     CrateSettings.BULK_REQUEST_TIMEOUT.name()))
 
+                .register(ClusterSettingsExpression.NAME, DataTypes.OBJECT, ImmutableList.of(CrateSettings.RESULT_COMPRESSION.name()))
+                .register(ClusterSettingsExpression.NAME, DataTypes.BOOLEAN, ImmutableList.of(CrateSettings.RESULT_COMPRESSION.name(),
+                    CrateSettings.RESULT_COMPRESSION_ENABLED.name()))
+                .register(ClusterSettingsExpression.NAME, DataTypes.STRING, ImmutableList.of(CrateSettings.RESULT_COMPRESSION.name(),
+                    CrateSettings.RESULT_COMPRESSION_MIN_PAGE_SIZE.name()))
+
                 .register(ClusterSettingsExpression.NAME, DataTypes.OBJECT, ImmutableList.of(CrateSettings.GATEWAY.name()))
                 .register(ClusterSettingsExpression.NAME, DataTypes.INTEGER, ImmutableList.of(CrateSettings.GATEWAY.name(),
                     CrateSettings.GATEWAY_EXPECTED_NODES.name()))
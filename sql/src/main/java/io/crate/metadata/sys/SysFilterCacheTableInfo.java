@@ -0,0 +1,77 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.metadata.sys;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.WhereClause;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.Routing;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.table.ColumnRegistrar;
+import io.crate.metadata.table.StaticTableInfo;
+import io.crate.types.DataTypes;
+import org.elasticsearch.cluster.ClusterService;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+public class SysFilterCacheTableInfo extends StaticTableInfo {
+
+    public static final TableIdent IDENT = new TableIdent(SysSchemaInfo.NAME, "filter_cache");
+    private static final List<ColumnIdent> PRIMARY_KEYS = ImmutableList.of(Columns.NODE_ID);
+    private static final RowGranularity GRANULARITY = RowGranularity.DOC;
+
+    private final ClusterService clusterService;
+
+    public static class Columns {
+        public static final ColumnIdent NODE_ID = new ColumnIdent("node_id");
+        public static final ColumnIdent ENTRIES = new ColumnIdent("entries");
+        public static final ColumnIdent SIZE = new ColumnIdent("size");
+        public static final ColumnIdent HITS = new ColumnIdent("hits");
+        public static final ColumnIdent MISSES = new ColumnIdent("misses");
+        public static final ColumnIdent EVICTIONS = new ColumnIdent("evictions");
+    }
+
+    SysFilterCacheTableInfo(ClusterService clusterService) {
+        super(IDENT, new ColumnRegistrar(IDENT, GRANULARITY)
+                .register(Columns.NODE_ID, DataTypes.STRING)
+                .register(Columns.ENTRIES, DataTypes.LONG)
+                .register(Columns.SIZE, DataTypes.LONG)
+                .register(Columns.HITS, DataTypes.LONG)
+                .register(Columns.MISSES, DataTypes.LONG)
+                .register(Columns.EVICTIONS, DataTypes.LONG),
+            PRIMARY_KEYS);
+        this.clusterService = clusterService;
+    }
+
+    @Override
+    public RowGranularity rowGranularity() {
+        return GRANULARITY;
+    }
+
+    @Override
+    public Routing getRouting(WhereClause whereClause, @Nullable String preference) {
+        return Routing.forTableOnAllNodes(IDENT, clusterService.state().nodes());
+    }
+}
@@ -45,6 +45,8 @@ public class SysOperationsTableInfo extends StaticTableInfo {
         public final static ColumnIdent NAME = new ColumnIdent("name");
         public final static ColumnIdent STARTED = new ColumnIdent("started");
         public final static ColumnIdent USED_BYTES = new ColumnIdent("used_bytes");
+        public final static ColumnIdent COMPRESSION_RATIO = new ColumnIdent("compression_ratio");
+        public final static ColumnIdent COMPRESSION_TIME = new ColumnIdent("compression_time");
     }
 
     private final TableColumn nodesTableColumn;
@@ -57,6 +59,8 @@ public class SysOperationsTableInfo extends StaticTableInfo {
                 .register(Columns.NAME, DataTypes.STRING)
                 .register(Columns.STARTED, DataTypes.TIMESTAMP)
                 .register(Columns.USED_BYTES, DataTypes.LONG)
+                .register(Columns.COMPRESSION_RATIO, DataTypes.DOUBLE)
+                .register(Columns.COMPRESSION_TIME, DataTypes.LONG)
                 .putInfoOnly(SysNodesTableInfo.SYS_COL_IDENT, SysNodesTableInfo.tableColumnInfo(IDENT)),
             Collections.<ColumnIdent>emptyList());
         this.clusterService = clusterService;
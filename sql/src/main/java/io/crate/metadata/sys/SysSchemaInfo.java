@@ -52,6 +52,7 @@ public class SysSchemaInfo implements SchemaInfo {
             .put(SysOperationsLogTableInfo.IDENT.name(), new SysOperationsLogTableInfo(clusterService))
             .put(SysChecksTableInfo.IDENT.name(), new SysChecksTableInfo(clusterService))
             .put(SysNodeChecksTableInfo.IDENT.name(), new SysNodeChecksTableInfo(clusterService))
+            .put(SysFilterCacheTableInfo.IDENT.name(), new SysFilterCacheTableInfo(clusterService))
             .put(SysRepositoriesTableInfo.IDENT.name(), new SysRepositoriesTableInfo(clusterService))
             .put(SysSnapshotsTableInfo.IDENT.name(), new SysSnapshotsTableInfo(clusterService))
             .put(SysSummitsTableInfo.IDENT.name(), new SysSummitsTableInfo(clusterService))
@@ -37,6 +37,7 @@ import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.ProjectorFactory;
 import io.crate.operation.projectors.RowReceiver;
+import io.crate.operation.projectors.SpillDirectory;
 import io.crate.operation.projectors.sorting.OrderingByPosition;
 import io.crate.planner.node.dql.MergePhase;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
@@ -63,7 +64,8 @@ public class PageDownstreamFactory {
                                  TransportActionProvider transportActionProvider,
                                  BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                                  NestedReferenceResolver referenceResolver,
-                                 Functions functions) {
+                                 Functions functions,
+                                 SpillDirectory spillDirectory) {
         ImplementationSymbolVisitor implementationSymbolVisitor = new ImplementationSymbolVisitor(functions);
         EvaluatingNormalizer normalizer = new EvaluatingNormalizer(functions, RowGranularity.DOC, referenceResolver);
         this.projectionToProjectorVisitor = new ProjectionToProjectorVisitor(
@@ -75,7 +77,8 @@ public class PageDownstreamFactory {
             transportActionProvider,
             bulkRetryCoordinatorPool,
             implementationSymbolVisitor,
-            normalizer
+            normalizer,
+            spillDirectory
         );
     }
 
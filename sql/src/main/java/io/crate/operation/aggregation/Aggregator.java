@@ -21,6 +21,7 @@
 
 package io.crate.operation.aggregation;
 
+import io.crate.Streamer;
 import io.crate.analyze.symbol.Aggregation;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.operation.Input;
@@ -33,6 +34,7 @@ import java.util.Locale;
  */
 public class Aggregator {
 
+    private final RamAccountingContext ramAccountingContext;
     private final Input[] inputs;
     private final AggregationFunction aggregationFunction;
     private final FromImpl fromImpl;
@@ -72,6 +74,7 @@ public class Aggregator {
                 throw new UnsupportedOperationException(String.format(Locale.ENGLISH, "invalid to step %s", a.toStep().name()));
         }
 
+        this.ramAccountingContext = ramAccountingContext;
         this.inputs = inputs;
         this.aggregationFunction = aggregationFunction;
     }
@@ -89,6 +92,21 @@ public class Aggregator {
         return toImpl.finishCollect(state);
     }
 
+    /**
+     * Merges two states created by {@link #prepareState()} / {@link #processRow(Object)}.
+     */
+    public Object reduce(Object state1, Object state2) {
+        //noinspection unchecked
+        return aggregationFunction.reduce(ramAccountingContext, state1, state2);
+    }
+
+    /**
+     * Streamer for the states created by {@link #prepareState()} / {@link #processRow(Object)}.
+     */
+    public Streamer<?> stateStreamer() {
+        return aggregationFunction.partialType().streamer();
+    }
+
     abstract class FromImpl {
 
         protected final RamAccountingContext ramAccountingContext;
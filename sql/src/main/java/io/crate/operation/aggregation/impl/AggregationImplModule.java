@@ -56,6 +56,7 @@ public class AggregationImplModule extends AbstractModule {
         CountAggregation.register(this);
         CollectSetAggregation.register(this);
         PercentileAggregation.register(this);
+        HyperLogLogDistinctAggregation.register(this);
 
         VarianceAggregation.register(this);
         GeometricMeanAggregation.register(this);
@@ -0,0 +1,145 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.exceptions.CircuitBreakingException;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+import javax.annotation.Nullable;
+
+/**
+ * Estimates the number of distinct non-null values using a {@link HyperLogLogState}.
+ * Unlike <code>count(distinct col)</code> the size of the state doesn't grow with the number of distinct values.
+ * The optional second argument is the precision of the state.
+ */
+public class HyperLogLogDistinctAggregation extends AggregationFunction<HyperLogLogState, Long> {
+
+    public static final String NAME = "hyperloglog_distinct";
+    private final FunctionInfo info;
+
+    static {
+        DataTypes.register(HyperLogLogStateType.ID, HyperLogLogStateType.INSTANCE);
+    }
+
+    public static void register(AggregationImplModule mod) {
+        for (DataType<?> t : DataTypes.PRIMITIVE_TYPES) {
+            mod.register(new HyperLogLogDistinctAggregation(new FunctionInfo(
+                new FunctionIdent(NAME, ImmutableList.<DataType>of(t)), DataTypes.LONG,
+                FunctionInfo.Type.AGGREGATE)));
+            mod.register(new HyperLogLogDistinctAggregation(new FunctionInfo(
+                new FunctionIdent(NAME, ImmutableList.<DataType>of(t, DataTypes.INTEGER)), DataTypes.LONG,
+                FunctionInfo.Type.AGGREGATE)));
+            mod.register(new HyperLogLogDistinctAggregation(new FunctionInfo(
+                new FunctionIdent(NAME, ImmutableList.<DataType>of(t, DataTypes.LONG)), DataTypes.LONG,
+                FunctionInfo.Type.AGGREGATE)));
+        }
+    }
+
+    public HyperLogLogDistinctAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Nullable
+    @Override
+    public HyperLogLogState newState(RamAccountingContext ramAccountingContext) {
+        return null;
+    }
+
+    @Override
+    public HyperLogLogState iterate(RamAccountingContext ramAccountingContext,
+                                    HyperLogLogState state,
+                                    Input... args) throws CircuitBreakingException {
+        if (state == null) {
+            state = initState(ramAccountingContext, args.length > 1 ? args[1].value() : null);
+        }
+        Object value = args[0].value();
+        if (value != null) {
+            long memoryUsage = state.memoryUsage();
+            state.add(value);
+            accountGrowth(ramAccountingContext, state, memoryUsage);
+        }
+        return state;
+    }
+
+    /**
+     * the sparse form of a state grows until it is converted to the dense form
+     */
+    private static void accountGrowth(RamAccountingContext ramAccountingContext,
+                                      HyperLogLogState state,
+                                      long previousMemoryUsage) {
+        long growth = state.memoryUsage() - previousMemoryUsage;
+        if (growth != 0) {
+            ramAccountingContext.addBytes(growth);
+        }
+    }
+
+    private static HyperLogLogState initState(RamAccountingContext ramAccountingContext, @Nullable Object precision) {
+        int p = precision == null ? HyperLogLogState.DEFAULT_PRECISION : DataTypes.INTEGER.value(precision);
+        HyperLogLogState state = new HyperLogLogState(p);
+        ramAccountingContext.addBytes(state.memoryUsage());
+        return state;
+    }
+
+    @Override
+    public HyperLogLogState reduce(RamAccountingContext ramAccountingContext,
+                                   HyperLogLogState state1,
+                                   HyperLogLogState state2) {
+        if (state1 == null) {
+            return state2;
+        }
+        if (state2 != null) {
+            long memoryUsage = state1.memoryUsage();
+            long mergedMemoryUsage = state2.memoryUsage();
+            state1.merge(state2);
+            accountGrowth(ramAccountingContext, state1, memoryUsage);
+            // state2 is merged into state1 and not used anymore
+            ramAccountingContext.addBytes(-mergedMemoryUsage);
+        }
+        return state1;
+    }
+
+    @Override
+    public Long terminatePartial(RamAccountingContext ramAccountingContext, HyperLogLogState state) {
+        if (state == null) {
+            return 0L;
+        }
+        return state.cardinality();
+    }
+
+    @Override
+    public DataType partialType() {
+        return HyperLogLogStateType.INSTANCE;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.aggregation.impl;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * HyperLogLog sketch to estimate the number of distinct values.
+ * <p>
+ * Values are hashed to 64 bit, so no correction for hash collisions of large cardinalities is required.
+ * Small cardinalities are estimated using linear counting.
+ * <p>
+ * Like HyperLogLog++ a state starts in a sparse form which only stores the registers that are set, as
+ * sorted list of <code>index << 6 | rank</code> entries. New entries are buffered and merged into the list
+ * in batches. Once the list would use more memory than the <code>2^precision</code> one byte registers
+ * of the dense form, the state is converted. Unlike HyperLogLog++ the sparse form uses the same precision
+ * as the dense form, so both result in the same estimates.
+ */
+class HyperLogLogState {
+
+    static final int MIN_PRECISION = 4;
+    static final int MAX_PRECISION = 18;
+    static final int DEFAULT_PRECISION = 14;
+
+    private static final int RANK_BITS = 6;
+    private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+    private static final int BUFFER_SIZE = 64;
+    private static final long SHALLOW_SIZE = 48L;
+
+    private final int precision;
+    private final MurmurHash3.Hash128 hash128 = new MurmurHash3.Hash128();
+
+    /**
+     * the registers of the dense form, null as long as the state is sparse
+     */
+    @Nullable
+    private byte[] registers;
+
+    /**
+     * sorted entries of the sparse form, an entry per set register
+     */
+    private int[] sparse = new int[0];
+    private int sparseSize = 0;
+    private int[] buffer;
+    private int bufferSize = 0;
+
+    HyperLogLogState(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                "precision must be >= %d and <= %d, got %d", MIN_PRECISION, MAX_PRECISION, precision));
+        }
+        this.precision = precision;
+        this.buffer = new int[Math.min(BUFFER_SIZE, maxSparseSize())];
+    }
+
+    int precision() {
+        return precision;
+    }
+
+    boolean isSparse() {
+        return registers == null;
+    }
+
+    /**
+     * @return the estimated number of bytes used by this state
+     */
+    long memoryUsage() {
+        if (registers == null) {
+            return SHALLOW_SIZE + 4L * (sparse.length + buffer.length);
+        }
+        return SHALLOW_SIZE + registers.length;
+    }
+
+    private int numRegisters() {
+        return 1 << precision;
+    }
+
+    /**
+     * the sparse form is used as long as its entries use less memory than the registers of the dense form
+     */
+    private int maxSparseSize() {
+        return numRegisters() / 4;
+    }
+
+    void add(Object value) {
+        addHash(hash(value));
+    }
+
+    private long hash(Object value) {
+        if (value instanceof BytesRef) {
+            BytesRef bytes = (BytesRef) value;
+            return MurmurHash3.hash128(bytes.bytes, bytes.offset, bytes.length, 0, hash128).h1;
+        }
+        if (value instanceof String) {
+            return hash(new BytesRef((String) value));
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return mix64(Double.doubleToLongBits(((Number) value).doubleValue()));
+        }
+        if (value instanceof Number) {
+            return mix64(((Number) value).longValue());
+        }
+        if (value instanceof Boolean) {
+            return mix64((Boolean) value ? 1L : 0L);
+        }
+        return mix64(value.hashCode());
+    }
+
+    /**
+     * finalization step of MurmurHash3, spreads the bits of numeric values over the whole hash
+     */
+    private static long mix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the remaining bits, the trailing marker bit limits the rank to 64 - precision + 1
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        int rank = Long.numberOfLeadingZeros(remaining) + 1;
+        addRegister(index, rank);
+    }
+
+    private void addRegister(int index, int rank) {
+        if (registers == null) {
+            buffer[bufferSize++] = index << RANK_BITS | rank;
+            if (bufferSize == buffer.length) {
+                flushBuffer();
+            }
+        } else if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Merges the buffered entries into the sorted sparse entries, keeping the highest rank per register.
+     * Converts the state to the dense form if there are too many entries.
+     */
+    private void flushBuffer() {
+        if (bufferSize == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, bufferSize);
+        int[] merged = new int[sparseSize + bufferSize];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < sparseSize || j < bufferSize) {
+            int entry;
+            if (j == bufferSize || (i < sparseSize && sparse[i] <= buffer[j])) {
+                entry = sparse[i++];
+            } else {
+                entry = buffer[j++];
+            }
+            // entries are sorted by index and rank, so a later entry of the same register has a higher rank
+            if (size > 0 && (merged[size - 1] >>> RANK_BITS) == (entry >>> RANK_BITS)) {
+                merged[size - 1] = entry;
+            } else {
+                merged[size++] = entry;
+            }
+        }
+        bufferSize = 0;
+        sparse = merged;
+        sparseSize = size;
+        if (sparseSize > maxSparseSize()) {
+            toDense();
+        }
+    }
+
+    private void toDense() {
+        byte[] dense = new byte[numRegisters()];
+        for (int i = 0; i < sparseSize; i++) {
+            dense[sparse[i] >>> RANK_BITS] = (byte) (sparse[i] & RANK_MASK);
+        }
+        for (int i = 0; i < bufferSize; i++) {
+            int index = buffer[i] >>> RANK_BITS;
+            dense[index] = (byte) Math.max(dense[index], buffer[i] & RANK_MASK);
+        }
+        registers = dense;
+        sparse = null;
+        buffer = null;
+        sparseSize = 0;
+        bufferSize = 0;
+    }
+
+    void merge(HyperLogLogState other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                "Cannot merge HyperLogLog states with precision %d and %d", precision, other.precision));
+        }
+        if (other.registers == null) {
+            other.flushBuffer();
+            for (int i = 0; i < other.sparseSize; i++) {
+                addRegister(other.sparse[i] >>> RANK_BITS, other.sparse[i] & RANK_MASK);
+            }
+            return;
+        }
+        if (registers == null) {
+            toDense();
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    long cardinality() {
+        int m = numRegisters();
+        double sum = 0;
+        int zeros = 0;
+        if (registers == null) {
+            flushBuffer();
+        }
+        if (registers == null) {
+            for (int i = 0; i < sparseSize; i++) {
+                sum += Math.scalb(1.0d, -(sparse[i] & RANK_MASK));
+            }
+            zeros = m - sparseSize;
+            sum += zeros;
+        } else {
+            for (byte register : registers) {
+                sum += Math.scalb(1.0d, -register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (zeros > 0 && estimate <= 2.5d * m) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673d;
+            case 32:
+                return 0.697d;
+            case 64:
+                return 0.709d;
+            default:
+                return 0.7213d / (1d + 1.079d / m);
+        }
+    }
+
+    /**
+     * Writes the state. If only few registers are set (few distinct values) only those are written,
+     * as delta encoded index followed by the register value.
+     */
+    public static void write(HyperLogLogState state, StreamOutput out) throws IOException {
+        out.writeVInt(state.precision);
+        if (state.registers == null) {
+            state.flushBuffer();
+        }
+        byte[] registers = state.registers;
+        if (registers == null) {
+            out.writeBoolean(true);
+            out.writeVInt(state.sparseSize);
+            int previous = 0;
+            for (int i = 0; i < state.sparseSize; i++) {
+                int index = state.sparse[i] >>> RANK_BITS;
+                out.writeVInt(index - previous);
+                out.writeByte((byte) (state.sparse[i] & RANK_MASK));
+                previous = index;
+            }
+            return;
+        }
+        int numSet = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                numSet++;
+            }
+        }
+        boolean sparse = numSet * 3 < registers.length;
+        out.writeBoolean(sparse);
+        if (sparse) {
+            out.writeVInt(numSet);
+            int previous = 0;
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    out.writeVInt(i - previous);
+                    out.writeByte(registers[i]);
+                    previous = i;
+                }
+            }
+        } else {
+            out.writeBytes(registers);
+        }
+    }
+
+    public static HyperLogLogState read(StreamInput in) throws IOException {
+        HyperLogLogState state = new HyperLogLogState(in.readVInt());
+        if (in.readBoolean()) {
+            int numSet = in.readVInt();
+            if (numSet > state.maxSparseSize()) {
+                state.toDense();
+            } else {
+                state.sparse = new int[numSet];
+                state.sparseSize = numSet;
+            }
+            int index = 0;
+            for (int i = 0; i < numSet; i++) {
+                index += in.readVInt();
+                byte rank = in.readByte();
+                if (state.registers == null) {
+                    // the registers are written in index order
+                    state.sparse[i] = index << RANK_BITS | rank;
+                } else {
+                    state.registers[index] = rank;
+                }
+            }
+        } else {
+            state.toDense();
+            in.readBytes(state.registers, 0, state.registers.length);
+        }
+        return state;
+    }
+}
@@ -23,6 +23,7 @@ package io.crate.operation.collect;
 
 import io.crate.operation.collect.sources.InformationSchemaIterables;
 import io.crate.operation.collect.sources.SystemCollectSource;
+import io.crate.operation.projectors.SpillDirectory;
 import org.elasticsearch.common.inject.AbstractModule;
 
 public class CollectOperationModule extends AbstractModule {
@@ -32,5 +33,6 @@ public class CollectOperationModule extends AbstractModule {
 
         bind(StatsTables.class).asEagerSingleton();
         bind(SystemCollectSource.class).asEagerSingleton();
+        bind(SpillDirectory.class).asEagerSingleton();
     }
 }
@@ -0,0 +1,236 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import io.crate.Constants;
+import io.crate.analyze.symbol.Symbols;
+import io.crate.core.collections.RowN;
+import io.crate.executor.transport.StreamBucket;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.PartitionName;
+import io.crate.metadata.Reference;
+import io.crate.metadata.doc.DocSysColumns;
+import io.crate.operation.collect.collectors.CollectorFieldsVisitor;
+import io.crate.operation.reference.doc.lucene.CollectorContext;
+import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
+import io.crate.operation.reference.doc.lucene.LuceneReferenceResolver;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.IndicesService;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up documents by their primary key on the shards of the local node.
+ *
+ * Every id is looked up with a realtime get of the engine, so documents which haven't been refreshed yet
+ * are read from the translog. Each get acquires its own searcher and seeks the uid in every segment.
+ * Only the requested columns are returned, they are read from the doc values of the found documents
+ * if possible. Otherwise the source of every document is parsed once.
+ */
+@Singleton
+public class PKLookupOperation {
+
+    private final IndicesService indicesService;
+
+    @Inject
+    public PKLookupOperation(IndicesService indicesService) {
+        this.indicesService = indicesService;
+    }
+
+    /**
+     * Returns a bucket which contains a row with the values of the given columns for every found document.
+     */
+    public StreamBucket lookup(Map<ShardId, List<String>> idsByShard, List<Reference> columns) throws IOException {
+        StreamBucket.Builder builder = new StreamBucket.Builder(Symbols.streamerArray(columns), true);
+        for (Map.Entry<ShardId, List<String>> entry : idsByShard.entrySet()) {
+            ShardId shardId = entry.getKey();
+            IndexService indexService;
+            try {
+                indexService = indicesService.indexServiceSafe(shardId.getIndex());
+            } catch (IndexNotFoundException e) {
+                if (PartitionName.isPartition(shardId.getIndex())) {
+                    // partition has been deleted in the meantime, so there are no matching documents
+                    continue;
+                }
+                throw e;
+            }
+            ShardLookup shardLookup = new ShardLookup(indexService, indexService.shardSafe(shardId.id()), columns);
+            shardLookup.lookup(entry.getValue(), builder);
+        }
+        return builder.build();
+    }
+
+    private static class ShardLookup {
+
+        private final IndexShard indexShard;
+        private final List<Reference> columns;
+        private final Object[] cells;
+        private final FieldsVisitor fieldsVisitor = new FieldsVisitor(true);
+
+        /**
+         * expressions reading the values of the columns from their doc values,
+         * null if one of the columns has no doc values
+         */
+        @Nullable
+        private final LuceneCollectorExpression<?>[] docValueExpressions;
+        private LeafReaderContext currentContext;
+
+        ShardLookup(IndexService indexService, IndexShard indexShard, List<Reference> columns) {
+            this.indexShard = indexShard;
+            this.columns = columns;
+            this.cells = new Object[columns.size()];
+            this.docValueExpressions = docValueExpressions(indexService, columns);
+        }
+
+        @Nullable
+        private static LuceneCollectorExpression<?>[] docValueExpressions(IndexService indexService,
+                                                                          List<Reference> columns) {
+            MapperService mapperService = indexService.mapperService();
+            for (Reference column : columns) {
+                ColumnIdent columnIdent = column.ident().columnIdent();
+                if (columnIdent.isSystemColumn()) {
+                    if (!columnIdent.equals(DocSysColumns.ID) && !columnIdent.equals(DocSysColumns.VERSION)) {
+                        return null;
+                    }
+                } else if (!LuceneReferenceResolver.hasDocValues(columnIdent.fqn(), column.valueType(), mapperService)) {
+                    return null;
+                }
+            }
+            LuceneReferenceResolver resolver = new LuceneReferenceResolver(mapperService);
+            CollectorContext collectorContext = new CollectorContext(
+                mapperService, indexService.fieldData(), new CollectorFieldsVisitor(0));
+            LuceneCollectorExpression<?>[] expressions = new LuceneCollectorExpression[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                Reference column = columns.get(i);
+                if (!column.ident().columnIdent().isSystemColumn()) {
+                    expressions[i] = resolver.getImplementation(column);
+                    expressions[i].startCollect(collectorContext);
+                }
+            }
+            return expressions;
+        }
+
+        void lookup(List<String> ids, StreamBucket.Builder builder) throws IOException {
+            RowN row = new RowN(cells);
+            for (String idString : ids) {
+                BytesRef id = new BytesRef(idString);
+                Term uid = new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(Constants.DEFAULT_MAPPING_TYPE, id));
+                Engine.GetResult result = indexShard.get(new Engine.Get(true, uid));
+                try {
+                    if (!result.exists()) {
+                        continue;
+                    }
+                    setCells(id, result);
+                } finally {
+                    result.release();
+                }
+                builder.add(row);
+            }
+        }
+
+        private void setCells(BytesRef id, Engine.GetResult result) throws IOException {
+            Versions.DocIdAndVersion docIdAndVersion = result.docIdAndVersion();
+            boolean readDocValues = docValueExpressions != null && docIdAndVersion != null;
+            BytesReference source = null;
+            Map<String, Object> sourceMap = null;
+            if (readDocValues) {
+                setNextDoc(docIdAndVersion);
+            } else {
+                source = source(result);
+                sourceMap = XContentHelper.convertToMap(source, false).v2();
+            }
+            for (int i = 0; i < cells.length; i++) {
+                Reference column = columns.get(i);
+                String name = column.ident().columnIdent().fqn();
+                switch (name) {
+                    case "_id":
+                        cells[i] = id;
+                        break;
+                    case "_version":
+                        cells[i] = result.version();
+                        break;
+                    case "_raw":
+                        cells[i] = source.toBytesRef();
+                        break;
+                    case "_doc":
+                        cells[i] = sourceMap;
+                        break;
+                    default:
+                        if (readDocValues) {
+                            cells[i] = docValueExpressions[i].value();
+                        } else {
+                            cells[i] = column.valueType().value(XContentMapValues.extractValue(name, sourceMap));
+                        }
+                }
+            }
+        }
+
+        private void setNextDoc(Versions.DocIdAndVersion docIdAndVersion) throws IOException {
+            assert docValueExpressions != null : "docValueExpressions must not be null";
+            if (docIdAndVersion.context != currentContext) {
+                currentContext = docIdAndVersion.context;
+                for (LuceneCollectorExpression<?> expression : docValueExpressions) {
+                    if (expression != null) {
+                        expression.setNextReader(currentContext);
+                    }
+                }
+            }
+            for (LuceneCollectorExpression<?> expression : docValueExpressions) {
+                if (expression != null) {
+                    expression.setNextDocId(docIdAndVersion.docId);
+                }
+            }
+        }
+
+        private BytesReference source(Engine.GetResult result) throws IOException {
+            Versions.DocIdAndVersion docIdAndVersion = result.docIdAndVersion();
+            if (docIdAndVersion == null) {
+                // document hasn't been refreshed yet and is read from the translog
+                return result.source().source;
+            }
+            fieldsVisitor.reset();
+            docIdAndVersion.context.reader().document(docIdAndVersion.docId, fieldsVisitor);
+            return fieldsVisitor.source();
+        }
+    }
+}
@@ -37,6 +37,7 @@ import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.ProjectorFactory;
 import io.crate.operation.projectors.RowReceiver;
+import io.crate.operation.projectors.SpillDirectory;
 import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.node.dql.RoutedCollectPhase;
 import io.crate.planner.projection.Projection;
@@ -82,7 +83,8 @@ public class RemoteCollectorFactory {
                                   TransportActionProvider transportActionProvider,
                                   BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                                   IndexNameExpressionResolver indexNameExpressionResolver,
-                                  NestedReferenceResolver referenceResolver) {
+                                  NestedReferenceResolver referenceResolver,
+                                  SpillDirectory spillDirectory) {
         this.clusterService = clusterService;
         this.functions = functions;
         this.threadPool = threadPool;
@@ -133,6 +135,7 @@ public class RemoteCollectorFactory {
                 bulkRetryCoordinatorPool,
                 implementationVisitor,
                 normalizer,
+                spillDirectory,
                 new ShardId(index, shardId));
 
             chainBuilder = new FlatProjectorChain.Builder(
@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableMap;
 import io.crate.action.sql.query.CrateSearchContext;
 import io.crate.analyze.WhereClause;
 import io.crate.lucene.LuceneQueryBuilder;
+import io.crate.lucene.SegmentFilterCache;
 import org.apache.lucene.search.Query;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.cluster.ClusterService;
@@ -47,6 +48,7 @@ public class SearchContextFactory {
 
     private LuceneQueryBuilder luceneQueryBuilder;
     private ClusterService clusterService;
+    private final SegmentFilterCache filterCache;
     private final ScriptService scriptService;
     private final PageCacheRecycler pageCacheRecycler;
     private final BigArrays bigArrays;
@@ -56,12 +58,14 @@ public class SearchContextFactory {
     @Inject
     public SearchContextFactory(LuceneQueryBuilder luceneQueryBuilder,
                                 ClusterService clusterService,
+                                SegmentFilterCache filterCache,
                                 ScriptService scriptService,
                                 PageCacheRecycler pageCacheRecycler,
                                 BigArrays bigArrays,
                                 ThreadPool threadPool) {
         this.luceneQueryBuilder = luceneQueryBuilder;
         this.clusterService = clusterService;
+        this.filterCache = filterCache;
         this.scriptService = scriptService;
         this.pageCacheRecycler = pageCacheRecycler;
         this.bigArrays = bigArrays;
@@ -96,7 +100,8 @@ public class SearchContextFactory {
         );
         LuceneQueryBuilder.Context context = luceneQueryBuilder.convert(
             whereClause, indexService.mapperService(), indexService.fieldData(), indexService.cache());
-        searchContext.parsedQuery(new ParsedQuery(context.query(), EMPTY_NAMED_FILTERS));
+        Query query = filterCache.wrap(whereClause, context.query(), searchContext.searcher());
+        searchContext.parsedQuery(new ParsedQuery(query, EMPTY_NAMED_FILTERS));
 
         Float minScore = context.minScore();
         if (minScore != null) {
@@ -27,9 +27,11 @@ import io.crate.action.job.SharedShardContext;
 import io.crate.action.sql.query.CrateSearchContext;
 import io.crate.action.sql.query.LuceneSortGenerator;
 import io.crate.analyze.EvaluatingNormalizer;
+import io.crate.analyze.symbol.Aggregation;
 import io.crate.analyze.symbol.Symbols;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.lucene.CrateDocIndexService;
 import io.crate.metadata.AbstractReferenceResolver;
@@ -46,10 +48,14 @@ import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.Requirement;
 import io.crate.operation.projectors.RowReceiver;
+import io.crate.operation.projectors.SpillDirectory;
 import io.crate.operation.reference.doc.lucene.CollectorContext;
 import io.crate.planner.node.dql.RoutedCollectPhase;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.GroupProjection;
 import io.crate.planner.projection.Projection;
 import io.crate.planner.projection.Projections;
+import org.apache.lucene.index.LeafReaderContext;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
@@ -67,16 +73,28 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Singleton
 public class ShardCollectService {
 
     private static final ESLogger LOGGER = Loggers.getLogger(ShardCollectService.class);
 
+    /**
+     * The maximum number of slices the segments of a shard are split into if there are shard projections.
+     * The slices are collected concurrently.
+     */
+    public static final String MAX_SEGMENT_SLICES_SETTING = "node.sql.collect.max_segment_slices";
+    // this must not be final so tests could adjust it
+    public static int MIN_DOCS_PER_SLICE = 100_000;
+
     private final CollectInputSymbolVisitor<?> docInputSymbolVisitor;
     private final SearchContextFactory searchContextFactory;
     private final ThreadPool threadPool;
@@ -92,6 +110,7 @@ public class ShardCollectService {
     private final IndexFieldDataService indexFieldDataService;
     private final Functions functions;
     private final AbstractReferenceResolver shardResolver;
+    private final int maxSegmentSlices;
 
     @Inject
     public ShardCollectService(SearchContextFactory searchContextFactory,
@@ -109,7 +128,8 @@ public class ShardCollectService {
                                MapperService mapperService,
                                IndexFieldDataService indexFieldDataService,
                                BlobShardReferenceResolver blobShardReferenceResolver,
-                               CrateDocIndexService crateDocIndexService) {
+                               CrateDocIndexService crateDocIndexService,
+                               SpillDirectory spillDirectory) {
         this.searchContextFactory = searchContextFactory;
         this.threadPool = threadPool;
         this.clusterService = clusterService;
@@ -118,6 +138,7 @@ public class ShardCollectService {
         this.blobIndices = blobIndices;
         this.mapperService = mapperService;
         this.indexFieldDataService = indexFieldDataService;
+        this.maxSegmentSlices = settings.getAsInt(MAX_SEGMENT_SLICES_SETTING, 1);
         isBlobShard = BlobIndices.isBlobShard(this.shardId);
 
         shardResolver = isBlobShard ? blobShardReferenceResolver : referenceResolver;
@@ -141,6 +162,7 @@ public class ShardCollectService {
             bulkRetryCoordinatorPool,
             shardImplementationSymbolVisitor,
             shardNormalizer,
+            spillDirectory,
             shardId
         );
     }
@@ -170,51 +192,88 @@ public class ShardCollectService {
     }
 
     /**
-     * Create a CrateCollector.Builder to collect rows from a shard.
+     * Create CrateCollector.Builders to collect rows from a shard.
+     * <p>
+     * Usually there is one builder per shard. If there are shard-level projections the segments of a shard may be
+     * split into slices (see {@link #MAX_SEGMENT_SLICES_SETTING}), with one builder per slice. The collectors can then
+     * run concurrently and each of them gets its own shard-level projectors.
      * <p>
-     * This also creates all shard-level projectors.
      * The RowReceiver that is used for {@link CrateCollector.Builder#build(RowReceiver)}
      * should be the first node-level projector.
      */
-    public CrateCollector.Builder getCollectorBuilder(RoutedCollectPhase collectPhase,
-                                                      Set<Requirement> downstreamRequirements,
-                                                      JobCollectContext jobCollectContext) throws Exception {
+    public List<CrateCollector.Builder> getCollectorBuilders(RoutedCollectPhase collectPhase,
+                                                             Set<Requirement> downstreamRequirements,
+                                                             JobCollectContext jobCollectContext) throws Exception {
         assert collectPhase.orderBy() ==
                null : "getDocCollector shouldn't be called if there is an orderBy on the collectPhase";
         RoutedCollectPhase normalizedCollectNode = collectPhase.normalize(shardNormalizer, null);
+        Collection<? extends Projection> shardProjections = Projections.shardProjections(collectPhase.projections());
 
-
-        final CrateCollector.Builder builder;
+        final List<CrateCollector.Builder> builders;
         if (normalizedCollectNode.whereClause().noMatch()) {
-            builder = RowsCollector.emptyBuilder();
+            builders = Collections.singletonList(RowsCollector.emptyBuilder());
         } else {
             assert normalizedCollectNode.maxRowGranularity() == RowGranularity.DOC : "granularity must be DOC";
-            if (isBlobShard) {
-                builder = RowsCollector.builder(
-                    getBlobRows(collectPhase, downstreamRequirements.contains(Requirement.REPEAT)));
+            Object[] aggregatedRow = aggregateFromMetadata(normalizedCollectNode, shardProjections);
+            if (aggregatedRow != null) {
+                // the row is the output of the first shard projection
+                builders = Collections.singletonList(RowsCollector.builder(ImmutableList.<Row>of(new RowN(aggregatedRow))));
+                shardProjections = ImmutableList.copyOf(shardProjections).subList(1, shardProjections.size());
+            } else if (isBlobShard) {
+                builders = Collections.singletonList(RowsCollector.builder(
+                    getBlobRows(collectPhase, downstreamRequirements.contains(Requirement.REPEAT))));
             } else {
-                builder = getLuceneIndexCollector(threadPool, normalizedCollectNode, jobCollectContext);
+                int maxSlices = canSliceSegments(shardProjections) ? maxSegmentSlices : 1;
+                builders = getLuceneIndexCollectors(threadPool, normalizedCollectNode, jobCollectContext, maxSlices);
             }
         }
 
-        Collection<? extends Projection> shardProjections = Projections.shardProjections(collectPhase.projections());
         if (shardProjections.isEmpty()) {
-            return builder;
-        } else {
-            final FlatProjectorChain.Builder chainBuilder = new FlatProjectorChain.Builder(
-                normalizedCollectNode.jobId(),
-                jobCollectContext.queryPhaseRamAccountingContext(),
-                projectorFactory,
-                shardProjections
-            );
-            return new CrateCollector.Builder() {
+            return builders;
+        }
+        final FlatProjectorChain.Builder chainBuilder = new FlatProjectorChain.Builder(
+            normalizedCollectNode.jobId(),
+            jobCollectContext.queryPhaseRamAccountingContext(),
+            projectorFactory,
+            shardProjections
+        );
+        List<CrateCollector.Builder> projectingBuilders = new ArrayList<>(builders.size());
+        for (final CrateCollector.Builder builder : builders) {
+            projectingBuilders.add(new CrateCollector.Builder() {
                 @Override
                 public CrateCollector build(RowReceiver rowReceiver) {
                     FlatProjectorChain chain = chainBuilder.build(rowReceiver);
                     chain.prepare();
                     return builder.build(chain.firstProjector());
                 }
-            };
+            });
+        }
+        return projectingBuilders;
+    }
+
+    /**
+     * Computes the output of a global aggregation using only the index statistics of the shard if possible.
+     * See {@link MetadataAggregator} for the supported aggregations.
+     *
+     * @return the partial aggregation states or null if the documents have to be collected
+     */
+    @Nullable
+    private Object[] aggregateFromMetadata(RoutedCollectPhase collectPhase,
+                                           Collection<? extends Projection> shardProjections) throws IOException {
+        if (isBlobShard || collectPhase.whereClause().hasQuery() || shardProjections.isEmpty()) {
+            return null;
+        }
+        Projection projection = shardProjections.iterator().next();
+        if (!(projection instanceof AggregationProjection)) {
+            return null;
+        }
+        MetadataAggregator aggregator = MetadataAggregator.forProjection(
+            (AggregationProjection) projection, collectPhase.toCollect(), mapperService);
+        if (aggregator == null) {
+            return null;
+        }
+        try (Engine.Searcher searcher = indexShard.acquireSearcher("metadata-aggregation")) {
+            return aggregator.aggregate(searcher.reader());
         }
     }
 
@@ -228,9 +287,42 @@ public class ShardCollectService {
         return rows;
     }
 
-    private CrateCollector.Builder getLuceneIndexCollector(ThreadPool threadPool,
-                                                           final RoutedCollectPhase collectPhase,
-                                                           final JobCollectContext jobCollectContext) throws Exception {
+    /**
+     * Each slice gets its own shard projectors, so the segments may only be sliced if the next phase merges the
+     * results of these projectors. That's only the case for partial aggregations; final aggregations, filters,
+     * topN or write projections would operate on the rows of a single slice.
+     */
+    @VisibleForTesting
+    static boolean canSliceSegments(Collection<? extends Projection> shardProjections) {
+        if (shardProjections.isEmpty()) {
+            return false;
+        }
+        for (Projection projection : shardProjections) {
+            List<Aggregation> aggregations;
+            if (projection instanceof GroupProjection) {
+                aggregations = ((GroupProjection) projection).values();
+            } else if (projection instanceof AggregationProjection) {
+                aggregations = ((AggregationProjection) projection).aggregations();
+            } else {
+                return false;
+            }
+            // a group projection without aggregations doesn't tell whether the next phase groups again
+            if (aggregations.isEmpty()) {
+                return false;
+            }
+            for (Aggregation aggregation : aggregations) {
+                if (aggregation.toStep() != Aggregation.Step.PARTIAL) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<CrateCollector.Builder> getLuceneIndexCollectors(ThreadPool threadPool,
+                                                                  final RoutedCollectPhase collectPhase,
+                                                                  final JobCollectContext jobCollectContext,
+                                                                  int maxSlices) throws Exception {
         SharedShardContext sharedShardContext = jobCollectContext.sharedShardContexts().getOrCreateContext(shardId);
         Engine.Searcher searcher = sharedShardContext.searcher();
         IndexShard indexShard = sharedShardContext.indexShard();
@@ -243,17 +335,31 @@ public class ShardCollectService {
                 collectPhase.whereClause()
             );
             jobCollectContext.addSearchContext(sharedShardContext.readerId(), searchContext);
-            CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.extractImplementations(collectPhase);
             Executor executor = threadPool.executor(ThreadPool.Names.SEARCH);
+            boolean doScores = Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE);
 
-            return new CrateDocCollector.Builder(
-                searchContext,
-                executor,
-                Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE),
-                jobCollectContext.queryPhaseRamAccountingContext(),
-                docCtx.topLevelInputs(),
-                docCtx.docLevelExpressions()
-            );
+            List<List<LeafReaderContext>> slices = SegmentSlices.slice(
+                searchContext.searcher().getTopReaderContext().leaves(), maxSlices, MIN_DOCS_PER_SLICE);
+            if (slices.size() > 1) {
+                LOGGER.debug("collecting {} in {} slices", shardId, slices.size());
+            }
+            List<CrateCollector.Builder> builders = new ArrayList<>(slices.size());
+            AtomicInteger activeSlices = new AtomicInteger(slices.size());
+            for (List<LeafReaderContext> slice : slices) {
+                // expressions hold the state of the current document, each collector needs its own
+                CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.extractImplementations(collectPhase);
+                builders.add(new CrateDocCollector.Builder(
+                    searchContext,
+                    executor,
+                    doScores,
+                    jobCollectContext.queryPhaseRamAccountingContext(),
+                    docCtx.topLevelInputs(),
+                    docCtx.docLevelExpressions(),
+                    slice,
+                    activeSlices
+                ));
+            }
+            return builders;
         } catch (Throwable t) {
             if (searchContext == null) {
                 searcher.close();
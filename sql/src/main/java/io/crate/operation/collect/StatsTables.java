@@ -173,6 +173,16 @@ public class StatsTables {
         }
     }
 
+    public void operationCompressedPage(int operationId, UUID jobId, long uncompressedBytes, long compressedBytes, long tookNanos) {
+        if (!isEnabled()) {
+            return;
+        }
+        OperationContext operationContext = operationsTable.get(uniqueOperationId(operationId, jobId));
+        if (operationContext != null) {
+            operationContext.addCompression(uncompressedBytes, compressedBytes, tookNanos);
+        }
+    }
+
     public void operationFinished(@Nullable Integer operationId, @Nullable UUID jobId, @Nullable String errorMessage, long usedBytes) {
         if (operationId == null || jobId == null | !isEnabled()) {
             return;
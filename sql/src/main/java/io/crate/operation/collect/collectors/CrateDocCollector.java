@@ -43,7 +43,6 @@ import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.lucene.MinimumScoreCollector;
-import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.SearchContext;
 
 import javax.annotation.Nullable;
@@ -52,6 +51,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CrateDocCollector implements CrateCollector, RepeatHandle {
 
@@ -65,6 +65,8 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
     private final State state = new State();
     private final ExecutorResumeHandle resumeable;
     private final boolean doScores;
+    private final List<LeafReaderContext> leaves;
+    private final AtomicInteger activeSlices;
 
     public static class Builder implements CrateCollector.Builder {
 
@@ -74,6 +76,8 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
         private final RamAccountingContext ramAccountingContext;
         private final List<Input<?>> inputs;
         private final Collection<? extends LuceneCollectorExpression<?>> expressions;
+        private final List<LeafReaderContext> leaves;
+        private final AtomicInteger activeSlices;
 
         public Builder(CrateSearchContext searchContext,
                        Executor executor,
@@ -81,6 +85,25 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
                        RamAccountingContext ramAccountingContext,
                        List<Input<?>> inputs,
                        Collection<? extends LuceneCollectorExpression<?>> expressions) {
+            this(searchContext, executor, doScores, ramAccountingContext, inputs, expressions,
+                searchContext.searcher().getTopReaderContext().leaves(), new AtomicInteger(1));
+        }
+
+        /**
+         * @param leaves       the segments to collect; used to collect a slice of the segments of a shard
+         * @param activeSlices the number of slices which share the searchContext, shared by their collectors.
+         *                     The releasables of the searchContext are cleared once all of them have finished.
+         */
+        public Builder(CrateSearchContext searchContext,
+                       Executor executor,
+                       boolean doScores,
+                       RamAccountingContext ramAccountingContext,
+                       List<Input<?>> inputs,
+                       Collection<? extends LuceneCollectorExpression<?>> expressions,
+                       List<LeafReaderContext> leaves,
+                       AtomicInteger activeSlices) {
+            this.leaves = leaves;
+            this.activeSlices = activeSlices;
             this.searchContext = searchContext;
             this.executor = executor;
             this.doScores = doScores;
@@ -98,7 +121,9 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
                 ramAccountingContext,
                 rowReceiver,
                 inputs,
-                expressions
+                expressions,
+                leaves,
+                activeSlices
             );
         }
     }
@@ -109,8 +134,12 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
                              RamAccountingContext ramAccountingContext,
                              RowReceiver rowReceiver,
                              List<Input<?>> inputs,
-                             Collection<? extends LuceneCollectorExpression<?>> expressions) {
+                             Collection<? extends LuceneCollectorExpression<?>> expressions,
+                             List<LeafReaderContext> leaves,
+                             AtomicInteger activeSlices) {
         this.searchContext = searchContext;
+        this.leaves = leaves;
+        this.activeSlices = activeSlices;
         this.rowReceiver = rowReceiver;
         this.expressions = expressions;
         CollectorFieldsVisitor fieldsVisitor = new CollectorFieldsVisitor(expressions.size());
@@ -162,13 +191,11 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
         if (collectorContext.visitor().required()) {
             collector = new FieldVisitorCollector(collector, collectorContext.visitor());
         }
-        ContextIndexSearcher contextIndexSearcher = searchContext.searcher();
-
         Weight weight;
         Iterator<LeafReaderContext> leavesIt;
         try {
-            weight = searchContext.engineSearcher().searcher().createNormalizedWeight(searchContext.query(), doScores);
-            leavesIt = contextIndexSearcher.getTopReaderContext().leaves().iterator();
+            weight = searchContext.searcher().createNormalizedWeight(searchContext.query(), doScores);
+            leavesIt = leaves.iterator();
         } catch (Throwable e) {
             fail(e);
             return;
@@ -199,7 +226,7 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
     private void fail(Throwable t) {
         debugLog("finished collect with failure");
         try {
-            searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
+            sliceFinished();
         } catch (AssertionError e) {
             // log it, the original failure is more interesting than the stage assertion
             LOGGER.error("Invalid searcher stage: ", e);
@@ -209,10 +236,27 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
 
     private void finishCollect() {
         debugLog("finished collect");
-        searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
+        sliceFinished();
         rowReceiver.finish(this);
     }
 
+    /**
+     * The searchContext is shared if the segments of a shard are collected concurrently in slices,
+     * so its releasables are only cleared by the last slice that finishes.
+     */
+    private void sliceFinished() {
+        if (activeSlices.decrementAndGet() == 0) {
+            clearReleasables(SearchContext.Lifetime.PHASE);
+        }
+    }
+
+    private void clearReleasables(SearchContext.Lifetime lifetime) {
+        // the searchContext is shared if the segments of a shard are collected concurrently in slices
+        synchronized (searchContext) {
+            searchContext.clearReleasables(lifetime);
+        }
+    }
+
     private RowReceiver.Result collectLeaves(SimpleCollector collector,
                                              Weight weight,
                                              Iterator<LeafReaderContext> leaves,
@@ -234,7 +278,10 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
                 if (processScorer(leafCollector, leaf, bulkScorer)) return RowReceiver.Result.PAUSE;
             }
         } finally {
-            searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
+            // other slices may still be collecting, the last one clears the releasables once it has finished
+            if (activeSlices.get() == 1) {
+                clearReleasables(SearchContext.Lifetime.COLLECTION);
+            }
         }
         return RowReceiver.Result.CONTINUE;
     }
@@ -259,9 +306,8 @@ public class CrateDocCollector implements CrateCollector, RepeatHandle {
     @Override
     public void repeat() {
         debugLog("repeat collect");
-        ContextIndexSearcher indexSearcher = searchContext.searcher();
-        Iterator<LeafReaderContext> iterator = indexSearcher.getTopReaderContext().leaves().iterator();
-        innerCollect(state.collector, state.weight, iterator, null, null);
+        activeSlices.incrementAndGet();
+        innerCollect(state.collector, state.weight, leaves.iterator(), null, null);
     }
 
     static class State {
@@ -0,0 +1,212 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.collect.collectors;
+
+import com.google.common.collect.ImmutableSet;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RowGranularity;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.aggregation.impl.MaximumAggregation;
+import io.crate.operation.aggregation.impl.MinimumAggregation;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperService;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes the partial states of a global aggregation from the index statistics of a shard,
+ * without visiting a single document.
+ * <p>
+ * Supported are <code>count(*)</code>, which is the number of live documents, and <code>min</code>/<code>max</code>
+ * of numeric columns, which are the smallest and largest full precision terms of their trie encoded fields.
+ * The terms of deleted documents are only purged on merges, so <code>min</code>/<code>max</code> can only be
+ * answered if the shard doesn't contain deleted documents.
+ */
+public class MetadataAggregator {
+
+    private static final Set<DataType> NUMERIC_TYPES = ImmutableSet.<DataType>of(
+        DataTypes.BYTE,
+        DataTypes.SHORT,
+        DataTypes.INTEGER,
+        DataTypes.LONG,
+        DataTypes.TIMESTAMP,
+        DataTypes.FLOAT,
+        DataTypes.DOUBLE
+    );
+
+    /**
+     * one entry per aggregation, null for count(*)
+     */
+    private final Bound[] bounds;
+
+    private MetadataAggregator(Bound[] bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * @return an aggregator which creates the output of the given ITER -> PARTIAL projection
+     * or null if the projection contains aggregations which can't be answered from the index statistics.
+     */
+    @Nullable
+    public static MetadataAggregator forProjection(AggregationProjection projection,
+                                                   List<? extends Symbol> toCollect,
+                                                   MapperService mapperService) {
+        List<Aggregation> aggregations = projection.aggregations();
+        Bound[] bounds = new Bound[aggregations.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            Aggregation aggregation = aggregations.get(i);
+            if (aggregation.fromStep() != Aggregation.Step.ITER || aggregation.toStep() != Aggregation.Step.PARTIAL) {
+                return null;
+            }
+            if (aggregation.functionIdent().equals(CountAggregation.COUNT_STAR_FUNCTION.ident())) {
+                continue;
+            }
+            String name = aggregation.functionIdent().name();
+            boolean max = name.equals(MaximumAggregation.NAME);
+            if (!max && !name.equals(MinimumAggregation.NAME)) {
+                return null;
+            }
+            Bound bound = Bound.of(aggregation.inputs(), toCollect, mapperService, max);
+            if (bound == null) {
+                return null;
+            }
+            bounds[i] = bound;
+        }
+        return new MetadataAggregator(bounds);
+    }
+
+    /**
+     * @return the partial aggregation states or null if the reader contains deleted documents and
+     * some of the states can't be computed because of that.
+     */
+    @Nullable
+    public Object[] aggregate(IndexReader reader) throws IOException {
+        Object[] states = new Object[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            Bound bound = bounds[i];
+            if (bound == null) {
+                states[i] = new CountAggregation.LongState(reader.numDocs());
+            } else if (reader.hasDeletions()) {
+                return null;
+            } else {
+                states[i] = bound.value(reader);
+            }
+        }
+        return states;
+    }
+
+    private static class Bound {
+
+        private final String field;
+        private final FieldType.NumericType numericType;
+        private final DataType valueType;
+        private final boolean max;
+
+        private Bound(String field, FieldType.NumericType numericType, DataType valueType, boolean max) {
+            this.field = field;
+            this.numericType = numericType;
+            this.valueType = valueType;
+            this.max = max;
+        }
+
+        @Nullable
+        static Bound of(List<Symbol> inputs,
+                        List<? extends Symbol> toCollect,
+                        MapperService mapperService,
+                        boolean max) {
+            if (inputs.size() != 1 || !(inputs.get(0) instanceof InputColumn)) {
+                return null;
+            }
+            Symbol symbol = toCollect.get(((InputColumn) inputs.get(0)).index());
+            if (!(symbol instanceof Reference)) {
+                return null;
+            }
+            Reference reference = (Reference) symbol;
+            if (reference.granularity() != RowGranularity.DOC || !NUMERIC_TYPES.contains(reference.valueType())) {
+                return null;
+            }
+            String field = reference.ident().columnIdent().fqn();
+            MappedFieldType fieldType = mapperService.smartNameFieldType(field);
+            if (fieldType == null || fieldType.indexOptions() == IndexOptions.NONE || fieldType.numericType() == null) {
+                return null;
+            }
+            return new Bound(field, fieldType.numericType(), reference.valueType(), max);
+        }
+
+        @Nullable
+        Object value(IndexReader reader) throws IOException {
+            Long result = null;
+            for (LeafReaderContext leaf : reader.leaves()) {
+                Terms terms = leaf.reader().terms(field);
+                if (terms == null) {
+                    continue;
+                }
+                Long value = sortableBound(terms);
+                if (value != null && (result == null || (max ? value > result : value < result))) {
+                    result = value;
+                }
+            }
+            if (result == null) {
+                return null;
+            }
+            switch (numericType) {
+                case DOUBLE:
+                    return valueType.value(NumericUtils.sortableLongToDouble(result));
+                case FLOAT:
+                    return valueType.value(NumericUtils.sortableIntToFloat(result.intValue()));
+                default:
+                    return valueType.value(result);
+            }
+        }
+
+        /**
+         * the bound as sortable long, int based fields are widened which keeps their order
+         */
+        @Nullable
+        private Long sortableBound(Terms terms) throws IOException {
+            switch (numericType) {
+                case LONG:
+                case DOUBLE:
+                    return max ? NumericUtils.getMaxLong(terms) : NumericUtils.getMinLong(terms);
+                default:
+                    Integer value = max ? NumericUtils.getMaxInt(terms) : NumericUtils.getMinInt(terms);
+                    return value == null ? null : value.longValue();
+            }
+        }
+    }
+}
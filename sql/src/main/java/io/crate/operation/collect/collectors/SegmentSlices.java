@@ -0,0 +1,85 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.collect.collectors;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import java.util.*;
+
+/**
+ * Splits the segments of a shard into slices which can be collected concurrently.
+ */
+public class SegmentSlices {
+
+    private static final Comparator<LeafReaderContext> BY_MAX_DOC_DESC = new Comparator<LeafReaderContext>() {
+        @Override
+        public int compare(LeafReaderContext o1, LeafReaderContext o2) {
+            return Integer.compare(o2.reader().maxDoc(), o1.reader().maxDoc());
+        }
+    };
+
+    private static final Comparator<LeafReaderContext> BY_DOC_BASE = new Comparator<LeafReaderContext>() {
+        @Override
+        public int compare(LeafReaderContext o1, LeafReaderContext o2) {
+            return Integer.compare(o1.docBase, o2.docBase);
+        }
+    };
+
+    /**
+     * Distributes the leaves over at most maxSlices slices so that each slice contains roughly the same number
+     * of documents. Slices with less than minDocsPerSlice documents are avoided.
+     * The leaves of each slice are in docBase order.
+     */
+    public static List<List<LeafReaderContext>> slice(List<LeafReaderContext> leaves, int maxSlices, int minDocsPerSlice) {
+        long maxDoc = 0;
+        for (LeafReaderContext leaf : leaves) {
+            maxDoc += leaf.reader().maxDoc();
+        }
+        int numSlices = (int) Math.min(Math.min(maxSlices, leaves.size()), maxDoc / Math.max(minDocsPerSlice, 1));
+        if (numSlices <= 1) {
+            return Collections.singletonList(leaves);
+        }
+
+        List<LeafReaderContext> sortedLeaves = new ArrayList<>(leaves);
+        Collections.sort(sortedLeaves, BY_MAX_DOC_DESC);
+        List<List<LeafReaderContext>> slices = new ArrayList<>(numSlices);
+        long[] docsPerSlice = new long[numSlices];
+        for (int i = 0; i < numSlices; i++) {
+            slices.add(new ArrayList<LeafReaderContext>());
+        }
+        for (LeafReaderContext leaf : sortedLeaves) {
+            int smallest = 0;
+            for (int i = 1; i < numSlices; i++) {
+                if (docsPerSlice[i] < docsPerSlice[smallest]) {
+                    smallest = i;
+                }
+            }
+            slices.get(smallest).add(leaf);
+            docsPerSlice[smallest] += leaf.reader().maxDoc();
+        }
+        for (List<LeafReaderContext> slice : slices) {
+            Collections.sort(slice, BY_DOC_BASE);
+        }
+        return slices;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+package io.crate.operation.collect.files;
+
+import io.crate.types.DataType;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the CSV format of PostgreSQL.
+ * <p>
+ * Values are separated by commas and may be quoted with double quotes. A double quote within a quoted value
+ * is escaped by another double quote. Quoted values may contain line breaks. An unquoted empty value is NULL,
+ * a quoted empty value is an empty string.
+ */
+class CsvLineParser extends DelimitedLineParser {
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+
+    private final boolean header;
+    private final List<String> values = new ArrayList<>();
+    private final StringBuilder value = new StringBuilder();
+    private boolean quoted = false;
+    private boolean inQuotes = false;
+    private boolean skipHeader = false;
+
+    CsvLineParser(List<String> columnNames, List<DataType> columnTypes, boolean header) {
+        super(columnNames, columnTypes);
+        this.header = header;
+    }
+
+    @Override
+    public String formatName() {
+        return "CSV";
+    }
+
+    @Override
+    public void startFile(boolean firstLine) {
+        values.clear();
+        value.setLength(0);
+        quoted = false;
+        inQuotes = false;
+        skipHeader = header && firstLine;
+    }
+
+    @Override
+    public boolean isSplittable() {
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public byte[] parse(byte[] line) throws IOException {
+        if (line.length == 0 && !inQuotes) {
+            return null;
+        }
+        String chars = new String(line, StandardCharsets.UTF_8);
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (inQuotes) {
+                if (c != QUOTE) {
+                    value.append(c);
+                } else if (i + 1 < chars.length() && chars.charAt(i + 1) == QUOTE) {
+                    value.append(QUOTE);
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == DELIMITER) {
+                endValue();
+            } else if (c == QUOTE) {
+                inQuotes = true;
+                quoted = true;
+            } else {
+                value.append(c);
+            }
+        }
+        if (inQuotes) {
+            // the quoted value continues on the next line
+            value.append('\n');
+            return null;
+        }
+        endValue();
+        try {
+            if (skipHeader) {
+                skipHeader = false;
+                return null;
+            }
+            return toSource(values);
+        } finally {
+            values.clear();
+        }
+    }
+
+    private void endValue() {
+        values.add(value.length() == 0 && !quoted ? null : value.toString());
+        value.setLength(0);
+        quoted = false;
+    }
+}
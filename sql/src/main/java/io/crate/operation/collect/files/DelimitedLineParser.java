@@ -0,0 +1,95 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+package io.crate.operation.collect.files;
+
+import io.crate.protocols.postgres.types.PGType;
+import io.crate.protocols.postgres.types.PGTypes;
+import io.crate.types.DataType;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Base class for formats which contain the values of a row in the order of the table columns.
+ * The values use the text representation of PostgreSQL and are converted using the types of the columns.
+ */
+abstract class DelimitedLineParser extends LineParser {
+
+    private final String[] columnNames;
+    private final PGType[] pgTypes;
+
+    DelimitedLineParser(List<String> columnNames, List<DataType> columnTypes) {
+        assert columnNames.size() == columnTypes.size() : "number of column names must match the number of types";
+        this.columnNames = columnNames.toArray(new String[columnNames.size()]);
+        this.pgTypes = new PGType[columnTypes.size()];
+        for (int i = 0; i < pgTypes.length; i++) {
+            pgTypes[i] = PGTypes.get(columnTypes.get(i));
+        }
+    }
+
+    /**
+     * @param values the text values of a row, null values are SQL NULL
+     * @return the JSON object which contains the values of the row
+     */
+    byte[] toSource(List<String> values) throws IOException {
+        if (values.size() != columnNames.length) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                "Expected %d values but the row contains %d values", columnNames.length, values.size()));
+        }
+        XContentBuilder builder = JsonXContent.contentBuilder().startObject();
+        for (int i = 0; i < columnNames.length; i++) {
+            String value = values.get(i);
+            builder.field(columnNames[i]);
+            if (value == null) {
+                builder.nullValue();
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeValue(builder, pgTypes[i].readTextValue(ChannelBuffers.wrappedBuffer(bytes), bytes.length));
+            }
+        }
+        return builder.endObject().bytes().toBytes();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(XContentBuilder builder, @Nullable Object value) throws IOException {
+        if (value instanceof BytesRef) {
+            builder.value(((BytesRef) value).utf8ToString());
+        } else if (value instanceof Object[]) {
+            builder.startArray();
+            for (Object element : (Object[]) value) {
+                writeValue(builder, element);
+            }
+            builder.endArray();
+        } else if (value instanceof Map) {
+            builder.map((Map<String, ?>) value);
+        } else {
+            builder.value(value);
+        }
+    }
+}
@@ -44,5 +44,15 @@ public interface FileInput {
 
     InputStream getStream(URI uri) throws IOException;
 
+    /**
+     * returns a stream of the file which starts at the given byte offset
+     */
+    InputStream getStream(URI uri, long offset) throws IOException;
+
+    /**
+     * @return the size of the file in bytes or -1 if it is unknown
+     */
+    long size(URI uri) throws IOException;
+
     boolean sharedStorageDefault();
 }
@@ -21,11 +21,12 @@
 
 package io.crate.operation.collect.files;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import io.crate.core.collections.RowN;
 import io.crate.operation.Input;
 import io.crate.operation.InputRow;
 import io.crate.operation.collect.CrateCollector;
@@ -36,13 +37,11 @@ import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -53,12 +52,22 @@ public class FileReadingCollector implements CrateCollector {
 
     private static final ESLogger LOGGER = Loggers.getLogger(FileReadingCollector.class);
     public static final int MAX_SOCKET_TIMEOUT_RETRIES = 5;
+
+    /**
+     * uncompressed files which are larger than this are split into ranges of this size if there are multiple readers
+     */
+    static final long SPLIT_SIZE = 64 * 1024 * 1024;
+
     private final Map<String, FileInputFactory> fileInputFactories;
     private final Boolean shared;
     private final int numReaders;
     private final int readerNumber;
+    private final int numSlices;
+    private final int sliceNumber;
+    private long splitSize = SPLIT_SIZE;
     private final InputRow row;
     private final RowReceiver downstream;
+    private final LineParser lineParser;
     private final boolean compressed;
     private final List<LineCollectorExpression<?>> collectorExpressions;
 
@@ -72,21 +81,45 @@ public class FileReadingCollector implements CrateCollector {
     private final List<UriWithGlob> fileUris;
 
     public enum FileFormat {
-        JSON
+        JSON,
+        CSV,
+        TEXT
     }
 
     public FileReadingCollector(Collection<String> fileUris,
                                 List<Input<?>> inputs,
                                 List<LineCollectorExpression<?>> collectorExpressions,
                                 RowReceiver downstream,
-                                FileFormat format,
+                                LineParser lineParser,
                                 String compression,
                                 Map<String, FileInputFactory> fileInputFactories,
                                 Boolean shared,
                                 int numReaders,
                                 int readerNumber) {
+        this(fileUris, inputs, collectorExpressions, downstream, lineParser, compression, fileInputFactories,
+            shared, numReaders, readerNumber, 1, 0);
+    }
+
+    /**
+     * @param numReaders  number of nodes which read the files
+     * @param numSlices   number of collectors which read the files concurrently on this node
+     * @param sliceNumber number of this collector within the collectors of this node
+     */
+    public FileReadingCollector(Collection<String> fileUris,
+                                List<Input<?>> inputs,
+                                List<LineCollectorExpression<?>> collectorExpressions,
+                                RowReceiver downstream,
+                                LineParser lineParser,
+                                String compression,
+                                Map<String, FileInputFactory> fileInputFactories,
+                                Boolean shared,
+                                int numReaders,
+                                int readerNumber,
+                                int numSlices,
+                                int sliceNumber) {
         this.fileUris = getUrisWithGlob(fileUris);
         this.downstream = downstream;
+        this.lineParser = lineParser;
         this.compressed = compression != null && compression.equalsIgnoreCase("gzip");
         this.row = new InputRow(inputs);
         this.collectorExpressions = collectorExpressions;
@@ -94,6 +127,8 @@ public class FileReadingCollector implements CrateCollector {
         this.shared = shared;
         this.numReaders = numReaders;
         this.readerNumber = readerNumber;
+        this.numSlices = numSlices;
+        this.sliceNumber = sliceNumber;
     }
 
     private static class UriWithGlob {
@@ -169,14 +204,28 @@ public class FileReadingCollector implements CrateCollector {
                 return;
             }
 
-            Predicate<URI> uriPredicate = generateUriPredicate(fileInput, fileUri.globPredicate);
+            boolean sharedStorage = MoreObjects.firstNonNull(shared, fileInput.sharedStorageDefault());
+            // with shared storage the files are shared by all nodes, otherwise only by the slices of this node.
+            // numSlices is a node setting, so the ranges are first assigned to a node and then to one of its slices
+            int nodes = sharedStorage ? numReaders : 1;
+            int node = sharedStorage ? readerNumber : 0;
+            Predicate<URI> uriPredicate = MoreObjects.firstNonNull(fileUri.globPredicate, MATCH_ALL_PREDICATE);
             List<URI> uris;
             try {
                 uris = getUris(fileInput, fileUri.uri, fileUri.preGlobUri, uriPredicate);
                 for (URI uri : uris) {
-                    if (!readLines(fileInput, collectorContext, uri, 0, 0)) {
-                        // break out nested loop and finish normally
-                        break fileUriLoop;
+                    long numRanges = numRanges(fileInput, uri, nodes * numSlices);
+                    for (long range = 0; range < numRanges; range++) {
+                        long position = positionOfRange(uri, range);
+                        if (position % nodes != node || (position / nodes) % numSlices != sliceNumber) {
+                            continue;
+                        }
+                        long start = range * splitSize;
+                        long end = range == numRanges - 1 ? Long.MAX_VALUE : start + splitSize;
+                        if (!readLines(fileInput, collectorContext, uri, start, end, 0, 0)) {
+                            // break out nested loop and finish normally
+                            break fileUriLoop;
+                        }
                     }
                 }
             } catch (Throwable e) {
@@ -187,34 +236,86 @@ public class FileReadingCollector implements CrateCollector {
         downstream.finish(RepeatHandle.UNSUPPORTED);
     }
 
+    @VisibleForTesting
+    void splitSize(long splitSize) {
+        this.splitSize = splitSize;
+    }
+
     @Override
     public void kill(@Nullable Throwable throwable) {
         downstream.kill(throwable);
     }
 
+    /**
+     * Large uncompressed files are split into ranges of {@link #SPLIT_SIZE} bytes if there is more than one reader.
+     * Inputs of unknown size, like streams sent by a client, are never split as they can only be read from the start.
+     */
+    private long numRanges(FileInput fileInput, URI uri, int readers) throws IOException {
+        if (readers == 1 || compressed || !lineParser.isSplittable()) {
+            return 1L;
+        }
+        long size = fileInput.size(uri);
+        if (size < 0 || size <= splitSize) {
+            return 1L;
+        }
+        return (size + splitSize - 1) / splitSize;
+    }
+
+    /**
+     * Ranges are assigned round robin, starting at the node (and slice) the whole file would be assigned to.
+     * The node of a range is position % nodes, the ranges of a node are assigned round robin to its slices.
+     */
+    private static long positionOfRange(URI uri, long range) {
+        int hash = uri.hashCode();
+        if (hash == Integer.MIN_VALUE) {
+            hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
+        }
+        return Math.abs(hash) + range;
+    }
+
+    /**
+     * Reads the lines which start within the byte range [start, end) of the file.
+     * A line that begins before start and ends within the range is read by the reader of the previous range.
+     */
     private boolean readLines(FileInput fileInput,
                               CollectorContext collectorContext,
                               URI uri,
+                              long start,
+                              long end,
                               long startLine,
                               int retry) throws IOException {
-        InputStream inputStream = fileInput.getStream(uri);
+        InputStream inputStream = start == 0 ? fileInput.getStream(uri) : fileInput.getStream(uri, start - 1);
         if (inputStream == null) {
             return true;
         }
 
-        String line;
+        byte[] line;
         long linesRead = 0L;
-        try (BufferedReader reader = createReader(inputStream)) {
-            while ((line = reader.readLine()) != null) {
+        lineParser.startFile(start == 0 && startLine == 0);
+        try (LineReader reader = new LineReader(createStream(inputStream), start == 0 ? 0 : start - 1)) {
+            if (start > 0) {
+                // skip the end of the line that belongs to the previous range
+                reader.readLine();
+            }
+            while (reader.position() < end && (line = reader.readLine()) != null) {
                 linesRead++;
                 if (linesRead < startLine) {
                     continue;
                 }
-                if (line.length() == 0) { // skip empty lines
+                byte[] source;
+                try {
+                    source = lineParser.parse(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "Failed to parse %s in line: %d in file: \"%s\"%n" +
+                        "Original error message: %s", lineParser.formatName(), linesRead, uri, e.getMessage()), e);
+                }
+                if (source == null) { // empty line or a row which continues on the next line
                     continue;
                 }
-                collectorContext.lineContext().rawSource(line.getBytes(StandardCharsets.UTF_8));
-                RowReceiver.Result result = downstream.setNextRow(row);
+                collectorContext.lineContext().rawSource(source);
+                // with concurrent readers the row is materialized so that the JSON is parsed by this thread
+                RowReceiver.Result result = downstream.setNextRow(numSlices > 1 ? new RowN(row.materialize()) : row);
                 switch (result) {
                     case CONTINUE:
                         continue;
@@ -230,7 +331,7 @@ public class FileReadingCollector implements CrateCollector {
                 LOGGER.info("Timeout during COPY FROM '{}' after {} retries", e, uri.toString(), retry);
                 throw e;
             } else {
-                return readLines(fileInput, collectorContext, uri, linesRead + 1, retry + 1);
+                return readLines(fileInput, collectorContext, uri, start, end, linesRead + 1, retry + 1);
             }
         } catch (ElasticsearchParseException e) {
             throw new ElasticsearchParseException(String.format(Locale.ENGLISH,
@@ -245,15 +346,11 @@ public class FileReadingCollector implements CrateCollector {
         return true;
     }
 
-    private BufferedReader createReader(InputStream inputStream) throws IOException {
-        BufferedReader reader;
+    private InputStream createStream(InputStream inputStream) throws IOException {
         if (compressed) {
-            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(inputStream),
-                StandardCharsets.UTF_8));
-        } else {
-            reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            return new GZIPInputStream(inputStream);
         }
-        return reader;
+        return inputStream;
     }
 
     private static List<URI> getUris(FileInput fileInput, URI fileUri, URI preGlobUri, Predicate<URI> uriPredicate) throws IOException {
@@ -268,30 +365,6 @@ public class FileReadingCollector implements CrateCollector {
         return uris;
     }
 
-    private Predicate<URI> generateUriPredicate(FileInput fileInput, @Nullable Predicate<URI> globPredicate) {
-        Predicate<URI> moduloPredicate;
-        boolean sharedStorage = MoreObjects.firstNonNull(shared, fileInput.sharedStorageDefault());
-        if (sharedStorage) {
-            moduloPredicate = new Predicate<URI>() {
-                @Override
-                public boolean apply(URI input) {
-                    int hash = input.hashCode();
-                    if (hash == Integer.MIN_VALUE) {
-                        hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
-                    }
-                    return Math.abs(hash) % numReaders == readerNumber;
-                }
-            };
-        } else {
-            moduloPredicate = MATCH_ALL_PREDICATE;
-        }
-
-        if (globPredicate != null) {
-            return Predicates.and(moduloPredicate, globPredicate);
-        }
-        return moduloPredicate;
-    }
-
     private static class GlobPredicate implements Predicate<URI> {
         private final Pattern globPattern;
 
@@ -304,4 +377,77 @@ public class FileReadingCollector implements CrateCollector {
             return input != null && globPattern.matcher(input.toString()).matches();
         }
     }
+
+    /**
+     * Reads lines as UTF-8 encoded bytes and keeps track of the position within the file.
+     * Lines are terminated by '\n' or "\r\n".
+     */
+    static class LineReader implements Closeable {
+
+        private final InputStream inputStream;
+        private final byte[] buffer = new byte[64 * 1024];
+        private byte[] line = new byte[1024];
+        private int bufferPos = 0;
+        private int bufferLimit = 0;
+        private long position;
+
+        LineReader(InputStream inputStream, long position) {
+            this.inputStream = inputStream;
+            this.position = position;
+        }
+
+        /**
+         * @return the position of the next line within the file
+         */
+        long position() {
+            return position;
+        }
+
+        /**
+         * @return the next line without the line terminator or null if the end of the stream is reached
+         */
+        @Nullable
+        byte[] readLine() throws IOException {
+            int lineLength = 0;
+            while (true) {
+                if (bufferPos == bufferLimit) {
+                    bufferLimit = inputStream.read(buffer, 0, buffer.length);
+                    bufferPos = 0;
+                    if (bufferLimit <= 0) {
+                        bufferLimit = 0;
+                        return lineLength == 0 ? null : toLine(lineLength);
+                    }
+                }
+                int lineStart = bufferPos;
+                while (bufferPos < bufferLimit && buffer[bufferPos] != '\n') {
+                    bufferPos++;
+                }
+                int numBytes = bufferPos - lineStart;
+                if (lineLength + numBytes > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + numBytes));
+                }
+                System.arraycopy(buffer, lineStart, line, lineLength, numBytes);
+                lineLength += numBytes;
+                position += numBytes;
+                if (bufferPos < bufferLimit) {
+                    // skip '\n'
+                    bufferPos++;
+                    position++;
+                    return toLine(lineLength);
+                }
+            }
+        }
+
+        private byte[] toLine(int lineLength) {
+            if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                lineLength--;
+            }
+            return Arrays.copyOf(line, lineLength);
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+package io.crate.operation.collect.files;
+
+import io.crate.types.DataType;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Converts the lines of a file into the JSON source of the documents to import.
+ * <p>
+ * A parser keeps the state of the file it is reading, e.g. a value which continues on the next line,
+ * so every collector needs its own parser.
+ */
+public abstract class LineParser {
+
+    /**
+     * Lines of the JSON format already are the source of a document.
+     */
+    public static final LineParser JSON = new LineParser() {
+
+        @Override
+        public String formatName() {
+            return "JSON";
+        }
+
+        @Nullable
+        @Override
+        public byte[] parse(byte[] line) {
+            return line.length == 0 ? null : line;
+        }
+    };
+
+    /**
+     * @param columnNames names of the columns the values of a CSV or text row belong to
+     * @param columnTypes types of the columns the values of a CSV or text row belong to
+     * @param header      if the first line of a CSV file is a header which is skipped
+     */
+    public static LineParser create(FileReadingCollector.FileFormat format,
+                                    List<String> columnNames,
+                                    List<DataType> columnTypes,
+                                    boolean header) {
+        switch (format) {
+            case JSON:
+                return JSON;
+            case CSV:
+                return new CsvLineParser(columnNames, columnTypes, header);
+            case TEXT:
+                return new TextLineParser(columnNames, columnTypes);
+            default:
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH, "Unsupported file format: %s", format));
+        }
+    }
+
+    /**
+     * @return the name of the format used in error messages
+     */
+    public abstract String formatName();
+
+    /**
+     * Called before the lines of a file, or of a range of a file, are parsed.
+     *
+     * @param firstLine true if the next line is the first line of the file
+     */
+    public void startFile(boolean firstLine) {
+    }
+
+    /**
+     * @return false if a row may span multiple lines, so a file can't be split into ranges which are read separately
+     */
+    public boolean isSplittable() {
+        return true;
+    }
+
+    /**
+     * @return the JSON source of the row or null if the line doesn't complete a row that should be imported
+     * @throws IllegalArgumentException if the line can't be parsed
+     */
+    @Nullable
+    public abstract byte[] parse(byte[] line) throws IOException;
+}
@@ -81,6 +81,21 @@ public class LocalFsFileInput implements FileInput {
         }
     }
 
+    @Override
+    public InputStream getStream(URI uri, long offset) throws IOException {
+        FileInputStream inputStream = (FileInputStream) getStream(uri);
+        if (inputStream != null) {
+            inputStream.getChannel().position(offset);
+        }
+        return inputStream;
+    }
+
+    @Override
+    public long size(URI uri) {
+        File file = new File(uri);
+        return file.isFile() ? file.length() : -1L;
+    }
+
     @Override
     public boolean sharedStorageDefault() {
         return false;
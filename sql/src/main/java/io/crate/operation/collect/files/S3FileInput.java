@@ -22,7 +22,9 @@
 package io.crate.operation.collect.files;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.base.Predicate;
@@ -98,6 +100,33 @@ public class S3FileInput implements FileInput {
         return null;
     }
 
+    @Override
+    public InputStream getStream(URI uri, long offset) throws IOException {
+        if (client == null) {
+            client = clientBuilder.client(uri);
+        }
+        GetObjectRequest request = new GetObjectRequest(uri.getHost(), uri.getPath().substring(1));
+        request.setRange(offset, Long.MAX_VALUE);
+        S3Object object = client.getObject(request);
+
+        if (object != null) {
+            return object.getObjectContent();
+        }
+        return null;
+    }
+
+    @Override
+    public long size(URI uri) throws IOException {
+        if (client == null) {
+            client = clientBuilder.client(uri);
+        }
+        ObjectMetadata metadata = client.getObjectMetadata(uri.getHost(), uri.getPath().substring(1));
+        if (metadata == null) {
+            return -1L;
+        }
+        return metadata.getContentLength();
+    }
+
     @Override
     public boolean sharedStorageDefault() {
         return true;
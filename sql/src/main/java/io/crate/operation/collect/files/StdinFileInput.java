@@ -0,0 +1,98 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.collect.files;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import org.elasticsearch.common.inject.Singleton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * FileInput for streams which are sent by a client, like the data of a {@code COPY ... FROM STDIN}
+ * statement received over the postgres wire protocol.
+ *
+ * A stream is registered under a unique {@code stdin:///<id>} uri which can be used as source of
+ * {@code COPY FROM}. Each stream can only be read once.
+ */
+@Singleton
+public class StdinFileInput implements FileInput {
+
+    public static final String SCHEME = "stdin";
+
+    private final ConcurrentMap<URI, InputStream> streams = new ConcurrentHashMap<>();
+
+    public URI register(InputStream inputStream) {
+        URI uri = URI.create(SCHEME + ":///" + UUID.randomUUID().toString());
+        streams.put(uri, inputStream);
+        return uri;
+    }
+
+    public void unregister(URI uri) {
+        streams.remove(uri);
+    }
+
+    @Override
+    public List<URI> listUris(URI fileUri, Predicate<URI> uriPredicate) throws IOException {
+        if (uriPredicate.apply(fileUri)) {
+            return ImmutableList.of(fileUri);
+        }
+        return ImmutableList.of();
+    }
+
+    @Override
+    public InputStream getStream(URI uri) throws IOException {
+        InputStream inputStream = streams.remove(uri);
+        if (inputStream == null) {
+            throw new IOException(String.format(Locale.ENGLISH, "No input stream registered for '%s'", uri));
+        }
+        return inputStream;
+    }
+
+    @Override
+    public InputStream getStream(URI uri, long offset) throws IOException {
+        // the size of a stream is unknown, so it is never split into ranges which would be read from an offset
+        if (offset != 0) {
+            throw new UnsupportedOperationException(String.format(Locale.ENGLISH,
+                "Stream '%s' sent by a client can only be read from the start, not from offset %d", uri, offset));
+        }
+        return getStream(uri);
+    }
+
+    @Override
+    public long size(URI uri) throws IOException {
+        return -1L;
+    }
+
+    @Override
+    public boolean sharedStorageDefault() {
+        return false;
+    }
+}
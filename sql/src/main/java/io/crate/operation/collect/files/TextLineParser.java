@@ -0,0 +1,147 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+package io.crate.operation.collect.files;
+
+import io.crate.types.DataType;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the text format of PostgreSQL, which is the default format of {@code COPY ... FROM STDIN}.
+ * <p>
+ * Each line is a row with values separated by tabs. {@code \N} is NULL and special characters are
+ * escaped with a backslash. A line consisting of {@code \.} marks the end of the data.
+ */
+class TextLineParser extends DelimitedLineParser {
+
+    private static final char DELIMITER = '\t';
+    private static final String NULL = "\\N";
+    private static final String END_OF_DATA = "\\.";
+
+    private final List<String> values = new ArrayList<>();
+    private final StringBuilder value = new StringBuilder();
+    private boolean endOfData = false;
+
+    TextLineParser(List<String> columnNames, List<DataType> columnTypes) {
+        super(columnNames, columnTypes);
+    }
+
+    @Override
+    public String formatName() {
+        return "text";
+    }
+
+    @Override
+    public void startFile(boolean firstLine) {
+        endOfData = false;
+    }
+
+    @Nullable
+    @Override
+    public byte[] parse(byte[] line) throws IOException {
+        if (line.length == 0 || endOfData) {
+            return null;
+        }
+        String chars = new String(line, StandardCharsets.UTF_8);
+        if (chars.equals(END_OF_DATA)) {
+            endOfData = true;
+            return null;
+        }
+        values.clear();
+        int start = 0;
+        int end;
+        while ((end = chars.indexOf(DELIMITER, start)) >= 0) {
+            values.add(unescape(chars, start, end));
+            start = end + 1;
+        }
+        values.add(unescape(chars, start, chars.length()));
+        return toSource(values);
+    }
+
+    @Nullable
+    private String unescape(String chars, int start, int end) {
+        if (chars.startsWith(NULL, start) && end - start == NULL.length()) {
+            return null;
+        }
+        value.setLength(0);
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c != '\\' || i + 1 == end) {
+                value.append(c);
+                continue;
+            }
+            c = chars.charAt(++i);
+            switch (c) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'v':
+                    value.append('\u000B');
+                    break;
+                case 'x':
+                    if (i + 1 < end && Character.digit(chars.charAt(i + 1), 16) >= 0) {
+                        i = appendCode(chars, i + 1, Math.min(end, i + 3), 16, value) - 1;
+                    } else {
+                        value.append(c);
+                    }
+                    break;
+                default:
+                    if (c >= '0' && c <= '7') {
+                        i = appendCode(chars, i, Math.min(end, i + 3), 8, value) - 1;
+                    } else {
+                        // any other escaped character, including the backslash, is taken literally
+                        value.append(c);
+                    }
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Appends the character of a hex or octal escape sequence, the digit at start must be valid.
+     *
+     * @return the index after the last digit of the escape sequence
+     */
+    private static int appendCode(String chars, int start, int end, int radix, StringBuilder value) {
+        int i = start + 1;
+        while (i < end && Character.digit(chars.charAt(i), radix) >= 0) {
+            i++;
+        }
+        value.append((char) Integer.parseInt(chars.substring(start, i), radix));
+        return i;
+    }
+}
@@ -23,12 +23,15 @@
 package io.crate.operation.collect.files;
 
 import com.google.common.base.Predicate;
+import com.google.common.io.ByteStreams;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.Collections;
 import java.util.List;
 
@@ -57,6 +60,46 @@ class URLFileInput implements FileInput {
         }
     }
 
+    @Override
+    public InputStream getStream(URI uri, long offset) throws IOException {
+        URLConnection connection = uri.toURL().openConnection();
+        if (connection instanceof HttpURLConnection) {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+        }
+        InputStream inputStream;
+        try {
+            inputStream = connection.getInputStream();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        if (connection instanceof HttpURLConnection
+            && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+            return inputStream;
+        }
+        // range requests aren't supported, skip to the offset
+        ByteStreams.skipFully(inputStream, offset);
+        return inputStream;
+    }
+
+    @Override
+    public long size(URI uri) throws IOException {
+        URLConnection connection = uri.toURL().openConnection();
+        if (!(connection instanceof HttpURLConnection)) {
+            return -1L;
+        }
+        HttpURLConnection httpConnection = (HttpURLConnection) connection;
+        httpConnection.setRequestMethod("HEAD");
+        try {
+            if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_OK
+                || !"bytes".equals(httpConnection.getHeaderField("Accept-Ranges"))) {
+                return -1L;
+            }
+            return httpConnection.getContentLengthLong();
+        } finally {
+            httpConnection.disconnect();
+        }
+    }
+
     @Override
     public boolean sharedStorageDefault() {
         return true;
@@ -42,6 +42,7 @@ import io.crate.operation.collect.JobCollectContext;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.ProjectorFactory;
 import io.crate.operation.projectors.RowReceiver;
+import io.crate.operation.projectors.SpillDirectory;
 import io.crate.planner.node.ExecutionPhaseVisitor;
 import io.crate.planner.node.dql.CollectPhase;
 import io.crate.planner.node.dql.FileUriCollectPhase;
@@ -86,7 +87,8 @@ public class CollectSourceResolver {
                                  TableFunctionCollectSource tableFunctionCollectSource,
                                  SingleRowSource singleRowSource,
                                  SystemCollectSource systemCollectSource,
-                                 NodeStatsCollectSource nodeStatsCollectSource) {
+                                 NodeStatsCollectSource nodeStatsCollectSource,
+                                 SpillDirectory spillDirectory) {
         this.clusterService = clusterService;
 
         ImplementationSymbolVisitor nodeImplementationSymbolVisitor = new ImplementationSymbolVisitor(functions);
@@ -100,7 +102,8 @@ public class CollectSourceResolver {
             transportActionProvider,
             bulkRetryCoordinatorPool,
             nodeImplementationSymbolVisitor,
-            normalizer
+            normalizer,
+            spillDirectory
         );
         this.shardCollectSource = shardCollectSource;
         this.fileCollectSource = new ProjectorSetupCollectSource(fileCollectSource, projectorFactory);
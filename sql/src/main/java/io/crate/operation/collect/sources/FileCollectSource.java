@@ -31,6 +31,8 @@ import io.crate.operation.collect.JobCollectContext;
 import io.crate.operation.collect.files.FileCollectInputSymbolVisitor;
 import io.crate.operation.collect.files.FileInputFactory;
 import io.crate.operation.collect.files.FileReadingCollector;
+import io.crate.operation.collect.files.LineParser;
+import io.crate.operation.projectors.MultiUpstreamRowReceiver;
 import io.crate.operation.projectors.RowReceiver;
 import io.crate.operation.reference.file.FileLineReferenceResolver;
 import io.crate.planner.node.dql.CollectPhase;
@@ -40,19 +42,31 @@ import io.crate.types.DataTypes;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 
 import java.util.*;
 
 @Singleton
 public class FileCollectSource implements CollectSource {
 
+    /**
+     * number of collectors that read the files of a COPY FROM concurrently on one node
+     */
+    public static final String CONCURRENCY_SETTING = "node.sql.copy_from.concurrency";
+
     private final ClusterService clusterService;
     private final FileCollectInputSymbolVisitor fileInputSymbolVisitor;
     private final Map<String, FileInputFactory> fileInputFactoryMap;
+    private final int concurrency;
 
     @Inject
-    public FileCollectSource(Functions functions, ClusterService clusterService, Map<String, FileInputFactory> fileInputFactoryMap) {
+    public FileCollectSource(Settings settings,
+                             Functions functions,
+                             ClusterService clusterService,
+                             Map<String, FileInputFactory> fileInputFactoryMap) {
         this.fileInputFactoryMap = fileInputFactoryMap;
+        this.concurrency = settings.getAsInt(CONCURRENCY_SETTING, EsExecutors.boundedNumberOfProcessors(settings));
         fileInputSymbolVisitor = new FileCollectInputSymbolVisitor(functions, FileLineReferenceResolver.INSTANCE);
         this.clusterService = clusterService;
     }
@@ -60,26 +74,56 @@ public class FileCollectSource implements CollectSource {
     @Override
     public Collection<CrateCollector> getCollectors(CollectPhase collectPhase, RowReceiver downstream, JobCollectContext jobCollectContext) {
         FileUriCollectPhase fileUriCollectPhase = (FileUriCollectPhase) collectPhase;
-        FileCollectInputSymbolVisitor.Context context = fileInputSymbolVisitor.extractImplementations(collectPhase.toCollect());
-
         String[] readers = fileUriCollectPhase.executionNodes().toArray(
             new String[fileUriCollectPhase.executionNodes().size()]);
         Arrays.sort(readers);
 
+        int readerNumber = Arrays.binarySearch(readers, clusterService.state().nodes().localNodeId());
+
         List<String> fileUris;
         fileUris = targetUriToStringList(fileUriCollectPhase.targetUri());
-        return ImmutableList.<CrateCollector>of(new FileReadingCollector(
+        if (concurrency == 1) {
+            return ImmutableList.of(createCollector(
+                fileUriCollectPhase, fileUris, downstream, readers.length, readerNumber, 1, 0));
+        }
+        // the collectors split the files (and the ranges of large files) among each other and run concurrently
+        MultiUpstreamRowReceiver multiUpstreamRowReceiver = new MultiUpstreamRowReceiver(downstream);
+        List<CrateCollector> collectors = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            collectors.add(createCollector(fileUriCollectPhase, fileUris, multiUpstreamRowReceiver.newRowReceiver(),
+                readers.length, readerNumber, concurrency, i));
+        }
+        return collectors;
+    }
+
+    private CrateCollector createCollector(FileUriCollectPhase fileUriCollectPhase,
+                                           List<String> fileUris,
+                                           RowReceiver downstream,
+                                           int numReaders,
+                                           int readerNumber,
+                                           int numSlices,
+                                           int sliceNumber) {
+        // every collector needs its own expressions
+        FileCollectInputSymbolVisitor.Context context =
+            fileInputSymbolVisitor.extractImplementations(fileUriCollectPhase.toCollect());
+        return new FileReadingCollector(
             fileUris,
             context.topLevelInputs(),
             context.expressions(),
             downstream,
-            fileUriCollectPhase.fileFormat(),
+            LineParser.create(
+                fileUriCollectPhase.fileFormat(),
+                fileUriCollectPhase.columnNames(),
+                fileUriCollectPhase.columnTypes(),
+                fileUriCollectPhase.header()),
             fileUriCollectPhase.compression(),
             fileInputFactoryMap,
             fileUriCollectPhase.sharedStorage(),
-            readers.length,
-            Arrays.binarySearch(readers, clusterService.state().nodes().localNodeId())
-        ));
+            numReaders,
+            readerNumber,
+            numSlices,
+            sliceNumber
+        );
     }
 
     private static List<String> targetUriToStringList(Symbol targetUri) {
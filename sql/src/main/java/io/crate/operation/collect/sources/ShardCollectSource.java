@@ -128,7 +128,8 @@ public class ShardCollectSource implements CollectSource {
                               BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                               RemoteCollectorFactory remoteCollectorFactory,
                               SystemCollectSource systemCollectSource,
-                              NodeSysExpression nodeSysExpression) {
+                              NodeSysExpression nodeSysExpression,
+                              SpillDirectory spillDirectory) {
         this.settings = settings;
         this.indexNameExpressionResolver = indexNameExpressionResolver;
         this.indicesService = indicesService;
@@ -164,7 +165,8 @@ public class ShardCollectSource implements CollectSource {
             transportActionProvider,
             bulkRetryCoordinatorPool,
             implementationSymbolVisitor,
-            nodeNormalizer
+            nodeNormalizer,
+            spillDirectory
         );
         String localNodeId = clusterService.localNode().id();
 
@@ -301,12 +303,11 @@ public class ShardCollectSource implements CollectSource {
                 try {
                     shardInjector = indexService.shardInjectorSafe(shardId);
                     ShardCollectService shardCollectService = shardInjector.getInstance(ShardCollectService.class);
-                    CrateCollector.Builder collector = shardCollectService.getCollectorBuilder(
+                    crateCollectors.addAll(shardCollectService.getCollectorBuilders(
                         collectPhase,
                         downstreamRequirements,
                         jobCollectContext
-                    );
-                    crateCollectors.add(collector);
+                    ));
                 } catch (ShardNotFoundException | IllegalIndexShardStateException e) {
                     crateCollectors.add(remoteCollectorFactory.createCollector(
                         indexName, shardId, collectPhase, jobCollectContext.queryPhaseRamAccountingContext()));
@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import io.crate.core.collections.Row;
+import io.crate.lucene.SegmentFilterCache;
 import io.crate.metadata.Functions;
 import io.crate.metadata.RowCollectExpression;
 import io.crate.metadata.information.*;
@@ -73,6 +74,7 @@ public class SystemCollectSource implements CollectSource {
                                Set<SysNodeCheck> sysNodeChecks,
                                SysRepositories sysRepositories,
                                SysSnapshots sysSnapshots,
+                               SegmentFilterCache filterCache,
                                PgCatalogTables pgCatalogTables) {
         docInputSymbolVisitor = new CollectInputSymbolVisitor<>(functions, RowContextReferenceResolver.INSTANCE);
 
@@ -90,6 +92,7 @@ public class SystemCollectSource implements CollectSource {
             .put(SysOperationsLogTableInfo.IDENT.fqn(), statsTables.operationsLogGetter())
             .put(SysChecksTableInfo.IDENT.fqn(), new SysChecker(sysChecks))
             .put(SysNodeChecksTableInfo.IDENT.fqn(), new SysChecker(sysNodeChecks))
+            .put(SysFilterCacheTableInfo.IDENT.fqn(), filterCache)
             .put(SysRepositoriesTableInfo.IDENT.fqn(), sysRepositories)
             .put(SysSnapshotsTableInfo.IDENT.fqn(), sysSnapshots)
             .put(SysSummitsTableInfo.IDENT.fqn(), new SummitsIterable())
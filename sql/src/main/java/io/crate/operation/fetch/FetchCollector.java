@@ -23,8 +23,8 @@
 package io.crate.operation.fetch;
 
 import com.carrotsearch.hppc.IntContainer;
-import com.carrotsearch.hppc.cursors.IntCursor;
 import io.crate.Streamer;
+import io.crate.core.collections.RowN;
 import io.crate.executor.transport.StreamBucket;
 import io.crate.operation.InputRow;
 import io.crate.operation.collect.collectors.CollectorFieldsVisitor;
@@ -37,6 +37,7 @@ import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.mapper.MapperService;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 class FetchCollector {
@@ -68,25 +69,54 @@ class FetchCollector {
 
     }
 
+    private void setNextReader(LeafReaderContext readerContext) throws IOException {
+        for (LuceneCollectorExpression e : collectorExpressions) {
+            e.setNextReader(readerContext);
+        }
+    }
+
     private void setNextDocId(LeafReaderContext readerContext, int doc) throws IOException {
         if (visitorEnabled) {
             fieldsVisitor.reset();
             readerContext.reader().document(doc, fieldsVisitor);
         }
         for (LuceneCollectorExpression e : collectorExpressions) {
-            e.setNextReader(readerContext);
             e.setNextDocId(doc);
         }
     }
 
+    /**
+     * Collects the rows of the given docIds. The docs are visited in ascending order, segment by segment,
+     * but the rows are returned in the order of the given docIds.
+     */
     public StreamBucket collect(IntContainer docIds) throws IOException {
-        StreamBucket.Builder builder = new StreamBucket.Builder(streamers);
-        for (IntCursor cursor : docIds) {
-            int docId = cursor.value;
-            int readerIndex = ReaderUtil.subIndex(docId, readerContexts);
-            LeafReaderContext subReaderContext = readerContexts.get(readerIndex);
+        int[] docs = docIds.toArray();
+        long[] sortedDocs = new long[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            sortedDocs[i] = ((long) docs[i] << 32) | i;
+        }
+        Arrays.sort(sortedDocs);
+
+        Object[][] rows = new Object[docs.length][];
+        LeafReaderContext subReaderContext = null;
+        int subReaderEnd = -1;
+        for (long sortedDoc : sortedDocs) {
+            int docId = (int) (sortedDoc >>> 32);
+            if (docId >= subReaderEnd) {
+                int readerIndex = ReaderUtil.subIndex(docId, readerContexts);
+                subReaderContext = readerContexts.get(readerIndex);
+                subReaderEnd = subReaderContext.docBase + subReaderContext.reader().maxDoc();
+                setNextReader(subReaderContext);
+            }
             setNextDocId(subReaderContext, docId - subReaderContext.docBase);
-            builder.add(row);
+            rows[(int) sortedDoc] = row.materialize();
+        }
+
+        StreamBucket.Builder builder = new StreamBucket.Builder(streamers, true);
+        RowN rowN = new RowN(streamers.length);
+        for (Object[] cells : rows) {
+            rowN.cells(cells);
+            builder.add(rowN);
         }
         return builder.build();
     }
@@ -25,20 +25,25 @@ import com.carrotsearch.hppc.IntContainer;
 import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import com.google.common.base.Joiner;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.Streamer;
 import io.crate.analyze.symbol.Symbols;
 import io.crate.executor.transport.StreamBucket;
+import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.Reference;
+import io.crate.metadata.ReferenceIdent;
 import io.crate.metadata.TableIdent;
+import io.crate.metadata.doc.DocSysColumns;
 import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
 import io.crate.operation.reference.doc.lucene.LuceneReferenceResolver;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
@@ -71,8 +76,14 @@ public class NodeFetchOperation {
         FetchCollector createCollector(int readerId) {
             IndexService indexService = fetchContext.indexService(readerId);
             LuceneReferenceResolver resolver = new LuceneReferenceResolver(indexService.mapperService());
+            boolean readDocValues = canReadDocValues(refs, indexService.mapperService());
             ArrayList<LuceneCollectorExpression<?>> exprs = new ArrayList<>(refs.size());
             for (Reference reference : refs) {
+                if (readDocValues) {
+                    // _doc['x'] -> x, resolves to a column reference reading the doc values
+                    reference = reference.getRelocated(new ReferenceIdent(
+                        reference.ident().tableIdent(), reference.ident().columnIdent().shiftRight()));
+                }
                 exprs.add(resolver.getImplementation(reference));
             }
             return new FetchCollector(
@@ -86,6 +97,26 @@ public class NodeFetchOperation {
         }
     }
 
+    /**
+     * Returns true if all references are source lookups of columns with doc values.
+     * Reading the doc values of such columns is a lot cheaper than loading and parsing the source.
+     */
+    static boolean canReadDocValues(Collection<Reference> refs, MapperService mapperService) {
+        if (refs.isEmpty()) {
+            return false;
+        }
+        for (Reference ref : refs) {
+            ColumnIdent columnIdent = ref.ident().columnIdent();
+            if (!columnIdent.name().equals(DocSysColumns.DOC.name())
+                || columnIdent.path().isEmpty()
+                || !LuceneReferenceResolver.hasDocValues(
+                    Joiner.on('.').join(columnIdent.path()), ref.valueType(), mapperService)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Inject
     public NodeFetchOperation(ThreadPool threadPool) {
         executor = threadPool.executor(ThreadPool.Names.SEARCH);
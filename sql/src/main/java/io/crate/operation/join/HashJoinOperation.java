@@ -0,0 +1,523 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.join;
+
+import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.breaker.SizeEstimator;
+import io.crate.breaker.SizeEstimatorFactory;
+import io.crate.concurrent.CompletionListener;
+import io.crate.concurrent.CompletionState;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.operation.projectors.*;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.types.DataType;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Push based hash join for equi-joins:
+ * <pre>
+ *     for (buildRow in build) {
+ *         table[key(buildRow)].add(buildRow)
+ *     }
+ *     for (probeRow in probe) {
+ *         for (buildRow in table[key(probeRow)]) {
+ *             if matched
+ *                 emit(left + right)
+ *         }
+ *     }
+ * </pre>
+ * <p>
+ * The build side is read completely into a hash table which is accounted in the {@link RamAccountingContext}.
+ * If the probe side delivers rows before the build side has finished, it is paused until the hash table is complete.
+ * Unlike the {@link NestedLoopOperation} neither side has to be repeated.
+ * <p>
+ * The join condition is applied to every combined row, so the keys only have to narrow down the candidates.
+ * Rows with a null key never match.
+ * <p>
+ * Outer joins are supported on both sides:
+ * Probe rows without a match are emitted immediately with the build side nulled,
+ * build rows without a match are emitted after the probe side has finished with the probe side nulled.
+ * <p>
+ * If the left side is the probe side the rows are emitted in the same order as in the {@link NestedLoopOperation}.
+ */
+public class HashJoinOperation implements JoinOperation {
+
+    private final static ESLogger LOGGER = Loggers.getLogger(HashJoinOperation.class);
+
+    // Entry + RowN + HashMap.Node, each with an object header and ~3 fields
+    private final static long ENTRY_SIZE = 3 * RamAccountingContext.roundUp(
+        RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 3 * RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+
+    private final SettableFuture<CompletionState> completionFuture = SettableFuture.create();
+
+    private final int phaseId;
+    private final RowReceiver downstream;
+    private final Predicate<Row> joinPredicate;
+    private final boolean buildLeft;
+    private final int[] buildKeys;
+    private final int[] probeKeys;
+    private final SizeEstimator<Object>[] sizeEstimators;
+    private final RamAccountingContext ramAccountingContext;
+    private final boolean emitUnmatchedBuildRows;
+    private final boolean emitUnmatchedProbeRows;
+
+    private final BuildRowReceiver build;
+    private final ProbeRowReceiver probe;
+    private final CombinedRow combinedRow;
+    private final Row buildNullRow;
+    private final Row probeNullRow;
+
+    private final Map<Object, Entry> table = new HashMap<>();
+    private final List<Entry> buildRows = new ArrayList<>();
+    private long accountedBytes = 0;
+
+    private final Object lock = new Object();
+    private boolean buildFinished = false;
+    private boolean probeFinished = false;
+    private boolean finished = false;
+    private boolean probeWaitsForBuild = false;
+    private ResumeHandle pausedProbe = null;
+
+    private volatile Throwable upstreamFailure;
+    private volatile boolean stop = false;
+
+    // state of the probe row which is currently joined
+    private Row probeRow;
+    private Entry nextCandidate;
+    private boolean probeRowMatched;
+
+    public HashJoinOperation(int phaseId,
+                             RowReceiver rowReceiver,
+                             Predicate<Row> joinPredicate,
+                             JoinType joinType,
+                             int leftNumOutputs,
+                             int rightNumOutputs,
+                             int[] leftJoinKeys,
+                             int[] rightJoinKeys,
+                             boolean buildLeft,
+                             List<DataType> buildTypes,
+                             RamAccountingContext ramAccountingContext) {
+        assert leftJoinKeys.length == rightJoinKeys.length && leftJoinKeys.length > 0 : "invalid join keys";
+        this.phaseId = phaseId;
+        this.downstream = rowReceiver;
+        this.joinPredicate = joinPredicate;
+        this.buildLeft = buildLeft;
+        this.ramAccountingContext = ramAccountingContext;
+        if (buildLeft) {
+            buildKeys = leftJoinKeys;
+            probeKeys = rightJoinKeys;
+        } else {
+            buildKeys = rightJoinKeys;
+            probeKeys = leftJoinKeys;
+        }
+        boolean leftOuter = joinType == JoinType.LEFT || joinType == JoinType.FULL;
+        boolean rightOuter = joinType == JoinType.RIGHT || joinType == JoinType.FULL;
+        emitUnmatchedBuildRows = buildLeft ? leftOuter : rightOuter;
+        emitUnmatchedProbeRows = buildLeft ? rightOuter : leftOuter;
+
+        //noinspection unchecked
+        sizeEstimators = new SizeEstimator[buildTypes.size()];
+        for (int i = 0; i < buildTypes.size(); i++) {
+            sizeEstimators[i] = SizeEstimatorFactory.create(buildTypes.get(i));
+        }
+        combinedRow = new CombinedRow(leftNumOutputs, rightNumOutputs);
+        buildNullRow = buildLeft ? combinedRow.outerNullRow : combinedRow.innerNullRow;
+        probeNullRow = buildLeft ? combinedRow.innerNullRow : combinedRow.outerNullRow;
+        build = new BuildRowReceiver();
+        probe = new ProbeRowReceiver();
+    }
+
+    @Override
+    public void addListener(CompletionListener listener) {
+        Futures.addCallback(completionFuture, listener);
+    }
+
+    @Override
+    public ListenableRowReceiver leftRowReceiver() {
+        return buildLeft ? build : probe;
+    }
+
+    @Override
+    public ListenableRowReceiver rightRowReceiver() {
+        return buildLeft ? probe : build;
+    }
+
+    private static class Entry {
+
+        final Row row;
+        Entry next;
+        Entry last;
+        boolean matched = false;
+
+        Entry(Row row) {
+            this.row = row;
+            this.last = this;
+        }
+    }
+
+    /**
+     * @return the value of the key column or a list of values for compound keys,
+     * null if any key value is null
+     */
+    @Nullable
+    private static Object key(Row row, int[] keys) {
+        if (keys.length == 1) {
+            return row.get(keys[0]);
+        }
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Object value = row.get(keys[i]);
+            if (value == null) {
+                return null;
+            }
+            values[i] = value;
+        }
+        return Arrays.asList(values);
+    }
+
+    private void combine(Row buildRow, Row probeRow) {
+        if (buildLeft) {
+            combinedRow.outerRow = buildRow;
+            combinedRow.innerRow = probeRow;
+        } else {
+            combinedRow.outerRow = probeRow;
+            combinedRow.innerRow = buildRow;
+        }
+    }
+
+    private RowReceiver.Result emit(Row row) {
+        RowReceiver.Result result = downstream.setNextRow(row);
+        if (result == RowReceiver.Result.STOP) {
+            stop = true;
+        }
+        return result;
+    }
+
+    private void startProbe(Row row) {
+        probeRow = row;
+        probeRowMatched = false;
+        Object key = key(row, probeKeys);
+        nextCandidate = key == null ? null : table.get(key);
+    }
+
+    /**
+     * emits the combined rows of the current probe row, can be called again to continue after a pause
+     */
+    private RowReceiver.Result emitMatches() {
+        while (nextCandidate != null) {
+            Entry entry = nextCandidate;
+            nextCandidate = entry.next;
+            combine(entry.row, probeRow);
+            if (!joinPredicate.apply(combinedRow)) {
+                continue;
+            }
+            entry.matched = true;
+            probeRowMatched = true;
+            RowReceiver.Result result = emit(combinedRow);
+            if (result != RowReceiver.Result.CONTINUE) {
+                return result;
+            }
+        }
+        if (emitUnmatchedProbeRows && !probeRowMatched) {
+            probeRowMatched = true;
+            combine(buildNullRow, probeRow);
+            return emit(combinedRow);
+        }
+        return RowReceiver.Result.CONTINUE;
+    }
+
+    private void tryFinish() {
+        synchronized (lock) {
+            if (!buildFinished || !probeFinished || finished) {
+                return;
+            }
+            finished = true;
+        }
+        LOGGER.trace("phase={} method=tryFinish buildRows={}", phaseId, buildRows.size());
+        if (upstreamFailure == null && emitUnmatchedBuildRows && !stop) {
+            new UnmatchedBuildRowsEmitter(buildRows.iterator()).resume(false);
+        } else {
+            finishDownstream();
+        }
+    }
+
+    private void finishDownstream() {
+        releaseTable();
+        if (upstreamFailure == null) {
+            downstream.finish(RepeatHandle.UNSUPPORTED);
+            completionFuture.set(null);
+            build.finished.set(null);
+            probe.finished.set(null);
+        } else {
+            downstream.fail(upstreamFailure);
+            completionFuture.setException(upstreamFailure);
+            build.finished.setException(upstreamFailure);
+            probe.finished.setException(upstreamFailure);
+        }
+    }
+
+    private void releaseTable() {
+        table.clear();
+        buildRows.clear();
+        ramAccountingContext.addBytes(-accountedBytes);
+        accountedBytes = 0;
+    }
+
+    private abstract class AbstractRowReceiver implements ListenableRowReceiver {
+
+        final SettableFuture<Void> finished = SettableFuture.create();
+
+        @Override
+        public ListenableFuture<Void> finishFuture() {
+            return finished;
+        }
+
+        @Override
+        public void prepare() {
+        }
+
+        @Override
+        public void kill(Throwable throwable) {
+            stop = true;
+            ResumeHandle resumeHandle;
+            synchronized (lock) {
+                resumeHandle = pausedProbe;
+                pausedProbe = null;
+            }
+            build.finished.setException(throwable);
+            probe.finished.setException(throwable);
+            downstream.kill(throwable);
+            completionFuture.setException(throwable);
+            if (resumeHandle != null) {
+                // resume the waiting probe side so that it receives the STOP
+                resumeHandle.resume(false);
+            }
+        }
+
+        @Override
+        public Set<Requirement> requirements() {
+            return downstream.requirements();
+        }
+    }
+
+    private class BuildRowReceiver extends AbstractRowReceiver {
+
+        @Override
+        public Result setNextRow(Row row) {
+            if (stop) {
+                return Result.STOP;
+            }
+            Object[] cells = row.materialize();
+            long bytes = ENTRY_SIZE + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+            for (int i = 0; i < cells.length; i++) {
+                bytes += RamUsageEstimator.NUM_BYTES_OBJECT_REF + sizeEstimators[i].estimateSize(cells[i]);
+            }
+            ramAccountingContext.addBytes(bytes);
+            accountedBytes += bytes;
+
+            Entry entry = new Entry(new RowN(cells));
+            Object key = key(entry.row, buildKeys);
+            if (key != null) {
+                Entry first = table.get(key);
+                if (first == null) {
+                    table.put(key, entry);
+                } else {
+                    // append to keep the order of the build side for each key
+                    first.last.next = entry;
+                    first.last = entry;
+                }
+            }
+            if (emitUnmatchedBuildRows) {
+                buildRows.add(entry);
+            }
+            return Result.CONTINUE;
+        }
+
+        @Override
+        public void pauseProcessed(ResumeHandle resumeable) {
+            throw new IllegalStateException("The build side of a hash join is never paused");
+        }
+
+        @Override
+        public void finish(RepeatHandle repeatable) {
+            LOGGER.trace("phase={} side=build method=finish rows={}", phaseId, table.size());
+            doFinish();
+        }
+
+        @Override
+        public void fail(Throwable throwable) {
+            LOGGER.trace("phase={} side=build method=fail error={}", phaseId, throwable);
+            upstreamFailure = throwable;
+            doFinish();
+        }
+
+        private void doFinish() {
+            ResumeHandle resumeHandle;
+            synchronized (lock) {
+                buildFinished = true;
+                resumeHandle = pausedProbe;
+                pausedProbe = null;
+                if (resumeHandle != null) {
+                    probeWaitsForBuild = false;
+                }
+            }
+            if (resumeHandle != null) {
+                probe.resumeAfterBuild(resumeHandle);
+            }
+            tryFinish();
+        }
+    }
+
+    private class ProbeRowReceiver extends AbstractRowReceiver {
+
+        @Override
+        public Result setNextRow(Row row) {
+            if (stop) {
+                return Result.STOP;
+            }
+            synchronized (lock) {
+                if (!buildFinished) {
+                    LOGGER.trace("phase={} side=probe method=setNextRow action=waitForBuild", phaseId);
+                    // the upstream may re-use the row once it is resumed
+                    probeRow = new RowN(row.materialize());
+                    probeWaitsForBuild = true;
+                    return Result.PAUSE;
+                }
+            }
+            if (upstreamFailure != null) {
+                stop = true;
+                return Result.STOP;
+            }
+            startProbe(row);
+            return emitMatches();
+        }
+
+        @Override
+        public void pauseProcessed(ResumeHandle resumeable) {
+            boolean waitedForBuild;
+            synchronized (lock) {
+                waitedForBuild = probeWaitsForBuild;
+                if (waitedForBuild) {
+                    if (!buildFinished) {
+                        pausedProbe = resumeable;
+                        return;
+                    }
+                    probeWaitsForBuild = false;
+                }
+            }
+            if (waitedForBuild) {
+                resumeAfterBuild(resumeable);
+            } else {
+                // pause request came from the downstream, so let it handle the resume.
+                downstream.pauseProcessed(new ProbeResumeHandle(resumeable));
+            }
+        }
+
+        void resumeAfterBuild(ResumeHandle resumeHandle) {
+            LOGGER.trace("phase={} side=probe method=resumeAfterBuild", phaseId);
+            if (upstreamFailure != null) {
+                stop = true;
+            } else {
+                startProbe(probeRow);
+            }
+            new ProbeResumeHandle(resumeHandle).resume(false);
+        }
+
+        @Override
+        public void finish(RepeatHandle repeatable) {
+            LOGGER.trace("phase={} side=probe method=finish", phaseId);
+            doFinish();
+        }
+
+        @Override
+        public void fail(Throwable throwable) {
+            LOGGER.trace("phase={} side=probe method=fail error={}", phaseId, throwable);
+            upstreamFailure = throwable;
+            doFinish();
+        }
+
+        private void doFinish() {
+            synchronized (lock) {
+                probeFinished = true;
+            }
+            tryFinish();
+        }
+    }
+
+    /**
+     * Continues to emit the matches of the current probe row before the probe upstream is resumed.
+     */
+    private class ProbeResumeHandle implements ResumeHandle {
+
+        private final ResumeHandle upstream;
+
+        ProbeResumeHandle(ResumeHandle upstream) {
+            this.upstream = upstream;
+        }
+
+        @Override
+        public void resume(boolean async) {
+            if (!stop && emitMatches() == RowReceiver.Result.PAUSE) {
+                downstream.pauseProcessed(this);
+                return;
+            }
+            // on STOP the upstream is resumed as well so that it receives the STOP
+            upstream.resume(async);
+        }
+    }
+
+    private class UnmatchedBuildRowsEmitter implements ResumeHandle {
+
+        private final Iterator<Entry> entries;
+
+        UnmatchedBuildRowsEmitter(Iterator<Entry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public void resume(boolean async) {
+            while (!stop && entries.hasNext()) {
+                Entry entry = entries.next();
+                if (entry.matched) {
+                    continue;
+                }
+                combine(entry.row, probeNullRow);
+                if (emit(combinedRow) == RowReceiver.Result.PAUSE) {
+                    downstream.pauseProcessed(this);
+                    return;
+                }
+            }
+            finishDownstream();
+        }
+    }
+}
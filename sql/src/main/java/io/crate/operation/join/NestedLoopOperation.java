@@ -26,12 +26,10 @@ import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
-import io.crate.concurrent.CompletionListenable;
 import io.crate.concurrent.CompletionListener;
 import io.crate.concurrent.CompletionState;
 import io.crate.core.collections.Row;
 import io.crate.core.collections.RowN;
-import io.crate.core.collections.RowNull;
 import io.crate.operation.projectors.*;
 import io.crate.planner.node.dql.join.JoinType;
 import org.elasticsearch.common.logging.ESLogger;
@@ -141,7 +139,7 @@ import java.util.concurrent.atomic.AtomicReference;
  *              [... same as before ...]
  * </pre>
  */
-public class NestedLoopOperation implements CompletionListenable {
+public class NestedLoopOperation implements JoinOperation {
 
     private final static ESLogger LOGGER = Loggers.getLogger(NestedLoopOperation.class);
     private final SettableFuture<CompletionState> completionFuture = SettableFuture.create();
@@ -183,59 +181,16 @@ public class NestedLoopOperation implements CompletionListenable {
         }
     }
 
+    @Override
     public ListenableRowReceiver leftRowReceiver() {
         return left;
     }
 
+    @Override
     public ListenableRowReceiver rightRowReceiver() {
         return right;
     }
 
-    private static class CombinedRow implements Row {
-
-        volatile Row outerRow;
-        volatile Row innerRow;
-        final Row outerNullRow;
-        final Row innerNullRow;
-
-        CombinedRow(int outerOutputSize, int innerOutputSize) {
-            outerNullRow = new RowNull(outerOutputSize);
-            innerNullRow = new RowNull(innerOutputSize);
-        }
-
-        @Override
-        public int size() {
-            return outerRow.size() + innerRow.size();
-        }
-
-        @Override
-        public Object get(int index) {
-            if (index < outerRow.size()) {
-                return outerRow.get(index);
-            }
-            return innerRow.get(index - outerRow.size());
-        }
-
-        @Override
-        public Object[] materialize() {
-            Object[] left = outerRow.materialize();
-            Object[] right = innerRow.materialize();
-
-            Object[] newRow = new Object[left.length + right.length];
-            System.arraycopy(left, 0, newRow, 0, left.length);
-            System.arraycopy(right, 0, newRow, left.length, right.length);
-            return newRow;
-        }
-
-        @Override
-        public String toString() {
-            return "CombinedRow{" +
-                   " outer=" + outerRow +
-                   ", inner=" + innerRow +
-                   '}';
-        }
-    }
-
     private abstract class AbstractRowReceiver implements ListenableRowReceiver {
 
         final SettableFuture<Void> finished = SettableFuture.create();
@@ -24,6 +24,8 @@ package io.crate.operation.projectors;
 import com.google.common.collect.Lists;
 import io.crate.Streamer;
 import io.crate.executor.transport.distributed.*;
+import io.crate.metadata.settings.CrateSettings;
+import io.crate.operation.collect.StatsTables;
 import io.crate.operation.NodeOperation;
 import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.node.ExecutionPhases;
@@ -35,6 +37,8 @@ import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.node.settings.NodeSettingsService;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -43,18 +47,49 @@ import java.util.UUID;
 @Singleton
 public class DistributingDownstreamFactory extends AbstractComponent {
 
+    public static final String MAX_PENDING_PAGES_SETTING = "node.sql.result_paging.max_pending_pages";
+    public static final String BUFFER_SIZE_SETTING = "node.sql.result_paging.buffer_size";
+
     private final ClusterService clusterService;
     private final TransportDistributedResultAction transportDistributedResultAction;
     private final ESLogger distributingDownstreamLogger;
+    private final StatsTables statsTables;
+    private final int maxPendingPages;
+    private final long bufferSize;
+
+    private final boolean initialCompressionEnabled;
+    private final ByteSizeValue initialCompressionMinPageSize;
+    private volatile boolean compressionEnabled;
+    private volatile long compressionMinPageSize;
 
     @Inject
     public DistributingDownstreamFactory(Settings settings,
                                          ClusterService clusterService,
-                                         TransportDistributedResultAction transportDistributedResultAction) {
+                                         TransportDistributedResultAction transportDistributedResultAction,
+                                         NodeSettingsService nodeSettingsService,
+                                         StatsTables statsTables) {
         super(settings);
         this.clusterService = clusterService;
         this.transportDistributedResultAction = transportDistributedResultAction;
+        this.statsTables = statsTables;
         distributingDownstreamLogger = Loggers.getLogger(DistributingDownstream.class, settings);
+        maxPendingPages = Math.max(1, settings.getAsInt(MAX_PENDING_PAGES_SETTING, DistributingDownstream.DEFAULT_MAX_PENDING_PAGES));
+        bufferSize = settings.getAsBytesSize(BUFFER_SIZE_SETTING, DistributingDownstream.DEFAULT_BUFFER_SIZE).bytes();
+
+        initialCompressionEnabled = CrateSettings.RESULT_COMPRESSION_ENABLED.extract(settings);
+        initialCompressionMinPageSize = settings.getAsBytesSize(
+            CrateSettings.RESULT_COMPRESSION_MIN_PAGE_SIZE.settingName(),
+            CrateSettings.RESULT_COMPRESSION_MIN_PAGE_SIZE.defaultValue());
+        compressionEnabled = initialCompressionEnabled;
+        compressionMinPageSize = initialCompressionMinPageSize.bytes();
+        nodeSettingsService.addListener(new NodeSettingsService.Listener() {
+            @Override
+            public void onRefreshSettings(Settings settings) {
+                compressionEnabled = CrateSettings.RESULT_COMPRESSION_ENABLED.extract(settings, initialCompressionEnabled);
+                compressionMinPageSize = settings.getAsBytesSize(
+                    CrateSettings.RESULT_COMPRESSION_MIN_PAGE_SIZE.settingName(), initialCompressionMinPageSize).bytes();
+            }
+        });
     }
 
     public RowReceiver create(NodeOperation nodeOperation,
@@ -98,7 +133,12 @@ public class DistributingDownstreamFactory extends AbstractComponent {
             nodeOperation.downstreamNodes(),
             transportDistributedResultAction,
             streamers,
-            pageSize
+            pageSize,
+            maxPendingPages,
+            bufferSize,
+            compressionEnabled
+                ? new PageCompressor(compressionMinPageSize, statsTables, nodeOperation.executionPhase().executionPhaseId(), jobId)
+                : null
         );
     }
 }
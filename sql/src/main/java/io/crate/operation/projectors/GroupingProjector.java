@@ -23,25 +23,37 @@ package io.crate.operation.projectors;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import io.crate.Streamer;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.breaker.SizeEstimator;
 import io.crate.breaker.SizeEstimatorFactory;
+import io.crate.breaker.TrackingRamAccountingContext;
 import io.crate.core.collections.Row;
 import io.crate.core.collections.RowN;
 import io.crate.operation.AggregationContext;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.Aggregator;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.projectors.grouping.BytesGroupTable;
+import io.crate.operation.projectors.grouping.GroupKeyOutput;
+import io.crate.operation.projectors.grouping.LongGroupTable;
+import io.crate.operation.projectors.grouping.LongKeyCodec;
+import io.crate.operation.projectors.grouping.SpilledGroupPartitions;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.unit.ByteSizeValue;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 import static io.crate.operation.projectors.RowReceiver.Result.CONTINUE;
@@ -51,38 +63,81 @@ public class GroupingProjector extends AbstractProjector {
 
 
     private static final ESLogger logger = Loggers.getLogger(GroupingProjector.class);
+
+    /**
+     * fraction of the breaker limit at which the groups are spilled to disk
+     */
+    private static final double SPILL_THRESHOLD = 0.8;
+    private static final int SPILL_CHECK_INTERVAL = 1024;
+    private static final int NUM_SPILL_PARTITIONS = 16;
+
     private final RamAccountingContext ramAccountingContext;
 
     private final Grouper grouper;
+    private final Aggregator[] aggregators;
+    private final Streamer<?>[] keyStreamers;
     private EnumSet<Requirement> requirements;
     private boolean killed = false;
 
+    @Nullable
+    private final Path spillDirectory;
+    private long accountedBytesBeforeGroups;
+    private int rowsUntilSpillCheck = SPILL_CHECK_INTERVAL;
+    private SpilledGroupPartitions spilledGroups = null;
+    private volatile IterableRowEmitter spilledGroupsEmitter = null;
+
     public GroupingProjector(List<? extends DataType> keyTypes,
                              List<Input<?>> keyInputs,
                              CollectExpression[] collectExpressions,
                              AggregationContext[] aggregations,
                              RamAccountingContext ramAccountingContext) {
+        this(keyTypes, keyInputs, collectExpressions, aggregations, ramAccountingContext, null);
+    }
+
+    /**
+     * @param spillDirectory if not null, the groups are written to temporary files in this directory
+     *                       once the query circuit breaker approaches its limit.
+     *                       This is only supported for keys of primitive types.
+     */
+    public GroupingProjector(List<? extends DataType> keyTypes,
+                             List<Input<?>> keyInputs,
+                             CollectExpression[] collectExpressions,
+                             AggregationContext[] aggregations,
+                             RamAccountingContext ramAccountingContext,
+                             @Nullable Path spillDirectory) {
         assert keyTypes.size() == keyInputs.size() : "number of key types must match with number of key inputs";
         assert allTypesKnown(keyTypes) : "must have a known type for each key input";
-        this.ramAccountingContext = ramAccountingContext;
+        // the context may be shared with other projectors, only the bytes of the groups may be released on spill
+        this.ramAccountingContext = new TrackingRamAccountingContext(ramAccountingContext);
 
-        Aggregator[] aggregators = new Aggregator[aggregations.length];
+        keyStreamers = new Streamer[keyTypes.size()];
+        for (int i = 0; i < keyStreamers.length; i++) {
+            keyStreamers[i] = keyTypes.get(i).streamer();
+        }
+        aggregators = new Aggregator[aggregations.length];
         for (int i = 0; i < aggregations.length; i++) {
             aggregators[i] = new Aggregator(
-                ramAccountingContext,
+                this.ramAccountingContext,
                 aggregations[i].symbol(),
                 aggregations[i].function(),
                 aggregations[i].inputs()
             );
         }
 
+        accountedBytesBeforeGroups = this.ramAccountingContext.accountedBytes();
         // grouper object size overhead
-        ramAccountingContext.addBytes(8);
-        if (keyInputs.size() == 1) {
+        this.ramAccountingContext.addBytes(8);
+        LongKeyCodec keyCodec = keyInputs.size() == 1 ? LongKeyCodec.forType(keyTypes.get(0)) : null;
+        if (keyCodec != null) {
+            grouper = new LongKeyGrouper(keyInputs.get(0), keyCodec, collectExpressions, aggregators);
+        } else if (DataTypes.PRIMITIVE_TYPES.containsAll(keyTypes)) {
+            grouper = new BytesKeyGrouper(keyInputs, collectExpressions, aggregators);
+        } else if (keyInputs.size() == 1) {
             grouper = new SingleKeyGrouper(keyInputs.get(0), keyTypes.get(0), collectExpressions, aggregators);
         } else {
             grouper = new ManyKeyGrouper(keyInputs, keyTypes, collectExpressions, aggregators);
         }
+        this.spillDirectory = grouper instanceof SpillableGrouper ? spillDirectory : null;
     }
 
     private static boolean allTypesKnown(List<? extends DataType> keyTypes) {
@@ -100,12 +155,23 @@ public class GroupingProjector extends AbstractProjector {
         if (killed) {
             return STOP;
         }
-        return grouper.setNextRow(row);
+        Result result = grouper.setNextRow(row);
+        if (spillDirectory != null && --rowsUntilSpillCheck == 0) {
+            rowsUntilSpillCheck = SPILL_CHECK_INTERVAL;
+            if (spillRequired()) {
+                spill();
+            }
+        }
+        return result;
     }
 
     @Override
     public void finish(RepeatHandle repeatHandle) {
-        grouper.finish();
+        if (spilledGroups == null) {
+            grouper.finish();
+        } else {
+            finishSpilled();
+        }
         if (logger.isDebugEnabled()) {
             logger.debug("grouping operation size is: {}", new ByteSizeValue(ramAccountingContext.totalBytes()));
         }
@@ -114,14 +180,187 @@ public class GroupingProjector extends AbstractProjector {
     @Override
     public void kill(Throwable throwable) {
         killed = true;
-        grouper.kill(throwable);
+        IterableRowEmitter emitter = spilledGroupsEmitter;
+        if (emitter == null) {
+            grouper.kill(throwable);
+        } else {
+            emitter.kill(throwable);
+        }
+        closeSpilledGroups();
     }
 
     @Override
     public void fail(Throwable throwable) {
+        closeSpilledGroups();
         downstream.fail(throwable);
     }
 
+    /**
+     * Spilling is required if the breaker approaches its limit and this projector holds a relevant amount of it.
+     */
+    private boolean spillRequired() {
+        long limit = ramAccountingContext.limit();
+        return limit > 0
+               && ramAccountingContext.breakerUsed() >= limit * SPILL_THRESHOLD
+               && ramAccountingContext.accountedBytes() - accountedBytesBeforeGroups >= RamAccountingContext.FLUSH_BUFFER_SIZE;
+    }
+
+    /**
+     * Writes all groups of the grouper to the spill partitions and releases the memory accounted for them.
+     */
+    private void spill() {
+        assert spillDirectory != null : "spillDirectory must be set to spill groups";
+        try {
+            if (spilledGroups == null) {
+                Streamer<?>[] stateStreamers = new Streamer[aggregators.length];
+                for (int i = 0; i < aggregators.length; i++) {
+                    stateStreamers[i] = aggregators[i].stateStreamer();
+                }
+                spilledGroups = new SpilledGroupPartitions(spillDirectory, NUM_SPILL_PARTITIONS, stateStreamers);
+            }
+            ((SpillableGrouper) grouper).spill(spilledGroups);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        // the groups and their aggregation states are garbage now
+        releaseAccountedBytesSince(accountedBytesBeforeGroups);
+        accountedBytesBeforeGroups = ramAccountingContext.accountedBytes();
+        ((SpillableGrouper) grouper).reset();
+        if (logger.isDebugEnabled()) {
+            logger.debug("spilled groups to disk, key bytes written: {}",
+                new ByteSizeValue(spilledGroups.keyBytesWritten()));
+        }
+    }
+
+    private void releaseAccountedBytesSince(long accountedBytes) {
+        ramAccountingContext.addBytes(accountedBytes - ramAccountingContext.accountedBytes());
+    }
+
+    private void finishSpilled() {
+        try {
+            ((SpillableGrouper) grouper).spill(spilledGroups);
+            releaseAccountedBytesSince(accountedBytesBeforeGroups);
+            spilledGroups.finishWriting();
+        } catch (Throwable t) {
+            closeSpilledGroups();
+            downstream.fail(t);
+            return;
+        }
+        spilledGroupsEmitter = new IterableRowEmitter(downstream, new Iterable<Row>() {
+            @Override
+            public Iterator<Row> iterator() {
+                return new SpilledGroupsIterator();
+            }
+        });
+        spilledGroupsEmitter.run();
+    }
+
+    private synchronized void closeSpilledGroups() {
+        if (spilledGroups != null) {
+            try {
+                spilledGroups.close();
+            } catch (IOException e) {
+                logger.warn("failed to delete spilled groups", e);
+            }
+        }
+    }
+
+    private void decodeKey(BytesRef key, Object[] cells) {
+        try (StreamInput in = StreamInput.wrap(key.bytes, key.offset, key.length)) {
+            for (int i = 0; i < keyStreamers.length; i++) {
+                cells[i] = keyStreamers[i].readValueFrom(in);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Re-aggregates the spilled partitions one at a time and emits their groups.
+     */
+    private class SpilledGroupsIterator implements Iterator<Row> {
+
+        private final Object[] cells = new Object[keyStreamers.length + aggregators.length];
+        private final RowN row = new RowN(cells);
+        private final BytesRef keySpare = new BytesRef();
+        private BytesGroupTable table = null;
+        private long accountedBytesBeforeTable;
+        private int partition = -1;
+        private int ordinal = 0;
+
+        @Override
+        public boolean hasNext() {
+            while (table == null || ordinal >= table.size()) {
+                if (table != null) {
+                    table.release();
+                    releaseAccountedBytesSince(accountedBytesBeforeTable);
+                    table = null;
+                }
+                if (partition + 1 >= spilledGroups.numPartitions()) {
+                    closeSpilledGroups();
+                    return false;
+                }
+                partition++;
+                accountedBytesBeforeTable = ramAccountingContext.accountedBytes();
+                table = loadPartition(partition);
+                ordinal = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Loads all groups of a partition into memory.
+         * Each partition only contains a fraction of the groups, but it isn't spilled again if it is still too large.
+         * Its groups are accounted, so a partition which doesn't fit into memory trips the breaker.
+         */
+        private BytesGroupTable loadPartition(int partitionIdx) {
+            BytesGroupTable partitionTable = new BytesGroupTable(aggregators.length, ramAccountingContext);
+            try (SpilledGroupPartitions.Reader reader = spilledGroups.open(partitionIdx)) {
+                int numGroups = spilledGroups.numGroups(partitionIdx);
+                for (int i = 0; i < numGroups; i++) {
+                    BytesRef key = reader.readKey();
+                    int groupOrdinal = partitionTable.add(key.bytes, key.offset, key.length);
+                    if (groupOrdinal < 0) {
+                        groupOrdinal = -1 - groupOrdinal;
+                        long bytesReadBeforeStates = reader.bytesRead();
+                        for (int s = 0; s < aggregators.length; s++) {
+                            partitionTable.state(groupOrdinal, s, reader.readState(s));
+                        }
+                        // states read from disk aren't accounted by the aggregation, use their serialized size instead
+                        ramAccountingContext.addBytes(reader.bytesRead() - bytesReadBeforeStates);
+                    } else {
+                        for (int s = 0; s < aggregators.length; s++) {
+                            partitionTable.state(groupOrdinal, s,
+                                aggregators[s].reduce(partitionTable.state(groupOrdinal, s), reader.readState(s)));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            return partitionTable;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("no more groups");
+            }
+            decodeKey(table.key(ordinal, keySpare), cells);
+            int c = keyStreamers.length;
+            for (int i = 0; i < aggregators.length; i++) {
+                cells[c + i] = aggregators[i].finishCollect(table.state(ordinal, i));
+            }
+            ordinal++;
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove is not supported");
+        }
+    }
+
     /**
      * transform map entry into pre-allocated object array.
      */
@@ -163,6 +402,23 @@ public class GroupingProjector extends AbstractProjector {
         void kill(Throwable t);
     }
 
+    /**
+     * A grouper which can write its groups to {@link SpilledGroupPartitions}.
+     * The keys must be written in the format of the {@link #keyStreamers}.
+     */
+    private interface SpillableGrouper extends Grouper {
+
+        /**
+         * write all groups and release the memory used for them. {@link #reset()} is called afterwards
+         */
+        void spill(SpilledGroupPartitions partitions) throws IOException;
+
+        /**
+         * prepare the grouper to collect new groups after a {@link #spill(SpilledGroupPartitions)}
+         */
+        void reset();
+    }
+
     private class SingleKeyGrouper implements Grouper {
 
         private final Map<Object, Object[]> result;
@@ -262,6 +518,294 @@ public class GroupingProjector extends AbstractProjector {
         }
     }
 
+    /**
+     * Grouper for a single key of a fixed-width type.
+     * The keys are encoded into longs and kept together with the aggregation states in a {@link LongGroupTable},
+     * so neither the keys nor the per-group entries need to be allocated on the heap.
+     */
+    private class LongKeyGrouper implements SpillableGrouper {
+
+        private LongGroupTable table;
+        private final LongKeyCodec keyCodec;
+        private final Aggregator[] aggregators;
+        private final Input keyInput;
+        private final CollectExpression[] collectExpressions;
+        private Object[] nullKeyStates = null;
+        private volatile IterableRowEmitter rowEmitter = null;
+
+        LongKeyGrouper(Input keyInput,
+                       LongKeyCodec keyCodec,
+                       CollectExpression[] collectExpressions,
+                       Aggregator[] aggregators) {
+            this.keyInput = keyInput;
+            this.keyCodec = keyCodec;
+            this.collectExpressions = collectExpressions;
+            this.aggregators = aggregators;
+            this.table = new LongGroupTable(aggregators.length, ramAccountingContext);
+        }
+
+        @Override
+        public Result setNextRow(Row row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+
+            Object key = keyInput.value();
+            if (key == null) {
+                processNullKey();
+                return CONTINUE;
+            }
+            int ordinal = table.add(keyCodec.encode(key));
+            if (ordinal < 0) {
+                ordinal = -1 - ordinal;
+                for (int i = 0; i < aggregators.length; i++) {
+                    table.state(ordinal, i, aggregators[i].processRow(aggregators[i].prepareState()));
+                }
+            } else {
+                for (int i = 0; i < aggregators.length; i++) {
+                    table.state(ordinal, i, aggregators[i].processRow(table.state(ordinal, i)));
+                }
+            }
+            return CONTINUE;
+        }
+
+        private void processNullKey() {
+            if (nullKeyStates == null) {
+                ramAccountingContext.addBytes(RamAccountingContext.roundUp(12 + aggregators.length * 4));
+                nullKeyStates = new Object[aggregators.length];
+                for (int i = 0; i < aggregators.length; i++) {
+                    nullKeyStates[i] = aggregators[i].processRow(aggregators[i].prepareState());
+                }
+            } else {
+                for (int i = 0; i < aggregators.length; i++) {
+                    nullKeyStates[i] = aggregators[i].processRow(nullKeyStates[i]);
+                }
+            }
+        }
+
+        @Override
+        public void finish() {
+            rowEmitter = new IterableRowEmitter(downstream, new Iterable<Row>() {
+                @Override
+                public Iterator<Row> iterator() {
+                    return new GroupRowIterator();
+                }
+            });
+            rowEmitter.run();
+        }
+
+        @Override
+        public void kill(Throwable t) {
+            IterableRowEmitter emitter = rowEmitter;
+            if (emitter == null) {
+                downstream.kill(t);
+            } else {
+                emitter.kill(t);
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            table.release();
+            nullKeyStates = null;
+        }
+
+        @Override
+        public void spill(SpilledGroupPartitions partitions) throws IOException {
+            GroupKeyOutput keyOutput = new GroupKeyOutput();
+            if (nullKeyStates != null) {
+                keyStreamers[0].writeValueTo(keyOutput, null);
+                partitions.add(keyOutput.bytes(), 0, keyOutput.length(), nullKeyStates);
+                nullKeyStates = null;
+            }
+            Object[] states = new Object[aggregators.length];
+            for (int ordinal = 0; ordinal < table.size(); ordinal++) {
+                keyOutput.reset();
+                keyStreamers[0].writeValueTo(keyOutput, keyCodec.decode(table.key(ordinal)));
+                for (int i = 0; i < aggregators.length; i++) {
+                    states[i] = table.state(ordinal, i);
+                }
+                partitions.add(keyOutput.bytes(), 0, keyOutput.length(), states);
+            }
+            table.release();
+        }
+
+        @Override
+        public void reset() {
+            table = new LongGroupTable(aggregators.length, ramAccountingContext);
+        }
+
+        /**
+         * emits the null group (if any) first and then the groups of the table in insertion order
+         */
+        private class GroupRowIterator implements Iterator<Row> {
+
+            private final Object[] cells = new Object[1 + aggregators.length]; // 1 for key
+            private final RowN row = new RowN(cells);
+            private int ordinal = nullKeyStates == null ? 0 : -1;
+
+            @Override
+            public boolean hasNext() {
+                return ordinal < table.size();
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("no more groups");
+                }
+                if (ordinal == -1) {
+                    cells[0] = null;
+                    for (int i = 0; i < aggregators.length; i++) {
+                        cells[i + 1] = aggregators[i].finishCollect(nullKeyStates[i]);
+                    }
+                } else {
+                    cells[0] = keyCodec.decode(table.key(ordinal));
+                    for (int i = 0; i < aggregators.length; i++) {
+                        cells[i + 1] = aggregators[i].finishCollect(table.state(ordinal, i));
+                    }
+                }
+                ordinal++;
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("remove is not supported");
+            }
+        }
+    }
+
+    /**
+     * Grouper for composite keys of primitive types.
+     * The key values are serialized with the streamers of their types into a reusable buffer
+     * and the resulting bytes are used as key of a {@link BytesGroupTable}.
+     * Looking up an existing group therefore doesn't allocate anything.
+     */
+    private class BytesKeyGrouper implements SpillableGrouper {
+
+        private BytesGroupTable table;
+        private final GroupKeyOutput keyOutput = new GroupKeyOutput();
+        private final Aggregator[] aggregators;
+        private final List<Input<?>> keyInputs;
+        private final CollectExpression[] collectExpressions;
+        private volatile IterableRowEmitter rowEmitter = null;
+
+        BytesKeyGrouper(List<Input<?>> keyInputs,
+                        CollectExpression[] collectExpressions,
+                        Aggregator[] aggregators) {
+            this.keyInputs = keyInputs;
+            this.collectExpressions = collectExpressions;
+            this.aggregators = aggregators;
+            table = new BytesGroupTable(aggregators.length, ramAccountingContext);
+        }
+
+        @Override
+        public Result setNextRow(Row row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+
+            keyOutput.reset();
+            try {
+                for (int i = 0; i < keyStreamers.length; i++) {
+                    keyStreamers[i].writeValueTo(keyOutput, keyInputs.get(i).value());
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            int ordinal = table.add(keyOutput.bytes(), 0, keyOutput.length());
+            if (ordinal < 0) {
+                ordinal = -1 - ordinal;
+                for (int i = 0; i < aggregators.length; i++) {
+                    table.state(ordinal, i, aggregators[i].processRow(aggregators[i].prepareState()));
+                }
+            } else {
+                for (int i = 0; i < aggregators.length; i++) {
+                    table.state(ordinal, i, aggregators[i].processRow(table.state(ordinal, i)));
+                }
+            }
+            return CONTINUE;
+        }
+
+        @Override
+        public void finish() {
+            rowEmitter = new IterableRowEmitter(downstream, new Iterable<Row>() {
+                @Override
+                public Iterator<Row> iterator() {
+                    return new GroupRowIterator();
+                }
+            });
+            rowEmitter.run();
+        }
+
+        @Override
+        public void kill(Throwable t) {
+            IterableRowEmitter emitter = rowEmitter;
+            if (emitter == null) {
+                downstream.kill(t);
+            } else {
+                emitter.kill(t);
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            table.release();
+        }
+
+        @Override
+        public void spill(SpilledGroupPartitions partitions) throws IOException {
+            BytesRef key = new BytesRef();
+            Object[] states = new Object[aggregators.length];
+            for (int ordinal = 0; ordinal < table.size(); ordinal++) {
+                table.key(ordinal, key);
+                for (int i = 0; i < aggregators.length; i++) {
+                    states[i] = table.state(ordinal, i);
+                }
+                partitions.add(key.bytes, key.offset, key.length, states);
+            }
+            table.release();
+        }
+
+        @Override
+        public void reset() {
+            table = new BytesGroupTable(aggregators.length, ramAccountingContext);
+        }
+
+        private class GroupRowIterator implements Iterator<Row> {
+
+            private final Object[] cells = new Object[keyStreamers.length + aggregators.length];
+            private final RowN row = new RowN(cells);
+            private final BytesRef keySpare = new BytesRef();
+            private int ordinal = 0;
+
+            @Override
+            public boolean hasNext() {
+                return ordinal < table.size();
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("no more groups");
+                }
+                decodeKey(table.key(ordinal, keySpare), cells);
+                int c = keyStreamers.length;
+                for (int i = 0; i < aggregators.length; i++) {
+                    cells[c + i] = aggregators[i].finishCollect(table.state(ordinal, i));
+                }
+                ordinal++;
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("remove is not supported");
+            }
+        }
+    }
+
     private class ManyKeyGrouper implements Grouper {
 
         private final Aggregator[] aggregators;
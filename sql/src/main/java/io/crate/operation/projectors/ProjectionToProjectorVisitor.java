@@ -25,6 +25,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.analyze.symbol.*;
+import io.crate.breaker.CrateCircuitBreakerService;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.core.collections.Row;
 import io.crate.executor.transport.TransportActionProvider;
@@ -41,6 +42,8 @@ import io.crate.operation.projectors.fetch.TransportFetchOperation;
 import io.crate.operation.projectors.sorting.OrderingByPosition;
 import io.crate.operation.reference.sys.RowContextReferenceResolver;
 import io.crate.planner.projection.*;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import io.crate.types.StringType;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
 import org.elasticsearch.cluster.ClusterService;
@@ -51,6 +54,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -69,6 +73,9 @@ public class ProjectionToProjectorVisitor
 
     @Nullable
     private final ShardId shardId;
+    @Nullable
+    private final Path spillDirectory;
+    private final long sortBufferSize;
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         Functions functions,
@@ -79,6 +86,7 @@ public class ProjectionToProjectorVisitor
                                         BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                                         ImplementationSymbolVisitor symbolVisitor,
                                         EvaluatingNormalizer normalizer,
+                                        SpillDirectory spillDirectory,
                                         @Nullable ShardId shardId) {
         this.clusterService = clusterService;
         this.functions = functions;
@@ -90,6 +98,10 @@ public class ProjectionToProjectorVisitor
         this.symbolVisitor = symbolVisitor;
         this.normalizer = normalizer;
         this.shardId = shardId;
+        this.spillDirectory = spillDirectory.path();
+        this.sortBufferSize = settings.getAsMemory(
+            CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_SORT_BUFFER_SIZE_SETTING,
+            CrateCircuitBreakerService.DEFAULT_QUERY_CIRCUIT_BREAKER_SORT_BUFFER_SIZE).bytes();
     }
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
@@ -100,8 +112,9 @@ public class ProjectionToProjectorVisitor
                                         TransportActionProvider transportActionProvider,
                                         BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                                         ImplementationSymbolVisitor symbolVisitor,
-                                        EvaluatingNormalizer normalizer) {
-        this(clusterService, functions, indexNameExpressionResolver, threadPool, settings, transportActionProvider, bulkRetryCoordinatorPool, symbolVisitor, normalizer, null);
+                                        EvaluatingNormalizer normalizer,
+                                        SpillDirectory spillDirectory) {
+        this(clusterService, functions, indexNameExpressionResolver, threadPool, settings, transportActionProvider, bulkRetryCoordinatorPool, symbolVisitor, normalizer, spillDirectory, null);
     }
 
     @Override
@@ -138,13 +151,29 @@ public class ProjectionToProjectorVisitor
                     projection.offset()
                 );
             } else {
-                projector = new SortingProjector(
-                    inputs,
-                    collectExpressions,
-                    numOutputs,
-                    OrderingByPosition.arrayOrdering(orderByIndices, projection.reverseFlags(), projection.nullsFirst()),
-                    projection.offset()
-                );
+                List<DataType> rowTypes = new ArrayList<>(inputs.size());
+                rowTypes.addAll(Symbols.extractTypes(projection.outputs()));
+                rowTypes.addAll(Symbols.extractTypes(projection.orderBy()));
+                if (spillDirectory != null && DataTypes.PRIMITIVE_TYPES.containsAll(rowTypes)) {
+                    projector = new SortingProjector(
+                        inputs,
+                        collectExpressions,
+                        numOutputs,
+                        OrderingByPosition.arrayOrdering(orderByIndices, projection.reverseFlags(), projection.nullsFirst()),
+                        projection.offset(),
+                        rowTypes,
+                        spillDirectory,
+                        sortBufferSize
+                    );
+                } else {
+                    projector = new SortingProjector(
+                        inputs,
+                        collectExpressions,
+                        numOutputs,
+                        OrderingByPosition.arrayOrdering(orderByIndices, projection.reverseFlags(), projection.nullsFirst()),
+                        projection.offset()
+                    );
+                }
             }
         } else if (projection.limit() == TopN.NO_LIMIT
                    && projection.offset() == TopN.NO_OFFSET) {
@@ -172,7 +201,8 @@ public class ProjectionToProjectorVisitor
             keyInputs,
             symbolContext.collectExpressions().toArray(new CollectExpression[symbolContext.collectExpressions().size()]),
             symbolContext.aggregations(),
-            context.ramAccountingContext
+            context.ramAccountingContext,
+            spillDirectory
         );
     }
 
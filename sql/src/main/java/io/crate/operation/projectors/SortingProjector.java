@@ -22,12 +22,27 @@
 package io.crate.operation.projectors;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Ordering;
+import io.crate.Streamer;
+import io.crate.breaker.SizeEstimator;
+import io.crate.breaker.SizeEstimatorFactory;
+import io.crate.core.collections.Buckets;
 import io.crate.core.collections.CollectionBucket;
 import io.crate.core.collections.Row;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.merge.KeyIterable;
+import io.crate.operation.merge.SortedPagingIterator;
+import io.crate.operation.projectors.sorting.SortedRuns;
+import io.crate.types.DataType;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -35,9 +50,15 @@ import java.util.*;
  * <p>
  * Compared to {@link SortingTopNProjector} this projector does not support limiting,
  * while the {@link SortingTopNProjector} does not work WITHOUT a limit.
+ * <p>
+ * If a spill directory is given, the rows are sorted externally: Once the estimated size of the
+ * buffered rows exceeds the memory budget they are sorted and written to a temporary file as a run.
+ * On finish all runs are merged.
  */
 class SortingProjector extends AbstractProjector {
 
+    private static final ESLogger LOGGER = Loggers.getLogger(SortingProjector.class);
+
     private final Collection<? extends Input<?>> inputs;
     private final Iterable<? extends CollectExpression<Row, ?>> collectExpressions;
     private Set<Requirement> requirements;
@@ -46,7 +67,15 @@ class SortingProjector extends AbstractProjector {
     private final int offset;
     private final int numOutputs;
     private final List<Object[]> rows = new ArrayList<>();
-    private IterableRowEmitter rowEmitter = null;
+    private volatile IterableRowEmitter rowEmitter = null;
+
+    @Nullable
+    private final Path spillDirectory;
+    private final long memoryBudget;
+    private final Streamer<?>[] streamers;
+    private final SizeEstimator<Object>[] sizeEstimators;
+    private long bufferedBytes = 0;
+    private SortedRuns sortedRuns = null;
 
     /**
      * @param inputs             contains output {@link io.crate.operation.Input}s and orderBy {@link io.crate.operation.Input}s
@@ -66,6 +95,43 @@ class SortingProjector extends AbstractProjector {
         this.collectExpressions = collectExpressions;
         this.ordering = ordering;
         this.offset = offset;
+        this.spillDirectory = null;
+        this.memoryBudget = -1;
+        this.streamers = null;
+        this.sizeEstimators = null;
+    }
+
+    /**
+     * Creates a SortingProjector which sorts externally if the rows exceed the given memory budget.
+     *
+     * @param rowTypes       the types of the <code>inputs</code>, needed to estimate the size of and to serialize the rows
+     * @param spillDirectory directory where the sorted runs are written to
+     * @param memoryBudget   the number of bytes the buffered rows may use before they are written as a sorted run
+     */
+    SortingProjector(Collection<? extends Input<?>> inputs,
+                     Iterable<? extends CollectExpression<Row, ?>> collectExpressions,
+                     int numOutputs,
+                     Ordering<Object[]> ordering,
+                     int offset,
+                     List<? extends DataType> rowTypes,
+                     Path spillDirectory,
+                     long memoryBudget) {
+        Preconditions.checkArgument(offset >= 0, "invalid offset %s", offset);
+        Preconditions.checkArgument(rowTypes.size() == inputs.size(), "number of row types must match number of inputs");
+        this.numOutputs = numOutputs;
+        this.inputs = inputs;
+        this.collectExpressions = collectExpressions;
+        this.ordering = ordering;
+        this.offset = offset;
+        this.spillDirectory = spillDirectory;
+        this.memoryBudget = memoryBudget;
+        //noinspection unchecked
+        sizeEstimators = new SizeEstimator[rowTypes.size()];
+        streamers = new Streamer[rowTypes.size()];
+        for (int i = 0; i < rowTypes.size(); i++) {
+            sizeEstimators[i] = SizeEstimatorFactory.create(rowTypes.get(i));
+            streamers[i] = rowTypes.get(i).streamer();
+        }
     }
 
     @Override
@@ -79,19 +145,114 @@ class SortingProjector extends AbstractProjector {
             newRow[i++] = input.value();
         }
         rows.add(newRow);
+        if (spillDirectory != null) {
+            bufferedBytes += estimateSize(newRow);
+            if (bufferedBytes >= memoryBudget) {
+                writeSortedRun();
+            }
+        }
         return Result.CONTINUE;
     }
 
-    @Override
-    public void finish(RepeatHandle repeatHandle) {
+    private long estimateSize(Object[] row) {
+        // array header and references
+        long size = 16 + row.length * 8;
+        for (int i = 0; i < row.length; i++) {
+            size += sizeEstimators[i].estimateSize(row[i]);
+        }
+        return size;
+    }
+
+    private void writeSortedRun() {
+        assert spillDirectory != null : "spillDirectory must be set to write sorted runs";
+        sortRows();
+        try {
+            if (sortedRuns == null) {
+                sortedRuns = new SortedRuns(spillDirectory, streamers);
+            }
+            sortedRuns.add(rows);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("wrote sorted run #{} with {} rows", sortedRuns.numRuns(), rows.size());
+        }
+        rows.clear();
+        bufferedBytes = 0;
+    }
+
+    private void sortRows() {
         // sort, we must reverse the order (back to original one) because order was reserved for used on queues
         Collections.sort(rows, Collections.reverseOrder(ordering));
+    }
+
+    @Override
+    public void finish(RepeatHandle repeatHandle) {
+        sortRows();
 
         // emit
-        rowEmitter = createRowEmitter();
+        if (sortedRuns == null) {
+            rowEmitter = createRowEmitter();
+        } else {
+            rowEmitter = createMergingRowEmitter();
+        }
         rowEmitter.run();
     }
 
+    /**
+     * merges the sorted runs on disk and the remaining rows in memory
+     */
+    private IterableRowEmitter createMergingRowEmitter() {
+        List<KeyIterable<Integer, Object[]>> runs = new ArrayList<>(sortedRuns.numRuns() + 1);
+        for (int i = 0; i < sortedRuns.numRuns(); i++) {
+            runs.add(new KeyIterable<>(i, sortedRuns.run(i)));
+        }
+        runs.add(new KeyIterable<Integer, Object[]>(sortedRuns.numRuns(), rows));
+
+        final SortedPagingIterator<Integer, Object[]> mergingIterator = new SortedPagingIterator<>(ordering.<Object[]>reverse(), false);
+        mergingIterator.merge(runs);
+        mergingIterator.finish();
+        Iterators.advance(mergingIterator, offset);
+        final Iterator<Row> rowIterator = Iterators.transform(mergingIterator, Buckets.arrayToRowFunction(numOutputs));
+        // the runs are closed once the emitter is done, also if the downstream stops early (e.g. because of a limit)
+        RowReceiver closingRowReceiver = new ForwardingRowReceiver(downstream) {
+            @Override
+            public void finish(RepeatHandle repeatHandle) {
+                closeSortedRuns();
+                super.finish(repeatHandle);
+            }
+
+            @Override
+            public void fail(Throwable throwable) {
+                closeSortedRuns();
+                super.fail(throwable);
+            }
+
+            @Override
+            public void kill(Throwable throwable) {
+                closeSortedRuns();
+                super.kill(throwable);
+            }
+        };
+        return new IterableRowEmitter(closingRowReceiver, new Iterable<Row>() {
+            @Override
+            public Iterator<Row> iterator() {
+                return rowIterator;
+            }
+        });
+    }
+
+    private void closeSortedRuns() {
+        SortedRuns runs = sortedRuns;
+        if (runs != null) {
+            try {
+                runs.close();
+            } catch (IOException e) {
+                LOGGER.warn("failed to delete sorted runs", e);
+            }
+        }
+    }
+
     private IterableRowEmitter createRowEmitter() {
         CollectionBucket collectionBucket;
         // process offset
@@ -112,10 +273,12 @@ class SortingProjector extends AbstractProjector {
         } else {
             emitter.kill(throwable);
         }
+        closeSortedRuns();
     }
 
     @Override
     public void fail(Throwable t) {
+        closeSortedRuns();
         downstream.fail(t);
     }
 
@@ -0,0 +1,83 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.crate.breaker.CrateCircuitBreakerService;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.NodeEnvironment;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The directory projectors write their temporary files to if they spill rows or groups to disk.
+ *
+ * It is located in the data path of the node, which is locked by the node, so the files of a node are
+ * never touched by another node sharing the same data path. Files left behind by a previous run are
+ * deleted once the node starts.
+ */
+@Singleton
+public class SpillDirectory {
+
+    public static final SpillDirectory DISABLED = new SpillDirectory(null);
+
+    private static final String NAME = "spill";
+
+    @Nullable
+    private final Path path;
+
+    @Inject
+    public SpillDirectory(Settings settings, NodeEnvironment nodeEnvironment) throws IOException {
+        this(createPath(settings, nodeEnvironment));
+    }
+
+    @VisibleForTesting
+    SpillDirectory(@Nullable Path path) {
+        this.path = path;
+    }
+
+    @Nullable
+    private static Path createPath(Settings settings, NodeEnvironment nodeEnvironment) throws IOException {
+        if (!settings.getAsBoolean(CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_SPILL_TO_DISK_SETTING,
+            CrateCircuitBreakerService.DEFAULT_QUERY_CIRCUIT_BREAKER_SPILL_TO_DISK) || !nodeEnvironment.hasNodeFile()) {
+            return null;
+        }
+        Path path = nodeEnvironment.nodeDataPaths()[0].resolve(NAME);
+        // no operation is running yet, so everything in it is a leftover of a node which didn't shut down cleanly
+        IOUtils.rm(path);
+        return path;
+    }
+
+    /**
+     * @return the directory or null if spilling to disk is disabled
+     */
+    @Nullable
+    public Path path() {
+        return path;
+    }
+}
@@ -54,36 +54,38 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Projector which fetches the columns of the rows it receives in batches of {@code fetchSize} rows.
+ * <p>
+ * Fetching is double buffered: while the fetch requests of a batch are executed and its rows are
+ * emitted to the downstream the next batch is already being collected. The upstream is only paused
+ * if the next batch is full before the previous one has been emitted.
+ */
 public class FetchProjector extends AbstractProjector {
 
     private final int fetchSize;
     private final FetchProjectorContext context;
     private final FetchOperation fetchOperation;
     private final AtomicBoolean finishCalled = new AtomicBoolean(false);
+    private final AtomicBoolean downstreamDone = new AtomicBoolean(false);
     private final AtomicInteger resumeLatch = new AtomicInteger(2);
-    private int currentRowCount = 0;
-    private ResumeHandle resumeHandle = ResumeHandle.INVALID;
-
-    enum Stage {
-        INIT,
-        COLLECT,
-        FETCH,
-        EMIT,
-        FINALIZE
-    }
-
-    private final AtomicReference<Stage> stage = new AtomicReference<>(Stage.INIT);
-    private final Object failureLock = new Object();
+    private volatile ResumeHandle resumeHandle = ResumeHandle.INVALID;
 
+    private final Object lock = new Object();
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
     private final FetchRowInputSymbolVisitor.Context collectRowContext;
 
-    // TODO: add an estimate to the constructor
-    private final ArrayList<Object[]> inputValues = new ArrayList<>();
+    // batch which receives the rows of the upstream
+    private Batch collectingBatch;
+    // batch which is fetched or emitted to the downstream, guarded by lock
+    @Nullable
+    private Batch inFlightBatch;
+    // set if the collecting batch is full and the upstream has been paused, guarded by lock
+    private boolean collectingBatchFull = false;
+
     private final Executor resultExecutor;
 
     private final Row outputRow;
-    private final AtomicInteger remainingRequests = new AtomicInteger(0);
 
     private static final ESLogger LOGGER = Loggers.getLogger(FetchProjector.class);
 
@@ -111,6 +113,38 @@ public class FetchProjector extends AbstractProjector {
         }
     }
 
+    /**
+     * The rows of one fetch round trip together with the docs which have to be fetched for them.
+     */
+    private class Batch {
+
+        // TODO: add an estimate to the constructor
+        private final ArrayList<Object[]> rows = new ArrayList<>();
+        private final IntObjectHashMap<ReaderBucket> readerBuckets = new IntObjectHashMap<>();
+        private final AtomicInteger remainingRequests = new AtomicInteger(0);
+        private boolean isLast = false;
+
+        void add(Object[] cells) {
+            for (int i : collectRowContext.docIdPositions()) {
+                Object docId = cells[i];
+                if (docId != null) {
+                    require((long) docId);
+                }
+            }
+            rows.add(cells);
+        }
+
+        private void require(long doc) {
+            int readerId = (int) (doc >> 32);
+            ReaderBucket readerBucket = readerBuckets.get(readerId);
+            if (readerBucket == null) {
+                readerBucket = context.createReaderBucket(readerId);
+                readerBuckets.put(readerId, readerBucket);
+            }
+            readerBucket.require((int) doc);
+        }
+    }
+
     public FetchProjector(FetchOperation fetchOperation,
                           Executor resultExecutor,
                           Functions functions,
@@ -131,96 +165,81 @@ public class FetchProjector extends AbstractProjector {
             inputs.add(rowInputSymbolVisitor.process(symbol, collectRowContext));
         }
         outputRow = new InputRow(inputs);
-    }
-
-    private boolean nextStage(Stage from, Stage to) {
-        LOGGER.trace("Changing state from {} to {}", from, to);
-        synchronized (failureLock) {
-            if (failIfNeeded()) return true;
-            Stage was = stage.getAndSet(to);
-            assert was == from : "wrong state switch " + from + "/" + to + " was " + was;
-        }
-        return false;
-    }
-
-    @Override
-    public void prepare() {
-        assert stage.get() == Stage.INIT;
-        nextStage(Stage.INIT, Stage.COLLECT);
+        collectingBatch = new Batch();
     }
 
     @Override
     public Result setNextRow(Row row) {
-        Object[] cells = row.materialize();
-        collectRowContext.inputRow().cells = cells;
-        for (int i : collectRowContext.docIdPositions()) {
-            Object docId = cells[i];
-            if (docId != null) {
-                context.require((long) docId);
-            }
-        }
-        inputValues.add(cells);
+        Batch batch = collectingBatch;
+        batch.add(row.materialize());
 
         // Check if fetchSize is reached and dispatch fetch requests
-        currentRowCount++;
-        if (fetchSize > 0 && currentRowCount % fetchSize == 0) {
-            sendRequests(false);
-            return Result.PAUSE;
+        if (fetchSize > 0 && batch.rows.size() == fetchSize) {
+            synchronized (lock) {
+                if (inFlightBatch != null) {
+                    // previous batch is still in progress, the requests are sent once it has been emitted
+                    collectingBatchFull = true;
+                    resumeLatch.set(2);
+                    return Result.PAUSE;
+                }
+                inFlightBatch = batch;
+                collectingBatch = new Batch();
+            }
+            sendRequests(batch);
         }
         return Result.CONTINUE;
     }
 
-    private void sendRequests(final boolean isLast) {
-        resumeLatch.set(2);
-        if (nextStage(Stage.COLLECT, Stage.FETCH)) {
+    private void sendRequests(final Batch batch) {
+        if (failIfNeeded()) {
             return;
         }
         if (context.nodeToReaderIds.isEmpty()) {
-            sendToDownstream(true, 0);
+            sendToDownstream(batch, 0);
             return;
         }
-        synchronized (failureLock) {
-            remainingRequests.set(context.nodeToReaderIds.size());
-        }
+        batch.remainingRequests.set(context.nodeToReaderIds.size());
         for (Map.Entry<String, IntSet> entry : context.nodeToReaderIds.entrySet()) {
-            IntObjectHashMap<IntContainer> toFetch = generateToFetch(entry);
-            if (toFetch.isEmpty() && !isLast) {
-                if (remainingRequests.decrementAndGet() == 0) {
-                    sendToDownstream(false, 0);
+            IntObjectHashMap<IntContainer> toFetch = generateToFetch(batch, entry);
+            if (toFetch.isEmpty() && !batch.isLast) {
+                if (batch.remainingRequests.decrementAndGet() == 0) {
+                    sendToDownstream(batch, 0);
                 }
             } else {
                 final String nodeId = entry.getKey();
-                ListenableFuture<IntObjectMap<? extends Bucket>> future = fetchOperation.fetch(nodeId, toFetch, isLast);
+                ListenableFuture<IntObjectMap<? extends Bucket>> future = fetchOperation.fetch(nodeId, toFetch, batch.isLast);
 
                 Futures.addCallback(future, new FutureCallback<IntObjectMap<? extends Bucket>>() {
                     @Override
                     public void onSuccess(@Nullable IntObjectMap<? extends Bucket> result) {
                         if (result != null) {
                             for (IntObjectCursor<? extends Bucket> cursor : result) {
-                                ReaderBucket readerBucket = context.getReaderBucket(cursor.key);
+                                ReaderBucket readerBucket = batch.readerBuckets.get(cursor.key);
                                 readerBucket.fetched(cursor.value);
                             }
                         }
-                        if (remainingRequests.decrementAndGet() == 0) {
-                            resultExecutor.execute(new SendToDownstreamRunnable(isLast));
+                        if (batch.remainingRequests.decrementAndGet() == 0) {
+                            resultExecutor.execute(new SendToDownstreamRunnable(batch));
                         }
                     }
 
                     @Override
                     public void onFailure(@Nonnull Throwable t) {
                         LOGGER.error("NodeFetchRequest failed on node {}", t, nodeId);
-                        remainingRequests.decrementAndGet();
                         fail(t);
+                        if (batch.remainingRequests.decrementAndGet() == 0) {
+                            failIfNeeded();
+                        }
                     }
                 });
             }
         }
     }
 
-    private IntObjectHashMap<IntContainer> generateToFetch(Map.Entry<String, IntSet> entry) {
+    private IntObjectHashMap<IntContainer> generateToFetch(Batch batch, Map.Entry<String, IntSet> entry) {
         IntObjectHashMap<IntContainer> toFetch = new IntObjectHashMap<>(entry.getValue().size());
         for (IntCursor readerIdCursor : entry.getValue()) {
-            ReaderBucket readerBucket = context.readerBucket(readerIdCursor.value);
+            ReaderBucket readerBucket = batch.readerBuckets.get(readerIdCursor.value);
             if (readerBucket != null && readerBucket.fetchRequired() && readerBucket.docs.size() > 0) {
                 toFetch.put(readerIdCursor.value, readerBucket.docs.keys());
             }
@@ -228,8 +247,8 @@ public class FetchProjector extends AbstractProjector {
         return toFetch;
     }
 
-    private void sendToDownstream(final boolean isLast, final int rowStartIdx) {
-        if (rowStartIdx == 0 && nextStage(Stage.FETCH, Stage.EMIT)) {
+    private void sendToDownstream(final Batch batch, final int rowStartIdx) {
+        if (failIfNeeded()) {
             return;
         }
         final ArrayBackedRow inputRow = collectRowContext.inputRow();
@@ -239,8 +258,8 @@ public class FetchProjector extends AbstractProjector {
         final Object[][] nullCells = collectRowContext.nullCells();
 
         loop:
-        for (int i = rowStartIdx; i < inputValues.size(); i++) {
-            Object[] cells = inputValues.get(i);
+        for (int i = rowStartIdx; i < batch.rows.size(); i++) {
+            Object[] cells = batch.rows.get(i);
             inputRow.cells = cells;
             for (int j = 0; j < docIdPositions.length; j++) {
                 Object docObject = cells[docIdPositions[j]];
@@ -252,7 +271,7 @@ public class FetchProjector extends AbstractProjector {
                 long doc = (long) docObject;
                 int readerId = (int) (doc >> 32);
                 int docId = (int) (long) doc;
-                ReaderBucket readerBucket = context.getReaderBucket(readerId);
+                ReaderBucket readerBucket = batch.readerBuckets.get(readerId);
                 assert readerBucket != null;
                 setPartitionRow(partitionRows, j, readerBucket);
                 fetchRows[j].cells = readerBucket.get(docId);
@@ -270,7 +289,7 @@ public class FetchProjector extends AbstractProjector {
                             ExecutorResumeHandle.resume(resultExecutor, new Runnable() {
                                 @Override
                                 public void run() {
-                                    sendToDownstream(isLast, startIdx);
+                                    sendToDownstream(batch, startIdx);
                                 }
                             }, async);
                         }
@@ -281,19 +300,44 @@ public class FetchProjector extends AbstractProjector {
             }
             throw new AssertionError("Unrecognized setNextRow result: " + result);
         }
-        context.clearBuckets();
-        if (!isLast) {
-            if (nextStage(Stage.EMIT, Stage.COLLECT)) {
-                return;
-            }
-            inputValues.clear();
-            currentRowCount = 0;
-            resume();
-        } else {
+        if (batch.isLast) {
             finishDownstream();
+        } else {
+            batchEmitted();
         }
     }
 
+    /**
+     * Called once all rows of the in-flight batch have been emitted.
+     * Starts fetching the next batch if it is already full or if the upstream has finished.
+     */
+    private void batchEmitted() {
+        Batch nextBatch = null;
+        boolean resumeUpstream = false;
+        synchronized (lock) {
+            inFlightBatch = null;
+            if (failure.get() == null) {
+                if (collectingBatchFull || collectingBatch.isLast) {
+                    nextBatch = collectingBatch;
+                    inFlightBatch = nextBatch;
+                    resumeUpstream = collectingBatchFull;
+                    collectingBatchFull = false;
+                    if (!nextBatch.isLast) {
+                        collectingBatch = new Batch();
+                    }
+                }
+            }
+        }
+        if (failIfNeeded()) {
+            return;
+        }
+        if (nextBatch != null) {
+            sendRequests(nextBatch);
+        }
+        if (resumeUpstream) {
+            resume();
+        }
+    }
 
     @Override
     public void pauseProcessed(ResumeHandle resumeHandle) {
@@ -322,49 +366,53 @@ public class FetchProjector extends AbstractProjector {
 
     @Override
     public void finish(RepeatHandle repeatHandle) {
-        if (!finishCalled.getAndSet(true)) {
-            sendRequests(true);
+        if (finishCalled.getAndSet(true)) {
+            return;
+        }
+        Batch lastBatch = null;
+        synchronized (lock) {
+            collectingBatch.isLast = true;
+            if (inFlightBatch == null) {
+                lastBatch = collectingBatch;
+                inFlightBatch = lastBatch;
+            }
+        }
+        if (lastBatch != null) {
+            sendRequests(lastBatch);
         }
     }
 
     private boolean failIfNeeded() {
         Throwable t = failure.get();
         if (t != null) {
-            downstream.fail(t);
+            if (!downstreamDone.getAndSet(true)) {
+                downstream.fail(t);
+            }
             return true;
         }
         return false;
     }
 
     private void finishDownstream() {
-        if (nextStage(Stage.EMIT, Stage.FINALIZE)) {
-            return;
-        }
         if (failIfNeeded()) {
             return;
         }
-        downstream.finish(RepeatHandle.UNSUPPORTED);
+        if (!downstreamDone.getAndSet(true)) {
+            downstream.finish(RepeatHandle.UNSUPPORTED);
+        }
     }
 
     @Override
     public void fail(Throwable throwable) {
-        synchronized (failureLock) {
-            boolean first = failure.compareAndSet(null, throwable);
-            switch (stage.get()) {
-                case INIT:
-                    throw new IllegalStateException("Shouldn't call fail on projection if projection hasn't been prepared");
-                case COLLECT:
-                    if (first) {
-                        if (!finishCalled.getAndSet(true)) {
-                            sendRequests(true);
-                        }
-                        return;
-                    }
-                case FETCH:
-                    if (remainingRequests.get() > 0) return;
-            }
+        failure.compareAndSet(null, throwable);
+        boolean batchInFlight;
+        synchronized (lock) {
+            batchInFlight = inFlightBatch != null;
+        }
+        // a batch in flight will propagate the failure once it is done
+        if (!batchInFlight) {
+            failIfNeeded();
         }
-        downstream.fail(throwable);
     }
 
     @Override
@@ -378,20 +426,21 @@ public class FetchProjector extends AbstractProjector {
     }
 
     private class SendToDownstreamRunnable extends AbstractRunnable {
-        private final boolean isLast;
+        private final Batch batch;
 
-        SendToDownstreamRunnable(boolean isLast) {
-            this.isLast = isLast;
+        SendToDownstreamRunnable(Batch batch) {
+            this.batch = batch;
         }
 
         @Override
         public void onFailure(Throwable t) {
             fail(t);
+            failIfNeeded();
         }
 
         @Override
         protected void doRun() throws Exception {
-            sendToDownstream(isLast, 0);
+            sendToDownstream(batch, 0);
         }
     }
 }
@@ -26,7 +26,6 @@ import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.IntSet;
 import com.carrotsearch.hppc.cursors.IntCursor;
-import com.carrotsearch.hppc.cursors.ObjectCursor;
 import io.crate.Streamer;
 import io.crate.analyze.symbol.Symbols;
 import io.crate.metadata.PartitionName;
@@ -48,7 +47,6 @@ public class FetchProjectorContext {
 
     private final TreeMap<Integer, String> readerIdToIndex;
     private final Map<String, TableIdent> indexToTable;
-    private final IntObjectHashMap<ReaderBucket> readerBuckets = new IntObjectHashMap<>();
     private Map<String, IntObjectHashMap<Streamer[]>> nodeIdToReaderIdToStreamers;
 
     public FetchProjectorContext(Map<TableIdent, FetchSource> tableToFetchSource,
@@ -61,24 +59,7 @@ public class FetchProjectorContext {
         this.indexToTable = indexToTable;
     }
 
-
-    ReaderBucket readerBucket(int readerId) {
-        return readerBuckets.get(readerId);
-    }
-
-    ReaderBucket require(long doc) {
-        int readerId = (int) (doc >> 32);
-        int docId = (int) doc;
-        ReaderBucket readerBucket = readerBuckets.get(readerId);
-        if (readerBucket == null) {
-            readerBucket = createReaderBucket(readerId);
-            readerBuckets.put(readerId, readerBucket);
-        }
-        readerBucket.require(docId);
-        return readerBucket;
-    }
-
-    private ReaderBucket createReaderBucket(int readerId) {
+    ReaderBucket createReaderBucket(int readerId) {
         String index = readerIdToIndex.floorEntry(readerId).getValue();
         TableIdent tableIdent = indexToTable.get(index);
         FetchSource fetchSource = tableToFetchSource.get(tableIdent);
@@ -100,10 +81,6 @@ public class FetchProjectorContext {
         return partitionValues;
     }
 
-    ReaderBucket getReaderBucket(int readerId) {
-        return readerBuckets.get(readerId);
-    }
-
     @Nullable
     private FetchSource getFetchSource(int readerId) {
         String index = readerIdToIndex.floorEntry(readerId).getValue();
@@ -129,10 +106,4 @@ public class FetchProjectorContext {
         }
         return nodeIdToReaderIdToStreamers;
     }
-
-    void clearBuckets() {
-        for (ObjectCursor<ReaderBucket> bucketCursor : readerBuckets.values()) {
-            bucketCursor.value.docs.clear();
-        }
-    }
 }
@@ -0,0 +1,148 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import io.crate.breaker.RamAccountingContext;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+import java.util.Arrays;
+
+/**
+ * {@link GroupTable} with keys that are byte sequences, e.g. composite keys serialized with {@link GroupKeyOutput}.
+ * <p>
+ * The key bytes of all groups are appended to one shared byte array, so adding a key to
+ * the table doesn't create any objects and the exact memory usage is known.
+ */
+public final class BytesGroupTable extends GroupTable {
+
+    private static final int INITIAL_BYTES_SIZE = 1024;
+
+    private byte[] bytes;
+    private int bytesUsed = 0;
+
+    /**
+     * ordinal -> start offset of the key in {@link #bytes}, the end offset is at ordinal + 1
+     */
+    private int[] offsets;
+    private int[] hashes;
+
+    private byte[] currentBytes;
+    private int currentOffset;
+    private int currentLength;
+    private int currentHash;
+
+    public BytesGroupTable(int numStates, RamAccountingContext ramAccountingContext) {
+        super(numStates, ramAccountingContext);
+        ramAccountingContext.addBytes(sizeOfByteArray(INITIAL_BYTES_SIZE)
+                                      + sizeOfIntArray(INITIAL_CAPACITY + 1)
+                                      + sizeOfIntArray(INITIAL_CAPACITY));
+        bytes = new byte[INITIAL_BYTES_SIZE];
+        offsets = new int[INITIAL_CAPACITY + 1];
+        hashes = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Looks up the group of the given key and creates it if it doesn't exist yet.
+     * The key bytes are copied if a new group is created, so the given array can be reused by the caller.
+     *
+     * @return the ordinal of the group if it already existed,
+     * otherwise {@code -1 - ordinal} of the newly created group.
+     */
+    public int add(byte[] key, int offset, int length) {
+        currentBytes = key;
+        currentOffset = offset;
+        currentLength = length;
+        currentHash = StringHelper.murmurhash3_x86_32(key, offset, length, StringHelper.GOOD_FAST_HASH_SEED);
+        return findOrInsert(currentHash);
+    }
+
+    /**
+     * Points {@code spare} to the key of the group with the given ordinal.
+     * The returned bytes are only valid until the next group is added.
+     */
+    public BytesRef key(int ordinal, BytesRef spare) {
+        spare.bytes = bytes;
+        spare.offset = offsets[ordinal];
+        spare.length = offsets[ordinal + 1] - spare.offset;
+        return spare;
+    }
+
+    @Override
+    protected boolean keyEquals(int ordinal) {
+        if (hashes[ordinal] != currentHash) {
+            return false;
+        }
+        int offset = offsets[ordinal];
+        if (offsets[ordinal + 1] - offset != currentLength) {
+            return false;
+        }
+        for (int i = 0; i < currentLength; i++) {
+            if (bytes[offset + i] != currentBytes[currentOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void storeKey(int ordinal) {
+        int newBytesUsed = bytesUsed + currentLength;
+        if (newBytesUsed > bytes.length) {
+            int newLength = ArrayUtil.oversize(newBytesUsed, 1);
+            ramAccountingContext.addBytes(sizeOfByteArray(newLength) - sizeOfByteArray(bytes.length));
+            bytes = Arrays.copyOf(bytes, newLength);
+        }
+        System.arraycopy(currentBytes, currentOffset, bytes, bytesUsed, currentLength);
+        bytesUsed = newBytesUsed;
+        offsets[ordinal + 1] = bytesUsed;
+        hashes[ordinal] = currentHash;
+    }
+
+    @Override
+    protected int hash(int ordinal) {
+        return hashes[ordinal];
+    }
+
+    @Override
+    protected void growKeys(int newCapacity) {
+        ramAccountingContext.addBytes(sizeOfIntArray(newCapacity + 1) - sizeOfIntArray(offsets.length)
+                                      + sizeOfIntArray(newCapacity) - sizeOfIntArray(hashes.length));
+        offsets = Arrays.copyOf(offsets, newCapacity + 1);
+        hashes = Arrays.copyOf(hashes, newCapacity);
+    }
+
+    @Override
+    protected long keysRamBytesUsed() {
+        return sizeOfByteArray(bytes.length) + sizeOfIntArray(offsets.length) + sizeOfIntArray(hashes.length);
+    }
+
+    @Override
+    protected void releaseKeys() {
+        bytes = new byte[0];
+        offsets = new int[1];
+        hashes = new int[0];
+        bytesUsed = 0;
+        currentBytes = null;
+    }
+}
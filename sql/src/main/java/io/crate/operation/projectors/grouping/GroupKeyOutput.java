@@ -0,0 +1,82 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.util.Arrays;
+
+/**
+ * A {@link StreamOutput} writing into a single reusable byte array.
+ * <p>
+ * Used to serialize composite group keys with the {@link io.crate.Streamer}s of the key types,
+ * without allocating anything per row once the buffer is large enough.
+ */
+public final class GroupKeyOutput extends StreamOutput {
+
+    private byte[] buffer = new byte[64];
+    private int length = 0;
+
+    @Override
+    public void writeByte(byte b) {
+        ensureCapacity(length + 1);
+        buffer[length++] = b;
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(b, offset, buffer, length, len);
+        length += len;
+    }
+
+    private void ensureCapacity(int minLength) {
+        if (minLength > buffer.length) {
+            buffer = Arrays.copyOf(buffer, ArrayUtil.oversize(minLength, 1));
+        }
+    }
+
+    /**
+     * @return the buffer, only the first {@link #length()} bytes are valid
+     */
+    public byte[] bytes() {
+        return buffer;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public void reset() {
+        length = 0;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import io.crate.breaker.RamAccountingContext;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.Arrays;
+
+/**
+ * Base class for open-addressing hash tables which map group keys to group ordinals.
+ * <p>
+ * Groups are numbered in insertion order. For every group a fixed number of aggregation states
+ * is stored in one flat array, so there is no per-group entry object.
+ * Subclasses store the keys, also indexed by ordinal.
+ * <p>
+ * All arrays allocated by a table are accounted in the given {@link RamAccountingContext}.
+ * The aggregation states themselves are accounted by the aggregations creating them.
+ */
+public abstract class GroupTable {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    protected static final int INITIAL_CAPACITY = 64;
+
+    protected final RamAccountingContext ramAccountingContext;
+    private final int numStates;
+
+    /**
+     * slot -> ordinal + 1; 0 marks an empty slot
+     */
+    private int[] slots;
+    private int mask;
+    private int resizeThreshold;
+
+    private Object[] states;
+    private int capacity;
+    private int size = 0;
+
+    protected GroupTable(int numStates, RamAccountingContext ramAccountingContext) {
+        this.numStates = numStates;
+        this.ramAccountingContext = ramAccountingContext;
+        ramAccountingContext.addBytes(sizeOfIntArray(INITIAL_CAPACITY) + sizeOfObjectArray(INITIAL_CAPACITY * numStates));
+        slots = new int[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        resizeThreshold = (int) (INITIAL_CAPACITY * LOAD_FACTOR);
+        states = new Object[INITIAL_CAPACITY * numStates];
+        capacity = INITIAL_CAPACITY;
+    }
+
+    /**
+     * Looks up the group of the current key and creates it if it doesn't exist yet.
+     *
+     * @param hash the hash of the current key, must be the same value {@link #hash(int)} returns once it is stored
+     * @return the ordinal of the group if it already existed,
+     * otherwise {@code -1 - ordinal} of the newly created group.
+     */
+    protected final int findOrInsert(int hash) {
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (keyEquals(entry - 1)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int ordinal = size;
+        if (ordinal == capacity) {
+            int newCapacity = ArrayUtil.oversize(capacity + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+            ramAccountingContext.addBytes(sizeOfObjectArray(newCapacity * numStates) - sizeOfObjectArray(states.length));
+            growKeys(newCapacity);
+            states = Arrays.copyOf(states, newCapacity * numStates);
+            capacity = newCapacity;
+        }
+        storeKey(ordinal);
+        slots[slot] = ordinal + 1;
+        size++;
+        if (size > resizeThreshold) {
+            rehash();
+        }
+        return -1 - ordinal;
+    }
+
+    /**
+     * @return true if the key of the group with the given ordinal equals the current key
+     */
+    protected abstract boolean keyEquals(int ordinal);
+
+    /**
+     * store the current key as key of the group with the given ordinal
+     */
+    protected abstract void storeKey(int ordinal);
+
+    /**
+     * @return the hash of the stored key of the group with the given ordinal
+     */
+    protected abstract int hash(int ordinal);
+
+    /**
+     * grow the key storage so that it can hold {@code newCapacity} keys.
+     * Implementations must account the additional memory.
+     */
+    protected abstract void growKeys(int newCapacity);
+
+    /**
+     * @return the number of bytes currently used to store the keys
+     */
+    protected abstract long keysRamBytesUsed();
+
+    /**
+     * release the key storage
+     */
+    protected abstract void releaseKeys();
+
+    public int size() {
+        return size;
+    }
+
+    public Object state(int ordinal, int stateIdx) {
+        return states[ordinal * numStates + stateIdx];
+    }
+
+    public void state(int ordinal, int stateIdx, Object state) {
+        states[ordinal * numStates + stateIdx] = state;
+    }
+
+    /**
+     * The number of bytes currently accounted for the arrays of this table.
+     */
+    public long ramBytesUsed() {
+        return sizeOfIntArray(slots.length) + sizeOfObjectArray(states.length) + keysRamBytesUsed();
+    }
+
+    /**
+     * Releases the arrays and the accounted bytes of this table. The table must not be used afterwards.
+     */
+    public void release() {
+        ramAccountingContext.addBytes(-ramBytesUsed());
+        releaseKeys();
+        slots = new int[0];
+        states = new Object[0];
+        capacity = 0;
+        size = 0;
+    }
+
+    private void rehash() {
+        int newLength = slots.length << 1;
+        ramAccountingContext.addBytes(sizeOfIntArray(newLength) - sizeOfIntArray(slots.length));
+        int[] newSlots = new int[newLength];
+        int newMask = newLength - 1;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int slot = hash(ordinal) & newMask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & newMask;
+            }
+            newSlots[slot] = ordinal + 1;
+        }
+        slots = newSlots;
+        mask = newMask;
+        resizeThreshold = (int) (newLength * LOAD_FACTOR);
+    }
+
+    protected static long sizeOfByteArray(int length) {
+        return RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) length);
+    }
+
+    protected static long sizeOfIntArray(int length) {
+        return RamUsageEstimator.alignObjectSize(
+            RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) length * RamUsageEstimator.NUM_BYTES_INT);
+    }
+
+    protected static long sizeOfLongArray(int length) {
+        return RamUsageEstimator.alignObjectSize(
+            RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) length * RamUsageEstimator.NUM_BYTES_LONG);
+    }
+
+    protected static long sizeOfObjectArray(int length) {
+        return RamUsageEstimator.alignObjectSize(
+            RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) length * RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+    }
+}
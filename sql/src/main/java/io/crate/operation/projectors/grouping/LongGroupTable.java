@@ -0,0 +1,100 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import io.crate.breaker.RamAccountingContext;
+
+import java.util.Arrays;
+
+/**
+ * {@link GroupTable} with primitive long keys, so keys of fixed-width types don't need to be boxed.
+ * See {@link LongKeyCodec}.
+ */
+public final class LongGroupTable extends GroupTable {
+
+    private long[] keys;
+    private long currentKey;
+
+    public LongGroupTable(int numStates, RamAccountingContext ramAccountingContext) {
+        super(numStates, ramAccountingContext);
+        ramAccountingContext.addBytes(sizeOfLongArray(INITIAL_CAPACITY));
+        keys = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Looks up the group of the given key and creates it if it doesn't exist yet.
+     *
+     * @return the ordinal of the group if it already existed,
+     * otherwise {@code -1 - ordinal} of the newly created group.
+     */
+    public int add(long key) {
+        currentKey = key;
+        return findOrInsert(mix(key));
+    }
+
+    public long key(int ordinal) {
+        return keys[ordinal];
+    }
+
+    @Override
+    protected boolean keyEquals(int ordinal) {
+        return keys[ordinal] == currentKey;
+    }
+
+    @Override
+    protected void storeKey(int ordinal) {
+        keys[ordinal] = currentKey;
+    }
+
+    @Override
+    protected int hash(int ordinal) {
+        return mix(keys[ordinal]);
+    }
+
+    @Override
+    protected void growKeys(int newCapacity) {
+        ramAccountingContext.addBytes(sizeOfLongArray(newCapacity) - sizeOfLongArray(keys.length));
+        keys = Arrays.copyOf(keys, newCapacity);
+    }
+
+    @Override
+    protected long keysRamBytesUsed() {
+        return sizeOfLongArray(keys.length);
+    }
+
+    @Override
+    protected void releaseKeys() {
+        keys = new long[0];
+    }
+
+    /**
+     * finalizer of MurmurHash3 to spread sequential keys over the table
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import io.crate.types.*;
+
+import javax.annotation.Nullable;
+
+/**
+ * Encodes values of a fixed-width {@link DataType} into a long and back,
+ * so that they can be used as keys of a {@link LongGroupTable} without boxing.
+ * <p>
+ * Encoding must be lossless: {@code decode(encode(v)).equals(v)} for every non-null value.
+ */
+public abstract class LongKeyCodec {
+
+    public abstract long encode(Object value);
+
+    public abstract Object decode(long key);
+
+    /**
+     * @return a codec for the given type or null if values of this type can't be encoded into a long.
+     */
+    @Nullable
+    public static LongKeyCodec forType(DataType type) {
+        switch (type.id()) {
+            case ByteType.ID:
+                return BYTE;
+            case ShortType.ID:
+                return SHORT;
+            case IntegerType.ID:
+                return INTEGER;
+            case LongType.ID:
+            case TimestampType.ID:
+                return LONG;
+            case FloatType.ID:
+                return FLOAT;
+            case DoubleType.ID:
+                return DOUBLE;
+            case BooleanType.ID:
+                return BOOLEAN;
+            default:
+                return null;
+        }
+    }
+
+    private static final LongKeyCodec BYTE = new LongKeyCodec() {
+        @Override
+        public long encode(Object value) {
+            return ((Number) value).byteValue();
+        }
+
+        @Override
+        public Object decode(long key) {
+            return (byte) key;
+        }
+    };
+
+    private static final LongKeyCodec SHORT = new LongKeyCodec() {
+        @Override
+        public long encode(Object value) {
+            return ((Number) value).shortValue();
+        }
+
+        @Override
+        public Object decode(long key) {
+            return (short) key;
+        }
+    };
+
+    private static final LongKeyCodec INTEGER = new LongKeyCodec() {
+        @Override
+        public long encode(Object value) {
+            return ((Number) value).intValue();
+        }
+
+        @Override
+        public Object decode(long key) {
+            return (int) key;
+        }
+    };
+
+    private static final LongKeyCodec LONG = new LongKeyCodec() {
+        @Override
+        public long encode(Object value) {
+            return ((Number) value).longValue();
+        }
+
+        @Override
+        public Object decode(long key) {
+            return key;
+        }
+    };
+
+    private static final LongKeyCodec FLOAT = new LongKeyCodec() {
+        @Override
+        public long encode(Object value) {
+            // floatToIntBits (instead of the raw variant) to get the same NaN handling as Float.equals
+            return Float.floatToIntBits(((Number) value).floatValue());
+        }
+
+        @Override
+        public Object decode(long key) {
+            return Float.intBitsToFloat((int) key);
+        }
+    };
+
+    private static final LongKeyCodec DOUBLE = new LongKeyCodec() {
+        @Override
+        public long encode(Object value) {
+            return Double.doubleToLongBits(((Number) value).doubleValue());
+        }
+
+        @Override
+        public Object decode(long key) {
+            return Double.longBitsToDouble(key);
+        }
+    };
+
+    private static final LongKeyCodec BOOLEAN = new LongKeyCodec() {
+        @Override
+        public long encode(Object value) {
+            return (Boolean) value ? 1L : 0L;
+        }
+
+        @Override
+        public Object decode(long key) {
+            return key == 1L;
+        }
+    };
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import com.google.common.io.CountingInputStream;
+import io.crate.Streamer;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Groups (serialized key + partial aggregation states) written to temporary files.
+ * <p>
+ * The groups are partitioned by the hash of their key, so all spilled states of one group end up
+ * in the same partition and each partition can be re-aggregated on its own with bounded memory.
+ * A group may occur multiple times within a partition, once for every spill.
+ */
+public final class SpilledGroupPartitions implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // different seed than the one used by BytesGroupTable so that partitions and slots are not correlated
+    private static final int PARTITION_HASH_SEED = 0x5bd1e995;
+
+    private final Streamer<?>[] stateStreamers;
+    private final Path[] files;
+    private final StreamOutput[] outputs;
+    private final int[] numGroups;
+    private long bytesWritten = 0;
+    private boolean writing = true;
+
+    public SpilledGroupPartitions(Path directory, int numPartitions, Streamer<?>[] stateStreamers) throws IOException {
+        this.stateStreamers = stateStreamers;
+        files = new Path[numPartitions];
+        outputs = new StreamOutput[numPartitions];
+        numGroups = new int[numPartitions];
+        Files.createDirectories(directory);
+        boolean success = false;
+        try {
+            for (int i = 0; i < numPartitions; i++) {
+                files[i] = Files.createTempFile(directory, "groups-", ".spill");
+                outputs[i] = new OutputStreamStreamOutput(
+                    new BufferedOutputStream(Files.newOutputStream(files[i]), BUFFER_SIZE));
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Appends a group to the partition of its key.
+     */
+    public void add(byte[] key, int offset, int length, Object[] states) throws IOException {
+        assert writing : "groups must not be added after finishWriting() has been called";
+        int hash = StringHelper.murmurhash3_x86_32(key, offset, length, PARTITION_HASH_SEED);
+        int partition = (hash & Integer.MAX_VALUE) % files.length;
+        StreamOutput out = outputs[partition];
+        out.writeVInt(length);
+        out.writeBytes(key, offset, length);
+        for (int i = 0; i < stateStreamers.length; i++) {
+            stateStreamers[i].writeValueTo(out, states[i]);
+        }
+        numGroups[partition]++;
+        bytesWritten += length;
+    }
+
+    /**
+     * Flushes and closes the files, afterwards the partitions can be read using {@link #open(int)}
+     */
+    public void finishWriting() throws IOException {
+        writing = false;
+        IOUtils.close(outputs);
+    }
+
+    public int numPartitions() {
+        return files.length;
+    }
+
+    public int numGroups(int partition) {
+        return numGroups[partition];
+    }
+
+    /**
+     * the number of key bytes written so far, without the states.
+     */
+    public long keyBytesWritten() {
+        return bytesWritten;
+    }
+
+    public Reader open(int partition) throws IOException {
+        assert !writing : "finishWriting() must be called before reading a partition";
+        return new Reader(new CountingInputStream(
+            new BufferedInputStream(Files.newInputStream(files[partition]), BUFFER_SIZE)));
+    }
+
+    /**
+     * Closes all files and deletes them
+     */
+    @Override
+    public void close() throws IOException {
+        writing = false;
+        IOUtils.closeWhileHandlingException(outputs);
+        IOUtils.deleteFilesIgnoringExceptions(files);
+    }
+
+    /**
+     * Reads the groups of a partition. For each group {@link #readKey()} must be called first,
+     * followed by {@link #readState(int)} for every state in order.
+     */
+    public final class Reader implements Closeable {
+
+        private final CountingInputStream countingIn;
+        private final StreamInput in;
+        private final BytesRef key = new BytesRef(16);
+
+        private Reader(CountingInputStream countingIn) {
+            this.countingIn = countingIn;
+            this.in = new InputStreamStreamInput(countingIn);
+        }
+
+        /**
+         * @return the number of bytes of the partition read so far
+         */
+        public long bytesRead() {
+            return countingIn.getCount();
+        }
+
+        /**
+         * @return the key of the next group, the returned BytesRef is reused for the next key.
+         */
+        public BytesRef readKey() throws IOException {
+            int length = in.readVInt();
+            key.bytes = ArrayUtil.grow(key.bytes, length);
+            in.readBytes(key.bytes, 0, length);
+            key.offset = 0;
+            key.length = length;
+            return key;
+        }
+
+        public Object readState(int stateIdx) throws IOException {
+            return stateStreamers[stateIdx].readValueFrom(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.sorting;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import io.crate.Streamer;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Sorted runs of rows written to temporary files, used to sort more rows than fit into memory.
+ * <p>
+ * Each run is read back lazily, so merging the runs only keeps one row per run in memory.
+ */
+public final class SortedRuns implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Streamer<?>[] streamers;
+    private final List<Path> files = new ArrayList<>();
+    private final List<Integer> numRows = new ArrayList<>();
+    private final List<Closeable> openReaders = new ArrayList<>();
+
+    public SortedRuns(Path directory, Streamer<?>[] streamers) throws IOException {
+        this.directory = directory;
+        this.streamers = streamers;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Writes the given rows, which must already be sorted, as a new run.
+     */
+    public void add(List<Object[]> sortedRows) throws IOException {
+        Path file = Files.createTempFile(directory, "sort-run-", ".spill");
+        files.add(file);
+        try (StreamOutput out = new OutputStreamStreamOutput(
+            new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            for (Object[] row : sortedRows) {
+                for (int i = 0; i < streamers.length; i++) {
+                    streamers[i].writeValueTo(out, row[i]);
+                }
+            }
+        }
+        numRows.add(sortedRows.size());
+    }
+
+    public int numRuns() {
+        return files.size();
+    }
+
+    /**
+     * @return the rows of the run with the given index, each row is a new array.
+     * The returned iterable can only be iterated once.
+     */
+    public Iterable<Object[]> run(final int runIdx) {
+        return new Iterable<Object[]>() {
+            @Override
+            public Iterator<Object[]> iterator() {
+                try {
+                    return new RunIterator(files.get(runIdx), numRows.get(runIdx));
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Closes all readers and deletes the files of all runs
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOUtils.closeWhileHandlingException(openReaders);
+        openReaders.clear();
+        IOUtils.deleteFilesIgnoringExceptions(files.toArray(new Path[files.size()]));
+    }
+
+    private class RunIterator extends AbstractIterator<Object[]> {
+
+        private final StreamInput in;
+        private int remainingRows;
+
+        RunIterator(Path file, int numRows) throws IOException {
+            in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            synchronized (SortedRuns.this) {
+                openReaders.add(in);
+            }
+            remainingRows = numRows;
+        }
+
+        @Override
+        protected Object[] computeNext() {
+            try {
+                if (remainingRows == 0) {
+                    in.close();
+                    return endOfData();
+                }
+                remainingRows--;
+                Object[] row = new Object[streamers.length];
+                for (int i = 0; i < streamers.length; i++) {
+                    row[i] = streamers[i].readValueFrom(in);
+                }
+                return row;
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+}
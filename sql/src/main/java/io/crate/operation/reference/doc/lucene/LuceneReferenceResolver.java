@@ -21,6 +21,7 @@
 
 package io.crate.operation.reference.doc.lucene;
 
+import com.google.common.collect.ImmutableSet;
 import io.crate.exceptions.UnhandledServerException;
 import io.crate.exceptions.UnsupportedFeatureException;
 import io.crate.metadata.Reference;
@@ -28,9 +29,11 @@ import io.crate.metadata.RowGranularity;
 import io.crate.operation.reference.ReferenceResolver;
 import io.crate.types.*;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.MapperService;
 
 import java.util.Locale;
+import java.util.Set;
 
 public class LuceneReferenceResolver implements ReferenceResolver<LuceneCollectorExpression<?>> {
 
@@ -40,6 +43,22 @@ public class LuceneReferenceResolver implements ReferenceResolver<LuceneCollecto
 
     private final static NullValueCollectorExpression NULL_COLLECTOR_EXPRESSION = new NullValueCollectorExpression();
 
+    /**
+     * types whose column references read single values from the doc values of the column
+     */
+    private static final Set<DataType> DOC_VALUES_TYPES = ImmutableSet.<DataType>of(
+        DataTypes.BYTE,
+        DataTypes.SHORT,
+        DataTypes.INTEGER,
+        DataTypes.LONG,
+        DataTypes.TIMESTAMP,
+        DataTypes.FLOAT,
+        DataTypes.DOUBLE,
+        DataTypes.BOOLEAN,
+        DataTypes.STRING,
+        DataTypes.IP
+    );
+
     public LuceneReferenceResolver(@Nullable MapperService mapperService) {
         this.mapperService = mapperService;
     }
@@ -103,6 +122,18 @@ public class LuceneReferenceResolver implements ReferenceResolver<LuceneCollecto
         }
     }
 
+    /**
+     * Returns true if the values of the given column can be read from its doc values.
+     * Reading doc values is a lot cheaper than loading and parsing the source of a document.
+     */
+    public static boolean hasDocValues(String columnName, DataType type, MapperService mapperService) {
+        if (!DOC_VALUES_TYPES.contains(type)) {
+            return false;
+        }
+        MappedFieldType fieldType = mapperService.smartNameFieldType(columnName);
+        return fieldType != null && fieldType.hasDocValues();
+    }
+
     private static class NullValueCollectorExpression extends LuceneCollectorExpression<Void> {
 
         @Override
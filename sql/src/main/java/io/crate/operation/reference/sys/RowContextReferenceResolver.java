@@ -24,6 +24,7 @@ package io.crate.operation.reference.sys;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import io.crate.lucene.SegmentFilterCache;
 import io.crate.metadata.*;
 import io.crate.metadata.expressions.RowCollectExpressionFactory;
 import io.crate.metadata.expressions.WriteableRowContextExpression;
@@ -69,6 +70,7 @@ public class RowContextReferenceResolver implements ReferenceResolver<RowCollect
         tableFactories.put(SysOperationsLogTableInfo.IDENT, getSysOperationLogExpressions());
         tableFactories.put(SysChecksTableInfo.IDENT, getSysChecksExpressions());
         tableFactories.put(SysNodeChecksTableInfo.IDENT, getSysNodeChecksExpressions());
+        tableFactories.put(SysFilterCacheTableInfo.IDENT, getSysFilterCacheExpressions());
         tableFactories.put(SysRepositoriesTableInfo.IDENT, getSysRepositoriesExpressions());
         tableFactories.put(SysSnapshotsTableInfo.IDENT, getSysSnapshotsExpressions());
         tableFactories.put(SysSummitsTableInfo.IDENT, getSummitsExpressions());
@@ -233,6 +235,28 @@ public class RowContextReferenceResolver implements ReferenceResolver<RowCollect
                     };
                 }
             })
+            .put(SysOperationsTableInfo.Columns.COMPRESSION_RATIO, new RowCollectExpressionFactory() {
+                @Override
+                public RowCollectExpression create() {
+                    return new RowContextCollectorExpression<OperationContext, Double>() {
+                        @Override
+                        public Double value() {
+                            return row.compressionRatio();
+                        }
+                    };
+                }
+            })
+            .put(SysOperationsTableInfo.Columns.COMPRESSION_TIME, new RowCollectExpressionFactory() {
+                @Override
+                public RowCollectExpression create() {
+                    return new RowContextCollectorExpression<OperationContext, Long>() {
+                        @Override
+                        public Long value() {
+                            return row.compressionTime();
+                        }
+                    };
+                }
+            })
             .build();
     }
 
@@ -464,6 +488,77 @@ public class RowContextReferenceResolver implements ReferenceResolver<RowCollect
             .build();
     }
 
+    private ImmutableMap<ColumnIdent, RowCollectExpressionFactory> getSysFilterCacheExpressions() {
+        return ImmutableMap.<ColumnIdent, RowCollectExpressionFactory>builder()
+            .put(SysFilterCacheTableInfo.Columns.NODE_ID, new RowCollectExpressionFactory() {
+                @Override
+                public RowCollectExpression create() {
+                    return new RowContextCollectorExpression<SegmentFilterCache.Stats, BytesRef>() {
+                        @Override
+                        public BytesRef value() {
+                            return row.nodeId();
+                        }
+                    };
+                }
+            })
+            .put(SysFilterCacheTableInfo.Columns.ENTRIES, new RowCollectExpressionFactory() {
+                @Override
+                public RowCollectExpression create() {
+                    return new RowContextCollectorExpression<SegmentFilterCache.Stats, Long>() {
+                        @Override
+                        public Long value() {
+                            return row.entries();
+                        }
+                    };
+                }
+            })
+            .put(SysFilterCacheTableInfo.Columns.SIZE, new RowCollectExpressionFactory() {
+                @Override
+                public RowCollectExpression create() {
+                    return new RowContextCollectorExpression<SegmentFilterCache.Stats, Long>() {
+                        @Override
+                        public Long value() {
+                            return row.sizeInBytes();
+                        }
+                    };
+                }
+            })
+            .put(SysFilterCacheTableInfo.Columns.HITS, new RowCollectExpressionFactory() {
+                @Override
+                public RowCollectExpression create() {
+                    return new RowContextCollectorExpression<SegmentFilterCache.Stats, Long>() {
+                        @Override
+                        public Long value() {
+                            return row.hits();
+                        }
+                    };
+                }
+            })
+            .put(SysFilterCacheTableInfo.Columns.MISSES, new RowCollectExpressionFactory() {
+                @Override
+                public RowCollectExpression create() {
+                    return new RowContextCollectorExpression<SegmentFilterCache.Stats, Long>() {
+                        @Override
+                        public Long value() {
+                            return row.misses();
+                        }
+                    };
+                }
+            })
+            .put(SysFilterCacheTableInfo.Columns.EVICTIONS, new RowCollectExpressionFactory() {
+                @Override
+                public RowCollectExpression create() {
+                    return new RowContextCollectorExpression<SegmentFilterCache.Stats, Long>() {
+                        @Override
+                        public Long value() {
+                            return row.evictions();
+                        }
+                    };
+                }
+            })
+            .build();
+    }
+
     private ImmutableMap<ColumnIdent, RowCollectExpressionFactory> getSysRepositoriesExpressions() {
         return ImmutableMap.<ColumnIdent, RowCollectExpressionFactory>builder()
             .put(SysRepositoriesTableInfo.Columns.NAME, new RowCollectExpressionFactory() {
@@ -166,6 +166,9 @@ public class ClusterSettingsExpression extends NestedObjectExpression {
         childImplementations.put(
             CrateSettings.BULK.name(),
             new NestedSettingExpression(CrateSettings.BULK, values));
+        childImplementations.put(
+            CrateSettings.RESULT_COMPRESSION.name(),
+            new NestedSettingExpression(CrateSettings.RESULT_COMPRESSION, values));
         childImplementations.put(
             CrateSettings.GATEWAY.name(),
             new NestedSettingExpression(CrateSettings.GATEWAY, values));
@@ -21,6 +21,7 @@
 
 package io.crate.operation.reference.sys.operation;
 
+import javax.annotation.Nullable;
 import java.util.UUID;
 
 public class OperationContext {
@@ -31,6 +32,10 @@ public class OperationContext {
     public final long started;
     public long usedBytes;
 
+    private long uncompressedBytes;
+    private long compressedBytes;
+    private long compressionNanos;
+
     public OperationContext(int id, UUID jobId, String name, long started) {
         this.id = id;
         this.jobId = jobId;
@@ -38,6 +43,35 @@ public class OperationContext {
         this.started = started;
     }
 
+    public synchronized void addCompression(long uncompressedBytes, long compressedBytes, long compressionNanos) {
+        this.uncompressedBytes += uncompressedBytes;
+        this.compressedBytes += compressedBytes;
+        this.compressionNanos += compressionNanos;
+    }
+
+    /**
+     * @return the ratio between the compressed and the uncompressed size of the result pages
+     *         or null if no page has been compressed
+     */
+    @Nullable
+    public synchronized Double compressionRatio() {
+        if (uncompressedBytes == 0) {
+            return null;
+        }
+        return (double) compressedBytes / uncompressedBytes;
+    }
+
+    /**
+     * @return the time in ms spent compressing result pages or null if no page has been compressed
+     */
+    @Nullable
+    public synchronized Long compressionTime() {
+        if (uncompressedBytes == 0) {
+            return null;
+        }
+        return compressionNanos / 1_000_000;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
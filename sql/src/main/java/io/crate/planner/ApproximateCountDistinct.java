@@ -0,0 +1,80 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import io.crate.analyze.HavingClause;
+import io.crate.analyze.QuerySpec;
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Functions;
+import io.crate.metadata.ReplaceMode;
+import io.crate.metadata.ReplacingSymbolVisitor;
+import io.crate.operation.aggregation.impl.CollectSetAggregation;
+import io.crate.operation.aggregation.impl.HyperLogLogDistinctAggregation;
+import io.crate.operation.scalar.CollectionCountFunction;
+
+import javax.annotation.Nullable;
+
+/**
+ * Replaces <code>count(distinct col)</code>, which is analyzed as <code>collection_count(collect_set(col))</code>,
+ * with the approximation <code>hyperloglog_distinct(col)</code>.
+ */
+class ApproximateCountDistinct extends ReplacingSymbolVisitor<Void>
+    implements com.google.common.base.Function<Symbol, Symbol> {
+
+    private final Functions functions;
+
+    ApproximateCountDistinct(Functions functions) {
+        super(ReplaceMode.COPY);
+        this.functions = functions;
+    }
+
+    void rewrite(QuerySpec querySpec) {
+        querySpec.replace(this);
+        if (querySpec.having().isPresent() && querySpec.having().get().hasQuery()) {
+            querySpec.having(new HavingClause(apply(querySpec.having().get().query())));
+        }
+    }
+
+    @Override
+    public Symbol apply(@Nullable Symbol input) {
+        return process(input, null);
+    }
+
+    @Override
+    public Symbol visitFunction(Function symbol, Void context) {
+        if (symbol.info().ident().name().equals(CollectionCountFunction.NAME)
+            && symbol.arguments().size() == 1
+            && symbol.arguments().get(0) instanceof Function) {
+            Function collectSet = (Function) symbol.arguments().get(0);
+            if (collectSet.info().ident().name().equals(CollectSetAggregation.NAME)) {
+                FunctionInfo info = functions.getSafe(new FunctionIdent(
+                    HyperLogLogDistinctAggregation.NAME, collectSet.info().ident().argumentTypes())).info();
+                return new Function(info, collectSet.arguments());
+            }
+        }
+        return super.visitFunction(symbol, context);
+    }
+}
@@ -34,6 +34,7 @@ import io.crate.analyze.relations.PlannedAnalyzedRelation;
 import io.crate.analyze.relations.QueriedDocTable;
 import io.crate.exceptions.ValidationException;
 import io.crate.exceptions.VersionInvalidException;
+import io.crate.metadata.Functions;
 import io.crate.metadata.Reference;
 import io.crate.metadata.TableIdent;
 import io.crate.operation.projectors.TopN;
@@ -55,18 +56,30 @@ import io.crate.planner.projection.TopNProjection;
 import io.crate.planner.projection.builder.ProjectionBuilder;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Map;
 
 @Singleton
 public class SelectStatementPlanner {
 
+    /**
+     * If enabled <code>count(distinct col)</code> on tables is computed as approximation using
+     * the <code>hyperloglog_distinct</code> aggregation which requires a lot less memory.
+     */
+    public static final String APPROXIMATE_COUNT_DISTINCT_SETTING = "node.sql.approximate_count_distinct";
+
     private final Visitor visitor;
 
     @Inject
-    public SelectStatementPlanner(ConsumingPlanner consumingPlanner) {
-        visitor = new Visitor(consumingPlanner);
+    public SelectStatementPlanner(ConsumingPlanner consumingPlanner, Functions functions, Settings settings) {
+        ApproximateCountDistinct approximateCountDistinct = null;
+        if (settings.getAsBoolean(APPROXIMATE_COUNT_DISTINCT_SETTING, false)) {
+            approximateCountDistinct = new ApproximateCountDistinct(functions);
+        }
+        visitor = new Visitor(consumingPlanner, approximateCountDistinct);
     }
 
     public Plan plan(SelectAnalyzedStatement statement, Planner.Context context) {
@@ -87,9 +100,12 @@ public class SelectStatementPlanner {
     private static class Visitor extends AnalyzedRelationVisitor<Planner.Context, Plan> {
 
         private final ConsumingPlanner consumingPlanner;
+        @Nullable
+        private final ApproximateCountDistinct approximateCountDistinct;
 
-        public Visitor(ConsumingPlanner consumingPlanner) {
+        public Visitor(ConsumingPlanner consumingPlanner, @Nullable ApproximateCountDistinct approximateCountDistinct) {
             this.consumingPlanner = consumingPlanner;
+            this.approximateCountDistinct = approximateCountDistinct;
         }
 
         @Override
@@ -101,6 +117,9 @@ public class SelectStatementPlanner {
         public Plan visitQueriedDocTable(QueriedDocTable table, Planner.Context context) {
             QuerySpec querySpec = table.querySpec();
             if (querySpec.hasAggregates() || querySpec.groupBy().isPresent()) {
+                if (approximateCountDistinct != null) {
+                    approximateCountDistinct.rewrite(querySpec);
+                }
                 return consumingPlanner.plan(table, context);
             }
             if (querySpec.where().docKeys().isPresent() && !table.tableRelation().tableInfo().isAlias()) {
@@ -24,16 +24,22 @@ package io.crate.planner.consumer;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 import io.crate.analyze.*;
 import io.crate.analyze.relations.*;
 import io.crate.analyze.symbol.*;
 import io.crate.exceptions.ValidationException;
 import io.crate.metadata.TableIdent;
+import io.crate.operation.operator.AndOperator;
+import io.crate.operation.operator.EqOperator;
 import io.crate.planner.Limits;
 import io.crate.planner.TableStatsService;
 import io.crate.planner.distribution.DistributionInfo;
+import io.crate.planner.distribution.DistributionType;
 import io.crate.planner.distribution.UpstreamPhase;
 import io.crate.planner.node.NoopPlannedAnalyzedRelation;
 import io.crate.planner.node.dql.MergePhase;
@@ -46,6 +52,8 @@ import io.crate.planner.projection.TopNProjection;
 import io.crate.planner.projection.builder.InputCreatingVisitor;
 import io.crate.planner.projection.builder.ProjectionBuilder;
 import io.crate.sql.tree.QualifiedName;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
@@ -108,10 +116,12 @@ public class NestedLoopConsumer implements Consumer {
             final Map<Symbol, Symbol> symbolMap = new HashMap<>();
             QueriedRelation left;
             QueriedRelation right;
+            int numLeftOutputs;
             try {
                 left = SubRelationConverter.INSTANCE.process(statement.left().relation(), statement.left());
                 right = SubRelationConverter.INSTANCE.process(statement.right().relation(), statement.right());
                 addOutputsAndSymbolMap(statement.left().querySpec().outputs(), statement.leftName(), nlOutputs, symbolMap);
+                numLeftOutputs = nlOutputs.size();
                 addOutputsAndSymbolMap(statement.right().querySpec().outputs(), statement.rightName(), nlOutputs, symbolMap);
             } catch (ValidationException e) {
                 context.validationException(e);
@@ -170,9 +180,43 @@ public class NestedLoopConsumer implements Consumer {
                 return new NoopPlannedAnalyzedRelation(statement, context.plannerContext().jobId());
             }
 
+            boolean leftSmallerThanRight = isLeftSmallerThanRight(left, right);
+            List<Projection> projections = new ArrayList<>();
+
+            Symbol filterSymbol = null;
+            if (filterNeeded) {
+                InputCreatingVisitor.Context inputVisitorContext = new InputCreatingVisitor.Context(nlOutputs);
+                filterSymbol = InputCreatingVisitor.INSTANCE.process(where.query(), inputVisitorContext);
+                assert filterSymbol instanceof Function : "Only function symbols are allowed for filtering";
+                projections.add(new FilterProjection(filterSymbol));
+            }
+            if (joinCondition != null) {
+                InputCreatingVisitor.Context inputVisitorContext = new InputCreatingVisitor.Context(nlOutputs);
+                joinCondition = InputCreatingVisitor.INSTANCE.process(joinCondition, inputVisitorContext);
+                assert joinCondition instanceof Function : "Only function symbols are valid join conditions";
+            }
+
+            List<Integer> leftJoinKeys = new ArrayList<>();
+            List<Integer> rightJoinKeys = new ArrayList<>();
+            if (joinCondition != null) {
+                collectJoinKeys(joinCondition, numLeftOutputs, leftJoinKeys, rightJoinKeys);
+            }
+            if (filterSymbol != null && !joinType.isOuter()) {
+                // the filter of an inner join is applied to the joined rows, so its conditions can be used as keys as well
+                collectJoinKeys(filterSymbol, numLeftOutputs, leftJoinKeys, rightJoinKeys);
+            }
+            // the left side is only used to build the hash table if it doesn't need to keep its order
+            boolean buildLeft = leftSmallerThanRight && orderByBeforeSplit == null;
+            List<DataType> buildTypes = ImmutableList.copyOf(Symbols.extractTypes(buildLeft
+                ? nlOutputs.subList(0, numLeftOutputs)
+                : nlOutputs.subList(numLeftOutputs, nlOutputs.size())));
+            boolean hashJoin = !leftJoinKeys.isEmpty() && DataTypes.PRIMITIVE_TYPES.containsAll(buildTypes);
+
+            boolean partitioned = hashJoin && isPartitioningCheaperThanBroadcast(left, right, leftPlan, rightPlan);
+
             boolean broadcastLeftTable = false;
-            if (isDistributed) {
-                broadcastLeftTable = isLeftSmallerThanRight(left, right);
+            if (isDistributed && !partitioned) {
+                broadcastLeftTable = leftSmallerThanRight;
                 if (broadcastLeftTable) {
                     PlannedAnalyzedRelation tmpPlan = leftPlan;
                     leftPlan = rightPlan;
@@ -189,33 +233,59 @@ public class NestedLoopConsumer implements Consumer {
 
             MergePhase leftMerge = null;
             MergePhase rightMerge = null;
-            if (isDistributed) {
-                leftPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
-                nlExecutionNodes = leftPlan.resultPhase().executionNodes();
-            } else {
+            if (partitioned) {
+                // both sides are distributed by the first join key to all nodes involved,
+                // the same node order is used for both sides so that equal keys end up on the same node
+                nlExecutionNodes = ImmutableSortedSet.copyOf(Sets.union(
+                    ImmutableSet.copyOf(leftPlan.resultPhase().executionNodes()),
+                    ImmutableSet.copyOf(rightPlan.resultPhase().executionNodes())));
                 leftMerge = mergePhase(
                     context,
                     nlExecutionNodes,
                     leftPlan.resultPhase(),
                     left.querySpec().orderBy().orNull(),
                     left.querySpec().outputs(),
-                    false);
-            }
-            if (nlExecutionNodes.size() == 1
-                && nlExecutionNodes.equals(rightPlan.resultPhase().executionNodes())) {
-                // if the left and the right plan are executed on the same single node the mergePhase
-                // should be omitted. This is the case if the left and right table have only one shards which
-                // are on the same node
-                rightPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
-            } else {
+                    true);
                 rightMerge = mergePhase(
                     context,
                     nlExecutionNodes,
                     rightPlan.resultPhase(),
                     right.querySpec().orderBy().orNull(),
                     right.querySpec().outputs(),
-                    isDistributed);
-                rightPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_BROADCAST);
+                    true);
+                leftPlan.resultPhase().distributionInfo(
+                    new DistributionInfo(DistributionType.MODULO, leftJoinKeys.get(0)));
+                rightPlan.resultPhase().distributionInfo(
+                    new DistributionInfo(DistributionType.MODULO, rightJoinKeys.get(0)));
+            } else {
+                if (isDistributed) {
+                    leftPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
+                    nlExecutionNodes = leftPlan.resultPhase().executionNodes();
+                } else {
+                    leftMerge = mergePhase(
+                        context,
+                        nlExecutionNodes,
+                        leftPlan.resultPhase(),
+                        left.querySpec().orderBy().orNull(),
+                        left.querySpec().outputs(),
+                        false);
+                }
+                if (nlExecutionNodes.size() == 1
+                    && nlExecutionNodes.equals(rightPlan.resultPhase().executionNodes())) {
+                    // if the left and the right plan are executed on the same single node the mergePhase
+                    // should be omitted. This is the case if the left and right table have only one shards which
+                    // are on the same node
+                    rightPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
+                } else {
+                    rightMerge = mergePhase(
+                        context,
+                        nlExecutionNodes,
+                        rightPlan.resultPhase(),
+                        right.querySpec().orderBy().orNull(),
+                        right.querySpec().outputs(),
+                        isDistributed);
+                    rightPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_BROADCAST);
+                }
             }
 
 
@@ -226,19 +296,7 @@ public class NestedLoopConsumer implements Consumer {
                 leftMerge = rightMerge;
                 rightMerge = null;
             }
-            List<Projection> projections = new ArrayList<>();
-
-            if (filterNeeded) {
-                InputCreatingVisitor.Context inputVisitorContext = new InputCreatingVisitor.Context(nlOutputs);
-                Symbol filterSymbol = InputCreatingVisitor.INSTANCE.process(where.query(), inputVisitorContext);
-                assert filterSymbol instanceof Function : "Only function symbols are allowed for filtering";
-                projections.add(new FilterProjection(filterSymbol));
-            }
-            if (joinCondition != null) {
-                InputCreatingVisitor.Context inputVisitorContext = new InputCreatingVisitor.Context(nlOutputs);
-                joinCondition = InputCreatingVisitor.INSTANCE.process(joinCondition, inputVisitorContext);
-                assert joinCondition instanceof Function : "Only function symbols are valid join conditions";
-            }
+            isDistributed = isDistributed || partitioned;
 
             List<Symbol> postNLOutputs = Lists.newArrayList(querySpec.outputs());
             if (orderByBeforeSplit != null && isDistributed) {
@@ -265,7 +323,7 @@ public class NestedLoopConsumer implements Consumer {
             NestedLoopPhase nl = new NestedLoopPhase(
                 context.plannerContext().jobId(),
                 context.plannerContext().nextExecutionPhaseId(),
-                isDistributed ? "distributed-nested-loop" : "nested-loop",
+                (partitioned ? "partitioned-" : isDistributed ? "distributed-" : "") + (hashJoin ? "hash-join" : "nested-loop"),
                 projections,
                 leftMerge,
                 rightMerge,
@@ -275,6 +333,11 @@ public class NestedLoopConsumer implements Consumer {
                 left.querySpec().outputs().size(),
                 right.querySpec().outputs().size()
             );
+            if (hashJoin) {
+                LOGGER.debug("Using hash join on {} keys, building the hash table from the {} side",
+                    leftJoinKeys.size(), buildLeft ? "left" : "right");
+                nl.hashJoin(Ints.toArray(leftJoinKeys), Ints.toArray(rightJoinKeys), buildLeft, buildTypes);
+            }
             MergePhase localMergePhase = null;
             // TODO: build local merge phases somewhere else for any subplan
             if (isDistributed && context.isRoot()) {
@@ -304,6 +367,74 @@ public class NestedLoopConsumer implements Consumer {
             }
         }
 
+        /**
+         * Collects the equality conditions within the AND-connected condition which compare a column of the left side
+         * with a column of the right side of the same primitive type. These are used as keys of a hash join.
+         */
+        private static void collectJoinKeys(Symbol condition,
+                                            int numLeftOutputs,
+                                            List<Integer> leftJoinKeys,
+                                            List<Integer> rightJoinKeys) {
+            if (!(condition instanceof Function)) {
+                return;
+            }
+            Function function = (Function) condition;
+            String functionName = function.info().ident().name();
+            if (AndOperator.NAME.equals(functionName)) {
+                for (Symbol argument : function.arguments()) {
+                    collectJoinKeys(argument, numLeftOutputs, leftJoinKeys, rightJoinKeys);
+                }
+                return;
+            }
+            if (!EqOperator.NAME.equals(functionName)) {
+                return;
+            }
+            Symbol first = function.arguments().get(0);
+            Symbol second = function.arguments().get(1);
+            if (!(first instanceof InputColumn) || !(second instanceof InputColumn)) {
+                return;
+            }
+            InputColumn leftColumn = (InputColumn) first;
+            InputColumn rightColumn = (InputColumn) second;
+            if (leftColumn.index() >= numLeftOutputs) {
+                leftColumn = (InputColumn) second;
+                rightColumn = (InputColumn) first;
+            }
+            if (leftColumn.index() >= numLeftOutputs || rightColumn.index() < numLeftOutputs) {
+                // both columns are from the same side
+                return;
+            }
+            DataType type = leftColumn.valueType();
+            if (!DataTypes.isPrimitive(type) || !type.equals(rightColumn.valueType())) {
+                return;
+            }
+            leftJoinKeys.add(leftColumn.index());
+            rightJoinKeys.add(rightColumn.index() - numLeftOutputs);
+        }
+
+        /**
+         * Broadcasting sends the smaller side to every node whereas partitioning sends every row of both sides
+         * to exactly one node, so partitioning is cheaper once the smaller side times the number of nodes exceeds
+         * the size of both sides.
+         */
+        private boolean isPartitioningCheaperThanBroadcast(QueriedRelation left,
+                                                           QueriedRelation right,
+                                                           PlannedAnalyzedRelation leftPlan,
+                                                           PlannedAnalyzedRelation rightPlan) {
+            if (!(left instanceof QueriedDocTable) || !(right instanceof QueriedDocTable)) {
+                return false;
+            }
+            long leftNumDocs = tableStatsService.numDocs(((QueriedDocTable) left).tableRelation().tableInfo().ident());
+            long rightNumDocs = tableStatsService.numDocs(((QueriedDocTable) right).tableRelation().tableInfo().ident());
+            if (leftNumDocs < 0 || rightNumDocs < 0) {
+                return false;
+            }
+            int numNodes = Sets.union(
+                ImmutableSet.copyOf(leftPlan.resultPhase().executionNodes()),
+                ImmutableSet.copyOf(rightPlan.resultPhase().executionNodes())).size();
+            return Math.min(leftNumDocs, rightNumDocs) * numNodes > leftNumDocs + rightNumDocs;
+        }
+
         private boolean isLeftSmallerThanRight(QueriedRelation qrLeft, QueriedRelation qrRight) {
             if (qrLeft instanceof QueriedTableRelation && qrRight instanceof QueriedTableRelation) {
                 return isLeftSmallerThanRight(
@@ -319,7 +450,7 @@ public class NestedLoopConsumer implements Consumer {
             long rightNumDocs = tableStatsService.numDocs(rightIdent);
 
             if (leftNumDocs < rightNumDocs) {
-                LOGGER.debug("Right table is larger with {} docs (left has {}. Will change left plan to broadcast its result",
+                LOGGER.debug("Right table is larger with {} docs (left has {})",
                     rightNumDocs, leftNumDocs);
                 return true;
             }
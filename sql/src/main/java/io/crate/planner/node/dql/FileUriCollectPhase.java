@@ -22,6 +22,7 @@
 package io.crate.planner.node.dql;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.analyze.symbol.Symbol;
 import io.crate.analyze.symbol.Symbols;
@@ -30,6 +31,8 @@ import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.node.ExecutionPhaseVisitor;
 import io.crate.planner.projection.Projection;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
@@ -54,6 +57,10 @@ public class FileUriCollectPhase extends AbstractProjectionsPhase implements Col
     private List<Symbol> toCollect;
     private String compression;
     private Boolean sharedStorage;
+    private FileReadingCollector.FileFormat fileFormat;
+    private List<String> columnNames;
+    private List<DataType> columnTypes;
+    private boolean header;
     private DistributionInfo distributionInfo = DistributionInfo.DEFAULT_BROADCAST;
 
     private FileUriCollectPhase() {
@@ -69,12 +76,37 @@ public class FileUriCollectPhase extends AbstractProjectionsPhase implements Col
                                List<Projection> projections,
                                String compression,
                                Boolean sharedStorage) {
+        this(jobId, phaseId, name, executionNodes, targetUri, toCollect, projections, compression, sharedStorage,
+            FileReadingCollector.FileFormat.JSON, ImmutableList.<String>of(), ImmutableList.<DataType>of(), false);
+    }
+
+    /**
+     * @param columnNames the columns the values of a CSV or text row belong to
+     * @param header      if the first line of CSV files is a header
+     */
+    public FileUriCollectPhase(UUID jobId,
+                               int phaseId,
+                               String name,
+                               Collection<String> executionNodes,
+                               Symbol targetUri,
+                               List<Symbol> toCollect,
+                               List<Projection> projections,
+                               String compression,
+                               Boolean sharedStorage,
+                               FileReadingCollector.FileFormat fileFormat,
+                               List<String> columnNames,
+                               List<DataType> columnTypes,
+                               boolean header) {
         super(jobId, phaseId, name, projections);
         this.executionNodes = executionNodes;
         this.targetUri = targetUri;
         this.toCollect = toCollect;
         this.compression = compression;
         this.sharedStorage = sharedStorage;
+        this.fileFormat = fileFormat;
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.header = header;
         outputTypes = extractOutputTypes(toCollect, projections);
     }
 
@@ -97,7 +129,19 @@ public class FileUriCollectPhase extends AbstractProjectionsPhase implements Col
     }
 
     public FileReadingCollector.FileFormat fileFormat() {
-        return FileReadingCollector.FileFormat.JSON;
+        return fileFormat;
+    }
+
+    public List<String> columnNames() {
+        return columnNames;
+    }
+
+    public List<DataType> columnTypes() {
+        return columnTypes;
+    }
+
+    public boolean header() {
+        return header;
     }
 
     @Override
@@ -121,7 +165,11 @@ public class FileUriCollectPhase extends AbstractProjectionsPhase implements Col
             normalizedToCollect,
             projections(),
             compression(),
-            sharedStorage());
+            sharedStorage(),
+            fileFormat,
+            columnNames,
+            columnTypes,
+            header);
     }
 
     @Nullable
@@ -143,6 +191,15 @@ public class FileUriCollectPhase extends AbstractProjectionsPhase implements Col
         }
         this.executionNodes = nodes;
         toCollect = Symbols.listFromStream(in);
+        fileFormat = FileReadingCollector.FileFormat.values()[in.readVInt()];
+        int numColumns = in.readVInt();
+        columnNames = new ArrayList<>(numColumns);
+        columnTypes = new ArrayList<>(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            columnNames.add(in.readString());
+            columnTypes.add(DataTypes.fromStream(in));
+        }
+        header = in.readBoolean();
     }
 
     @Override
@@ -156,6 +213,13 @@ public class FileUriCollectPhase extends AbstractProjectionsPhase implements Col
             out.writeString(node);
         }
         Symbols.toStream(toCollect, out);
+        out.writeVInt(fileFormat.ordinal());
+        out.writeVInt(columnNames.size());
+        for (int i = 0; i < columnNames.size(); i++) {
+            out.writeString(columnNames.get(i));
+            DataTypes.toStream(columnTypes.get(i), out);
+        }
+        out.writeBoolean(header);
     }
 
     @Override
@@ -166,6 +230,7 @@ public class FileUriCollectPhase extends AbstractProjectionsPhase implements Col
             .add("projections", projections)
             .add("outputTypes", outputTypes)
             .add("compression", compression)
+            .add("fileFormat", fileFormat)
             .add("sharedStorageDefault", sharedStorage)
             .toString();
     }
@@ -32,15 +32,14 @@ import io.crate.planner.node.ExecutionPhaseVisitor;
 import io.crate.planner.node.dql.AbstractProjectionsPhase;
 import io.crate.planner.node.dql.MergePhase;
 import io.crate.planner.projection.Projection;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 public class NestedLoopPhase extends AbstractProjectionsPhase implements UpstreamPhase {
 
@@ -62,6 +61,13 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
     private int numLeftOutputs;
     private int numRightOutputs;
 
+    @Nullable
+    private int[] leftJoinKeys;
+    @Nullable
+    private int[] rightJoinKeys;
+    private boolean buildLeft;
+    private List<DataType> buildTypes;
+
     public NestedLoopPhase() {
     }
 
@@ -130,6 +136,44 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
         return numRightOutputs;
     }
 
+    /**
+     * Executes the join as hash join instead of a nested loop.
+     *
+     * @param leftJoinKeys  positions of the key columns within the rows of the left side
+     * @param rightJoinKeys positions of the key columns within the rows of the right side
+     * @param buildLeft     if true the hash table is built from the left side, otherwise from the right side
+     * @param buildTypes    the types of the rows of the build side
+     */
+    public void hashJoin(int[] leftJoinKeys, int[] rightJoinKeys, boolean buildLeft, List<DataType> buildTypes) {
+        assert leftJoinKeys.length == rightJoinKeys.length : "left and right must have the same number of join keys";
+        this.leftJoinKeys = leftJoinKeys;
+        this.rightJoinKeys = rightJoinKeys;
+        this.buildLeft = buildLeft;
+        this.buildTypes = buildTypes;
+    }
+
+    public boolean isHashJoin() {
+        return leftJoinKeys != null;
+    }
+
+    @Nullable
+    public int[] leftJoinKeys() {
+        return leftJoinKeys;
+    }
+
+    @Nullable
+    public int[] rightJoinKeys() {
+        return rightJoinKeys;
+    }
+
+    public boolean buildLeft() {
+        return buildLeft;
+    }
+
+    public List<DataType> buildTypes() {
+        return buildTypes;
+    }
+
     @Override
     public <C, R> R accept(ExecutionPhaseVisitor<C, R> visitor, C context) {
         return visitor.visitNestedLoopPhase(this, context);
@@ -163,6 +207,21 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
         joinType = JoinType.values()[in.readVInt()];
         numLeftOutputs = in.readVInt();
         numRightOutputs = in.readVInt();
+        if (in.readBoolean()) {
+            int numKeys = in.readVInt();
+            leftJoinKeys = new int[numKeys];
+            rightJoinKeys = new int[numKeys];
+            for (int i = 0; i < numKeys; i++) {
+                leftJoinKeys[i] = in.readVInt();
+                rightJoinKeys[i] = in.readVInt();
+            }
+            buildLeft = in.readBoolean();
+            int numBuildTypes = in.readVInt();
+            buildTypes = new ArrayList<>(numBuildTypes);
+            for (int i = 0; i < numBuildTypes; i++) {
+                buildTypes.add(DataTypes.fromStream(in));
+            }
+        }
     }
 
     @Override
@@ -203,6 +262,21 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
         out.writeVInt(joinType.ordinal());
         out.writeVInt(numLeftOutputs);
         out.writeVInt(numRightOutputs);
+        if (leftJoinKeys == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeVInt(leftJoinKeys.length);
+            for (int i = 0; i < leftJoinKeys.length; i++) {
+                out.writeVInt(leftJoinKeys[i]);
+                out.writeVInt(rightJoinKeys[i]);
+            }
+            out.writeBoolean(buildLeft);
+            out.writeVInt(buildTypes.size());
+            for (DataType buildType : buildTypes) {
+                DataTypes.toStream(buildType, out);
+            }
+        }
     }
 
     @Override
@@ -212,6 +286,8 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
             .add("name", name())
             .add("joinType", joinType)
             .add("joinCondition", joinCondition)
+            .add("leftJoinKeys", leftJoinKeys == null ? null : Arrays.toString(leftJoinKeys))
+            .add("rightJoinKeys", rightJoinKeys == null ? null : Arrays.toString(rightJoinKeys))
             .add("outputTypes", outputTypes)
             .add("jobId", jobId())
             .add("executionNodes", executionNodes);
@@ -37,6 +37,7 @@ import io.crate.metadata.PartitionName;
 import io.crate.metadata.Reference;
 import io.crate.metadata.doc.DocSysColumns;
 import io.crate.metadata.doc.DocTableInfo;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.planner.Plan;
 import io.crate.planner.Planner;
 import io.crate.planner.consumer.ConsumerContext;
@@ -49,6 +50,7 @@ import io.crate.planner.projection.Projection;
 import io.crate.planner.projection.SourceIndexWriterProjection;
 import io.crate.planner.projection.WriterProjection;
 import io.crate.planner.projection.builder.ProjectionBuilder;
+import io.crate.types.DataType;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.node.DiscoveryNode;
@@ -82,6 +84,10 @@ public class CopyStatementPlanner {
          *    -> insert into es index (partition determined by partition by value)
          */
 
+        if (analysis.isStdin() && analysis.uri() == null) {
+            throw new UnsupportedOperationException(
+                "COPY FROM STDIN is only supported by clients connected using the PostgreSQL wire protocol");
+        }
         DocTableInfo table = analysis.table();
         int clusteredByPrimaryKeyIdx = table.primaryKey().indexOf(analysis.table().clusteredBy());
         List<String> partitionedByNames;
@@ -164,17 +170,41 @@ public class CopyStatementPlanner {
             }
         }
 
+        // CSV and text rows are converted into json objects using the (non generated) table columns in order
+        List<String> columnNames = new ArrayList<>();
+        List<DataType> columnTypes = new ArrayList<>();
+        if (analysis.fileFormat() != FileReadingCollector.FileFormat.JSON) {
+            for (Reference reference : table.columns()) {
+                if (!(reference instanceof GeneratedReference)) {
+                    columnNames.add(reference.ident().columnIdent().fqn());
+                    columnTypes.add(reference.valueType());
+                }
+            }
+        }
+
         DiscoveryNodes allNodes = clusterService.state().nodes();
+        Collection<String> executionNodes;
+        if (analysis.isStdin()) {
+            // the data is streamed by a client connected to this node
+            executionNodes = Collections.singletonList(allNodes.localNodeId());
+        } else {
+            executionNodes = getExecutionNodes(
+                allNodes, analysis.settings().getAsInt("num_readers", allNodes.getSize()), analysis.nodePredicate());
+        }
         FileUriCollectPhase collectPhase = new FileUriCollectPhase(
             context.jobId(),
             context.nextExecutionPhaseId(),
             "copyFrom",
-            getExecutionNodes(allNodes, analysis.settings().getAsInt("num_readers", allNodes.getSize()), analysis.nodePredicate()),
+            executionNodes,
             analysis.uri(),
             toCollect,
             projections,
             analysis.settings().get("compression", null),
-            analysis.settings().getAsBoolean("shared", null)
+            analysis.settings().getAsBoolean("shared", null),
+            analysis.fileFormat(),
+            columnNames,
+            columnTypes,
+            analysis.settings().getAsBoolean("header", false)
         );
 
         return new CollectAndMerge(collectPhase, MergePhase.localMerge(
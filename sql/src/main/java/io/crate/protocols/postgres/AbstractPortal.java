@@ -23,10 +23,12 @@
 package io.crate.protocols.postgres;
 
 import io.crate.action.sql.SQLOperations;
+import io.crate.analyze.AnalyzedStatement;
 import io.crate.analyze.Analyzer;
 import io.crate.executor.Executor;
 import io.crate.executor.transport.kill.TransportKillJobsNodeAction;
 
+import javax.annotation.Nullable;
 import java.util.Set;
 
 abstract class AbstractPortal implements Portal {
@@ -56,6 +58,12 @@ abstract class AbstractPortal implements Portal {
         return name;
     }
 
+    @Nullable
+    @Override
+    public AnalyzedStatement getLastAnalyzedStatement() {
+        return null;
+    }
+
     @Override
     public void close() {
     }
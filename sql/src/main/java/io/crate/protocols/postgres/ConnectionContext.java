@@ -25,10 +25,15 @@ package io.crate.protocols.postgres;
 import com.google.common.annotations.VisibleForTesting;
 import io.crate.action.sql.ResultReceiver;
 import io.crate.action.sql.SQLOperations;
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.CopyFromAnalyzedStatement;
 import io.crate.analyze.symbol.Field;
 import io.crate.analyze.symbol.Symbols;
 import io.crate.concurrent.CompletionListener;
+import io.crate.concurrent.CompletionMultiListener;
 import io.crate.concurrent.CompletionState;
+import io.crate.core.collections.Row;
+import io.crate.operation.collect.files.StdinFileInput;
 import io.crate.protocols.postgres.types.PGType;
 import io.crate.protocols.postgres.types.PGTypes;
 import io.crate.types.DataType;
@@ -41,6 +46,8 @@ import org.jboss.netty.handler.codec.frame.FrameDecoder;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -135,6 +142,30 @@ import static io.crate.protocols.postgres.FormatCodes.getFormatCode;
  *          |                                  |
  *          |  ReadyForQuery                   |
  *          |<---------------------------------|
+ *
+ * Copy from stdin (Simple Query)
+ *
+ *          +                                  +
+ *          |  Q (COPY ... FROM STDIN)         |
+ *          |--------------------------------->|
+ *          |                                  |
+ *          |  CopyInResponse or ErrorResponse |
+ *          |<---------------------------------|
+ *          |                                  |
+ *          |  CopyData                        |
+ *          |--------------------------------->|
+ *          |  CopyData                        |
+ *          |--------------------------------->|
+ *          |  CopyDone | CopyFail             |
+ *          |--------------------------------->|
+ *          |                                  |
+ *          |  CommandComplete | ErrorResponse |
+ *          |<---------------------------------|
+ *          |  ReadyForQuery                   |
+ *          |<---------------------------------|
+ *
+ *  If the COPY fails before the client has sent CopyDone or CopyFail, the remaining CopyData is discarded
+ *  and the ErrorResponse is sent once the client has ended the copy.
  * </pre>
  * <p>
  * Take a look at {@link Messages} to see how the messages are structured.
@@ -149,11 +180,14 @@ class ConnectionContext {
     final MessageDecoder decoder;
     final MessageHandler handler;
     private final SQLOperations sqlOperations;
+    private final StdinFileInput stdinFileInput;
 
     private int msgLength;
     private byte msgType;
-    private SQLOperations.Session session;
+    @VisibleForTesting
+    SQLOperations.Session session;
     private boolean ignoreTillSync = false;
+    private volatile CopyIn copyIn;
 
     enum State {
         SSL_NEG,
@@ -165,8 +199,9 @@ class ConnectionContext {
 
     private State state = STARTUP_HEADER;
 
-    ConnectionContext(SQLOperations sqlOperations) {
+    ConnectionContext(SQLOperations sqlOperations, StdinFileInput stdinFileInput) {
         this.sqlOperations = sqlOperations;
+        this.stdinFileInput = stdinFileInput;
         decoder = new MessageDecoder();
         handler = new MessageHandler();
     }
@@ -294,6 +329,15 @@ class ConnectionContext {
                         case 'C':
                             handleClose(buffer, channel);
                             return;
+                        case 'd':
+                            handleCopyData(buffer);
+                            return;
+                        case 'c':
+                            handleCopyDone();
+                            return;
+                        case 'f':
+                            handleCopyFail(buffer);
+                            return;
                         case 'X': // Terminate
                             channel.close();
                             return;
@@ -334,6 +378,10 @@ class ConnectionContext {
         @Override
         public void channelDisconnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
             LOGGER.trace("channelDisconnected");
+            CopyIn copy = copyIn;
+            if (copy != null) {
+                copy.inputStream.fail("Connection closed during COPY FROM STDIN");
+            }
             closeSession();
             super.channelDisconnected(ctx, e);
         }
@@ -531,6 +579,12 @@ class ConnectionContext {
         try {
             session.parse("", query, Collections.<DataType>emptyList());
             session.bind("", "", Collections.emptyList(), null);
+            AnalyzedStatement analyzedStatement = session.getAnalyzedStatement("");
+            if (analyzedStatement instanceof CopyFromAnalyzedStatement
+                && ((CopyFromAnalyzedStatement) analyzedStatement).isStdin()) {
+                handleCopyFromStdin(query, (CopyFromAnalyzedStatement) analyzedStatement, channel);
+                return;
+            }
             List<Field> fields = session.describe('P', "");
             if (fields == null) {
                 RowCountReceiver rowCountReceiver = new RowCountReceiver(query, channel);
@@ -549,6 +603,164 @@ class ConnectionContext {
     }
 
 
+    /**
+     * COPY ... FROM STDIN is executed as a regular COPY FROM which reads from a stream that is fed with the
+     * CopyData messages of the client.
+     * The statement has already been analyzed, so invalid statements fail before the CopyInResponse and the
+     * client doesn't start to send data.
+     */
+    private void handleCopyFromStdin(String query, CopyFromAnalyzedStatement copyFrom, Channel channel) {
+        CopyInputStream inputStream = new CopyInputStream(channel);
+        URI uri = stdinFileInput.register(inputStream);
+        copyFrom.stdinUri(uri);
+        CopyIn copy = new CopyIn(query, channel, inputStream, uri);
+        copyIn = copy;
+        Messages.sendCopyInResponse(channel);
+        try {
+            session.execute("", 1, copy);
+            session.sync(CompletionListener.NO_OP);
+        } catch (Throwable t) {
+            session.clearState();
+            // the client is already in copy mode, the error is sent once it ends the copy
+            copy.fail(t);
+        }
+    }
+
+    /**
+     * CopyData
+     * | 'd' | int32 len | byteN data
+     */
+    private void handleCopyData(ChannelBuffer buffer) {
+        CopyIn copy = copyIn;
+        if (copy == null) {
+            buffer.skipBytes(msgLength);
+        } else {
+            // discarded by the stream if the copy has already failed
+            copy.inputStream.add(buffer, msgLength);
+        }
+    }
+
+    /**
+     * CopyDone
+     * | 'c' | int32 len
+     */
+    private void handleCopyDone() {
+        CopyIn copy = copyIn;
+        if (copy != null) {
+            copy.inputStream.finish();
+            copy.clientFinished();
+        }
+    }
+
+    /**
+     * CopyFail
+     * | 'f' | int32 len | string errorMessage
+     */
+    private void handleCopyFail(ChannelBuffer buffer) {
+        String errorMessage = readCString(buffer);
+        CopyIn copy = copyIn;
+        if (copy != null) {
+            copy.inputStream.fail("COPY FROM STDIN failed: " + errorMessage);
+            copy.clientFinished();
+        }
+    }
+
+    private void closeCopyIn(CopyIn copy, CopyInputStream inputStream, URI uri) {
+        stdinFileInput.unregister(uri);
+        if (copyIn == copy) {
+            copyIn = null;
+        }
+        closeCopyInputStream(inputStream);
+    }
+
+    private static void closeCopyInputStream(CopyInputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            LOGGER.trace("Error closing COPY FROM STDIN stream", e);
+        }
+    }
+
+    /**
+     * Receives the result of a COPY FROM STDIN.
+     * The client has to end the copy with CopyDone or CopyFail even if the statement has already failed,
+     * so the result and ReadyForQuery are only sent once both the statement and the client are finished.
+     */
+    private class CopyIn implements ResultReceiver {
+
+        private final Channel channel;
+        private final CopyInputStream inputStream;
+        private final URI uri;
+        private final RowCountReceiver rowCountReceiver;
+        private CompletionListener listener = CompletionListener.NO_OP;
+
+        private boolean statementFinished = false;
+        private boolean clientFinished = false;
+        private Throwable failure;
+
+        private CopyIn(String query, Channel channel, CopyInputStream inputStream, URI uri) {
+            this.channel = channel;
+            this.inputStream = inputStream;
+            this.uri = uri;
+            this.rowCountReceiver = new RowCountReceiver(query, channel);
+        }
+
+        @Override
+        public void setNextRow(Row row) {
+            rowCountReceiver.setNextRow(row);
+        }
+
+        @Override
+        public void batchFinished() {
+        }
+
+        @Override
+        public void allFinished() {
+            listener.onSuccess(null);
+            statementFinished(null);
+        }
+
+        @Override
+        public void fail(@Nonnull Throwable t) {
+            listener.onFailure(t);
+            statementFinished(t);
+        }
+
+        @Override
+        public void addListener(CompletionListener listener) {
+            this.listener = CompletionMultiListener.merge(this.listener, listener);
+        }
+
+        private synchronized void statementFinished(@Nullable Throwable t) {
+            statementFinished = true;
+            failure = t;
+            // CopyData that is received from now on is discarded
+            closeCopyInputStream(inputStream);
+            maybeSendResult();
+        }
+
+        /**
+         * Called on CopyDone or CopyFail
+         */
+        synchronized void clientFinished() {
+            clientFinished = true;
+            maybeSendResult();
+        }
+
+        private void maybeSendResult() {
+            if (!statementFinished || !clientFinished) {
+                return;
+            }
+            closeCopyIn(this, inputStream, uri);
+            if (failure == null) {
+                rowCountReceiver.allFinished();
+            } else {
+                rowCountReceiver.fail(failure);
+            }
+            Messages.sendReadyForQuery(channel);
+        }
+    }
+
     /**
      * FrameDecoder that makes sure that a full message is in the buffer before delegating work to the MessageHandler
      */
@@ -0,0 +1,181 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * InputStream over the payload of the CopyData messages a client sends after a {@code COPY ... FROM STDIN}.
+ * <p>
+ * The messages are received on the netty worker thread and consumed by the thread that reads the stream.
+ * If more than {@link #HIGH_WATER_MARK} bytes are buffered, the channel stops reading from the socket until
+ * the reader has consumed the buffer down to {@link #LOW_WATER_MARK} bytes.
+ */
+class CopyInputStream extends InputStream {
+
+    static final int HIGH_WATER_MARK = 4 * 1024 * 1024;
+    static final int LOW_WATER_MARK = 1024 * 1024;
+
+    private final Channel channel;
+    private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+
+    private byte[] current;
+    private int pos;
+    private long bufferedBytes = 0;
+    private boolean finished = false;
+    private boolean closed = false;
+    private IOException failure;
+
+    CopyInputStream(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * add the payload of a CopyData message
+     */
+    synchronized void add(ChannelBuffer buffer, int length) {
+        if (closed || finished) {
+            buffer.skipBytes(length);
+            return;
+        }
+        byte[] bytes = new byte[length];
+        buffer.readBytes(bytes);
+        chunks.add(bytes);
+        bufferedBytes += length;
+        if (bufferedBytes > HIGH_WATER_MARK && channel.isReadable()) {
+            channel.setReadable(false);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Called on CopyDone. The reader will receive the end of the stream once the buffered data is consumed.
+     */
+    synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Called on CopyFail or if the connection is lost. The reader will fail with the given message.
+     */
+    synchronized void fail(String message) {
+        failure = new IOException(message);
+        chunks.clear();
+        bufferedBytes = 0;
+        resumeReading();
+        notifyAll();
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        int b = current[pos++] & 0xFF;
+        consumed(1);
+        return b;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int numBytes = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, numBytes);
+        pos += numBytes;
+        consumed(numBytes);
+        return numBytes;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return (int) Math.min(bufferedBytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stops buffering. Data that is received afterwards is discarded.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        chunks.clear();
+        current = null;
+        bufferedBytes = 0;
+        resumeReading();
+        notifyAll();
+    }
+
+    /**
+     * waits until there is data to read
+     *
+     * @return false if the end of the stream is reached
+     */
+    private boolean nextChunk() throws IOException {
+        while (current == null || pos == current.length) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            current = chunks.poll();
+            pos = 0;
+            if (current == null) {
+                if (finished) {
+                    return false;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for CopyData");
+                }
+            }
+        }
+        return true;
+    }
+
+    private void consumed(int numBytes) {
+        bufferedBytes -= numBytes;
+        if (bufferedBytes < LOW_WATER_MARK) {
+            resumeReading();
+        }
+    }
+
+    private void resumeReading() {
+        if (!channel.isReadable()) {
+            channel.setReadable(true);
+        }
+    }
+}
@@ -259,37 +259,55 @@ class Messages {
      * The value of the column, in the format indicated by the associated format code. n is the above length.
      */
     static void sendDataRow(Channel channel, Row row, List<? extends DataType> columnTypes, @Nullable FormatCodes.FormatCode[] formatCodes) {
-        int length = 4 + 2;
-
         ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
-        buffer.writeByte('D');
-        buffer.writeInt(0); // will be set at the end
-        buffer.writeShort(row.size());
-
-        for (int i = 0; i < row.size(); i++) {
-            DataType dataType = columnTypes.get(i);
-            PGType pgType = PGTypes.get(dataType);
-            Object value = row.get(i);
-            if (value == null) {
-                buffer.writeInt(-1);
-                length += 4;
-            } else {
-                FormatCodes.FormatCode formatCode = FormatCodes.getFormatCode(formatCodes, i);
-                switch (formatCode) {
-                    case TEXT:
-                        length += pgType.writeAsText(buffer, value);
-                        break;
-                    case BINARY:
-                        length += pgType.writeAsBinary(buffer, value);
-                        break;
-
-                    default:
-                        throw new AssertionError("Unrecognized formatCode: " + formatCode);
+        writeDataRow(buffer, row, pgTypes(columnTypes), formatCodes);
+        sendDataRows(channel, buffer);
+    }
+
+    /**
+     * Appends a DataRow message to the buffer.
+     * The buffer can contain multiple messages and is sent with {@link #sendDataRows(Channel, ChannelBuffer)}
+     * If a value can't be written the buffer is reset so that it doesn't contain a partial DataRow message.
+     */
+    static void writeDataRow(ChannelBuffer buffer, Row row, PGType[] pgTypes, @Nullable FormatCodes.FormatCode[] formatCodes) {
+        int length = 4 + 2;
+        int startIndex = buffer.writerIndex();
+
+        try {
+            buffer.writeByte('D');
+            buffer.writeInt(0); // will be set at the end
+            buffer.writeShort(row.size());
+
+            for (int i = 0; i < row.size(); i++) {
+                Object value = row.get(i);
+                if (value == null) {
+                    buffer.writeInt(-1);
+                    length += 4;
+                } else {
+                    PGType pgType = pgTypes[i];
+                    FormatCodes.FormatCode formatCode = FormatCodes.getFormatCode(formatCodes, i);
+                    switch (formatCode) {
+                        case TEXT:
+                            length += pgType.writeAsText(buffer, value);
+                            break;
+                        case BINARY:
+                            length += pgType.writeAsBinary(buffer, value);
+                            break;
+
+                        default:
+                            throw new AssertionError("Unrecognized formatCode: " + formatCode);
+                    }
                 }
             }
+        } catch (Throwable t) {
+            buffer.writerIndex(startIndex);
+            throw t;
         }
 
-        buffer.setInt(1, length);
+        buffer.setInt(startIndex + 1, length);
+    }
+
+    static void sendDataRows(Channel channel, ChannelBuffer buffer) {
         ChannelFuture channelFuture = channel.write(buffer);
         if (LOGGER.isTraceEnabled()) {
             channelFuture.addListener(new ChannelFutureListener() {
@@ -301,6 +319,14 @@ class Messages {
         }
     }
 
+    static PGType[] pgTypes(List<? extends DataType> columnTypes) {
+        PGType[] pgTypes = new PGType[columnTypes.size()];
+        for (int i = 0; i < pgTypes.length; i++) {
+            pgTypes[i] = PGTypes.get(columnTypes.get(i));
+        }
+        return pgTypes;
+    }
+
     static void writeCString(ChannelBuffer buffer, byte[] valBytes) {
         buffer.writeBytes(valBytes);
         buffer.writeByte(0);
@@ -358,6 +384,30 @@ class Messages {
         }
     }
 
+    /**
+     * CopyInResponse (B)
+     * <p>
+     * | 'G' | int32 len | int8 overallFormat | int16 numColumns | int16[numColumns] formatCodes |
+     * <p>
+     * The data is always expected in textual format, so no column format codes are sent.
+     */
+    static void sendCopyInResponse(Channel channel) {
+        ChannelBuffer buffer = ChannelBuffers.buffer(8);
+        buffer.writeByte('G');
+        buffer.writeInt(7);
+        buffer.writeByte(FormatCodes.FormatCode.TEXT.ordinal());
+        buffer.writeShort(0);
+        ChannelFuture channelFuture = channel.write(buffer);
+        if (LOGGER.isTraceEnabled()) {
+            channelFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    LOGGER.trace("sentCopyInResponse");
+                }
+            });
+        }
+    }
+
     /**
      * ParseComplete
      * | '1' | int32 len |
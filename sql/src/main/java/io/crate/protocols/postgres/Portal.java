@@ -23,6 +23,7 @@
 package io.crate.protocols.postgres;
 
 import io.crate.action.sql.ResultReceiver;
+import io.crate.analyze.AnalyzedStatement;
 import io.crate.analyze.symbol.Field;
 import io.crate.concurrent.CompletionListener;
 import io.crate.operation.collect.StatsTables;
@@ -43,6 +44,12 @@ public interface Portal {
 
     String getLastQuery();
 
+    /**
+     * @return the statement analyzed by the last bind or null if the portal doesn't hold a single analyzed statement
+     */
+    @Nullable
+    AnalyzedStatement getLastAnalyzedStatement();
+
     Portal bind(String statementName, String query, Statement statement,
                 List<Object> params, @Nullable FormatCodes.FormatCode[] resultFormatCodes);
 
@@ -25,6 +25,7 @@ package io.crate.protocols.postgres;
 import com.google.common.annotations.VisibleForTesting;
 import io.crate.action.sql.SQLOperations;
 import io.crate.metadata.settings.CrateSettings;
+import io.crate.operation.collect.files.StdinFileInput;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
@@ -59,6 +60,7 @@ import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadF
 public class PostgresNetty extends AbstractLifecycleComponent {
 
     private final SQLOperations sqlOperations;
+    private final StdinFileInput stdinFileInput;
     private final NetworkService networkService;
 
     private final boolean enabled;
@@ -72,9 +74,13 @@ public class PostgresNetty extends AbstractLifecycleComponent {
     private final List<InetSocketTransportAddress> boundAddresses = new ArrayList<>();
 
     @Inject
-    public PostgresNetty(Settings settings, SQLOperations sqlOperations, NetworkService networkService) {
+    public PostgresNetty(Settings settings,
+                         SQLOperations sqlOperations,
+                         StdinFileInput stdinFileInput,
+                         NetworkService networkService) {
         super(settings);
         this.sqlOperations = sqlOperations;
+        this.stdinFileInput = stdinFileInput;
         this.networkService = networkService;
 
         enabled = CrateSettings.PSQL_ENABLED.extract(settings);
@@ -98,7 +104,7 @@ public class PostgresNetty extends AbstractLifecycleComponent {
             public ChannelPipeline getPipeline() throws Exception {
                 ChannelPipeline pipeline = Channels.pipeline();
 
-                ConnectionContext connectionContext = new ConnectionContext(sqlOperations);
+                ConnectionContext connectionContext = new ConnectionContext(sqlOperations, stdinFileInput);
                 pipeline.addLast("frame-decoder", connectionContext.decoder);
                 pipeline.addLast("handler", connectionContext.handler);
                 return pipeline;
@@ -27,7 +27,10 @@ import io.crate.concurrent.CompletionListener;
 import io.crate.concurrent.CompletionMultiListener;
 import io.crate.core.collections.Row;
 import io.crate.exceptions.Exceptions;
+import io.crate.protocols.postgres.types.PGType;
 import io.crate.types.DataType;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 
 import javax.annotation.Nonnull;
@@ -36,15 +39,22 @@ import java.util.List;
 
 class ResultSetReceiver implements ResultReceiver {
 
+    /**
+     * DataRow messages are collected into a buffer which is written to the channel once it exceeds this size,
+     * or if the result is suspended, completed or failed.
+     */
+    static final int WRITE_THRESHOLD = 64 * 1024;
+
     private final String query;
     private final Channel channel;
-    private final List<? extends DataType> columnTypes;
+    private final PGType[] pgTypes;
 
     @Nullable
     private final FormatCodes.FormatCode[] formatCodes;
 
     private CompletionListener listener = CompletionListener.NO_OP;
     private long rowCount = 0;
+    private ChannelBuffer buffer;
 
     ResultSetReceiver(String query,
                       Channel channel,
@@ -52,30 +62,46 @@ class ResultSetReceiver implements ResultReceiver {
                       @Nullable FormatCodes.FormatCode[] formatCodes) {
         this.query = query;
         this.channel = channel;
-        this.columnTypes = columnTypes;
+        this.pgTypes = Messages.pgTypes(columnTypes);
         this.formatCodes = formatCodes;
     }
 
     @Override
     public void setNextRow(Row row) {
         rowCount++;
-        Messages.sendDataRow(channel, row, columnTypes, formatCodes);
+        if (buffer == null) {
+            buffer = ChannelBuffers.dynamicBuffer(WRITE_THRESHOLD);
+        }
+        Messages.writeDataRow(buffer, row, pgTypes, formatCodes);
+        if (buffer.writerIndex() >= WRITE_THRESHOLD) {
+            writeRows();
+        }
+    }
+
+    private void writeRows() {
+        if (buffer != null) {
+            Messages.sendDataRows(channel, buffer);
+            buffer = null;
+        }
     }
 
     @Override
     public void batchFinished() {
+        writeRows();
         Messages.sendPortalSuspended(channel);
         Messages.sendReadyForQuery(channel);
     }
 
     @Override
     public void allFinished() {
+        writeRows();
         Messages.sendCommandComplete(channel, query, rowCount);
         listener.onSuccess(null);
     }
 
     @Override
     public void fail(@Nonnull Throwable throwable) {
+        writeRows();
         Messages.sendErrorResponse(channel, Exceptions.createSQLActionException(throwable));
         listener.onFailure(throwable);
     }
@@ -27,6 +27,7 @@ import io.crate.action.sql.ResultReceiver;
 import io.crate.action.sql.RowReceiverToResultReceiver;
 import io.crate.action.sql.SQLOperations;
 import io.crate.analyze.Analysis;
+import io.crate.analyze.AnalyzedStatement;
 import io.crate.analyze.Analyzer;
 import io.crate.analyze.ParameterContext;
 import io.crate.analyze.relations.AnalyzedRelation;
@@ -99,6 +100,12 @@ public class SimplePortal extends AbstractPortal {
         return this.query;
     }
 
+    @Nullable
+    @Override
+    public AnalyzedStatement getLastAnalyzedStatement() {
+        return analysis == null ? null : analysis.analyzedStatement();
+    }
+
     @Override
     public Portal bind(String statementName, String query, Statement statement,
                        List<Object> params, @Nullable FormatCodes.FormatCode[] resultFormatCodes) {
@@ -52,7 +52,7 @@ import org.elasticsearch.index.shard.ShardId;
 
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -62,23 +62,34 @@ import java.util.concurrent.atomic.AtomicReference;
  * <p>
  * If the Bulk threadPool Queue is full retries are made and
  * the {@link #add} method will start to block.
+ * <p>
+ * Requests are pipelined per shard: at most {@link #MAX_IN_FLIGHT_REQUESTS_PER_SHARD} requests
+ * are executed concurrently on a shard, further requests are queued until a response arrives.
+ * If {@link #MAX_QUEUED_REQUESTS_PER_SHARD} full requests of a shard are queued, {@link #add} blocks
+ * until the shard completes a request.
+ * The number of items per request is adapted to the response times and rejections of each shard,
+ * it is never larger than the configured bulk size.
  */
 public class BulkShardProcessor<Request extends ShardRequest> {
 
     public static final int MAX_CREATE_INDICES_BULK_SIZE = 100;
 
+    static final int MAX_IN_FLIGHT_REQUESTS_PER_SHARD = 2;
+    static final int MAX_QUEUED_REQUESTS_PER_SHARD = 2;
+    static final long TARGET_RESPONSE_TIME_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final boolean autoCreateIndices;
     private final Predicate<String> shouldAutocreateIndexPredicate;
 
     private final int bulkSize;
+    private final int minBulkSize;
     private final UUID jobId;
     private final int createIndicesBulkSize;
 
-    private final Map<ShardId, Request> requestsByShard = new HashMap<>();
+    private final Map<ShardId, ShardRequests> requestsByShard = new HashMap<>();
     private final AtomicInteger globalCounter = new AtomicInteger(0);
     private final AtomicInteger requestItemCounter = new AtomicInteger(0);
     private final AtomicInteger pending = new AtomicInteger(0);
-    private final Semaphore executeLock = new Semaphore(1);
 
     private final SettableFuture<BitSet> result;
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
@@ -115,6 +126,7 @@ public class BulkShardProcessor<Request extends ShardRequest> {
         this.clusterService = clusterService;
         this.autoCreateIndices = autoCreateIndices;
         this.bulkSize = bulkSize;
+        this.minBulkSize = Math.max(1, bulkSize / 8);
         this.jobId = jobId;
         this.createIndicesBulkSize = Math.min(bulkSize, MAX_CREATE_INDICES_BULK_SIZE);
 
@@ -167,7 +179,7 @@ public class BulkShardProcessor<Request extends ShardRequest> {
                 setFailure(e);
                 return false;
             }
-            partitionRequestByShard(shardId, item, routing);
+            partitionRequestByShard(shardId, item, routing, true);
         }
         executeIfNeeded();
         return true;
@@ -191,7 +203,7 @@ public class BulkShardProcessor<Request extends ShardRequest> {
             setFailure(e);
             return false;
         }
-        partitionRequestByShard(shardId, item, routing);
+        partitionRequestByShard(shardId, item, routing, true);
         executeIfNeeded();
         return true;
     }
@@ -227,53 +239,105 @@ public class BulkShardProcessor<Request extends ShardRequest> {
         }
     }
 
-    private void partitionRequestByShard(ShardId shardId, Request.Item item, @Nullable String routing) {
-        try {
-            executeLock.acquire();
-            Request request = requestsByShard.get(shardId);
-            if (request == null) {
-                request = requestBuilder.newRequest(shardId, routing);
-                requestsByShard.put(shardId, request);
+    private void partitionRequestByShard(ShardId shardId, Request.Item item, @Nullable String routing, boolean blockIfFull) {
+        Request requestToExecute;
+        synchronized (requestsByShard) {
+            ShardRequests shardRequests = requestsByShard.get(shardId);
+            if (shardRequests == null) {
+                shardRequests = new ShardRequests(shardId);
+                requestsByShard.put(shardId, shardRequests);
+            }
+            if (blockIfFull && !awaitQueueCapacity(shardRequests)) {
+                return;
+            }
+            if (shardRequests.request == null) {
+                shardRequests.request = requestBuilder.newRequest(shardId, routing);
             }
             requestItemCounter.getAndIncrement();
-            request.add(globalCounter.getAndIncrement(), item);
-        } catch (InterruptedException e) {
-            Thread.interrupted();
-        } finally {
-            executeLock.release();
+            shardRequests.request.add(globalCounter.getAndIncrement(), item);
+            if (shardRequests.isFull()) {
+                shardRequests.queueRequest();
+            }
+            requestToExecute = shardRequests.hasQueuedRequests() ? shardRequests.pollRequest() : null;
+        }
+        if (requestToExecute != null) {
+            execute(shardId, requestToExecute);
         }
     }
 
-    private void executeRequests() {
-        try {
-            executeLock.acquire();
-            for (Iterator<Map.Entry<ShardId, Request>> it = requestsByShard.entrySet().iterator(); it.hasNext(); ) {
-                if (failure.get() != null) {
-                    return;
-                }
-                Map.Entry<ShardId, Request> entry = it.next();
-                final Request request = entry.getValue();
-                final ShardId shardId = entry.getKey();
-                requestExecutor.execute(request, new ActionListener<ShardResponse>() {
-                    @Override
-                    public void onResponse(ShardResponse response) {
-                        processResponse(response);
-                    }
+    /**
+     * Waits until the shard completes one of its requests if too many full requests of it are queued.
+     * Must be called while holding the {@link #requestsByShard} lock.
+     *
+     * @return false if the processor failed or was killed while waiting
+     */
+    private boolean awaitQueueCapacity(ShardRequests shardRequests) {
+        while (shardRequests.queued.size() >= MAX_QUEUED_REQUESTS_PER_SHARD) {
+            if (failure.get() != null) {
+                return false;
+            }
+            trace("too many requests queued for shard %s, waiting for a response", shardRequests.shardId);
+            try {
+                requestsByShard.wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                setFailure(e);
+                return false;
+            }
+        }
+        return failure.get() == null;
+    }
 
-                    @Override
-                    public void onFailure(Throwable e) {
-                        processFailure(e, shardId, request, com.google.common.base.Optional.<BulkRetryCoordinator>absent());
+    private void executeRequests() {
+        List<ShardRequests> shardsToExecute = new ArrayList<>();
+        List<Request> requestsToExecute = new ArrayList<>();
+        synchronized (requestsByShard) {
+            for (ShardRequests shardRequests : requestsByShard.values()) {
+                if (shardRequests.hasRequests()) {
+                    Request request = shardRequests.pollRequest();
+                    if (request != null) {
+                        shardsToExecute.add(shardRequests);
+                        requestsToExecute.add(request);
                     }
-                });
-                it.remove();
+                }
             }
-        } catch (InterruptedException e) {
-            Thread.interrupted();
+            requestItemCounter.set(0);
+        }
+        for (int i = 0; i < requestsToExecute.size(); i++) {
+            if (failure.get() != null) {
+                return;
+            }
+            execute(shardsToExecute.get(i).shardId, requestsToExecute.get(i));
+        }
+    }
+
+    private void execute(ShardId shardId, Request request) {
+        try {
+            requestExecutor.execute(request, new ShardRequestListener(shardId, request));
         } catch (Throwable e) {
             setFailure(e);
-        } finally {
-            requestItemCounter.set(0);
-            executeLock.release();
+        }
+    }
+
+    /**
+     * Called once a request of a shard has been completed, adapts the bulk size of the shard and
+     * executes the items which were buffered while the shard had too many requests in flight.
+     */
+    private void onRequestCompleted(ShardId shardId, long responseTimeNanos, boolean rejected) {
+        Request requestToExecute = null;
+        synchronized (requestsByShard) {
+            ShardRequests shardRequests = requestsByShard.get(shardId);
+            shardRequests.inFlight--;
+            shardRequests.adaptBulkSize(responseTimeNanos, rejected);
+            if (shardRequests.hasQueuedRequests()
+                || (shardRequests.request != null && (closed || shardRequests.flushRequested))) {
+                requestToExecute = shardRequests.pollRequest();
+            }
+            // producers might wait for the queue of this shard
+            requestsByShard.notifyAll();
+        }
+        if (requestToExecute != null && failure.get() == null) {
+            execute(shardId, requestToExecute);
         }
     }
 
@@ -321,7 +385,8 @@ public class BulkShardProcessor<Request extends ShardRequest> {
                             setResultIfDone(1);
                             continue;
                         }
-                        partitionRequestByShard(shardId, pendingRequest.item, pendingRequest.routing);
+                        // must not block, the callback might run on a thread that processes the shard responses
+                        partitionRequestByShard(shardId, pendingRequest.item, pendingRequest.routing, false);
                     }
                     trace("added %d pending requests, lets see if we can execute them", pendings.size());
                     executeRequestsIfNeeded();
@@ -428,8 +493,11 @@ public class BulkShardProcessor<Request extends ShardRequest> {
         trace("response executed.");
     }
 
-    private void processFailure(Throwable e, final ShardId shardId, final Request request, com.google.common.base.Optional<BulkRetryCoordinator> retryCoordinator) {
+    private void processFailure(Throwable e, final ShardRequestListener listener) {
         trace("execute failure");
+        final ShardId shardId = listener.shardId;
+        final Request request = listener.request;
+        final com.google.common.base.Optional<BulkRetryCoordinator> retryCoordinator = listener.retryCoordinator;
         e = Exceptions.unwrap(e);
 
         // index missing exception on a partition should never bubble, mark all items as failed instead
@@ -448,6 +516,7 @@ public class BulkShardProcessor<Request extends ShardRequest> {
                 // release failed retry
                 retryCoordinator.get().releaseWriteLock();
             }
+            listener.completed();
             return;
         }
 
@@ -464,17 +533,9 @@ public class BulkShardProcessor<Request extends ShardRequest> {
         }
         if (e instanceof EsRejectedExecutionException) {
             trace("rejected execution: [%s] - retrying", e.getMessage());
-            coordinator.retry(request, requestExecutor, new ActionListener<ShardResponse>() {
-                @Override
-                public void onResponse(ShardResponse response) {
-                    processResponse(response);
-                }
-
-                @Override
-                public void onFailure(Throwable e) {
-                    processFailure(e, shardId, request, com.google.common.base.Optional.of(coordinator));
-                }
-            });
+            listener.rejected = true;
+            listener.retryCoordinator = com.google.common.base.Optional.of(coordinator);
+            coordinator.retry(request, requestExecutor, listener);
         } else {
             if (retryCoordinator.isPresent()) {
                 // release failed retry
@@ -497,6 +558,107 @@ public class BulkShardProcessor<Request extends ShardRequest> {
         }
     }
 
+    /**
+     * The items of a shard which haven't been executed yet and the state used to pipeline and size its requests.
+     * Guarded by {@link #requestsByShard}.
+     */
+    private class ShardRequests {
+
+        private final ShardId shardId;
+        @Nullable
+        private Request request;
+        private final ArrayDeque<Request> queued = new ArrayDeque<>();
+        private int inFlight = 0;
+        private int bulkSize = BulkShardProcessor.this.bulkSize;
+        private boolean flushRequested = false;
+
+        ShardRequests(ShardId shardId) {
+            this.shardId = shardId;
+        }
+
+        boolean isFull() {
+            return request != null && request.itemIndices().size() >= bulkSize;
+        }
+
+        /**
+         * moves the request which is being filled to the queue of full requests
+         */
+        void queueRequest() {
+            queued.add(request);
+            request = null;
+        }
+
+        boolean hasQueuedRequests() {
+            return !queued.isEmpty();
+        }
+
+        boolean hasRequests() {
+            return request != null || !queued.isEmpty();
+        }
+
+        /**
+         * returns the oldest queued request, or the request which is being filled if none is queued,
+         * if another request can be executed on the shard. Otherwise the requests are executed as soon as a
+         * request in flight has been completed.
+         */
+        @Nullable
+        Request pollRequest() {
+            if (inFlight >= MAX_IN_FLIGHT_REQUESTS_PER_SHARD) {
+                flushRequested = true;
+                return null;
+            }
+            Request polled = queued.poll();
+            if (polled == null) {
+                polled = request;
+                request = null;
+                flushRequested = false;
+            }
+            if (polled == null) {
+                return null;
+            }
+            inFlight++;
+            return polled;
+        }
+
+        void adaptBulkSize(long responseTimeNanos, boolean rejected) {
+            if (rejected || responseTimeNanos > TARGET_RESPONSE_TIME_NANOS) {
+                bulkSize = Math.max(minBulkSize, bulkSize / 2);
+            } else if (responseTimeNanos < TARGET_RESPONSE_TIME_NANOS / 2) {
+                bulkSize = Math.min(BulkShardProcessor.this.bulkSize, bulkSize + minBulkSize);
+            }
+        }
+    }
+
+    private class ShardRequestListener implements ActionListener<ShardResponse> {
+
+        private final ShardId shardId;
+        private final Request request;
+        private final long startTime = System.nanoTime();
+        private volatile boolean rejected = false;
+        private volatile com.google.common.base.Optional<BulkRetryCoordinator> retryCoordinator =
+            com.google.common.base.Optional.absent();
+
+        ShardRequestListener(ShardId shardId, Request request) {
+            this.shardId = shardId;
+            this.request = request;
+        }
+
+        @Override
+        public void onResponse(ShardResponse response) {
+            processResponse(response);
+            completed();
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            processFailure(e, this);
+        }
+
+        void completed() {
+            onRequestCompleted(shardId, System.nanoTime() - startTime, rejected);
+        }
+    }
+
     static class PendingRequest {
         private final String indexName;
         private final ShardRequest.Item item;
@@ -0,0 +1,87 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+package io.crate.action.sql;
+
+import io.crate.analyze.Analyzer;
+import io.crate.executor.Executor;
+import io.crate.executor.transport.kill.TransportKillJobsNodeAction;
+import io.crate.operation.collect.StatsTables;
+import io.crate.planner.Planner;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.inject.util.Providers;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+
+public class SQLOperationsTest extends CrateUnitTest {
+
+    private static final String QUERY = "select name from sys.cluster where name = ?";
+
+    private static SQLOperations sqlOperations(Settings settings) {
+        return new SQLOperations(
+            mock(Analyzer.class),
+            mock(Planner.class),
+            Providers.of(mock(Executor.class)),
+            Providers.of(mock(TransportKillJobsNodeAction.class)),
+            mock(StatsTables.class),
+            settings,
+            mock(ClusterService.class)
+        );
+    }
+
+    private static SQLOperations.Session parse(SQLOperations sqlOperations, String statementName) {
+        SQLOperations.Session session = sqlOperations.createSession(null, SQLOperations.Option.NONE, 0);
+        session.parse(statementName, QUERY, Collections.<DataType>emptyList());
+        return session;
+    }
+
+    @Test
+    public void testRepeatedStatementIsServedFromCache() throws Exception {
+        SQLOperations sqlOperations = sqlOperations(Settings.EMPTY);
+
+        SQLOperations.Session session1 = parse(sqlOperations, "s1");
+        SQLOperations.Session session2 = parse(sqlOperations, "s2");
+
+        assertThat(session2.getSafeStmt("s2").statement(), sameInstance(session1.getSafeStmt("s1").statement()));
+    }
+
+    @Test
+    public void testCacheSizeZeroDisablesCaching() throws Exception {
+        SQLOperations sqlOperations = sqlOperations(
+            Settings.builder().put(SQLOperations.STATEMENT_CACHE_SIZE_SETTING, 0).build());
+
+        SQLOperations.Session session1 = parse(sqlOperations, "s1");
+        SQLOperations.Session session2 = parse(sqlOperations, "s2");
+
+        assertThat(session2.getSafeStmt("s2").statement(), not(sameInstance(session1.getSafeStmt("s1").statement())));
+        // the statement is parsed again, so it is equal but not the same
+        assertThat(session2.getSafeStmt("s2").statement(), is(session1.getSafeStmt("s1").statement()));
+    }
+}
@@ -33,6 +33,7 @@ import io.crate.metadata.Schemas;
 import io.crate.metadata.sys.MetaDataSysModule;
 import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.operator.OperatorModule;
 import io.crate.planner.projection.WriterProjection;
 import io.crate.testing.MockedClusterServiceModule;
@@ -45,6 +46,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -136,6 +138,34 @@ public class CopyAnalyzerTest extends BaseAnalyzerTest {
         assertThat(BytesRefs.toString(value), is(path));
     }
 
+    @Test
+    public void testCopyFromStdinDefaultsToTextFormat() throws Exception {
+        CopyFromAnalyzedStatement analysis = analyze("copy users from stdin");
+        assertThat(analysis.isStdin(), is(true));
+        assertThat(analysis.fileFormat(), is(FileReadingCollector.FileFormat.TEXT));
+        assertThat(analysis.uri(), nullValue());
+
+        analysis.stdinUri(URI.create("stdin:///foo"));
+        assertThat(analysis.uri(), isLiteral("stdin:///foo"));
+    }
+
+    @Test
+    public void testCopyFromWithFormat() throws Exception {
+        CopyFromAnalyzedStatement analysis = analyze("copy users from stdin with (format = 'CSV')");
+        assertThat(analysis.fileFormat(), is(FileReadingCollector.FileFormat.CSV));
+
+        analysis = analyze("copy users from '/some/distant/file.ext'");
+        assertThat(analysis.isStdin(), is(false));
+        assertThat(analysis.fileFormat(), is(FileReadingCollector.FileFormat.JSON));
+    }
+
+    @Test
+    public void testCopyFromWithInvalidFormat() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Invalid format \"binary\" for COPY FROM, supported formats are: json, csv, text");
+        analyze("copy users from stdin with (format = 'binary')");
+    }
+
     @Test
     public void testCopyToFile() throws Exception {
         expectedException.expect(UnsupportedOperationException.class);
@@ -0,0 +1,58 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.breaker;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+
+public class TrackingRamAccountingContextTest extends CrateUnitTest {
+
+    @Test
+    public void testReleasingTrackedBytesKeepsBytesOfOtherComponents() throws Exception {
+        RamAccountingContext parent = new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.REQUEST));
+        TrackingRamAccountingContext context = new TrackingRamAccountingContext(parent);
+
+        context.addBytes(100);
+        parent.addBytes(50);
+        context.addBytes(20);
+        assertThat(context.accountedBytes(), is(120L));
+        assertThat(parent.accountedBytes(), is(170L));
+
+        context.addBytes(-context.accountedBytes());
+        assertThat(context.accountedBytes(), is(0L));
+        assertThat(parent.accountedBytes(), is(50L));
+    }
+
+    @Test
+    public void testCloseDoesNotReleaseParentBytes() throws Exception {
+        RamAccountingContext parent = new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.REQUEST));
+        TrackingRamAccountingContext context = new TrackingRamAccountingContext(parent);
+
+        context.addBytes(100);
+        context.close();
+        assertThat(parent.accountedBytes(), is(100L));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.executor.transport;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.Streamer;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static io.crate.testing.TestingHelpers.isRow;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class StreamBucketTest {
+
+    private static final List<DataType> TYPES = Arrays.<DataType>asList(
+        DataTypes.LONG, DataTypes.INTEGER, DataTypes.SHORT, DataTypes.BYTE, DataTypes.DOUBLE,
+        DataTypes.FLOAT, DataTypes.BOOLEAN, DataTypes.STRING, DataTypes.OBJECT);
+
+    private static final Streamer<?>[] STREAMERS = DataTypes.getStreamers(TYPES);
+
+    private static Bucket streamed(StreamBucket.Builder builder) throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        builder.writeToStream(out);
+        StreamInput in = StreamInput.wrap(out.bytes());
+
+        // receiving side sets the streamers after the bucket has been read
+        StreamBucket bucket = new StreamBucket(null);
+        bucket.readFrom(in);
+        bucket.streamers(STREAMERS);
+        return bucket;
+    }
+
+    private static void addRows(StreamBucket.Builder builder) throws Exception {
+        builder.add(new RowN(new Object[]{1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f, true,
+            new BytesRef("foo"), ImmutableMap.of("x", 1)}));
+        builder.add(new RowN(new Object[]{null, null, null, null, null, null, null, null, null}));
+        builder.add(new RowN(new Object[]{-1L, -2, (short) -3, (byte) -4, -5.5d, -6.5f, false,
+            new BytesRef("foo"), null}));
+    }
+
+    private static void assertRows(Bucket bucket) {
+        assertThat(bucket.size(), is(3));
+        Iterator<Row> it = bucket.iterator();
+        assertThat(it.next(), isRow(1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f, true, "foo", ImmutableMap.of("x", 1)));
+        assertThat(it.next(), isRow(null, null, null, null, null, null, null, null, null));
+        assertThat(it.next(), isRow(-1L, -2, (short) -3, (byte) -4, -5.5d, -6.5f, false, "foo", null));
+        assertThat(it.hasNext(), is(false));
+    }
+
+    @Test
+    public void testStreamingRowFormat() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS);
+        addRows(builder);
+        assertRows(builder.build());
+        assertRows(streamed(builder));
+    }
+
+    @Test
+    public void testStreamingColumnFormat() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS, true);
+        addRows(builder);
+        assertRows(builder.build());
+        assertRows(streamed(builder));
+    }
+
+    @Test
+    public void testColumnFormatBuilderCanBeReusedAfterReset() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS, true);
+        addRows(builder);
+        builder.build();
+        builder.reset();
+
+        addRows(builder);
+        assertRows(streamed(builder));
+    }
+
+    @Test
+    public void testStreamingCompressedBucket() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS, true);
+        addRows(builder);
+        StreamBucket compressed = builder.build().compress();
+        assertThat(compressed.isCompressed(), is(true));
+        assertRows(compressed);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        compressed.writeTo(out);
+        StreamBucket streamed = new StreamBucket(STREAMERS);
+        streamed.readFrom(StreamInput.wrap(out.bytes()));
+        assertRows(streamed);
+    }
+
+    @Test
+    public void testColumnFormatIsSmallerForRepeatingValues() throws Exception {
+        Streamer<?>[] streamers = DataTypes.getStreamers(Arrays.<DataType>asList(DataTypes.STRING, DataTypes.LONG));
+        StreamBucket.Builder rowBuilder = new StreamBucket.Builder(streamers);
+        StreamBucket.Builder columnBuilder = new StreamBucket.Builder(streamers, true);
+        for (long i = 0; i < 100; i++) {
+            Row row = new RowN(new Object[]{new BytesRef("category_" + (i % 3)), i % 2 == 0 ? null : i});
+            rowBuilder.add(row);
+            columnBuilder.add(row);
+        }
+        BytesStreamOutput rowOut = new BytesStreamOutput();
+        rowBuilder.writeToStream(rowOut);
+        BytesStreamOutput columnOut = new BytesStreamOutput();
+        columnBuilder.writeToStream(columnOut);
+
+        assertThat(columnOut.size(), lessThan(rowOut.size()));
+    }
+
+    @Test
+    public void testStringColumnWithUniqueValuesIsNotDictionaryEncoded() throws Exception {
+        BucketColumn column = BucketColumn.forStreamer(DataTypes.STRING);
+        for (int i = 0; i < 1000; i++) {
+            column.add(new BytesRef("value_" + i));
+        }
+        assertThat(column.encoding(), is(BucketColumn.PLAIN_STRING));
+
+        column.reset();
+        for (int i = 0; i < 1000; i++) {
+            column.add(new BytesRef("value_" + (i % 10)));
+        }
+        assertThat(column.encoding(), is(BucketColumn.STRING));
+    }
+
+    @Test
+    public void testStringColumnSwitchesToPlainEncodingWhileRowsAreAdded() throws Exception {
+        Streamer<?>[] streamers = DataTypes.getStreamers(Arrays.<DataType>asList(DataTypes.STRING, DataTypes.INTEGER));
+        StreamBucket.Builder builder = new StreamBucket.Builder(streamers, true);
+        for (int i = 0; i < 1000; i++) {
+            // the first rows repeat a few values, the remaining ones are unique
+            String value = i < 100 ? "value_" + (i % 5) : "value_" + i;
+            builder.add(new RowN(new Object[]{i % 7 == 0 ? null : new BytesRef(value), i}));
+        }
+        StreamBucket bucket = builder.build();
+
+        int i = 0;
+        for (Row row : bucket) {
+            String value = i < 100 ? "value_" + (i % 5) : "value_" + i;
+            assertThat(row, isRow(i % 7 == 0 ? null : value, i));
+            i++;
+        }
+        assertThat(i, is(1000));
+    }
+}
@@ -36,9 +36,11 @@ import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.action.index.MappingUpdatedAction;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
 import org.elasticsearch.index.engine.Engine;
@@ -57,6 +59,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import static io.crate.testing.TestingHelpers.getFunctions;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.*;
 
 public class TransportShardUpsertActionTest extends CrateUnitTest {
@@ -339,6 +342,41 @@ public class TransportShardUpsertActionTest extends CrateUnitTest {
         validateMapOrder(sourceMap, Arrays.asList("ts", "user.name"));
     }
 
+    @Test
+    public void testProcessGeneratedColumnsOnRawInsert() throws Exception {
+        String rawSource = "{\"ts\": 1448274317000, \"user\": {\"name\": \"zoo\"}, \"tags\": [\"a\", {\"b\": 1}]}";
+
+        BytesReference source = transportShardUpsertAction.processGeneratedColumnsOnRawInsert(
+            generatedColumnTableInfo, new BytesRef(rawSource), true);
+
+        String sourceString = source.toUtf8();
+        // the original source is not re-serialized, generated values are appended
+        assertThat(sourceString, startsWith(rawSource.substring(0, rawSource.length() - 1)));
+        Map<String, Object> sourceMap = XContentHelper.convertToMap(source, true).v2();
+        validateMapOrder(sourceMap, Arrays.asList("ts", "user", "tags", "day", "name"));
+        assertThat((Long) sourceMap.get("day"), is(1448236800000L));
+        assertThat((String) sourceMap.get("name"), is("zoobar"));
+    }
+
+    @Test
+    public void testProcessGeneratedColumnsOnRawInsertWithValidValue() throws Exception {
+        BytesRef rawSource = new BytesRef("{\"ts\": 1448274317000, \"day\": 1448236800000}");
+
+        BytesReference source = transportShardUpsertAction.processGeneratedColumnsOnRawInsert(
+            generatedColumnTableInfo, rawSource, true);
+
+        assertThat(source.toBytesRef(), is(rawSource));
+    }
+
+    @Test
+    public void testProcessGeneratedColumnsOnRawInsertWithInvalidValue() throws Exception {
+        BytesRef rawSource = new BytesRef("{\"ts\": 1448274317000, \"day\": 1448274317000}");
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Given value 1448274317000 for generated column does not match defined generated expression value 1448236800000");
+        transportShardUpsertAction.processGeneratedColumnsOnRawInsert(generatedColumnTableInfo, rawSource, true);
+    }
+
     private void validateMapOrder(Map<String, Object> map, List<String> keys) {
         assertThat(map, instanceOf(LinkedHashMap.class));
 
@@ -352,10 +390,49 @@ public class TransportShardUpsertActionTest extends CrateUnitTest {
 
     }
 
+    @Test
+    public void testUpdateSourceByPaths() throws Exception {
+        BytesReference source = XContentFactory.jsonBuilder().startObject()
+            .field("a", 1)
+            .startObject("o")
+                .field("x", 1)
+                .startArray("y").value(1).value(2).endArray()
+            .endObject()
+            .field("b", "foo")
+            .endObject().bytes();
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("a", 2);
+        changes.put("o.x", null);
+        changes.put("o.z.zz", "bar");
+        changes.put("c", true);
+
+        BytesReference updatedSource = TransportShardUpsertAction.updateSourceByPaths(source, changes);
+
+        assertThat(updatedSource.toUtf8(),
+            is("{\"a\":2,\"o\":{\"x\":null,\"y\":[1,2],\"z\":{\"zz\":\"bar\"}},\"b\":\"foo\",\"c\":true}"));
+    }
+
+    @Test
+    public void testExtractTopLevelFields() throws Exception {
+        BytesReference source = XContentFactory.jsonBuilder().startObject()
+            .field("a", 1)
+            .startObject("o").field("x", 1).endObject()
+            .field("b", "foo")
+            .endObject().bytes();
+
+        Map<String, Object> fields = TransportShardUpsertAction.extractTopLevelFields(
+            source, new HashSet<>(Arrays.asList("a", "o.x")));
+
+        validateMapOrder(fields, Arrays.asList("a", "o"));
+        assertThat((Integer) fields.get("a"), is(1));
+    }
+
     @Test
     public void testUpdateSourceByPathsUpdateNullObject() throws Exception {
-        Map<String, Object> source = new HashMap<>();
-        source.put("o", null);
+        BytesReference source = XContentFactory.jsonBuilder().startObject()
+            .nullField("o")
+            .endObject().bytes();
 
         Map<String, Object> changes = new HashMap<>();
         changes.put("o.o", 5);
@@ -367,8 +444,9 @@ public class TransportShardUpsertActionTest extends CrateUnitTest {
 
     @Test
     public void testUpdateSourceByPathsUpdateNullObjectNested() throws Exception {
-        Map<String, Object> source = new HashMap<>();
-        source.put("o", null);
+        BytesReference source = XContentFactory.jsonBuilder().startObject()
+            .nullField("o")
+            .endObject().bytes();
 
         Map<String, Object> changes = new HashMap<>();
         changes.put("o.x.y", 5);
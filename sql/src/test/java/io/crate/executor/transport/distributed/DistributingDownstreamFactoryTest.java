@@ -30,6 +30,7 @@ import io.crate.metadata.Routing;
 import io.crate.metadata.RowGranularity;
 import io.crate.operation.NodeOperation;
 import io.crate.operation.Paging;
+import io.crate.operation.collect.StatsTables;
 import io.crate.operation.projectors.DistributingDownstreamFactory;
 import io.crate.operation.projectors.RowReceiver;
 import io.crate.planner.distribution.DistributionInfo;
@@ -40,6 +41,7 @@ import io.crate.test.integration.CrateUnitTest;
 import io.crate.types.DataType;
 import io.crate.types.LongType;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.test.cluster.NoopClusterService;
 import org.junit.Before;
 import org.junit.Test;
@@ -58,7 +60,9 @@ public class DistributingDownstreamFactoryTest extends CrateUnitTest {
         rowDownstreamFactory = new DistributingDownstreamFactory(
             Settings.EMPTY,
             new NoopClusterService(),
-            mock(TransportDistributedResultAction.class)
+            mock(TransportDistributedResultAction.class),
+            new NodeSettingsService(Settings.EMPTY),
+            mock(StatsTables.class)
         );
     }
 
@@ -190,4 +190,98 @@ public class DistributingDownstreamTest extends CrateUnitTest {
         rowSender.run();
         assertThat(requestsReceived.get(), is(3));
     }
+
+    @Test
+    public void testSendsPagesAheadUntilCreditsAreUsedUp() throws Exception {
+        Streamer[] streamers = new Streamer[]{DataTypes.INTEGER.streamer()};
+        final List<DistributedResultRequest> requests = new ArrayList<>();
+        final List<ActionListener<DistributedResultResponse>> listeners = new ArrayList<>();
+        TransportDistributedResultAction transportDistributedResultAction = new TransportDistributedResultAction(
+            mock(Transports.class),
+            mock(JobContextService.class),
+            mock(ThreadPool.class),
+            mock(TransportService.class),
+            Settings.EMPTY) {
+
+            @Override
+            public void pushResult(String node, DistributedResultRequest request, ActionListener<DistributedResultResponse> listener) {
+                requests.add(request);
+                listeners.add(listener);
+            }
+        };
+
+        DistributingDownstream dd = new DistributingDownstream(
+            Loggers.getLogger(DistributingDownstream.class),
+            UUID.randomUUID(),
+            new BroadcastingBucketBuilder(streamers, 1),
+            1,
+            (byte) 0,
+            0,
+            ImmutableList.of("n1"),
+            transportDistributedResultAction,
+            streamers,
+            2,
+            2,
+            DistributingDownstream.DEFAULT_BUFFER_SIZE.bytes(),
+            null
+        );
+        RowSender rowSender = new RowSender(RowGenerator.range(0, 7), dd, MoreExecutors.directExecutor());
+        rowSender.run();
+
+        // two pages are pending, the upstream is paused with the third page full
+        assertThat(requests.size(), is(2));
+        assertThat(rowSender.numPauses(), is(1));
+
+        listeners.get(0).onResponse(new DistributedResultResponse(true));
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(2).pageIdx(), is(2));
+        assertThat(requests.get(2).rows().size(), is(2));
+        assertThat(rowSender.numResumes(), is(1));
+
+        // the upstream finished but the last page has to wait for a credit
+        listeners.get(1).onResponse(new DistributedResultResponse(true));
+        assertThat(requests.size(), is(4));
+        assertThat(requests.get(3).pageIdx(), is(3));
+        assertThat(requests.get(3).isLast(), is(true));
+        assertThat(requests.get(3).rows().size(), is(1));
+    }
+
+    @Test
+    public void testPageSizeIsLimitedByBufferSize() throws Exception {
+        Streamer[] streamers = new Streamer[]{DataTypes.INTEGER.streamer()};
+        final List<DistributedResultRequest> requests = new ArrayList<>();
+        TransportDistributedResultAction transportDistributedResultAction = new TransportDistributedResultAction(
+            mock(Transports.class),
+            mock(JobContextService.class),
+            mock(ThreadPool.class),
+            mock(TransportService.class),
+            Settings.EMPTY) {
+
+            @Override
+            public void pushResult(String node, DistributedResultRequest request, ActionListener<DistributedResultResponse> listener) {
+                requests.add(request);
+                listener.onResponse(new DistributedResultResponse(true));
+            }
+        };
+
+        DistributingDownstream dd = new DistributingDownstream(
+            Loggers.getLogger(DistributingDownstream.class),
+            UUID.randomUUID(),
+            new BroadcastingBucketBuilder(streamers, 1),
+            1,
+            (byte) 0,
+            0,
+            ImmutableList.of("n1"),
+            transportDistributedResultAction,
+            streamers,
+            100,
+            1,
+            40,
+            null
+        );
+        new RowSender(RowGenerator.range(0, 120), dd, MoreExecutors.directExecutor()).run();
+
+        assertThat(requests.get(0).rows().size(), is(100));
+        assertThat(requests.get(1).rows().size(), Matchers.lessThanOrEqualTo(10));
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.executor.transport.distributed;
+
+import io.crate.Streamer;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.Row1;
+import io.crate.executor.transport.StreamBucket;
+import io.crate.operation.collect.StatsTables;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class PageCompressorTest extends CrateUnitTest {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[]{DataTypes.STRING.streamer()};
+
+    private final StatsTables statsTables = mock(StatsTables.class);
+    private final UUID jobId = UUID.randomUUID();
+
+    private static StreamBucket bucket(int numRows, boolean random) throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS);
+        Random rnd = new Random(42);
+        for (int i = 0; i < numRows; i++) {
+            byte[] bytes = new byte[32];
+            if (random) {
+                rnd.nextBytes(bytes);
+            }
+            builder.add(new Row1(new BytesRef(bytes)));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testSmallPageIsNotCompressed() throws Exception {
+        PageCompressor compressor = new PageCompressor(1024, statsTables, 1, jobId);
+        StreamBucket bucket = bucket(2, false);
+        assertThat(compressor.compress(bucket), sameInstance((Bucket) bucket));
+    }
+
+    @Test
+    public void testLargePageIsCompressedAndStatsAreUpdated() throws Exception {
+        PageCompressor compressor = new PageCompressor(1024, statsTables, 1, jobId);
+        Bucket compressed = compressor.compress(bucket(1000, false));
+
+        assertThat(((StreamBucket) compressed).isCompressed(), is(true));
+        assertThat(compressed.size(), is(1000));
+        verify(statsTables).operationCompressedPage(eq(1), eq(jobId), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testThresholdIsRaisedForIncompressiblePages() throws Exception {
+        PageCompressor compressor = new PageCompressor(1024, statsTables, 1, jobId);
+        StreamBucket incompressible = bucket(1000, true);
+
+        assertThat(compressor.compress(incompressible), sameInstance((Bucket) incompressible));
+        assertThat(compressor.threshold(), is(2048L));
+        // the page is sent uncompressed, so the uncompressed size is recorded
+        long byteSize = incompressible.byteSize();
+        verify(statsTables).operationCompressedPage(eq(1), eq(jobId), eq(byteSize), eq(byteSize), anyLong());
+
+        Bucket compressed = compressor.compress(bucket(1000, false));
+        assertThat(((StreamBucket) compressed).isCompressed(), is(true));
+        assertThat(compressor.threshold(), is(1024L));
+    }
+}
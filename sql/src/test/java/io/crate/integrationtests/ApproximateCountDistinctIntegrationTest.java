@@ -0,0 +1,71 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.integrationtests;
+
+import io.crate.planner.SelectStatementPlanner;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.ESIntegTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+@ESIntegTestCase.ClusterScope(numDataNodes = 2)
+public class ApproximateCountDistinctIntegrationTest extends SQLTransportIntegrationTest {
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return Settings.builder()
+            .put(super.nodeSettings(nodeOrdinal))
+            .put(SelectStatementPlanner.APPROXIMATE_COUNT_DISTINCT_SETTING, true)
+            .build();
+    }
+
+    @Before
+    public void createTable() {
+        execute("create table t (x int, name string) clustered into 4 shards with (number_of_replicas = 0)");
+        ensureYellow();
+        Object[][] bulkArgs = new Object[1_000][];
+        for (int i = 0; i < bulkArgs.length; i++) {
+            bulkArgs[i] = new Object[]{i % 3, "name" + (i % 200)};
+        }
+        execute("insert into t (x, name) values (?, ?)", bulkArgs);
+        refresh();
+    }
+
+    // the rewrite itself is covered by ApproximateCountDistinctTest, these tests run the partial states across nodes
+    @Test
+    public void testCountDistinctIsApproximated() throws Exception {
+        execute("select count(distinct name) from t");
+        assertThat((Long) response.rows()[0][0], allOf(greaterThan(190L), lessThan(210L)));
+    }
+
+    @Test
+    public void testCountDistinctWithGroupByAndHaving() throws Exception {
+        execute("select x, count(distinct name) from t group by x having count(distinct name) > 10 order by x");
+        assertThat(response.rowCount(), is(3L));
+        for (Object[] row : response.rows()) {
+            assertThat((Long) row[1], allOf(greaterThan(190L), lessThan(210L)));
+        }
+    }
+}
@@ -61,7 +61,7 @@ public class InformationSchemaTest extends SQLTransportIntegrationTest {
     @Test
     public void testDefaultTables() throws Exception {
         execute("select * from information_schema.tables order by schema_name, table_name");
-        assertEquals(20L, response.rowCount());
+        assertEquals(21L, response.rowCount());
 
         assertThat(TestingHelpers.printedTable(response.rows()), is(
             "NULL| NULL| strict| 0| 1| NULL| information_schema| NULL| columns\n" +
@@ -74,6 +74,7 @@ public class InformationSchemaTest extends SQLTransportIntegrationTest {
             "NULL| NULL| strict| 0| 1| NULL| pg_catalog| NULL| pg_type\n" +
             "NULL| NULL| strict| 0| 1| NULL| sys| NULL| checks\n" +
             "NULL| NULL| strict| 0| 1| NULL| sys| NULL| cluster\n" +
+            "NULL| NULL| strict| 0| 1| NULL| sys| NULL| filter_cache\n" +
             "NULL| NULL| strict| 0| 1| NULL| sys| NULL| jobs\n" +
             "NULL| NULL| strict| 0| 1| NULL| sys| NULL| jobs_log\n" +
             "NULL| NULL| strict| 0| 1| NULL| sys| NULL| node_checks\n" +
@@ -119,14 +120,14 @@ public class InformationSchemaTest extends SQLTransportIntegrationTest {
         serviceSetup();
 
         execute("select * from information_schema.tables");
-        assertEquals(23L, response.rowCount());
+        assertEquals(24L, response.rowCount());
 
         client().execute(SQLAction.INSTANCE,
             new SQLRequest("create table t4 (col1 integer, col2 string) with (number_of_replicas=0)")).actionGet();
         ensureGreen("t4");
 
         execute("select * from information_schema.tables");
-        assertEquals(24L, response.rowCount());
+        assertEquals(25L, response.rowCount());
     }
 
     @Test
@@ -267,7 +268,7 @@ public class InformationSchemaTest extends SQLTransportIntegrationTest {
     public void testSelectFromTableConstraints() throws Exception {
 
         execute("select * from INFORMATION_SCHEMA.table_constraints order by schema_name asc, table_name asc");
-        assertEquals(13L, response.rowCount());
+        assertEquals(14L, response.rowCount());
         assertThat(response.cols(),
             arrayContaining("constraint_name", "constraint_type", "schema_name", "table_name"));
         assertThat(TestingHelpers.printedTable(response.rows()), is(
@@ -276,6 +277,7 @@ public class InformationSchemaTest extends SQLTransportIntegrationTest {
             "[feature_id, feature_name, sub_feature_id, sub_feature_name, is_supported, is_verified_by, comments]| PRIMARY_KEY| information_schema| sql_features\n" +
             "[schema_name, table_name]| PRIMARY_KEY| information_schema| tables\n" +
             "[id]| PRIMARY_KEY| sys| checks\n" +
+            "[node_id]| PRIMARY_KEY| sys| filter_cache\n" +
             "[id]| PRIMARY_KEY| sys| jobs\n" +
             "[id]| PRIMARY_KEY| sys| jobs_log\n" +
             "[id]| PRIMARY_KEY| sys| node_checks\n" +
@@ -439,7 +441,7 @@ public class InformationSchemaTest extends SQLTransportIntegrationTest {
     @Test
     public void testDefaultColumns() throws Exception {
         execute("select * from information_schema.columns order by schema_name, table_name");
-        assertEquals(358, response.rowCount());
+        assertEquals(364, response.rowCount());
     }
 
     @Test
@@ -567,7 +569,7 @@ public class InformationSchemaTest extends SQLTransportIntegrationTest {
         execute("select max(ordinal_position) from information_schema.columns");
         assertEquals(1, response.rowCount());
 
-        short max_ordinal = 99;
+        short max_ordinal = 102;
         assertEquals(max_ordinal, response.rows()[0][0]);
 
         execute("create table t1 (id integer, col1 string)");
@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.integrationtests;
+
+import io.crate.operation.collect.ShardCollectService;
+import io.crate.testing.TestingHelpers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.ESIntegTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+
+@ESIntegTestCase.ClusterScope(numDataNodes = 1)
+public class SegmentSlicesIntegrationTest extends SQLTransportIntegrationTest {
+
+    private static final int ORIGINAL_MIN_DOCS_PER_SLICE = ShardCollectService.MIN_DOCS_PER_SLICE;
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        ShardCollectService.MIN_DOCS_PER_SLICE = 1;
+        return Settings.builder()
+            .put(super.nodeSettings(nodeOrdinal))
+            .put(ShardCollectService.MAX_SEGMENT_SLICES_SETTING, 4)
+            .build();
+    }
+
+    @After
+    public void resetMinDocsPerSlice() {
+        ShardCollectService.MIN_DOCS_PER_SLICE = ORIGINAL_MIN_DOCS_PER_SLICE;
+    }
+
+    @Before
+    public void createMultiSegmentShard() {
+        execute("create table t (x int, y int) clustered by (x) into 1 shards " +
+                "with (number_of_replicas = 0, refresh_interval = 0)");
+        ensureYellow();
+        // every batch is flushed into its own segment and contains each x
+        for (int batch = 0; batch < 4; batch++) {
+            execute("insert into t (x, y) values (1, ?), (2, ?), (3, ?)", new Object[]{batch, batch, batch});
+            refresh();
+        }
+    }
+
+    @Test
+    public void testGroupByRoutingColumnIsNotSliced() throws Exception {
+        execute("select x, count(*), sum(y) from t group by x order by x");
+        assertThat(TestingHelpers.printedTable(response.rows()), is(
+            "1| 4| 6\n" +
+            "2| 4| 6\n" +
+            "3| 4| 6\n"));
+    }
+
+    @Test
+    public void testGroupByRoutingColumnWithHavingAndLimitIsNotSliced() throws Exception {
+        execute("select x, count(*) from t group by x having count(*) > 2 order by x limit 2");
+        assertThat(TestingHelpers.printedTable(response.rows()), is(
+            "1| 4\n" +
+            "2| 4\n"));
+    }
+
+    @Test
+    public void testDistributedGroupByOnSlicedSegments() throws Exception {
+        execute("select y, count(*) from t group by y having count(*) > 2 order by y limit 2");
+        assertThat(TestingHelpers.printedTable(response.rows()), is(
+            "0| 3\n" +
+            "1| 3\n"));
+    }
+}
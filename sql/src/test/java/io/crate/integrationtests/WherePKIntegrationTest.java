@@ -55,6 +55,35 @@ public class WherePKIntegrationTest extends SQLTransportIntegrationTest {
         assertThat((String) response.rows()[1][0], is("Marvin"));
     }
 
+    @Test
+    public void testWherePkColInReadsUnrefreshedAndRefreshedDocuments() throws Exception {
+        execute("create table users (" +
+                "   id int primary key," +
+                "   name string index using fulltext," +
+                "   age int" +
+                ") clustered into 3 shards with (number_of_replicas = 0)");
+        ensureYellow();
+        execute("insert into users (id, name, age) values (?, ?, ?)", new Object[][]{
+            new Object[]{1, "Arthur", 42},
+            new Object[]{2, "Trillian", 31},
+        });
+        execute("refresh table users");
+        execute("insert into users (id, name, age) values (?, ?, ?)", new Object[][]{
+            new Object[]{3, "Marvin", 1000},
+            new Object[]{4, "Slartibartfast", 120},
+        });
+
+        execute("select _id, id, age + 1, name from users where id in (1, 2, 3, 5) order by id");
+        assertThat(TestingHelpers.printedTable(response.rows()), is(
+            "1| 1| 43| Arthur\n" +
+            "2| 2| 32| Trillian\n" +
+            "3| 3| 1001| Marvin\n"));
+
+        // age has doc values and is read without parsing the source of refreshed documents
+        execute("select age from users where id in (1, 4) order by age");
+        assertThat(TestingHelpers.printedTable(response.rows()), is("42\n120\n"));
+    }
+
     @Test
     public void testWherePKWithFunctionInOutputsAndOrderBy() throws Exception {
         execute("create table users (" +
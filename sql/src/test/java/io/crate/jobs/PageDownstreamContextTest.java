@@ -21,12 +21,16 @@
 
 package io.crate.jobs;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.Streamer;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.concurrent.CompletionListener;
 import io.crate.concurrent.CompletionState;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.BucketPage;
 import io.crate.core.collections.Row1;
 import io.crate.core.collections.SingleRowBucket;
+import io.crate.operation.PageConsumeListener;
 import io.crate.operation.PageDownstream;
 import io.crate.operation.PageResultListener;
 import io.crate.operation.projectors.FlatProjectorChain;
@@ -41,10 +45,14 @@ import org.mockito.stubbing.Answer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.*;
 
@@ -70,14 +78,79 @@ public class PageDownstreamContextTest extends CrateUnitTest {
             1, "dummy", pageDownstream, new Streamer[0], RAM_ACCOUNTING_CONTEXT, 3, mock(FlatProjectorChain.class));
 
         PageResultListener pageResultListener = mock(PageResultListener.class);
-        ctx.setBucket(1, new SingleRowBucket(new Row1("foo")), false, pageResultListener);
-        ctx.setBucket(1, new SingleRowBucket(new Row1("foo")), false, pageResultListener);
+        ctx.setBucket(1, 0, new SingleRowBucket(new Row1("foo")), false, pageResultListener);
+        ctx.setBucket(1, 0, new SingleRowBucket(new Row1("foo")), false, pageResultListener);
 
         Throwable t = ref.get();
         assertThat(t, instanceOf(IllegalStateException.class));
         assertThat(t.getMessage(), is("Same bucket of a page set more than once. node=n1 method=setBucket phaseId=1 bucket=1"));
     }
 
+    @Test
+    public void testPagesSentAheadAreConsumedInOrderOnceTheConsumerNeedsMore() throws Exception {
+        final List<BucketPage> pages = new ArrayList<>();
+        final List<PageConsumeListener> consumeListeners = new ArrayList<>();
+        PageDownstream pageDownstream = mock(PageDownstream.class);
+        doAnswer(new Answer() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                pages.add((BucketPage) invocation.getArguments()[0]);
+                consumeListeners.add((PageConsumeListener) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(pageDownstream).nextPage(any(BucketPage.class), any(PageConsumeListener.class));
+
+        PageBucketReceiver ctx = new PageDownstreamContext(Loggers.getLogger(PageDownstreamContext.class), "n1",
+            1, "dummy", pageDownstream, new Streamer[0], RAM_ACCOUNTING_CONTEXT, 2, mock(FlatProjectorChain.class));
+
+        Bucket b1 = new SingleRowBucket(new Row1("b1"));
+        Bucket b2 = new SingleRowBucket(new Row1("b2"));
+        Bucket b3 = new SingleRowBucket(new Row1("b3"));
+        Bucket b4 = new SingleRowBucket(new Row1("b4"));
+        PageResultListener l1 = mockListener(0);
+        PageResultListener l2 = mockListener(0);
+        PageResultListener l3 = mockListener(0);
+        PageResultListener l4 = mockListener(1);
+
+        // second and third page of the first upstream arrive before its first page
+        ctx.setBucket(0, 2, b3, true, l3);
+        ctx.setBucket(0, 1, b2, false, l2);
+        assertThat(pages.size(), is(0));
+
+        ctx.setBucket(0, 0, b1, false, l1);
+        ctx.setBucket(1, 0, b4, true, l4);
+        assertThat(pages.size(), is(1));
+        assertThat(bucketsOf(pages.get(0)), contains(b1, b4));
+        verify(l2, never()).needMore(anyBoolean());
+
+        consumeListeners.get(0).needMore();
+        verify(l1).needMore(true);
+        verify(l4).needMore(false);
+        assertThat(pages.size(), is(2));
+        assertThat(bucketsOf(pages.get(1)), contains(b2, Bucket.EMPTY));
+        verify(l2, never()).needMore(anyBoolean());
+
+        consumeListeners.get(1).needMore();
+        verify(l2).needMore(true);
+        assertThat(pages.size(), is(3));
+        assertThat(bucketsOf(pages.get(2)), contains(b3, Bucket.EMPTY));
+        verify(l3, never()).needMore(anyBoolean());
+    }
+
+    private static PageResultListener mockListener(int bucketIdx) {
+        PageResultListener listener = mock(PageResultListener.class);
+        when(listener.buckedIdx()).thenReturn(bucketIdx);
+        return listener;
+    }
+
+    private static List<Bucket> bucketsOf(BucketPage page) throws Exception {
+        List<Bucket> buckets = new ArrayList<>();
+        for (ListenableFuture<Bucket> future : page.buckets()) {
+            buckets.add(future.get());
+        }
+        return buckets;
+    }
+
     @Test
     public void testKillCallsDownstream() throws Exception {
         PageDownstream downstream = mock(PageDownstream.class);
@@ -26,7 +26,9 @@ import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.analyze.WhereClause;
 import io.crate.analyze.relations.AnalyzedRelation;
 import io.crate.analyze.relations.TableRelation;
+import io.crate.analyze.symbol.Function;
 import io.crate.metadata.Functions;
+import io.crate.metadata.Reference;
 import io.crate.metadata.StmtCtx;
 import io.crate.metadata.TableIdent;
 import io.crate.metadata.doc.DocTableInfo;
@@ -111,6 +113,7 @@ public class LuceneQueryBuilderTest extends CrateUnitTest {
 
         XContentBuilder xContentBuilder = XContentFactory.jsonBuilder().startObject().startObject("default")
             .startObject("properties")
+            .startObject("name").field("type", "string").field("index", "not_analyzed").endObject()
             .startObject("point").field("type", "geo_point").endObject()
             .startObject("shape").field("type", "geo_shape").endObject()
             .endObject()
@@ -172,6 +175,23 @@ public class LuceneQueryBuilderTest extends CrateUnitTest {
         assertThat(query, instanceOf(LuceneQueryBuilder.Visitor.FunctionFilter.class));
     }
 
+    @Test
+    public void testGenericFunctionFilterReadsColumnsWithDocValuesFromDocValues() throws Exception {
+        Query query = convert("name = name");
+        Function function = ((LuceneQueryBuilder.Visitor.FunctionFilter) query).function();
+        Reference name = (Reference) function.arguments().get(0);
+        assertThat(name.ident().columnIdent().fqn(), is("name"));
+    }
+
+    @Test
+    public void testGenericFunctionFilterReadsArraysFromSource() throws Exception {
+        Query query = convert("y_array = [10, 20, 30]");
+        Query functionFilter = ((BooleanQuery) query).clauses().get(1).getQuery();
+        Function function = ((LuceneQueryBuilder.Visitor.FunctionFilter) functionFilter).function();
+        Reference yArray = (Reference) function.arguments().get(0);
+        assertThat(yArray.ident().columnIdent().name(), is("_doc"));
+    }
+
     @Test
     public void testLteQuery() throws Exception {
         Query query = convert("x <= 10");
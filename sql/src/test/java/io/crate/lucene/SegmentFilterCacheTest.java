@@ -0,0 +1,148 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.lucene;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.WhereClause;
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.Literal;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.operator.EqOperator;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SegmentFilterCacheTest extends CrateUnitTest {
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+    private SegmentFilterCache filterCache;
+
+    @Before
+    public void prepare() throws Exception {
+        directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+        for (String value : new String[]{"a", "a", "b"}) {
+            Document document = new Document();
+            document.add(new StringField("x", value, Field.Store.NO));
+            writer.addDocument(document);
+        }
+        writer.close();
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(null);
+
+        DiscoveryNode localNode = mock(DiscoveryNode.class);
+        when(localNode.id()).thenReturn("n1");
+        ClusterService clusterService = mock(ClusterService.class);
+        when(clusterService.localNode()).thenReturn(localNode);
+        filterCache = new SegmentFilterCache(clusterService, 100, 1024 * 1024, QueryCachingPolicy.ALWAYS_CACHE);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        reader.close();
+        directory.close();
+    }
+
+    private static Symbol eq(String value) {
+        FunctionInfo info = new FunctionInfo(
+            new FunctionIdent(EqOperator.NAME, ImmutableList.<DataType>of(DataTypes.STRING, DataTypes.STRING)), DataTypes.BOOLEAN);
+        return new Function(info, ImmutableList.<Symbol>of(createReference("x", DataTypes.STRING), Literal.of(value)));
+    }
+
+    @Test
+    public void testMatchesAreCachedByQuerySymbol() throws Exception {
+        WhereClause whereClause = new WhereClause(eq("a"));
+        assertThat(searcher.count(filterCache.wrap(whereClause, new TermQuery(new Term("x", "a")), searcher)), is(2));
+        // the lucene query is created again for every collect operation, the query symbol is the same
+        assertThat(searcher.count(filterCache.wrap(whereClause, new TermQuery(new Term("x", "a")), searcher)), is(2));
+        assertThat(searcher.count(filterCache.wrap(new WhereClause(eq("b")), new TermQuery(new Term("x", "b")), searcher)), is(1));
+
+        SegmentFilterCache.Stats stats = filterCache.stats();
+        assertThat(stats.nodeId().utf8ToString(), is("n1"));
+        assertThat(stats.entries(), is(2L));
+        assertThat(stats.hits(), is(1L));
+        assertThat(stats.misses(), is(2L));
+        assertThat(stats.sizeInBytes(), greaterThan(0L));
+    }
+
+    @Test
+    public void testEntriesAreRemovedIfSegmentIsClosed() throws Exception {
+        searcher.count(filterCache.wrap(new WhereClause(eq("a")), new TermQuery(new Term("x", "a")), searcher));
+        assertThat(filterCache.stats().entries(), is(1L));
+
+        reader.close();
+        assertThat(filterCache.stats().entries(), is(0L));
+    }
+
+    @Test
+    public void testScoredSearchIsNotCached() throws Exception {
+        TopDocs topDocs = searcher.search(filterCache.wrap(new WhereClause(eq("a")), new TermQuery(new Term("x", "a")), searcher), 10);
+        assertThat(topDocs.totalHits, is(2));
+        assertThat(filterCache.stats().entries(), is(0L));
+    }
+
+    @Test
+    public void testNonDeterministicQueryIsNotWrapped() throws Exception {
+        FunctionInfo info = new FunctionInfo(
+            new FunctionIdent("random", ImmutableList.<DataType>of()),
+            DataTypes.BOOLEAN, FunctionInfo.Type.SCALAR, false, false);
+        Query query = new MatchAllDocsQuery();
+        Query wrapped = filterCache.wrap(new WhereClause(new Function(info, ImmutableList.<Symbol>of())), query, searcher);
+        assertThat(wrapped, sameInstance(query));
+    }
+
+    @Test
+    public void testQueryCacheOfSearcherIsDisabledForWrappedQueries() throws Exception {
+        LRUQueryCache shardQueryCache = new LRUQueryCache(100, 1024 * 1024);
+        searcher.setQueryCache(shardQueryCache);
+        searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+        Query query = filterCache.wrap(new WhereClause(eq("a")), new TermQuery(new Term("x", "a")), searcher);
+        assertThat(searcher.count(query), is(2));
+        assertThat(filterCache.stats().entries(), is(1L));
+        assertThat(shardQueryCache.getCacheSize(), is(0L));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.symbol.Literal;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.FunctionIdent;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+public class HyperLogLogDistinctAggregationTest extends AggregationTest {
+
+    private Object[][] executeAggregation(DataType dataType, Object[][] data) throws Exception {
+        return executeAggregation(HyperLogLogDistinctAggregation.NAME, dataType, data);
+    }
+
+    @Test
+    public void testReturnType() throws Exception {
+        for (DataType dataType : DataTypes.PRIMITIVE_TYPES) {
+            FunctionIdent ident = new FunctionIdent(HyperLogLogDistinctAggregation.NAME, ImmutableList.of(dataType));
+            assertThat(functions.get(ident).info().returnType(), is((DataType) DataTypes.LONG));
+        }
+    }
+
+    @Test
+    public void testSmallCardinalitiesAreExact() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.STRING, new Object[][]{
+            {new BytesRef("Galaxy")},
+            {new BytesRef("Planet")},
+            {null},
+            {new BytesRef("Planet")},
+            {new BytesRef("Star System")}
+        });
+        assertThat(result[0][0], is((Object) 3L));
+    }
+
+    @Test
+    public void testNoValues() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.LONG, new Object[0][]);
+        assertThat(result[0][0], is((Object) 0L));
+    }
+
+    @Test
+    public void testLargeCardinalityIsEstimated() throws Exception {
+        Object[][] rows = new Object[400_000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i % 200_000};
+        }
+        long estimate = (Long) executeAggregation(DataTypes.LONG, rows)[0][0];
+        assertThat(estimate, allOf(greaterThan(194_000L), lessThan(206_000L)));
+    }
+
+    @Test
+    public void testPrecisionArgument() throws Exception {
+        Object[][] rows = new Object[10_000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{i, 10};
+        }
+        Object[][] result = executeAggregation(HyperLogLogDistinctAggregation.NAME, DataTypes.INTEGER, rows,
+            ImmutableList.<DataType>of(DataTypes.INTEGER, DataTypes.INTEGER));
+        long estimate = (Long) result[0][0];
+        assertThat(estimate, allOf(greaterThan(9_000L), lessThan(11_000L)));
+    }
+
+    @Test
+    public void testReduceReleasesBytesOfMergedState() throws Exception {
+        HyperLogLogDistinctAggregation aggregation = (HyperLogLogDistinctAggregation) functions.get(
+            new FunctionIdent(HyperLogLogDistinctAggregation.NAME, ImmutableList.<DataType>of(DataTypes.LONG)));
+        RamAccountingContext context = new RamAccountingContext("test", new NoopCircuitBreaker(CircuitBreaker.FIELDDATA));
+        HyperLogLogState state1 = null;
+        HyperLogLogState state2 = null;
+        for (long i = 0; i < 100; i++) {
+            state1 = aggregation.iterate(context, state1, Literal.of(i));
+            state2 = aggregation.iterate(context, state2, Literal.of(i + 100));
+        }
+        assertThat(context.accountedBytes(), is(state1.memoryUsage() + state2.memoryUsage()));
+
+        HyperLogLogState reduced = aggregation.reduce(context, state1, state2);
+        assertThat(context.accountedBytes(), is(reduced.memoryUsage()));
+    }
+
+    @Test
+    public void testInvalidPrecision() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("precision must be >= 4 and <= 18, got 20");
+        executeAggregation(HyperLogLogDistinctAggregation.NAME, DataTypes.INTEGER, new Object[][]{{1, 20L}},
+            ImmutableList.<DataType>of(DataTypes.INTEGER, DataTypes.LONG));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import io.crate.Streamer;
+import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+public class HyperLogLogStateTest extends CrateUnitTest {
+
+    private static HyperLogLogState stream(HyperLogLogState state) throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        Streamer streamer = HyperLogLogStateType.INSTANCE.create().streamer();
+        streamer.writeValueTo(out, state);
+        StreamInput in = StreamInput.wrap(out.bytes());
+        return (HyperLogLogState) streamer.readValueFrom(in);
+    }
+
+    @Test
+    public void testStreamingOfSparseState() throws Exception {
+        HyperLogLogState state = new HyperLogLogState(HyperLogLogState.DEFAULT_PRECISION);
+        for (long i = 0; i < 100; i++) {
+            state.add(i);
+        }
+        BytesStreamOutput out = new BytesStreamOutput();
+        HyperLogLogState.write(state, out);
+        // only the set registers are written
+        assertThat(out.size(), lessThan(500));
+
+        HyperLogLogState streamed = stream(state);
+        assertThat(streamed.precision(), is(state.precision()));
+        assertThat(streamed.cardinality(), is(state.cardinality()));
+    }
+
+    @Test
+    public void testStreamingOfDenseState() throws Exception {
+        HyperLogLogState state = new HyperLogLogState(8);
+        for (long i = 0; i < 10_000; i++) {
+            state.add(i);
+        }
+        HyperLogLogState streamed = stream(state);
+        assertThat(streamed.precision(), is(8));
+        assertThat(streamed.cardinality(), is(state.cardinality()));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        HyperLogLogState state1 = new HyperLogLogState(HyperLogLogState.DEFAULT_PRECISION);
+        HyperLogLogState state2 = new HyperLogLogState(HyperLogLogState.DEFAULT_PRECISION);
+        for (long i = 0; i < 1_000; i++) {
+            state1.add(i);
+            state2.add(i + 500);
+        }
+        state1.merge(stream(state2));
+        assertThat(state1.cardinality(), allOf(greaterThan(1_450L), lessThan(1_550L)));
+    }
+
+    @Test
+    public void testSparseStateIsConvertedToDense() throws Exception {
+        HyperLogLogState state = new HyperLogLogState(HyperLogLogState.DEFAULT_PRECISION);
+        for (long i = 0; i < 1_000; i++) {
+            state.add(i);
+        }
+        assertThat(state.isSparse(), is(true));
+        assertThat(state.memoryUsage(), lessThan((long) 1 << HyperLogLogState.DEFAULT_PRECISION));
+        assertThat(state.cardinality(), allOf(greaterThan(970L), lessThan(1_030L)));
+
+        for (long i = 1_000; i < 10_000; i++) {
+            state.add(i);
+        }
+        assertThat(state.isSparse(), is(false));
+        assertThat(state.cardinality(), allOf(greaterThan(9_700L), lessThan(10_300L)));
+    }
+
+    @Test
+    public void testMergeOfSparseAndDenseStates() throws Exception {
+        HyperLogLogState sparse = new HyperLogLogState(HyperLogLogState.DEFAULT_PRECISION);
+        HyperLogLogState dense = new HyperLogLogState(HyperLogLogState.DEFAULT_PRECISION);
+        for (long i = 0; i < 100; i++) {
+            sparse.add(i);
+        }
+        for (long i = 0; i < 20_000; i++) {
+            dense.add(i + 50);
+        }
+        assertThat(sparse.isSparse(), is(true));
+        assertThat(dense.isSparse(), is(false));
+
+        HyperLogLogState merged = stream(sparse);
+        merged.merge(dense);
+        assertThat(merged.isSparse(), is(false));
+        dense.merge(sparse);
+        assertThat(merged.cardinality(), is(dense.cardinality()));
+        assertThat(dense.cardinality(), allOf(greaterThan(19_400L), lessThan(20_600L)));
+    }
+
+    @Test
+    public void testMergeWithDifferentPrecisionFails() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Cannot merge HyperLogLog states with precision 14 and 10");
+        new HyperLogLogState(14).merge(new HyperLogLogState(10));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.crate.executor.transport.StreamBucket;
+import io.crate.integrationtests.SQLTransportIntegrationTest;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.Reference;
+import io.crate.metadata.Schemas;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.doc.DocSysColumns;
+import io.crate.metadata.doc.DocTableInfo;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESIntegTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.is;
+
+@ESIntegTestCase.ClusterScope(numDataNodes = 1, numClientNodes = 0)
+public class PKLookupOperationTest extends SQLTransportIntegrationTest {
+
+    private PKLookupOperation pkLookupOperation;
+    private DocTableInfo tableInfo;
+
+    @Before
+    public void setUpTable() throws Exception {
+        execute("create table t (id int primary key, name string) clustered into 1 shards " +
+                "with (number_of_replicas = 0, refresh_interval = 0)");
+        ensureYellow();
+        pkLookupOperation = internalCluster().getInstance(PKLookupOperation.class);
+        tableInfo = (DocTableInfo) internalCluster().getInstance(Schemas.class).getTableInfo(new TableIdent(null, "t"));
+    }
+
+    private List<Reference> columns(ColumnIdent... columns) {
+        ImmutableList.Builder<Reference> builder = ImmutableList.builder();
+        for (ColumnIdent column : columns) {
+            builder.add(tableInfo.getReference(column));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testLookupReturnsRequestedColumnsOfFoundDocuments() throws Exception {
+        execute("insert into t (id, name) values (1, 'Arthur'), (2, 'Trillian'), (4, 'Marvin')");
+        execute("refresh table t");
+
+        StreamBucket bucket = pkLookupOperation.lookup(
+            ImmutableMap.<ShardId, List<String>>of(new ShardId("t", 0), Arrays.asList("4", "3", "1")),
+            columns(new ColumnIdent("id"), new ColumnIdent("name")));
+
+        // ids are looked up in term order, missing ids are skipped
+        assertThat(printedTable(bucket), is("1| Arthur\n4| Marvin\n"));
+    }
+
+    @Test
+    public void testLookupFindsDocumentsWhichHaveNotBeenRefreshed() throws Exception {
+        execute("insert into t (id, name) values (1, 'Arthur'), (2, 'Trillian')");
+
+        StreamBucket bucket = pkLookupOperation.lookup(
+            ImmutableMap.<ShardId, List<String>>of(new ShardId("t", 0), Arrays.asList("2", "1")),
+            columns(DocSysColumns.ID, new ColumnIdent("name")));
+
+        assertThat(printedTable(bucket), is("1| Arthur\n2| Trillian\n"));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.collect.collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.crate.action.sql.query.CrateSearchContext;
+import io.crate.operation.Input;
+import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.CollectingRowReceiver;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.search.internal.SearchContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+
+public class CrateDocCollectorTest extends CrateUnitTest {
+
+    private static final int[] SEGMENT_SIZES = new int[]{50, 2, 1};
+
+    private Directory directory;
+    private DirectoryReader reader;
+
+    @Before
+    public void createSegments() throws IOException {
+        directory = FSDirectory.open(createTempDir());
+        IndexWriterConfig cfg = new IndexWriterConfig(new StandardAnalyzer());
+        cfg.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter w = new IndexWriter(directory, cfg);
+        for (int segmentSize : SEGMENT_SIZES) {
+            for (int i = 0; i < segmentSize; i++) {
+                w.addDocument(new Document());
+            }
+            w.commit();
+        }
+        w.close();
+        reader = DirectoryReader.open(directory);
+    }
+
+    @After
+    public void closeIndex() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void testReleasablesAreClearedAfterLastSliceFinished() throws Exception {
+        CrateSearchContext searchContext = mock(CrateSearchContext.class);
+        ContextIndexSearcher searcher = mock(ContextIndexSearcher.class);
+        Weight weight = new IndexSearcher(reader).createNormalizedWeight(new MatchAllDocsQuery(), false);
+        when(searcher.createNormalizedWeight(any(Query.class), anyBoolean())).thenReturn(weight);
+        when(searchContext.searcher()).thenReturn(searcher);
+        when(searchContext.query()).thenReturn(new MatchAllDocsQuery());
+        when(searchContext.indexShard()).thenReturn(mock(IndexShard.class));
+
+        // the large segment ends up in one slice, the small segments in the other
+        List<List<LeafReaderContext>> slices = SegmentSlices.slice(reader.leaves(), 2, 1);
+        assertThat(slices.size(), is(2));
+        assertThat(slices.get(0).size(), is(1));
+        assertThat(slices.get(1).size(), is(2));
+
+        AtomicInteger activeSlices = new AtomicInteger(slices.size());
+        CollectingRowReceiver smallSliceReceiver = new CollectingRowReceiver();
+        CollectingRowReceiver largeSliceReceiver = new CollectingRowReceiver();
+        CrateDocCollector largeSliceCollector = createCollector(searchContext, slices.get(0), activeSlices, largeSliceReceiver);
+        CrateDocCollector smallSliceCollector = createCollector(searchContext, slices.get(1), activeSlices, smallSliceReceiver);
+
+        smallSliceCollector.doCollect();
+        assertThat(smallSliceReceiver.result().size(), is(3));
+        verify(searchContext, never()).clearReleasables(SearchContext.Lifetime.COLLECTION);
+        verify(searchContext, never()).clearReleasables(SearchContext.Lifetime.PHASE);
+
+        largeSliceCollector.doCollect();
+        assertThat(largeSliceReceiver.result().size(), is(50));
+        verify(searchContext, times(1)).clearReleasables(SearchContext.Lifetime.PHASE);
+    }
+
+    private static CrateDocCollector createCollector(CrateSearchContext searchContext,
+                                                     List<LeafReaderContext> slice,
+                                                     AtomicInteger activeSlices,
+                                                     CollectingRowReceiver rowReceiver) {
+        return (CrateDocCollector) new CrateDocCollector.Builder(
+            searchContext,
+            MoreExecutors.directExecutor(),
+            false,
+            null,
+            ImmutableList.<Input<?>>of(),
+            ImmutableList.<LuceneCollectorExpression<?>>of(),
+            slice,
+            activeSlices
+        ).build(rowReceiver);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.collect.collectors;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.RowGranularity;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.core.DoubleFieldMapper;
+import org.elasticsearch.index.mapper.core.LongFieldMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MetadataAggregatorTest extends CrateUnitTest {
+
+    private final List<Symbol> toCollect = ImmutableList.<Symbol>of(
+        createReference("l", DataTypes.LONG),
+        createReference("d", DataTypes.DOUBLE)
+    );
+
+    private MapperService mapperService;
+    private Directory directory;
+    private IndexWriter writer;
+
+    @Before
+    public void prepare() throws Exception {
+        mapperService = mock(MapperService.class);
+        when(mapperService.smartNameFieldType("l")).thenReturn(new LongFieldMapper.LongFieldType());
+        when(mapperService.smartNameFieldType("d")).thenReturn(new DoubleFieldMapper.DoubleFieldType());
+
+        directory = new RAMDirectory();
+        IndexWriterConfig cfg = new IndexWriterConfig(new StandardAnalyzer());
+        cfg.setMergePolicy(NoMergePolicy.INSTANCE);
+        writer = new IndexWriter(directory, cfg);
+        addDocument("1", 10L, 2.5d);
+        addDocument("2", -3L, 0.75d);
+        writer.commit();
+        addDocument("3", 250L, -1.5d);
+        addDocument("4", null, null);
+        writer.commit();
+    }
+
+    @After
+    public void closeIndex() throws Exception {
+        writer.close();
+        directory.close();
+    }
+
+    private void addDocument(String id, Long l, Double d) throws IOException {
+        Document document = new Document();
+        document.add(new StringField("_id", id, Field.Store.NO));
+        if (l != null) {
+            document.add(new LongField("l", l, Field.Store.NO));
+        }
+        if (d != null) {
+            document.add(new DoubleField("d", d, Field.Store.NO));
+        }
+        writer.addDocument(document);
+    }
+
+    private static Aggregation aggregation(String name, DataType type, int inputIndex) {
+        return Aggregation.partialAggregation(
+            new FunctionInfo(new FunctionIdent(name, Arrays.asList(type)), type, FunctionInfo.Type.AGGREGATE),
+            type,
+            Arrays.<Symbol>asList(new InputColumn(inputIndex, type))
+        );
+    }
+
+    private static Aggregation countStar() {
+        return Aggregation.partialAggregation(
+            CountAggregation.COUNT_STAR_FUNCTION,
+            CountAggregation.LongStateType.INSTANCE,
+            ImmutableList.<Symbol>of()
+        );
+    }
+
+    private MetadataAggregator aggregator(Aggregation... aggregations) {
+        return MetadataAggregator.forProjection(
+            new AggregationProjection(Arrays.asList(aggregations), RowGranularity.SHARD), toCollect, mapperService);
+    }
+
+    @Test
+    public void testCountMinAndMaxFromIndexStatistics() throws Exception {
+        MetadataAggregator aggregator = aggregator(
+            countStar(),
+            aggregation("min", DataTypes.LONG, 0),
+            aggregation("max", DataTypes.LONG, 0),
+            aggregation("min", DataTypes.DOUBLE, 1),
+            aggregation("max", DataTypes.DOUBLE, 1)
+        );
+        assertThat(aggregator, notNullValue());
+
+        try (DirectoryReader reader = DirectoryReader.open(writer, true)) {
+            assertThat(reader.leaves().size(), is(2));
+            Object[] states = aggregator.aggregate(reader);
+            assertThat(states, notNullValue());
+            assertThat(states[0].toString(), is("4"));
+            assertThat(states[1], is((Object) (-3L)));
+            assertThat(states[2], is((Object) 250L));
+            assertThat(states[3], is((Object) (-1.5d)));
+            assertThat(states[4], is((Object) 2.5d));
+        }
+    }
+
+    @Test
+    public void testMinAndMaxAreNotComputedIfThereAreDeletedDocuments() throws Exception {
+        writer.deleteDocuments(new Term("_id", "3"));
+        writer.commit();
+
+        try (DirectoryReader reader = DirectoryReader.open(writer, true)) {
+            Object[] states = aggregator(countStar()).aggregate(reader);
+            assertThat(states, notNullValue());
+            assertThat(states[0].toString(), is("3"));
+
+            assertThat(aggregator(countStar(), aggregation("max", DataTypes.LONG, 0)).aggregate(reader), nullValue());
+        }
+    }
+
+    @Test
+    public void testUnsupportedAggregationsAreNotAnswered() throws Exception {
+        assertThat(aggregator(aggregation("sum", DataTypes.LONG, 0)), nullValue());
+        assertThat(aggregator(countStar(), aggregation("count", DataTypes.LONG, 0)), nullValue());
+
+        when(mapperService.smartNameFieldType("l")).thenReturn(null);
+        assertThat(aggregator(aggregation("min", DataTypes.LONG, 0)), nullValue());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.collect.collectors;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+
+public class SegmentSlicesTest extends RandomizedTest {
+
+    private static final int[] SEGMENT_SIZES = new int[]{40, 10, 30, 20, 5, 5};
+
+    private Directory directory;
+    private DirectoryReader reader;
+
+    @Before
+    public void createSegments() throws IOException {
+        directory = FSDirectory.open(newTempDir());
+        IndexWriterConfig cfg = new IndexWriterConfig(new StandardAnalyzer());
+        cfg.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter w = new IndexWriter(directory, cfg);
+        for (int segmentSize : SEGMENT_SIZES) {
+            for (int i = 0; i < segmentSize; i++) {
+                w.addDocument(new Document());
+            }
+            w.commit();
+        }
+        w.close();
+        reader = DirectoryReader.open(directory);
+    }
+
+    @After
+    public void closeIndex() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void testSlicesAreBalancedAndOrdered() throws Exception {
+        List<LeafReaderContext> leaves = reader.leaves();
+        assertThat(leaves.size(), is(SEGMENT_SIZES.length));
+
+        List<List<LeafReaderContext>> slices = SegmentSlices.slice(leaves, 3, 10);
+        assertThat(slices.size(), is(3));
+
+        int numLeaves = 0;
+        for (List<LeafReaderContext> slice : slices) {
+            int docs = 0;
+            int lastDocBase = -1;
+            for (LeafReaderContext leaf : slice) {
+                assertThat(leaf.docBase, greaterThan(lastDocBase));
+                lastDocBase = leaf.docBase;
+                docs += leaf.reader().maxDoc();
+            }
+            assertThat(docs, greaterThan(30));
+            assertThat(docs, lessThan(45));
+            numLeaves += slice.size();
+        }
+        assertThat(numLeaves, is(SEGMENT_SIZES.length));
+    }
+
+    @Test
+    public void testSmallShardIsNotSliced() throws Exception {
+        List<List<LeafReaderContext>> slices = SegmentSlices.slice(reader.leaves(), 4, 100);
+        assertThat(slices.size(), is(1));
+        assertThat(slices.get(0), is(reader.leaves()));
+    }
+
+    @Test
+    public void testNumberOfSlicesIsLimitedByNumberOfSegments() throws Exception {
+        List<List<LeafReaderContext>> slices = SegmentSlices.slice(reader.leaves(), 100, 1);
+        assertThat(slices.size(), is(SEGMENT_SIZES.length));
+    }
+}
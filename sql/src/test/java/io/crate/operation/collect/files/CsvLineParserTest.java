@@ -0,0 +1,89 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.collect.files;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CsvLineParserTest extends CrateUnitTest {
+
+    private static final ImmutableList<String> NAMES = ImmutableList.of("id", "name");
+    private static final ImmutableList<DataType> TYPES = ImmutableList.<DataType>of(DataTypes.INTEGER, DataTypes.STRING);
+
+    private static String parse(LineParser parser, String line) throws Exception {
+        byte[] source = parser.parse(line.getBytes(StandardCharsets.UTF_8));
+        return source == null ? null : new String(source, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRowIsConvertedToJson() throws Exception {
+        LineParser parser = LineParser.create(FileReadingCollector.FileFormat.CSV, NAMES, TYPES, false);
+        parser.startFile(true);
+        assertThat(parse(parser, "1,foo"), is("{\"id\":1,\"name\":\"foo\"}"));
+        assertThat(parse(parser, "2,\"bar, \"\"baz\"\"\""), is("{\"id\":2,\"name\":\"bar, \\\"baz\\\"\"}"));
+    }
+
+    @Test
+    public void testUnquotedEmptyValueIsNullAndQuotedEmptyValueIsEmptyString() throws Exception {
+        LineParser parser = LineParser.create(FileReadingCollector.FileFormat.CSV, NAMES, TYPES, false);
+        parser.startFile(true);
+        assertThat(parse(parser, "1,"), is("{\"id\":1,\"name\":null}"));
+        assertThat(parse(parser, "1,\"\""), is("{\"id\":1,\"name\":\"\"}"));
+    }
+
+    @Test
+    public void testQuotedValueSpanningLines() throws Exception {
+        LineParser parser = LineParser.create(FileReadingCollector.FileFormat.CSV, NAMES, TYPES, false);
+        parser.startFile(true);
+        assertThat(parse(parser, "1,\"foo"), nullValue());
+        assertThat(parse(parser, "bar\""), is("{\"id\":1,\"name\":\"foo\\nbar\"}"));
+        assertThat(parser.isSplittable(), is(false));
+    }
+
+    @Test
+    public void testHeaderIsSkippedOnlyAtStartOfFile() throws Exception {
+        LineParser parser = LineParser.create(FileReadingCollector.FileFormat.CSV, NAMES, TYPES, true);
+        parser.startFile(true);
+        assertThat(parse(parser, "id,name"), nullValue());
+        assertThat(parse(parser, "1,foo"), is("{\"id\":1,\"name\":\"foo\"}"));
+        parser.startFile(false);
+        assertThat(parse(parser, "2,bar"), is("{\"id\":2,\"name\":\"bar\"}"));
+    }
+
+    @Test
+    public void testRowWithWrongNumberOfValues() throws Exception {
+        LineParser parser = LineParser.create(FileReadingCollector.FileFormat.CSV, NAMES, TYPES, false);
+        parser.startFile(true);
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Expected 2 values but the row contains 3 values");
+        parse(parser, "1,foo,bar");
+    }
+}
@@ -28,6 +28,7 @@ import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import io.crate.core.collections.Bucket;
 import io.crate.core.collections.Row;
@@ -43,16 +44,21 @@ import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.CollectingRowReceiver;
 import io.crate.testing.TestingHelpers;
 import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.io.*;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -61,6 +67,8 @@ import java.util.zip.GZIPOutputStream;
 
 import static io.crate.testing.TestingHelpers.createReference;
 import static io.crate.testing.TestingHelpers.isRow;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isA;
 import static org.mockito.Matchers.*;
@@ -70,6 +78,9 @@ import static org.mockito.Mockito.when;
 
 public class FileReadingCollectorTest extends CrateUnitTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private static File tmpFile;
     private static File tmpFileGz;
     private static File tmpFileEmptyLine;
@@ -225,6 +236,112 @@ public class FileReadingCollectorTest extends CrateUnitTest {
         assertThat(it.hasNext(), is(false));
     }
 
+    @Test
+    public void testConcurrentReadersReadEachLineOfSplitFileOnce() throws Throwable {
+        List<String> expectedLines = new ArrayList<>();
+        File file = createSplitFile(expectedLines);
+
+        int numSlices = 3;
+        List<String> lines = new ArrayList<>();
+        for (int slice = 0; slice < numSlices; slice++) {
+            readSplitFile(file, false, 1, 0, numSlices, slice, lines);
+        }
+        assertThat(lines, containsInAnyOrder(expectedLines.toArray()));
+    }
+
+    @Test
+    public void testNodesWithDifferentNumberOfSlicesReadEachLineOfSharedFileOnce() throws Throwable {
+        List<String> expectedLines = new ArrayList<>();
+        File file = createSplitFile(expectedLines);
+
+        List<String> lines = new ArrayList<>();
+        // node 0 reads with a single slice, node 1 with 3 slices
+        readSplitFile(file, true, 2, 0, 1, 0, lines);
+        for (int slice = 0; slice < 3; slice++) {
+            readSplitFile(file, true, 2, 1, 3, slice, lines);
+        }
+        assertThat(lines, containsInAnyOrder(expectedLines.toArray()));
+    }
+
+    @Test
+    public void testStreamOfUnknownSizeIsReadFromTheStartBySingleSlice() throws Throwable {
+        List<String> expectedLines = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String line = "{\"id\": " + i + "}";
+            expectedLines.add(line);
+            content.append(line).append("\n");
+        }
+        StdinFileInput stdinFileInput = new StdinFileInput();
+        URI uri = stdinFileInput.register(new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)));
+        Map<String, FileInputFactory> fileInputFactories =
+            ImmutableMap.<String, FileInputFactory>of(StdinFileInputFactory.NAME, new StdinFileInputFactory(stdinFileInput));
+
+        int numSlices = 3;
+        List<String> lines = new ArrayList<>();
+        for (int slice = 0; slice < numSlices; slice++) {
+            readSplitFile(uri.toString(), fileInputFactories, false, 1, 0, numSlices, slice, lines);
+        }
+        assertThat(lines, contains(expectedLines.toArray()));
+    }
+
+    private File createSplitFile(List<String> expectedLines) throws IOException {
+        File file = temporaryFolder.newFile("split.json");
+        try (FileWriter writer = new FileWriter(file)) {
+            for (int i = 0; i < 100; i++) {
+                String line = "{\"id\": " + i + ", \"name\": \"" + Strings.repeat("x", i % 7) + "\"}";
+                expectedLines.add(line);
+                writer.write(line + (i % 2 == 0 ? "\n" : "\r\n"));
+            }
+        }
+        return file;
+    }
+
+    private void readSplitFile(File file,
+                               boolean shared,
+                               int numReaders,
+                               int readerNumber,
+                               int numSlices,
+                               int slice,
+                               List<String> lines) throws Throwable {
+        readSplitFile(file.toURI().toString(),
+            ImmutableMap.<String, FileInputFactory>of(LocalFsFileInputFactory.NAME, new LocalFsFileInputFactory()),
+            shared, numReaders, readerNumber, numSlices, slice, lines);
+    }
+
+    private void readSplitFile(String fileUri,
+                               Map<String, FileInputFactory> fileInputFactories,
+                               boolean shared,
+                               int numReaders,
+                               int readerNumber,
+                               int numSlices,
+                               int slice,
+                               List<String> lines) throws Throwable {
+        FileCollectInputSymbolVisitor.Context context =
+            inputSymbolVisitor.extractImplementations(createReference("_raw", DataTypes.STRING));
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        FileReadingCollector collector = new FileReadingCollector(
+            Collections.singletonList(fileUri),
+            context.topLevelInputs(),
+            context.expressions(),
+            rowReceiver,
+            LineParser.JSON,
+            null,
+            fileInputFactories,
+            shared,
+            numReaders,
+            readerNumber,
+            numSlices,
+            slice
+        );
+        collector.splitSize(100);
+        rowReceiver.prepare();
+        collector.doCollect();
+        for (Row row : rowReceiver.result()) {
+            lines.add(((BytesRef) row.get(0)).utf8ToString());
+        }
+    }
+
     private void assertCorrectResult(Bucket rows) throws Throwable {
         Iterator<Row> it = rows.iterator();
         assertThat(it.next(), isRow("{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}"));
@@ -255,7 +372,7 @@ public class FileReadingCollectorTest extends CrateUnitTest {
             context.topLevelInputs(),
             context.expressions(),
             rowReceiver,
-            FileReadingCollector.FileFormat.JSON,
+            LineParser.JSON,
             compression,
             ImmutableMap.of(
                 LocalFsFileInputFactory.NAME, new LocalFsFileInputFactory(),
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.collect.files;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TextLineParserTest extends CrateUnitTest {
+
+    private static String parse(LineParser parser, String line) throws Exception {
+        byte[] source = parser.parse(line.getBytes(StandardCharsets.UTF_8));
+        return source == null ? null : new String(source, StandardCharsets.UTF_8);
+    }
+
+    private static LineParser parser(ImmutableList<String> names, ImmutableList<DataType> types) {
+        LineParser parser = LineParser.create(FileReadingCollector.FileFormat.TEXT, names, types, false);
+        parser.startFile(true);
+        return parser;
+    }
+
+    @Test
+    public void testRowIsConvertedToJson() throws Exception {
+        LineParser parser = parser(
+            ImmutableList.of("id", "name", "active"),
+            ImmutableList.<DataType>of(DataTypes.LONG, DataTypes.STRING, DataTypes.BOOLEAN));
+        assertThat(parse(parser, "1\tfoo\tt"), is("{\"id\":1,\"name\":\"foo\",\"active\":true}"));
+        assertThat(parse(parser, "2\t\\N\tf"), is("{\"id\":2,\"name\":null,\"active\":false}"));
+    }
+
+    @Test
+    public void testEscapeSequences() throws Exception {
+        LineParser parser = parser(ImmutableList.of("name"), ImmutableList.<DataType>of(DataTypes.STRING));
+        assertThat(parse(parser, "a\\tb\\nc\\\\d"), is("{\"name\":\"a\\tb\\nc\\\\d\"}"));
+        assertThat(parse(parser, "\\x41\\101\\q"), is("{\"name\":\"AAq\"}"));
+    }
+
+    @Test
+    public void testArrayValue() throws Exception {
+        LineParser parser = parser(ImmutableList.of("tags"), ImmutableList.<DataType>of(new ArrayType(DataTypes.STRING)));
+        assertThat(parse(parser, "{\"a\",\"b\"}"), is("{\"tags\":[\"a\",\"b\"]}"));
+    }
+
+    @Test
+    public void testEndOfDataMarkerAndEmptyLinesAreSkipped() throws Exception {
+        LineParser parser = parser(ImmutableList.of("name"), ImmutableList.<DataType>of(DataTypes.STRING));
+        assertThat(parse(parser, ""), nullValue());
+        assertThat(parse(parser, "\\."), nullValue());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to Crate.IO GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.fetch;
+
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.Reference;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.core.LongFieldMapper;
+import org.elasticsearch.index.mapper.core.StringFieldMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NodeFetchOperationTest extends CrateUnitTest {
+
+    private MapperService mapperService;
+
+    @Before
+    public void prepare() throws Exception {
+        mapperService = mock(MapperService.class);
+
+        MappedFieldType longFieldType = new LongFieldMapper.LongFieldType();
+        longFieldType.setHasDocValues(true);
+        when(mapperService.smartNameFieldType("l")).thenReturn(longFieldType);
+
+        MappedFieldType analyzedFieldType = new StringFieldMapper.StringFieldType();
+        analyzedFieldType.setHasDocValues(false);
+        when(mapperService.smartNameFieldType("text")).thenReturn(analyzedFieldType);
+    }
+
+    @Test
+    public void testCanReadDocValuesOfSourceLookups() throws Exception {
+        Reference l = createReference(new ColumnIdent("_doc", "l"), DataTypes.LONG);
+
+        assertThat(NodeFetchOperation.canReadDocValues(Collections.singletonList(l), mapperService), is(true));
+    }
+
+    @Test
+    public void testCannotReadDocValuesIfOneColumnHasNone() throws Exception {
+        Reference l = createReference(new ColumnIdent("_doc", "l"), DataTypes.LONG);
+        Reference text = createReference(new ColumnIdent("_doc", "text"), DataTypes.STRING);
+
+        assertThat(NodeFetchOperation.canReadDocValues(Arrays.asList(l, text), mapperService), is(false));
+    }
+
+    @Test
+    public void testCannotReadDocValuesOfWholeSource() throws Exception {
+        Reference doc = createReference(new ColumnIdent("_doc"), DataTypes.OBJECT);
+        Reference raw = createReference(new ColumnIdent("_raw"), DataTypes.STRING);
+
+        assertThat(NodeFetchOperation.canReadDocValues(Collections.singletonList(doc), mapperService), is(false));
+        assertThat(NodeFetchOperation.canReadDocValues(Collections.singletonList(raw), mapperService), is(false));
+    }
+}
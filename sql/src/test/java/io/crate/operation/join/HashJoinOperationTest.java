@@ -0,0 +1,182 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.join;
+
+import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.Row;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.CollectingRowReceiver;
+import io.crate.testing.RowSender;
+import io.crate.testing.TestingHelpers;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+import static io.crate.testing.RowGenerator.singleColRows;
+import static org.hamcrest.core.Is.is;
+
+public class HashJoinOperationTest extends CrateUnitTest {
+
+    private static final Predicate<Row> JOIN_CONDITION_PREDICATE = new Predicate<Row>() {
+        @Override
+        public boolean apply(@Nullable Row input) {
+            return input != null && input.get(0).equals(input.get(1));
+        }
+    };
+
+    private static final List<DataType> BUILD_TYPES = Collections.<DataType>singletonList(DataTypes.INTEGER);
+
+    private final RamAccountingContext ramAccountingContext =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.FIELDDATA));
+
+    private HashJoinOperation hashJoin(CollectingRowReceiver rowReceiver, JoinType joinType, boolean buildLeft) {
+        return new HashJoinOperation(0, rowReceiver, JOIN_CONDITION_PREDICATE, joinType, 1, 1,
+            new int[]{0}, new int[]{0}, buildLeft, BUILD_TYPES, ramAccountingContext);
+    }
+
+    private Bucket executeHashJoin(List<Row> leftRows,
+                                   List<Row> rightRows,
+                                   JoinType joinType,
+                                   boolean buildLeft) throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        HashJoinOperation op = hashJoin(rowReceiver, joinType, buildLeft);
+
+        Thread t1 = new Thread(new RowSender(leftRows, op.leftRowReceiver(), MoreExecutors.directExecutor()));
+        Thread t2 = new Thread(new RowSender(rightRows, op.rightRowReceiver(), MoreExecutors.directExecutor()));
+        t1.start();
+        t2.start();
+        t1.join();
+        t2.join();
+        return rowReceiver.result();
+    }
+
+    @Test
+    public void testInnerJoinKeepsOrderOfLeftSide() throws Exception {
+        Bucket rows = executeHashJoin(singleColRows(1, 2, 3, 2), singleColRows(2, 3, 3, 4), JoinType.INNER, false);
+        assertThat(TestingHelpers.printedTable(rows), is("" +
+                                                         "2| 2\n" +
+                                                         "3| 3\n" +
+                                                         "3| 3\n" +
+                                                         "2| 2\n"));
+    }
+
+    @Test
+    public void testInnerJoinWithLeftBuildSide() throws Exception {
+        Bucket rows = executeHashJoin(singleColRows(1, 2, 3), singleColRows(3, 4, 2), JoinType.INNER, true);
+        assertThat(TestingHelpers.printedTable(rows), is("" +
+                                                         "3| 3\n" +
+                                                         "2| 2\n"));
+    }
+
+    @Test
+    public void testLeftJoinEmitsUnmatchedProbeRows() throws Exception {
+        Bucket rows = executeHashJoin(singleColRows(1, 2, null), singleColRows(2, null), JoinType.LEFT, false);
+        assertThat(TestingHelpers.printedTable(rows), is("" +
+                                                         "1| NULL\n" +
+                                                         "2| 2\n" +
+                                                         "NULL| NULL\n"));
+    }
+
+    @Test
+    public void testLeftJoinEmitsUnmatchedBuildRowsAtTheEnd() throws Exception {
+        Bucket rows = executeHashJoin(singleColRows(1, 2, 3), singleColRows(2), JoinType.LEFT, true);
+        assertThat(TestingHelpers.printedTable(rows), is("" +
+                                                         "2| 2\n" +
+                                                         "1| NULL\n" +
+                                                         "3| NULL\n"));
+    }
+
+    @Test
+    public void testRightJoinEmitsUnmatchedBuildRowsAtTheEnd() throws Exception {
+        Bucket rows = executeHashJoin(singleColRows(2, 5), singleColRows(1, 2, 3), JoinType.RIGHT, false);
+        assertThat(TestingHelpers.printedTable(rows), is("" +
+                                                         "2| 2\n" +
+                                                         "NULL| 1\n" +
+                                                         "NULL| 3\n"));
+    }
+
+    @Test
+    public void testBuildSideIsEmpty() throws Exception {
+        Bucket rows = executeHashJoin(singleColRows(1, 2), Collections.<Row>emptyList(), JoinType.INNER, false);
+        assertThat(rows.size(), is(0));
+    }
+
+    @Test
+    public void testProbeSideWaitsForBuildSide() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        HashJoinOperation op = hashJoin(rowReceiver, JoinType.INNER, false);
+
+        RowSender probeSender = new RowSender(singleColRows(1, 2), op.leftRowReceiver(), MoreExecutors.directExecutor());
+        RowSender buildSender = new RowSender(singleColRows(2, 1), op.rightRowReceiver(), MoreExecutors.directExecutor());
+
+        probeSender.run();
+        assertThat(probeSender.numPauses(), is(1));
+        assertThat(rowReceiver.rows.size(), is(0));
+
+        buildSender.run();
+        assertThat(probeSender.numResumes(), is(1));
+        assertThat(TestingHelpers.printedTable(rowReceiver.result()), is("" +
+                                                                       "1| 1\n" +
+                                                                       "2| 2\n"));
+    }
+
+    @Test
+    public void testHashJoinWithPausingDownstream() throws Exception {
+        CollectingRowReceiver rowReceiver = CollectingRowReceiver.withPauseAfter(1);
+        HashJoinOperation op = hashJoin(rowReceiver, JoinType.INNER, false);
+
+        RowSender buildSender = new RowSender(singleColRows(1, 1, 1), op.rightRowReceiver(), MoreExecutors.directExecutor());
+        RowSender probeSender = new RowSender(singleColRows(1), op.leftRowReceiver(), MoreExecutors.directExecutor());
+        buildSender.run();
+        probeSender.run();
+        assertThat(rowReceiver.rows.size(), is(1));
+
+        // the remaining matches of the probe row are emitted once the downstream resumes
+        rowReceiver.resumeUpstream(false);
+        assertThat(rowReceiver.result().size(), is(3));
+    }
+
+    @Test
+    public void testFailOfBuildSideIsForwarded() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        HashJoinOperation op = hashJoin(rowReceiver, JoinType.INNER, false);
+
+        op.rightRowReceiver().fail(new IllegalStateException("dummy"));
+        new RowSender(singleColRows(1, 2), op.leftRowReceiver(), MoreExecutors.directExecutor()).run();
+        assertThat(rowReceiver.getNumFailOrFinishCalls(), is(1));
+
+        expectedException.expect(IllegalStateException.class);
+        expectedException.expectMessage("dummy");
+        rowReceiver.result();
+    }
+}
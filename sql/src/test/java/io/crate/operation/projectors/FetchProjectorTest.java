@@ -29,11 +29,13 @@ import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import io.crate.analyze.symbol.FetchReference;
 import io.crate.analyze.symbol.InputColumn;
 import io.crate.analyze.symbol.Symbol;
 import io.crate.core.collections.Bucket;
 import io.crate.core.collections.CollectionBucket;
+import io.crate.core.collections.RowN;
 import io.crate.metadata.*;
 import io.crate.metadata.table.ColumnPolicy;
 import io.crate.operation.projectors.fetch.FetchOperation;
@@ -55,6 +57,7 @@ import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.core.Is.is;
 
@@ -106,22 +109,55 @@ public class FetchProjectorTest extends CrateUnitTest {
         final RowSender rowSender = new RowSender(RowGenerator.range(0, 10), fetchProjector, MoreExecutors.directExecutor());
         rowSender.run();
 
-        assertBusy(new Runnable() {
-            @Override
-            public void run() {
-                assertThat(rowSender.numPauses(), is(3));
-            }
-        });
-        assertThat(fetchOperation.numFetches, Matchers.greaterThan(1));
-
         Bucket projected = rowReceiver.result();
         assertThat(projected.size(), is(10));
+        // the upstream is only paused if a batch is full before the previous one has been emitted
+        assertThat(rowSender.numPauses(), Matchers.lessThanOrEqualTo(3));
+        assertThat(fetchOperation.numFetches, Matchers.greaterThan(1));
 
         int iterateLength = Iterables.size(rowReceiver.result());
         assertThat(iterateLength, is(10));
     }
 
 
+    @Test
+    public void testNextBatchIsCollectedWhileFetching() throws Throwable {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        final PendingFetchOperation fetchOperation = new PendingFetchOperation();
+        FetchProjector fetchProjector = prepareFetchProjector(2, rowReceiver, fetchOperation);
+
+        assertThat(fetchProjector.setNextRow(new RowN(new Object[]{0L})), is(RowReceiver.Result.CONTINUE));
+        assertThat(fetchProjector.setNextRow(new RowN(new Object[]{1L})), is(RowReceiver.Result.CONTINUE));
+        assertThat(fetchOperation.numFetches, is(1));
+
+        // the first batch is still being fetched, so the upstream is paused once the second batch is full
+        assertThat(fetchProjector.setNextRow(new RowN(new Object[]{2L})), is(RowReceiver.Result.CONTINUE));
+        assertThat(fetchProjector.setNextRow(new RowN(new Object[]{3L})), is(RowReceiver.Result.PAUSE));
+        final AtomicBoolean resumed = new AtomicBoolean(false);
+        fetchProjector.pauseProcessed(new ResumeHandle() {
+            @Override
+            public void resume(boolean async) {
+                resumed.set(true);
+            }
+        });
+        assertThat(resumed.get(), is(false));
+
+        fetchOperation.completePending();
+        assertBusy(new Runnable() {
+            @Override
+            public void run() {
+                assertThat(resumed.get(), is(true));
+                assertThat(fetchOperation.numFetches, is(2));
+            }
+        });
+        fetchProjector.finish(RepeatHandle.UNSUPPORTED);
+        while (!rowReceiver.isFinished()) {
+            fetchOperation.completePending();
+            Thread.sleep(10);
+        }
+        assertThat(TestingHelpers.printedTable(rowReceiver.result()), is("0\n1\n2\n3\n"));
+    }
+
     private FetchProjector prepareFetchProjector(int fetchSize,
                                                  CollectingRowReceiver rowReceiver,
                                                  FetchOperation fetchOperation) {
@@ -192,9 +228,44 @@ public class FetchProjectorTest extends CrateUnitTest {
         return outputSymbols;
     }
 
+    /**
+     * FetchOperation which completes the fetch requests only once {@link #completePending()} is called
+     */
+    private static class PendingFetchOperation extends DummyFetchOperation {
+
+        private final List<SettableFuture<IntObjectMap<? extends Bucket>>> pending = new ArrayList<>();
+        private final List<IntObjectMap<? extends Bucket>> results = new ArrayList<>();
+
+        @Override
+        public synchronized ListenableFuture<IntObjectMap<? extends Bucket>> fetch(String nodeId, IntObjectMap<? extends IntContainer> toFetch, boolean closeContext) {
+            SettableFuture<IntObjectMap<? extends Bucket>> future = SettableFuture.create();
+            try {
+                results.add(super.fetch(nodeId, toFetch, closeContext).get());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            pending.add(future);
+            return future;
+        }
+
+        void completePending() {
+            List<SettableFuture<IntObjectMap<? extends Bucket>>> futures;
+            List<IntObjectMap<? extends Bucket>> futureResults;
+            synchronized (this) {
+                futures = new ArrayList<>(pending);
+                futureResults = new ArrayList<>(results);
+                pending.clear();
+                results.clear();
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).set(futureResults.get(i));
+            }
+        }
+    }
+
     private static class DummyFetchOperation implements FetchOperation {
 
-        int numFetches = 0;
+        volatile int numFetches = 0;
 
         @Override
         public ListenableFuture<IntObjectMap<? extends Bucket>> fetch(String nodeId, IntObjectMap<? extends IntContainer> toFetch, boolean closeContext) {
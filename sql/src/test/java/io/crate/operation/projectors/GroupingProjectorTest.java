@@ -17,6 +17,7 @@ import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.collect.CollectExpression;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.CollectingRowReceiver;
+import io.crate.testing.TestingHelpers;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
@@ -29,6 +30,8 @@ import java.util.Arrays;
 import static io.crate.testing.TestingHelpers.getFunctions;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 public class GroupingProjectorTest extends CrateUnitTest {
@@ -83,6 +86,145 @@ public class GroupingProjectorTest extends CrateUnitTest {
         assertThat(rows.iterator().next().get(1), instanceOf(CountAggregation.LongState.class));
     }
 
+    @Test
+    public void testGroupByLongKeyIncludingNull() throws Exception {
+        Input<Long> keyInput = new Input<Long>() {
+            Long[] values = new Long[]{1L, null, 1L, 2L, null, 1L};
+            int idx = 0;
+
+            @Override
+            public Long value() {
+                return values[idx++];
+            }
+        };
+
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation countAggregation =
+            Aggregation.finalAggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER);
+        AggregationContext aggregationContext = new AggregationContext(
+            (AggregationFunction) getFunctions().get(countInfo.ident()),
+            countAggregation);
+
+        GroupingProjector projector = new GroupingProjector(
+            Arrays.asList(DataTypes.LONG),
+            ImmutableList.<Input<?>>of(keyInput),
+            new CollectExpression[0],
+            new AggregationContext[]{aggregationContext},
+            RAM_ACCOUNTING_CONTEXT
+        );
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        projector.downstream(rowReceiver);
+
+        Row emptyRow = new RowN(new Object[]{});
+        projector.prepare();
+        for (int i = 0; i < 6; i++) {
+            projector.setNextRow(emptyRow);
+        }
+        projector.finish(RepeatHandle.UNSUPPORTED);
+
+        assertThat(TestingHelpers.printedTable(rowReceiver.result()), is(
+            "NULL| 2\n" +
+            "1| 3\n" +
+            "2| 1\n"));
+    }
+
+    @Test
+    public void testGroupByCompositeKey() throws Exception {
+        Input<Integer> intKeyInput = new Input<Integer>() {
+            Integer[] values = new Integer[]{1, 1, null, 1, null};
+            int idx = 0;
+
+            @Override
+            public Integer value() {
+                return values[idx++];
+            }
+        };
+        DummyInput stringKeyInput = new DummyInput(
+            new BytesRef("a"), new BytesRef("b"), new BytesRef("a"), new BytesRef("a"), new BytesRef("a"));
+
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation countAggregation =
+            Aggregation.finalAggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER);
+        AggregationContext aggregationContext = new AggregationContext(
+            (AggregationFunction) getFunctions().get(countInfo.ident()),
+            countAggregation);
+
+        GroupingProjector projector = new GroupingProjector(
+            Arrays.<DataType>asList(DataTypes.INTEGER, DataTypes.STRING),
+            ImmutableList.<Input<?>>of(intKeyInput, stringKeyInput),
+            new CollectExpression[0],
+            new AggregationContext[]{aggregationContext},
+            RAM_ACCOUNTING_CONTEXT
+        );
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        projector.downstream(rowReceiver);
+
+        Row emptyRow = new RowN(new Object[]{});
+        projector.prepare();
+        for (int i = 0; i < 5; i++) {
+            projector.setNextRow(emptyRow);
+        }
+        projector.finish(RepeatHandle.UNSUPPORTED);
+
+        assertThat(TestingHelpers.printedTable(rowReceiver.result()), is(
+            "1| a| 2\n" +
+            "1| b| 1\n" +
+            "NULL| a| 2\n"));
+    }
+
+    @Test
+    public void testGroupBySpillsGroupsToDisk() throws Exception {
+        CircuitBreaker breaker = mock(CircuitBreaker.class);
+        when(breaker.getLimit()).thenReturn(1000L);
+        when(breaker.getUsed()).thenReturn(1000L);
+        RamAccountingContext ramAccountingContext = new RamAccountingContext("dummy", breaker);
+
+        Input<Long> keyInput = new Input<Long>() {
+            long i = 0;
+
+            @Override
+            public Long value() {
+                return i++ % 1000;
+            }
+        };
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation countAggregation =
+            Aggregation.finalAggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER);
+        AggregationContext aggregationContext = new AggregationContext(
+            (AggregationFunction) getFunctions().get(countInfo.ident()),
+            countAggregation);
+
+        long flushBufferSize = RamAccountingContext.FLUSH_BUFFER_SIZE;
+        RamAccountingContext.FLUSH_BUFFER_SIZE = 1024;
+        try {
+            GroupingProjector projector = new GroupingProjector(
+                Arrays.asList(DataTypes.LONG),
+                ImmutableList.<Input<?>>of(keyInput),
+                new CollectExpression[0],
+                new AggregationContext[]{aggregationContext},
+                ramAccountingContext,
+                createTempDir()
+            );
+            CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+            projector.downstream(rowReceiver);
+
+            Row emptyRow = new RowN(new Object[]{});
+            projector.prepare();
+            for (int i = 0; i < 10_000; i++) {
+                projector.setNextRow(emptyRow);
+            }
+            projector.finish(RepeatHandle.UNSUPPORTED);
+
+            Bucket rows = rowReceiver.result();
+            assertThat(rows.size(), is(1000));
+            for (Row row : rows) {
+                assertThat((Long) row.get(1), is(10L));
+            }
+        } finally {
+            RamAccountingContext.FLUSH_BUFFER_SIZE = flushBufferSize;
+        }
+    }
+
     class DummyInput implements Input<BytesRef> {
 
         private final BytesRef[] values;
@@ -32,8 +32,14 @@ import io.crate.operation.projectors.sorting.OrderingByPosition;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.CollectingRowReceiver;
 import io.crate.testing.RowSender;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.junit.Test;
 
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import static io.crate.testing.TestingHelpers.isRow;
 import static org.hamcrest.core.Is.is;
 
@@ -78,6 +84,54 @@ public class SortingProjectorTest extends CrateUnitTest {
         }
     }
 
+    @Test
+    public void testOrderByWithSortedRunsOnDisk() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        InputCollectExpression input = new InputCollectExpression(0);
+        SortingProjector projector = new SortingProjector(
+            ImmutableList.of(input, Literal.of(true)),
+            ImmutableList.<CollectExpression<Row, ?>>of(input),
+            2,
+            OrderingByPosition.arrayOrdering(0, false, null),
+            5,
+            ImmutableList.<DataType>of(DataTypes.LONG, DataTypes.BOOLEAN),
+            createTempDir(),
+            1024
+        );
+        projector.downstream(rowReceiver);
+        RowSender.generateRowsInRangeAndEmit(1000, 0, projector);
+        Bucket rows = rowReceiver.result();
+        assertThat(rows.size(), is(995));
+        long iterateLength = 6;
+        for (Row row : rows) {
+            assertThat(row, isRow(iterateLength++, true));
+        }
+    }
+
+    @Test
+    public void testSortedRunsAreDeletedIfDownstreamStopsEarly() throws Exception {
+        CollectingRowReceiver rowReceiver = CollectingRowReceiver.withLimit(10);
+        InputCollectExpression input = new InputCollectExpression(0);
+        Path spillDirectory = createTempDir();
+        SortingProjector projector = new SortingProjector(
+            ImmutableList.of(input, Literal.of(true)),
+            ImmutableList.<CollectExpression<Row, ?>>of(input),
+            2,
+            OrderingByPosition.arrayOrdering(0, false, null),
+            0,
+            ImmutableList.<DataType>of(DataTypes.LONG, DataTypes.BOOLEAN),
+            spillDirectory,
+            1024
+        );
+        projector.downstream(rowReceiver);
+        RowSender.generateRowsInRangeAndEmit(1000, 0, projector);
+        Bucket rows = rowReceiver.result();
+        assertThat(rows.size(), is(10));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory)) {
+            assertThat(files.iterator().hasNext(), is(false));
+        }
+    }
+
     @Test
     public void testInvalidOffset() throws Exception {
         expectedException.expect(IllegalArgumentException.class);
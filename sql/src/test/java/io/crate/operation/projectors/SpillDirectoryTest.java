@@ -0,0 +1,72 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import io.crate.breaker.CrateCircuitBreakerService;
+import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.NodeEnvironment;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SpillDirectoryTest extends CrateUnitTest {
+
+    private Path nodeDataPath;
+    private NodeEnvironment nodeEnvironment;
+
+    @Before
+    public void prepare() throws Exception {
+        nodeDataPath = createTempDir();
+        nodeEnvironment = mock(NodeEnvironment.class);
+        when(nodeEnvironment.hasNodeFile()).thenReturn(true);
+        when(nodeEnvironment.nodeDataPaths()).thenReturn(new Path[]{nodeDataPath});
+    }
+
+    @Test
+    public void testLeftoverFilesAreDeletedOnStart() throws Exception {
+        Path leftover = nodeDataPath.resolve("spill").resolve("groups-1.spill");
+        Files.createDirectories(leftover.getParent());
+        Files.write(leftover, new byte[]{1, 2, 3});
+
+        SpillDirectory spillDirectory = new SpillDirectory(Settings.builder()
+            .put(CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_SPILL_TO_DISK_SETTING, true)
+            .build(), nodeEnvironment);
+
+        assertThat(spillDirectory.path(), is(nodeDataPath.resolve("spill")));
+        assertThat(Files.exists(leftover), is(false));
+    }
+
+    @Test
+    public void testNoDirectoryIfSpillingIsDisabled() throws Exception {
+        SpillDirectory spillDirectory = new SpillDirectory(Settings.EMPTY, nodeEnvironment);
+        assertThat(spillDirectory.path(), nullValue());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class BytesGroupTableTest extends CrateUnitTest {
+
+    private final RamAccountingContext ramAccountingContext =
+        new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.FIELDDATA));
+
+    @Test
+    public void testAddCopiesKeyBytes() throws Exception {
+        BytesGroupTable table = new BytesGroupTable(1, ramAccountingContext);
+        byte[] buffer = new byte[]{1, 2, 3};
+        assertThat(table.add(buffer, 0, 3), is(-1));
+        buffer[2] = 4;
+        assertThat(table.add(buffer, 0, 3), is(-2));
+        buffer[2] = 3;
+        assertThat(table.add(buffer, 0, 3), is(0));
+        assertThat(table.add(buffer, 0, 2), is(-3));
+        assertThat(table.add(new byte[]{9, 1, 2}, 1, 2), is(2));
+
+        assertThat(table.key(1, new BytesRef()), is(new BytesRef(new byte[]{1, 2, 4})));
+    }
+
+    @Test
+    public void testCompositeKeysWithManyGroups() throws Exception {
+        BytesGroupTable table = new BytesGroupTable(1, ramAccountingContext);
+        GroupKeyOutput out = new GroupKeyOutput();
+        int numKeys = 5_000;
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < numKeys; i++) {
+                out.reset();
+                DataTypes.STRING.writeValueTo(out, i % 2 == 0 ? null : new BytesRef("k" + i));
+                DataTypes.LONG.writeValueTo(out, (long) i);
+                int ordinal = table.add(out.bytes(), 0, out.length());
+                if (round == 0) {
+                    assertThat(ordinal, is(-1 - i));
+                    table.state(-1 - ordinal, 0, i);
+                } else {
+                    assertThat(ordinal, is(i));
+                    assertThat((Integer) table.state(ordinal, 0), is(i));
+                }
+            }
+        }
+        assertThat(table.size(), is(numKeys));
+
+        BytesRef key = table.key(7, new BytesRef());
+        try (StreamInput in = StreamInput.wrap(key.bytes, key.offset, key.length)) {
+            assertThat(DataTypes.STRING.readValueFrom(in), is(new BytesRef("k7")));
+            assertThat(DataTypes.LONG.readValueFrom(in), is(7L));
+        }
+        key = table.key(8, new BytesRef());
+        try (StreamInput in = StreamInput.wrap(key.bytes, key.offset, key.length)) {
+            assertThat(DataTypes.STRING.readValueFrom(in), nullValue());
+            assertThat(DataTypes.LONG.readValueFrom(in), is(8L));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class LongGroupTableTest extends CrateUnitTest {
+
+    private RamAccountingContext ramAccountingContext() {
+        return new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.FIELDDATA));
+    }
+
+    @Test
+    public void testAddReturnsExistingOrdinal() throws Exception {
+        LongGroupTable table = new LongGroupTable(1, ramAccountingContext());
+        assertThat(table.add(42L), is(-1));
+        assertThat(table.add(-3L), is(-2));
+        assertThat(table.add(42L), is(0));
+        assertThat(table.add(-3L), is(1));
+        assertThat(table.size(), is(2));
+        assertThat(table.key(0), is(42L));
+        assertThat(table.key(1), is(-3L));
+    }
+
+    @Test
+    public void testGrowKeepsKeysAndStates() throws Exception {
+        LongGroupTable table = new LongGroupTable(2, ramAccountingContext());
+        int numKeys = 10_000;
+        for (long i = 0; i < numKeys; i++) {
+            int ordinal = -1 - table.add(i * 31);
+            table.state(ordinal, 0, i);
+            table.state(ordinal, 1, "s" + i);
+        }
+        assertThat(table.size(), is(numKeys));
+        for (long i = 0; i < numKeys; i++) {
+            int ordinal = table.add(i * 31);
+            assertThat((long) ordinal, is(i));
+            assertThat((Long) table.state(ordinal, 0), is(i));
+            assertThat((String) table.state(ordinal, 1), is("s" + i));
+        }
+    }
+
+    @Test
+    public void testReleaseFreesAccountedBytes() throws Exception {
+        RamAccountingContext ramAccountingContext = ramAccountingContext();
+        long before = ramAccountingContext.totalBytes();
+        LongGroupTable table = new LongGroupTable(3, ramAccountingContext);
+        for (long i = 0; i < 1000; i++) {
+            table.add(i);
+        }
+        assertThat(table.ramBytesUsed() > 0, is(true));
+        table.release();
+        assertThat(table.size(), is(0));
+        assertThat(ramAccountingContext.totalBytes(), is(before));
+    }
+
+    @Test
+    public void testCodecRoundTrip() throws Exception {
+        LongKeyCodec doubleCodec = LongKeyCodec.forType(DataTypes.DOUBLE);
+        assertThat(doubleCodec.decode(doubleCodec.encode(-0.5d)), is((Object) (-0.5d)));
+        assertThat(doubleCodec.decode(doubleCodec.encode(Double.NaN)), is((Object) Double.NaN));
+
+        LongKeyCodec intCodec = LongKeyCodec.forType(DataTypes.INTEGER);
+        assertThat(intCodec.decode(intCodec.encode(Integer.MIN_VALUE)), is((Object) Integer.MIN_VALUE));
+
+        LongKeyCodec floatCodec = LongKeyCodec.forType(DataTypes.FLOAT);
+        assertThat(floatCodec.decode(floatCodec.encode(1.25f)), is((Object) 1.25f));
+
+        LongKeyCodec booleanCodec = LongKeyCodec.forType(DataTypes.BOOLEAN);
+        assertThat(booleanCodec.decode(booleanCodec.encode(true)), is((Object) true));
+
+        assertThat(LongKeyCodec.forType(DataTypes.STRING), nullValue());
+    }
+}
@@ -109,6 +109,13 @@ public abstract class AbstractPlannerTest extends CrateUnitTest {
     @Mock
     private SchemaInfo schemaInfo;
 
+    /**
+     * @return the node settings the planner is created with
+     */
+    protected Settings nodeSettings() {
+        return Settings.EMPTY;
+    }
+
     @Before
     public void prepare() throws Exception {
         threadPool = TestingHelpers.newMockedThreadPool();
@@ -119,7 +126,7 @@ public abstract class AbstractPlannerTest extends CrateUnitTest {
             .add(new PredicateModule())
             .add(new OperatorModule())
             .add(new RepositorySettingsModule())
-            .add(new SettingsModule(Settings.EMPTY))
+            .add(new SettingsModule(nodeSettings()))
             .add(new TestModule())
             .createInjector();
         analyzer = injector.getInstance(Analyzer.class);
@@ -0,0 +1,71 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.operation.aggregation.impl.HyperLogLogDistinctAggregation;
+import io.crate.planner.node.dql.CollectAndMerge;
+import io.crate.planner.node.dql.DistributedGroupBy;
+import io.crate.planner.node.dql.RoutedCollectPhase;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.GroupProjection;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class ApproximateCountDistinctTest extends AbstractPlannerTest {
+
+    @Override
+    protected Settings nodeSettings() {
+        return Settings.builder().put(SelectStatementPlanner.APPROXIMATE_COUNT_DISTINCT_SETTING, true).build();
+    }
+
+    @Test
+    public void testCountDistinctIsReplacedWithHyperLogLog() throws Exception {
+        CollectAndMerge globalAggregate = plan("select count(distinct name) from users");
+        RoutedCollectPhase collectPhase = (RoutedCollectPhase) globalAggregate.collectPhase();
+        assertThat(collectPhase.projections().get(0), instanceOf(AggregationProjection.class));
+        Aggregation aggregation = ((AggregationProjection) collectPhase.projections().get(0)).aggregations().get(0);
+        assertThat(aggregation.functionIdent().name(), is(HyperLogLogDistinctAggregation.NAME));
+    }
+
+    @Test
+    public void testCountDistinctInGroupByAndHavingIsReplaced() throws Exception {
+        DistributedGroupBy distributedGroupBy = plan(
+            "select name, count(distinct id) from users group by name having count(distinct id) > 1");
+        GroupProjection groupProjection = (GroupProjection) distributedGroupBy.collectNode().projections().get(0);
+        assertThat(groupProjection.values().size(), is(1));
+        assertThat(groupProjection.values().get(0).functionIdent().name(), is(HyperLogLogDistinctAggregation.NAME));
+    }
+
+    @Test
+    public void testOtherAggregationsAreNotReplaced() throws Exception {
+        CollectAndMerge globalAggregate = plan("select count(name), arbitrary(name) from users");
+        RoutedCollectPhase collectPhase = (RoutedCollectPhase) globalAggregate.collectPhase();
+        AggregationProjection projection = (AggregationProjection) collectPhase.projections().get(0);
+        assertThat(projection.aggregations().get(0).functionIdent().name(), is("count"));
+        assertThat(projection.aggregations().get(1).functionIdent().name(), is("arbitrary"));
+    }
+}
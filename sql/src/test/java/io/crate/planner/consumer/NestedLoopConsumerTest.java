@@ -26,6 +26,7 @@ import io.crate.analyze.*;
 import io.crate.analyze.relations.PlannedAnalyzedRelation;
 import io.crate.analyze.repositories.RepositorySettingsModule;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.core.collections.TreeMapBuilder;
 import io.crate.exceptions.ValidationException;
 import io.crate.metadata.*;
 import io.crate.metadata.doc.DocSchemaInfo;
@@ -42,6 +43,7 @@ import io.crate.planner.NoopPlan;
 import io.crate.planner.Plan;
 import io.crate.planner.Planner;
 import io.crate.planner.TableStatsService;
+import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.distribution.DistributionType;
 import io.crate.planner.node.dql.*;
 import io.crate.planner.node.dql.join.NestedLoop;
@@ -63,6 +65,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -123,6 +126,16 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
         .add("nope", DataTypes.BOOLEAN)
         .build();
 
+    private static final TableInfo THREE_NODES_TABLE = TestingTableInfo.builder(new TableIdent(DocSchemaInfo.NAME, "three_nodes"),
+        new Routing(TreeMapBuilder.<String, Map<String, List<Integer>>>newMapBuilder()
+            .put("n1", TreeMapBuilder.<String, List<Integer>>newMapBuilder().put("three_nodes", Arrays.asList(0)).map())
+            .put("n2", TreeMapBuilder.<String, List<Integer>>newMapBuilder().put("three_nodes", Arrays.asList(1)).map())
+            .put("n3", TreeMapBuilder.<String, List<Integer>>newMapBuilder().put("three_nodes", Arrays.asList(2)).map())
+            .map()))
+        .add("id", DataTypes.LONG)
+        .add("name", DataTypes.STRING)
+        .build();
+
 
     private class TestModule extends MetaDataModule {
 
@@ -134,6 +147,7 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
             when(statsService.numDocs(eq(BaseAnalyzerTest.USER_TABLE_IDENT))).thenReturn(10L);
             when(statsService.numDocs(eq(BaseAnalyzerTest.USER_TABLE_IDENT_MULTI_PK))).thenReturn(5000L);
             when(statsService.numDocs(eq(EMPTY_ROUTING_TABLE.ident()))).thenReturn(0L);
+            when(statsService.numDocs(eq(THREE_NODES_TABLE.ident()))).thenReturn(1000L);
             bind(TableStatsService.class).toInstance(statsService);
         }
 
@@ -144,6 +158,7 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
             when(schemaInfo.getTableInfo(BaseAnalyzerTest.USER_TABLE_IDENT.name())).thenReturn(BaseAnalyzerTest.USER_TABLE_INFO);
             when(schemaInfo.getTableInfo(BaseAnalyzerTest.USER_TABLE_IDENT_MULTI_PK.name())).thenReturn(BaseAnalyzerTest.USER_TABLE_INFO_MULTI_PK);
             when(schemaInfo.getTableInfo(EMPTY_ROUTING_TABLE.ident().name())).thenReturn(EMPTY_ROUTING_TABLE);
+            when(schemaInfo.getTableInfo(THREE_NODES_TABLE.ident().name())).thenReturn(THREE_NODES_TABLE);
             schemaBinder.addBinding(Schemas.DEFAULT_SCHEMA_NAME).toInstance(schemaInfo);
         }
     }
@@ -338,6 +353,42 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
         assertThat(localTopN.offset(), is(10));
     }
 
+    @Test
+    public void testEquiJoinIsPlannedAsHashJoin() throws Exception {
+        NestedLoop nl = plan("select u1.name, u2.name from users u1, users_multi_pk u2 where u1.id = u2.id order by u1.name, u2.name");
+        NestedLoopPhase phase = nl.nestedLoopPhase();
+        assertThat(phase.isHashJoin(), is(true));
+        assertThat(phase.name(), is("distributed-hash-join"));
+        assertThat(phase.leftJoinKeys().length, is(1));
+        assertThat(phase.rightJoinKeys().length, is(1));
+        // the order by is pushed down to the left side, so it can't be used to build the hash table
+        assertThat(phase.buildLeft(), is(false));
+    }
+
+    @Test
+    public void testEquiJoinOfLargeTablesIsPartitionedByJoinKey() throws Exception {
+        NestedLoop nl = plan("select t1.name, t2.name from three_nodes t1, three_nodes t2 where t1.id = t2.id order by t1.name, t2.name");
+        NestedLoopPhase phase = nl.nestedLoopPhase();
+        assertThat(phase.name(), is("partitioned-hash-join"));
+        assertThat(phase.executionNodes(), contains("n1", "n2", "n3"));
+        assertThat(phase.leftMergePhase().executionNodes(), is(phase.executionNodes()));
+        assertThat(phase.rightMergePhase().executionNodes(), is(phase.executionNodes()));
+
+        DistributionInfo leftDistribution = nl.left().resultPhase().distributionInfo();
+        DistributionInfo rightDistribution = nl.right().resultPhase().distributionInfo();
+        assertThat(leftDistribution.distributionType(), is(DistributionType.MODULO));
+        assertThat(leftDistribution.distributeByColumn(), is(phase.leftJoinKeys()[0]));
+        assertThat(rightDistribution.distributionType(), is(DistributionType.MODULO));
+        assertThat(rightDistribution.distributeByColumn(), is(phase.rightJoinKeys()[0]));
+        assertThat(nl.localMerge(), notNullValue());
+    }
+
+    @Test
+    public void testNonEquiJoinIsPlannedAsNestedLoop() throws Exception {
+        NestedLoop nl = plan("select u1.name, u2.name from users u1, users u2 where u1.id > u2.id order by u1.name, u2.name");
+        assertThat(nl.nestedLoopPhase().isHashJoin(), is(false));
+    }
+
     @Test
     public void testRefsAreNotConvertedToSourceLookups() throws Exception {
         NestedLoop nl = plan("select u1.name from users u1, users u2 where u1.id = u2.id order by 1");
@@ -22,16 +22,28 @@
 
 package io.crate.protocols.postgres;
 
+import com.google.common.base.Predicates;
+import io.crate.action.sql.ResultReceiver;
 import io.crate.action.sql.SQLOperations;
+import io.crate.analyze.CopyFromAnalyzedStatement;
+import io.crate.analyze.symbol.ValueSymbolVisitor;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.operation.collect.files.FileReadingCollector;
+import io.crate.operation.collect.files.StdinFileInput;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.settings.Settings;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -39,7 +51,7 @@ public class ConnectionContextTest {
 
     @Test
     public void testHandleEmptySimpleQuery() throws Exception {
-        ConnectionContext ctx = new ConnectionContext(mock(SQLOperations.class));
+        ConnectionContext ctx = new ConnectionContext(mock(SQLOperations.class), new StdinFileInput());
 
         ChannelBuffer channelBuffer = ChannelBuffers.dynamicBuffer();
         Messages.writeCString(channelBuffer, ";".getBytes(StandardCharsets.UTF_8));
@@ -56,4 +68,51 @@ public class ConnectionContextTest {
         firstResponse.readBytes(responseBytes);
         assertThat(responseBytes, is(new byte[]{'I', 0, 0, 0, 4}));
     }
+
+    @Test
+    public void testInvalidCopyFromStdinIsRejectedBeforeCopyInResponse() throws Exception {
+        ConnectionContext ctx = new ConnectionContext(mock(SQLOperations.class), new StdinFileInput());
+        ctx.session = mock(SQLOperations.Session.class);
+        doThrow(new IllegalArgumentException("Invalid format \"binary\" for COPY FROM"))
+            .when(ctx.session).bind(anyString(), anyString(), anyListOf(Object.class), any(FormatCodes.FormatCode[].class));
+
+        ChannelBuffer channelBuffer = ChannelBuffers.dynamicBuffer();
+        Messages.writeCString(channelBuffer,
+            "copy t from stdin with (format = 'binary')".getBytes(StandardCharsets.UTF_8));
+        Channel channel = mock(Channel.class);
+
+        ctx.handleSimpleQuery(channelBuffer, channel);
+
+        ArgumentCaptor<ChannelBuffer> argumentCaptor = ArgumentCaptor.forClass(ChannelBuffer.class);
+        // once for ErrorResponse and a second time for ReadyForQuery
+        verify(channel, times(2)).write(argumentCaptor.capture());
+        assertThat((char) argumentCaptor.getAllValues().get(0).readByte(), is('E'));
+        assertThat((char) argumentCaptor.getAllValues().get(1).readByte(), is('Z'));
+    }
+
+    @Test
+    public void testCopyFromStdinSetsStreamUriOnAnalyzedStatement() throws Exception {
+        StdinFileInput stdinFileInput = new StdinFileInput();
+        ConnectionContext ctx = new ConnectionContext(mock(SQLOperations.class), stdinFileInput);
+        ctx.session = mock(SQLOperations.Session.class);
+        CopyFromAnalyzedStatement copyFrom = new CopyFromAnalyzedStatement(mock(DocTableInfo.class),
+            Settings.EMPTY, null, null, Predicates.<DiscoveryNode>alwaysTrue(), FileReadingCollector.FileFormat.CSV, true);
+        when(ctx.session.getAnalyzedStatement("")).thenReturn(copyFrom);
+
+        ChannelBuffer channelBuffer = ChannelBuffers.dynamicBuffer();
+        Messages.writeCString(channelBuffer,
+            "copy t from stdin with (format = 'csv')".getBytes(StandardCharsets.UTF_8));
+        Channel channel = mock(Channel.class);
+
+        ctx.handleSimpleQuery(channelBuffer, channel);
+
+        ArgumentCaptor<ChannelBuffer> argumentCaptor = ArgumentCaptor.forClass(ChannelBuffer.class);
+        verify(channel, times(1)).write(argumentCaptor.capture());
+        assertThat((char) argumentCaptor.getValue().readByte(), is('G'));
+
+        String uri = ValueSymbolVisitor.STRING.process(copyFrom.uri());
+        assertThat(uri, startsWith(StdinFileInput.SCHEME + ":"));
+        assertThat(stdinFileInput.getStream(URI.create(uri)), notNullValue());
+        verify(ctx.session).execute(eq(""), eq(1), any(ResultReceiver.class));
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class CopyInputStreamTest {
+
+    @Test
+    public void testReadLinesSplitAcrossMessages() throws Exception {
+        CopyInputStream inputStream = new CopyInputStream(mock(Channel.class));
+        add(inputStream, "{\"id\": 1}\n{\"id\"");
+        add(inputStream, ": 2}\n");
+        inputStream.finish();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        assertThat(reader.readLine(), is("{\"id\": 1}"));
+        assertThat(reader.readLine(), is("{\"id\": 2}"));
+        assertThat(reader.readLine(), nullValue());
+    }
+
+    @Test
+    public void testChannelIsPausedIfHighWaterMarkIsExceeded() throws Exception {
+        Channel channel = mock(Channel.class);
+        when(channel.isReadable()).thenReturn(true);
+        CopyInputStream inputStream = new CopyInputStream(channel);
+
+        int length = CopyInputStream.HIGH_WATER_MARK + 1;
+        inputStream.add(ChannelBuffers.wrappedBuffer(new byte[length]), length);
+        verify(channel, times(1)).setReadable(false);
+
+        when(channel.isReadable()).thenReturn(false);
+        byte[] bytes = new byte[length - CopyInputStream.LOW_WATER_MARK + 1];
+        assertThat(inputStream.read(bytes), is(bytes.length));
+        verify(channel, times(1)).setReadable(true);
+    }
+
+    @Test
+    public void testReadFailsOnCopyFail() throws Exception {
+        CopyInputStream inputStream = new CopyInputStream(mock(Channel.class));
+        inputStream.fail("aborted by client");
+
+        try {
+            inputStream.read();
+            fail("read should have failed");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("aborted by client"));
+        }
+    }
+
+    private static void add(CopyInputStream inputStream, String data) {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        inputStream.add(ChannelBuffers.wrappedBuffer(bytes), bytes.length);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.core.collections.Row1;
+import io.crate.core.collections.RowN;
+import io.crate.types.DataTypes;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class ResultSetReceiverTest {
+
+    @Test
+    public void testRowsAreWrittenOnceOnCompletion() throws Exception {
+        Channel channel = mock(Channel.class, Answers.RETURNS_MOCKS.get());
+        ResultSetReceiver receiver = new ResultSetReceiver(
+            "select x from t", channel, Collections.singletonList(DataTypes.INTEGER), null);
+        for (int i = 0; i < 3; i++) {
+            receiver.setNextRow(new Row1(i));
+        }
+        verify(channel, never()).write(any());
+
+        receiver.allFinished();
+
+        ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        // one write containing all DataRow messages and one for CommandComplete
+        verify(channel, times(2)).write(writeCaptor.capture());
+        ChannelBuffer buffer = (ChannelBuffer) writeCaptor.getAllValues().get(0);
+        for (int i = 0; i < 3; i++) {
+            assertThat((char) buffer.readByte(), is('D'));
+            buffer.skipBytes(buffer.readInt() - 4);
+        }
+        assertThat(buffer.readableBytes(), is(0));
+    }
+
+    @Test
+    public void testRowsAreWrittenIfThresholdIsExceeded() throws Exception {
+        Channel channel = mock(Channel.class, Answers.RETURNS_MOCKS.get());
+        ResultSetReceiver receiver = new ResultSetReceiver(
+            "select x from t", channel, Collections.singletonList(DataTypes.LONG),
+            new FormatCodes.FormatCode[] { FormatCodes.FormatCode.BINARY });
+        // 'D' + length + column count + value length + value
+        int rowSize = 1 + 4 + 2 + 4 + 8;
+        int numRows = ResultSetReceiver.WRITE_THRESHOLD / rowSize + 1;
+        for (int i = 0; i < numRows; i++) {
+            receiver.setNextRow(new Row1((long) i));
+        }
+        ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(channel, times(1)).write(writeCaptor.capture());
+        List<Object> writes = writeCaptor.getAllValues();
+        assertThat(((ChannelBuffer) writes.get(0)).readableBytes(), is(numRows * rowSize));
+    }
+
+    @Test
+    public void testPartiallyWrittenRowIsNotSentOnFailure() throws Exception {
+        Channel channel = mock(Channel.class, Answers.RETURNS_MOCKS.get());
+        ResultSetReceiver receiver = new ResultSetReceiver(
+            "select x, y from t", channel, Arrays.asList(DataTypes.INTEGER, DataTypes.INTEGER),
+            new FormatCodes.FormatCode[] { FormatCodes.FormatCode.BINARY });
+        receiver.setNextRow(new RowN(new Object[] { 1, 2 }));
+        try {
+            // the second column can't be written as integer
+            receiver.setNextRow(new RowN(new Object[] { 3, "foo" }));
+            fail("writing the row should fail");
+        } catch (ClassCastException e) {
+            receiver.fail(e);
+        }
+
+        ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        // one write with the DataRow message and one for the ErrorResponse
+        verify(channel, times(2)).write(writeCaptor.capture());
+        ChannelBuffer buffer = (ChannelBuffer) writeCaptor.getAllValues().get(0);
+        assertThat((char) buffer.readByte(), is('D'));
+        // 'D' + length + column count + 2 * (value length + value)
+        assertThat(buffer.readInt(), is(4 + 2 + 2 * (4 + 4)));
+        buffer.skipBytes(2 + 2 * (4 + 4));
+        assertThat(buffer.readableBytes(), is(0));
+    }
+}
@@ -21,6 +21,7 @@
 
 package org.elasticsearch.action.bulk;
 
+import com.carrotsearch.hppc.cursors.IntCursor;
 import io.crate.executor.transport.ShardResponse;
 import io.crate.executor.transport.ShardUpsertRequest;
 import io.crate.executor.transport.TransportActionProvider;
@@ -45,6 +46,8 @@ import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Test;
 import org.mockito.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -268,6 +271,155 @@ public class BulkShardProcessorTest extends CrateUnitTest {
         assertThat(bulkShardProcessor.add("foo", new ShardUpsertRequest.Item("1", null, new Object[]{"bar1"}, null), null), is(false));
     }
 
+    @Test
+    public void testRequestsAreBufferedWhileTooManyRequestsOfAShardAreInFlight() throws Exception {
+        ClusterService clusterService = mock(ClusterService.class);
+        OperationRouting operationRouting = mock(OperationRouting.class);
+        ShardIterator shardIterator = mock(ShardIterator.class);
+        when(operationRouting.indexShards(
+            any(ClusterState.class), anyString(), anyString(), anyString(), anyString())).thenReturn(shardIterator);
+        when(shardIterator.shardId()).thenReturn(new ShardId("foo", 1));
+        when(clusterService.operationRouting()).thenReturn(operationRouting);
+
+        final List<ShardUpsertRequest> requests = new ArrayList<>();
+        final List<ActionListener<ShardResponse>> listeners = new ArrayList<>();
+        BulkRequestExecutor<ShardUpsertRequest> transportShardBulkAction =
+            new BulkRequestExecutor<ShardUpsertRequest>() {
+                @Override
+                public void execute(ShardUpsertRequest request, ActionListener<ShardResponse> listener) {
+                    requests.add(request);
+                    listeners.add(listener);
+                }
+            };
+
+        BulkRetryCoordinatorPool coordinatorPool = mock(BulkRetryCoordinatorPool.class);
+        when(coordinatorPool.coordinator(any(ShardId.class))).thenReturn(new BulkRetryCoordinator(threadPool));
+
+        ShardUpsertRequest.Builder builder = new ShardUpsertRequest.Builder(
+            TimeValue.timeValueMillis(10),
+            false,
+            false,
+            null,
+            new Reference[]{fooRef},
+            UUID.randomUUID()
+        );
+        final BulkShardProcessor<ShardUpsertRequest> bulkShardProcessor = new BulkShardProcessor<>(
+            clusterService,
+            mock(TransportBulkCreateIndicesAction.class),
+            new IndexNameExpressionResolver(Settings.EMPTY),
+            Settings.EMPTY,
+            coordinatorPool,
+            false,
+            1,
+            builder,
+            transportShardBulkAction,
+            UUID.randomUUID()
+        );
+        for (int i = 0; i < 4; i++) {
+            bulkShardProcessor.add("foo", new ShardUpsertRequest.Item(String.valueOf(i), null, new Object[]{"bar"}, null), null);
+        }
+        bulkShardProcessor.close();
+        assertThat(requests.size(), is(BulkShardProcessor.MAX_IN_FLIGHT_REQUESTS_PER_SHARD));
+
+        // the queued requests are executed once a response arrives, they're never larger than the bulk size
+        respond(requests, listeners, 0);
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(2).itemIndices().size(), is(1));
+
+        for (int i = 1; i < 4; i++) {
+            respond(requests, listeners, i);
+        }
+        assertThat(requests.size(), is(4));
+        assertThat(requests.get(3).itemIndices().size(), is(1));
+        assertThat(bulkShardProcessor.result().get(1, TimeUnit.SECONDS).cardinality(), is(4));
+    }
+
+    @Test
+    public void testAddBlocksWhileTooManyRequestsOfAShardAreQueued() throws Exception {
+        ClusterService clusterService = mock(ClusterService.class);
+        OperationRouting operationRouting = mock(OperationRouting.class);
+        ShardIterator shardIterator = mock(ShardIterator.class);
+        when(operationRouting.indexShards(
+            any(ClusterState.class), anyString(), anyString(), anyString(), anyString())).thenReturn(shardIterator);
+        when(shardIterator.shardId()).thenReturn(new ShardId("foo", 1));
+        when(clusterService.operationRouting()).thenReturn(operationRouting);
+
+        final List<ShardUpsertRequest> requests = new CopyOnWriteArrayList<>();
+        final List<ActionListener<ShardResponse>> listeners = new CopyOnWriteArrayList<>();
+        BulkRequestExecutor<ShardUpsertRequest> transportShardBulkAction =
+            new BulkRequestExecutor<ShardUpsertRequest>() {
+                @Override
+                public void execute(ShardUpsertRequest request, ActionListener<ShardResponse> listener) {
+                    // the responses are held back until the test sends them
+                    requests.add(request);
+                    listeners.add(listener);
+                }
+            };
+
+        BulkRetryCoordinatorPool coordinatorPool = mock(BulkRetryCoordinatorPool.class);
+        when(coordinatorPool.coordinator(any(ShardId.class))).thenReturn(new BulkRetryCoordinator(threadPool));
+
+        ShardUpsertRequest.Builder builder = new ShardUpsertRequest.Builder(
+            TimeValue.timeValueMillis(10),
+            false,
+            false,
+            null,
+            new Reference[]{fooRef},
+            UUID.randomUUID()
+        );
+        final BulkShardProcessor<ShardUpsertRequest> bulkShardProcessor = new BulkShardProcessor<>(
+            clusterService,
+            mock(TransportBulkCreateIndicesAction.class),
+            new IndexNameExpressionResolver(Settings.EMPTY),
+            Settings.EMPTY,
+            coordinatorPool,
+            false,
+            1,
+            builder,
+            transportShardBulkAction,
+            UUID.randomUUID()
+        );
+        int numItems = BulkShardProcessor.MAX_IN_FLIGHT_REQUESTS_PER_SHARD + BulkShardProcessor.MAX_QUEUED_REQUESTS_PER_SHARD;
+        for (int i = 0; i < numItems; i++) {
+            bulkShardProcessor.add("foo", new ShardUpsertRequest.Item(String.valueOf(i), null, new Object[]{"bar"}, null), null);
+        }
+        assertThat(requests.size(), is(BulkShardProcessor.MAX_IN_FLIGHT_REQUESTS_PER_SHARD));
+
+        final CountDownLatch added = new CountDownLatch(1);
+        final int lastItem = numItems;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bulkShardProcessor.add("foo", new ShardUpsertRequest.Item(String.valueOf(lastItem), null, new Object[]{"bar"}, null), null);
+                added.countDown();
+            }
+        });
+        producer.start();
+        assertThat(added.await(200, TimeUnit.MILLISECONDS), is(false));
+
+        respond(requests, listeners, 0);
+        assertThat(added.await(5, TimeUnit.SECONDS), is(true));
+        producer.join();
+
+        bulkShardProcessor.close();
+        for (int i = 1; i <= numItems; i++) {
+            respond(requests, listeners, i);
+        }
+        assertThat(requests.size(), is(numItems + 1));
+        for (ShardUpsertRequest request : requests) {
+            assertThat(request.itemIndices().size(), is(1));
+        }
+        assertThat(bulkShardProcessor.result().get(1, TimeUnit.SECONDS).cardinality(), is(numItems + 1));
+    }
+
+    private static void respond(List<ShardUpsertRequest> requests, List<ActionListener<ShardResponse>> listeners, int i) {
+        ShardResponse response = new ShardResponse();
+        for (IntCursor cursor : requests.get(i).itemIndices()) {
+            response.add(cursor.value);
+        }
+        listeners.get(i).onResponse(response);
+    }
+
     private void mockShard(OperationRouting operationRouting, Integer shardId) {
         ShardIterator shardIterator = mock(ShardIterator.class);
         when(operationRouting.indexShards(